@@ -0,0 +1,62 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import com.google.protobuf.ByteString;
+import org.bitcoinj.crypto.KeyCrypter;
+import org.bitcoinj.crypto.KeyCrypterScrypt;
+import org.bitcoinj.wallet.Protos;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares stock KeyCrypterScrypt with {@link ParallelKeyCrypterScrypt} on wallet parameters.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar ScryptBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScryptBenchmark {
+    private static final String PASSWORD = "rasperrywallet is the best bitcoin wallet ever";
+
+    @Param({"16384", "32768"})
+    private long n;
+
+    @Param({"1", "6"})
+    private int p;
+
+    private KeyCrypter stock;
+    private KeyCrypter parallel;
+
+    @Setup
+    public void setup() {
+        Protos.ScryptParameters parameters = Protos.ScryptParameters.newBuilder()
+                .setN(n).setR(8).setP(p)
+                .setSalt(ByteString.copyFrom(KeyCrypterScrypt.randomSalt()))
+                .build();
+        stock = new KeyCrypterScrypt(parameters);
+        parallel = new ParallelKeyCrypterScrypt(parameters);
+    }
+
+    @Benchmark
+    public KeyParameter stock() {
+        return stock.deriveKey(PASSWORD);
+    }
+
+    @Benchmark
+    public KeyParameter parallel() {
+        return parallel.deriveKey(PASSWORD);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ScryptBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
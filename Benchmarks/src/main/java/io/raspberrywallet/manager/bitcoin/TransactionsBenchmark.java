@@ -0,0 +1,107 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import io.raspberrywallet.contract.TransactionPage;
+import io.raspberrywallet.contract.TransactionView;
+import io.raspberrywallet.contract.WalletNotInitialized;
+import io.raspberrywallet.manager.Configuration;
+import org.bitcoinj.core.*;
+import org.bitcoinj.crypto.TransactionSignature;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.script.ScriptBuilder;
+import org.bitcoinj.store.BlockStoreException;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.WalletTransaction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Bitcoin#getAllTransactions()} over synthetic wallets, each transaction pays the wallet from a foreign key.
+ * The views are read from {@link WalletReadModel} snapshot, rebuilding it shows the cost of mapping all of them.
+ * A page of {@link Bitcoin#getTransactions} is read from {@link TransactionHistory} on disk.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar TransactionsBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransactionsBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int transactions;
+
+    private File baseDir;
+    private Bitcoin bitcoin;
+
+    @Setup
+    public void setup() throws IOException, BlockStoreException {
+        baseDir = Files.createTempDirectory("transactions-benchmark").toFile();
+        bitcoin = new Bitcoin(new Configuration(baseDir.getAbsolutePath()), new WalletCrypter(), null);
+
+        NetworkParameters params = TestNet3Params.get();
+        Wallet wallet = new Wallet(params);
+        Address receiveAddress = wallet.currentReceiveAddress();
+        ECKey sender = new ECKey();
+        byte[] inputScript = ScriptBuilder.createInputScript(TransactionSignature.dummy(), sender).getProgram();
+        Random random = new Random(1);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < transactions; i++) {
+            Transaction tx = new Transaction(params);
+            byte[] previousHash = new byte[32];
+            random.nextBytes(previousHash);
+            tx.addInput(new TransactionInput(params, tx, inputScript,
+                    new TransactionOutPoint(params, 0, Sha256Hash.wrap(previousHash)), Coin.COIN));
+            tx.addOutput(Coin.valueOf(1 + random.nextInt(Integer.MAX_VALUE)), receiveAddress);
+            tx.addOutput(Coin.CENT, new ECKey().toAddress(params));
+            tx.setUpdateTime(new Date(now - i * 60_000L));
+            wallet.addWalletTransaction(new WalletTransaction(WalletTransaction.Pool.UNSPENT, tx));
+        }
+        bitcoin.setWallet(wallet);
+    }
+
+    @TearDown
+    public void tearDown() {
+        deleteRecursively(baseDir);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                deleteRecursively(child);
+        file.delete();
+    }
+
+    @Benchmark
+    public List<TransactionView> getAllTransactions() throws WalletNotInitialized {
+        return bitcoin.getAllTransactions();
+    }
+
+    @Benchmark
+    public TransactionPage transactionsPage() throws WalletNotInitialized {
+        return bitcoin.getTransactions(null, 50, null, null, null);
+    }
+
+    @Benchmark
+    public List<TransactionView> rebuildReadModel() throws WalletNotInitialized {
+        WalletReadModel readModel = bitcoin.getReadModel();
+        readModel.rebuild();
+        return readModel.getTransactions();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TransactionsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
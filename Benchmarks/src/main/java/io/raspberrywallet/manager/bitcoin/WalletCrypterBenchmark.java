@@ -0,0 +1,77 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import io.raspberrywallet.contract.IncorrectPasswordException;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.crypto.KeyCrypter;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.wallet.Wallet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encryption and decryption of a wallet with {@link WalletCrypter}, with the password (scrypt included)
+ * and with an already derived key, which is the cost of the keys themselves.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar WalletCrypterBenchmark}
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WalletCrypterBenchmark {
+    private static final String PASSWORD = "rasperrywallet is the best bitcoin wallet ever";
+
+    @Param({"0", "100"})
+    private int importedKeys;
+
+    private WalletCrypter walletCrypter;
+    private Wallet wallet;
+    private KeyCrypter keyCrypter;
+    private KeyParameter aesKey;
+
+    @Setup
+    public void setup() throws IncorrectPasswordException {
+        walletCrypter = new WalletCrypter();
+        wallet = new Wallet(TestNet3Params.get());
+        List<ECKey> keys = new ArrayList<>();
+        for (int i = 0; i < importedKeys; i++)
+            keys.add(new ECKey());
+        wallet.importKeys(keys);
+        keyCrypter = walletCrypter.newKeyCrypter();
+        aesKey = walletCrypter.deriveKey(keyCrypter, PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        walletCrypter.destroyKey(aesKey);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public Wallet passwordRoundTrip() throws IncorrectPasswordException {
+        walletCrypter.encryptWallet(wallet, PASSWORD);
+        walletCrypter.decryptWallet(wallet, PASSWORD);
+        return wallet;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Wallet derivedKeyRoundTrip() throws IncorrectPasswordException {
+        walletCrypter.encryptWallet(wallet, keyCrypter, aesKey);
+        walletCrypter.decryptWallet(wallet, aesKey);
+        return wallet;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WalletCrypterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package io.raspberrywallet.manager.cryptography.crypto;
+
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.AESCipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password based encryption of objects and bytes with {@link CryptoObject}, including key derivation,
+ * and encryption with the key parameters reused as the database does it. Decryption reuses keys derived before,
+ * unless the key cache is cleared as on wallet lock.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar CryptoObjectBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CryptoObjectBenchmark {
+    private static final String PASSWORD = "TestPassword123!@##$%";
+
+    @Param({"1", "64"})
+    private int sizeKb;
+
+    private byte[] data;
+    private AESEncryptedObject<byte[]> encryptedObject;
+    private byte[] encryptedBytes;
+    private AESCipherParams keyParams;
+
+    @Setup
+    public void setup() throws EncryptionException, DecryptionException {
+        data = new byte[sizeKb * 1024];
+        new Random(1).nextBytes(data);
+        encryptedObject = CryptoObject.encrypt(data, PASSWORD);
+        encryptedBytes = CryptoObject.encryptBytes(data, PASSWORD);
+        keyParams = EncryptedObjectCodec.decode(encryptedBytes).getCipherParams();
+    }
+
+    @Benchmark
+    public AESEncryptedObject<byte[]> encrypt() throws EncryptionException {
+        return CryptoObject.encrypt(data, PASSWORD);
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws DecryptionException {
+        return CryptoObject.decrypt(encryptedObject, PASSWORD);
+    }
+
+    @Benchmark
+    public byte[] encryptBytes() throws EncryptionException {
+        return CryptoObject.encryptBytes(data, PASSWORD);
+    }
+
+    @Benchmark
+    public byte[] encryptBytesWithDerivedKey() throws EncryptionException {
+        return CryptoObject.encryptBytes(data, PASSWORD, keyParams.withNewIv());
+    }
+
+    @Benchmark
+    public byte[] decryptBytes() throws DecryptionException {
+        return CryptoObject.decryptBytes(encryptedBytes, PASSWORD);
+    }
+
+    @Benchmark
+    public byte[] decryptBytesWithClearedKeyCache() throws DecryptionException {
+        AESCipherParams.clearKeyCache();
+        return CryptoObject.decryptBytes(encryptedBytes, PASSWORD);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CryptoObjectBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package io.raspberrywallet.manager.cryptography.crypto;
+
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of file encryption in MB/s, reported as "megabytes" secondary result.
+ * Compares sequential {@link CryptoStream} with parallel {@link SegmentedFile}.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar CryptoStreamBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3, time = 20)
+@Fork(1)
+public class CryptoStreamBenchmark {
+    private static final String PASSWORD = "TestPassword123!@##$%";
+    
+    @Param({"256"})
+    private int sizeMb;
+    
+    private Path directory;
+    private Path plain;
+    private Path encrypted;
+    private Path segmented;
+    private Path decrypted;
+    
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Megabytes {
+        public long megabytes;
+    }
+    
+    @Setup
+    public void setup() throws IOException, EncryptionException {
+        directory = Files.createTempDirectory("crypto-stream-benchmark");
+        plain = directory.resolve("plain");
+        encrypted = directory.resolve("encrypted");
+        segmented = directory.resolve("segmented");
+        decrypted = directory.resolve("decrypted");
+        
+        byte[] chunk = new byte[1024 * 1024];
+        new Random().nextBytes(chunk);
+        try (RandomAccessFile file = new RandomAccessFile(plain.toFile(), "rw")) {
+            for (int i = 0; i < sizeMb; i++)
+                file.write(chunk);
+        }
+        CryptoStream.encryptFile(plain, encrypted, PASSWORD);
+        SegmentedFile.encrypt(plain, segmented, PASSWORD);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Path file : new Path[]{plain, encrypted, segmented, decrypted, directory})
+            Files.deleteIfExists(file);
+    }
+    
+    @Benchmark
+    public void encrypt(Megabytes megabytes) throws EncryptionException {
+        CryptoStream.encryptFile(plain, decrypted, PASSWORD);
+        megabytes.megabytes += sizeMb;
+    }
+    
+    @Benchmark
+    public void decrypt(Megabytes megabytes) throws DecryptionException {
+        CryptoStream.decryptFile(encrypted, decrypted, PASSWORD);
+        megabytes.megabytes += sizeMb;
+    }
+    
+    @Benchmark
+    public void encryptSegmented(Megabytes megabytes) throws EncryptionException {
+        SegmentedFile.encrypt(plain, decrypted, PASSWORD);
+        megabytes.megabytes += sizeMb;
+    }
+    
+    @Benchmark
+    public void decryptSegmented(Megabytes megabytes) throws DecryptionException, IOException {
+        try (SegmentedFile segmentedFile = SegmentedFile.open(segmented, PASSWORD)) {
+            segmentedFile.decryptTo(decrypted);
+        }
+        megabytes.megabytes += sizeMb;
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CryptoStreamBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
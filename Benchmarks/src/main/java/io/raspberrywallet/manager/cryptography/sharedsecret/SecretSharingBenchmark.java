@@ -0,0 +1,97 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret;
+
+import io.raspberrywallet.manager.cryptography.sharedsecret.blakley.Blakley;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.Shamir;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirException;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirGF256;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirKey;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirShare;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting and restoring a 32 bytes wallet secret with the secret sharing schemes, out of 5 key parts.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar SecretSharingBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SecretSharingBenchmark {
+    private static final int PARTS = 5;
+    private static final int BLAKLEY_BITS = 512;
+
+    @Param({"2", "3", "5"})
+    private int required;
+
+    private byte[] secret;
+    private int numBits;
+    private ShamirKey[] shamirKeys;
+    private ShamirShare[] shares;
+    private BigInteger[][] blakleyKeys;
+
+    @Setup
+    public void setup() throws ShamirException {
+        secret = new byte[32];
+        new Random(1).nextBytes(secret);
+        secret[0] &= 0x7f;
+        numBits = secret.length * 8 + 8;
+        BigInteger[] polynomial = Shamir.generateParams(required, numBits, secret);
+        shamirKeys = Arrays.copyOf(Shamir.generateKeys(PARTS, required, numBits, polynomial), required);
+        shares = Arrays.copyOf(ShamirGF256.split(secret, PARTS, required), required);
+        // divide clears the secret it is given
+        BigInteger[] blakleyPoint = Blakley.divide(required, secret.clone());
+        blakleyKeys = new BigInteger[required][];
+        for (int i = 0; i < required; i++)
+            blakleyKeys[i] = Blakley.createdKey(blakleyPoint, BLAKLEY_BITS);
+    }
+
+    @Benchmark
+    public ShamirKey[] shamirGenerateKeys() throws ShamirException {
+        return Shamir.generateKeys(PARTS, required, numBits, Shamir.generateParams(required, numBits, secret));
+    }
+
+    @Benchmark
+    public byte[] shamirCalculateLagrange() {
+        return Shamir.calculateLagrange(shamirKeys);
+    }
+
+    @Benchmark
+    public ShamirShare[] shamirGF256Split() throws ShamirException {
+        return ShamirGF256.split(secret, PARTS, required);
+    }
+
+    @Benchmark
+    public byte[] shamirGF256Combine() throws ShamirException {
+        return ShamirGF256.combine(shares);
+    }
+
+    @Benchmark
+    public BigInteger[][] blakleyCreatedKeys() {
+        BigInteger[] point = Blakley.divide(required, secret.clone());
+        BigInteger[][] keys = new BigInteger[PARTS][];
+        for (int i = 0; i < PARTS; i++)
+            keys[i] = Blakley.createdKey(point, BLAKLEY_BITS);
+        return keys;
+    }
+
+    @Benchmark
+    public byte[] blakleySolutionKey() {
+        return Blakley.solutionKey(blakleyKeys);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SecretSharingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
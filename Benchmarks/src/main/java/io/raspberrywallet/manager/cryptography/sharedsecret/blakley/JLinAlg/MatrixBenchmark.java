@@ -0,0 +1,83 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Elimination based operations of {@link Matrix} on random square matrices over F65521, F2 and the rationals.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar MatrixBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatrixBenchmark {
+    private static final long P = 65521;
+
+    @Param({"FieldP", "F2", "Rational"})
+    private String field;
+
+    @Param({"8", "32"})
+    private int n;
+
+    private Matrix matrix;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        FieldElement[][] entries = new FieldElement[n][n];
+        // retried until invertible, which a random F2 matrix is only about every third time
+        do {
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    entries[i][j] = randomElement(random);
+            matrix = new Matrix(entries, n, n);
+        } while (matrix.rank() < n);
+    }
+
+    private FieldElement randomElement(Random random) {
+        switch (field) {
+            case "FieldP":
+                return new FieldP(random.nextInt((int) P), P);
+            case "F2":
+                return new F2(random.nextInt(2));
+            case "Rational":
+                return new Rational(random.nextInt(201) - 100, 1 + random.nextInt(100));
+            default:
+                throw new IllegalArgumentException(field);
+        }
+    }
+
+    @Benchmark
+    public FieldElement det() {
+        return matrix.det();
+    }
+
+    @Benchmark
+    public int rank() {
+        return matrix.rank();
+    }
+
+    @Benchmark
+    public Matrix gausselim() {
+        return matrix.gausselim();
+    }
+
+    @Benchmark
+    public Matrix inverse() {
+        return matrix.inverse();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MatrixBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the methods of {@link MatrixMultiplication} on square matrices over F65521, to find the crossover
+ * points used by {@link MatrixMultiplication#automatic(Matrix, Matrix)} on a given machine.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar MatrixMultiplicationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatrixMultiplicationBenchmark {
+    private static final long P = 65521;
+
+    @Param({"48", "96", "192", "384", "768"})
+    private int n;
+
+    private Matrix a;
+    private Matrix b;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        a = randomMatrix(random);
+        b = randomMatrix(random);
+    }
+
+    @Benchmark
+    public Matrix school() {
+        return MatrixMultiplication.school(a, b);
+    }
+
+    @Benchmark
+    public Matrix parallelTiled() {
+        return MatrixMultiplication.parallelTiled(a, b);
+    }
+
+    @Benchmark
+    public Matrix strassenOriginal() {
+        return MatrixMultiplication.strassenOriginal(a, b);
+    }
+
+    @Benchmark
+    public Matrix automatic() {
+        return MatrixMultiplication.automatic(a, b);
+    }
+
+    private Matrix randomMatrix(Random random) {
+        FieldElement[][] entries = new FieldElement[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                entries[i][j] = new FieldP(random.nextInt((int) P), P);
+        return new Matrix(entries, n, n);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MatrixMultiplicationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,65 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rational arithmetic on systems of the size Blakley keys have, with small integer coefficients.
+ * {@link LinSysSolver#solve(Matrix, Vector)} goes through {@link BareissElimination}, gausselim and inverse
+ * still work on Rationals entry by entry.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar RationalBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RationalBenchmark {
+
+    @Param({"3", "5", "8"})
+    private int n;
+
+    private Matrix a;
+    private Vector b;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        FieldElement[][] entries = new FieldElement[n][n];
+        FieldElement[] results = new FieldElement[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++)
+                entries[i][j] = new Rational(random.nextInt(2001) - 1000, 1);
+            results[i] = new Rational(random.nextInt(2001) - 1000, 1);
+        }
+        a = new Matrix(entries, n, n);
+        b = new Vector(results);
+    }
+
+    @Benchmark
+    public Vector solve() {
+        return LinSysSolver.solve(a, b);
+    }
+
+    @Benchmark
+    public Matrix gausselim() {
+        return a.gausselim();
+    }
+
+    @Benchmark
+    public Matrix inverse() {
+        return a.inverse();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RationalBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+package io.raspberrywallet.manager.database;
+
+import io.raspberrywallet.manager.Configuration;
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.AESCipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving the wallet database and loading it with the password, with the derived key cached
+ * and as on the first unlock after the wallet was locked.
+ * Run with {@code java -jar Benchmarks/target/benchmarks.jar DatabaseBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DatabaseBenchmark {
+    private static final String PASSWORD = "changeit";
+
+    @Param({"5", "100"})
+    private int keyParts;
+
+    private File baseDir;
+    private Configuration configuration;
+    private Database database;
+
+    @Setup
+    public void setup() throws IOException, EncryptionException, DecryptionException {
+        baseDir = Files.createTempDirectory("database-benchmark").toFile();
+        configuration = new Configuration(baseDir.getAbsolutePath());
+        database = new Database(configuration);
+        database.setPassword(PASSWORD);
+
+        Random random = new Random(1);
+        List<KeyPartEntity> parts = new ArrayList<>();
+        for (int i = 0; i < keyParts; i++) {
+            byte[] payload = new byte[64];
+            random.nextBytes(payload);
+            parts.add(new KeyPartEntity(payload, "Module" + i));
+        }
+        database.addAllKeyParts(parts);
+        database.saveWallet();
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.destroy();
+        File[] files = baseDir.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        baseDir.delete();
+    }
+
+    @Benchmark
+    public Database saveWallet() throws IOException, EncryptionException {
+        database.saveWallet();
+        return database;
+    }
+
+    @Benchmark
+    public WalletEntity load() throws IOException, EncryptionException, DecryptionException {
+        return loadDatabase();
+    }
+
+    @Benchmark
+    public WalletEntity loadWithClearedKeyCache() throws IOException, EncryptionException, DecryptionException {
+        AESCipherParams.clearKeyCache();
+        return loadDatabase();
+    }
+
+    private WalletEntity loadDatabase() throws IOException, EncryptionException, DecryptionException {
+        Database loaded = new Database(configuration);
+        loaded.setPassword(PASSWORD);
+        WalletEntity wallet = loaded.getWallet();
+        loaded.destroy();
+        return wallet;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DatabaseBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,51 @@
+package io.raspberrywallet.server.loadtest;
+
+import io.raspberrywallet.server.Paths;
+
+/**
+ * REST calls made by virtual users, named after their paths.
+ */
+public enum Endpoint {
+    PING(Paths.Utils.ping),
+    WALLET_STATUS(Paths.Modules.walletStatus),
+    ALL_TRANSACTIONS(Paths.Utils.allTransactions),
+    TRANSACTIONS(Paths.Bitcoin.transactions),
+    ESTIMATED_BALANCE(Paths.Bitcoin.estimatedBalance),
+    AVAILABLE_BALANCE(Paths.Bitcoin.availableBalance),
+    CURRENT_ADDRESS(Paths.Bitcoin.currentAddress),
+    FRESH_ADDRESS(Paths.Bitcoin.freshAddress),
+    MODULES(Paths.Modules.modules),
+    CPU_TEMP(Paths.Utils.cpuTemp),
+    KDF_COST(Paths.Utils.kdfCost),
+    LOCK_WALLET(Paths.Modules.lockWallet),
+    UNLOCK_WALLET(Paths.Modules.unlockWallet, "{}");
+
+    public final String path;
+    /**
+     * JSON body of POST request, null for GET
+     */
+    public final String body;
+
+    Endpoint(String path) {
+        this(path, null);
+    }
+
+    Endpoint(String path, String body) {
+        this.path = path;
+        this.body = body;
+    }
+
+    /**
+     * @return last segment of the path, e.g. walletStatus
+     */
+    public String getName() {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    public static Endpoint fromName(String name) {
+        for (Endpoint endpoint : values())
+            if (endpoint.getName().equals(name))
+                return endpoint;
+        throw new IllegalArgumentException("Unknown endpoint " + name);
+    }
+}
@@ -0,0 +1,44 @@
+package io.raspberrywallet.server.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies in microseconds and errors by name of the call, owned by a single thread and merged at the end,
+ * so recording doesn't contend between virtual users.
+ */
+public class LatencyStats {
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private final Map<String, Long> errors = new LinkedHashMap<>();
+
+    public void record(String name, long latencyNanos) {
+        histograms.computeIfAbsent(name, key -> new Histogram(SIGNIFICANT_DIGITS))
+                .recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+
+    public void error(String name) {
+        errors.merge(name, 1L, Long::sum);
+    }
+
+    public void add(LatencyStats other) {
+        other.histograms.forEach((name, histogram) ->
+                histograms.computeIfAbsent(name, key -> new Histogram(SIGNIFICANT_DIGITS)).add(histogram));
+        other.errors.forEach((name, count) -> errors.merge(name, count, Long::sum));
+    }
+
+    /**
+     * @return histogram of latencies in microseconds, empty if there were no successful calls
+     */
+    public Histogram getHistogram(String name) {
+        return histograms.getOrDefault(name, new Histogram(SIGNIFICANT_DIGITS));
+    }
+
+    public long getErrors(String name) {
+        return errors.getOrDefault(name, 0L);
+    }
+}
@@ -0,0 +1,241 @@
+package io.raspberrywallet.server.loadtest;
+
+import ch.qos.logback.classic.Level;
+import com.stasbar.Logger;
+import io.raspberrywallet.contract.CommunicationChannel;
+import io.raspberrywallet.contract.ServerConfig;
+import io.raspberrywallet.mock.ManagerMock;
+import io.raspberrywallet.server.KtorServer;
+import io.raspberrywallet.server.Paths;
+import org.apache.commons.cli.*;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test of the HTTP layer: boots {@link KtorServer} with {@link ManagerMock} in process and drives it
+ * with concurrent virtual users calling REST API and websocket subscribers, see {@link LoadTestOpts}.
+ * Exits with 1 if any of the given limits is exceeded or latencies regressed against the baseline,
+ * with 2 on invalid arguments.
+ * <p>
+ * Run from the repository root, KtorServer loads its keystore from the working directory:
+ * {@code java -cp Benchmarks/target/benchmarks.jar io.raspberrywallet.server.loadtest.LoadTest -users 20}
+ */
+public class LoadTest {
+    private static final String HOST = "localhost";
+    private static final String SUBSCRIBED_PATH = "/info";
+    /**
+     * Exit code of invalid arguments, a mistyped limit must not pass as a successful run
+     */
+    private static final int EXIT_USAGE = 2;
+
+    private final int users;
+    private final int subscribers;
+    private final double durationSeconds;
+    private final double warmupSeconds;
+    private final double rate;
+    private final double messageRate;
+    private final RequestMix mix;
+
+    public LoadTest(int users, int subscribers, double durationSeconds, double warmupSeconds,
+                    double rate, double messageRate, RequestMix mix) {
+        this.users = users;
+        this.subscribers = subscribers;
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+        this.rate = rate;
+        this.messageRate = messageRate;
+        this.mix = mix;
+    }
+
+    public static void main(String... args) throws Exception {
+        CommandLine cmd = parseArgs(args);
+        LoadTest loadTest = new LoadTest(
+                LoadTestOpts.USERS.getInt(cmd),
+                LoadTestOpts.SUBSCRIBERS.getInt(cmd),
+                LoadTestOpts.DURATION.getDouble(cmd),
+                LoadTestOpts.WARMUP.getDouble(cmd),
+                LoadTestOpts.RATE.getDouble(cmd),
+                LoadTestOpts.MESSAGE_RATE.getDouble(cmd),
+                new RequestMix(LoadTestOpts.MIX.getValue(cmd)));
+
+        // every call is logged on trace level otherwise, the console would be the bottleneck
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.WARN);
+
+        ServerConfig serverConfig = new ServerConfig();
+        serverConfig.setPort(freePort());
+        serverConfig.setSecurePort(freePort());
+        CommunicationChannel communicationChannel = new CommunicationChannel();
+        KtorServer server = new KtorServer(new ManagerMock(), serverConfig, communicationChannel);
+        server.start();
+        LoadTestReport report;
+        try {
+            report = loadTest.run(serverConfig.getPort(), communicationChannel);
+        } finally {
+            server.stop();
+        }
+        report.print(System.out);
+
+        if (LoadTestOpts.OUTPUT.isSet(cmd))
+            report.write(new File(LoadTestOpts.OUTPUT.getValue(cmd)));
+
+        List<String> violations = report.checkLimits(
+                optionalDouble(cmd, LoadTestOpts.MAX_P99),
+                optionalDouble(cmd, LoadTestOpts.MAX_P999),
+                optionalDouble(cmd, LoadTestOpts.MIN_THROUGHPUT),
+                optionalDouble(cmd, LoadTestOpts.MAX_ERROR_RATE));
+        if (LoadTestOpts.BASELINE.isSet(cmd))
+            violations.addAll(report.checkBaseline(
+                    LoadTestReport.read(new File(LoadTestOpts.BASELINE.getValue(cmd))),
+                    LoadTestOpts.TOLERANCE.getDouble(cmd)));
+
+        violations.forEach(violation -> Logger.err("Regression: " + violation));
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    public LoadTestReport run(int port, CommunicationChannel communicationChannel) throws Exception {
+        String baseUrl = "http://" + HOST + ":" + port;
+        ExecutorService executor = Executors.newFixedThreadPool(users + subscribers + 1);
+        try (CloseableHttpClient client = HttpClients.custom()
+                .setMaxConnTotal(users)
+                .setMaxConnPerRoute(users)
+                .build()) {
+            awaitServer(client, baseUrl);
+
+            long start = System.nanoTime();
+            long measureFrom = start + (long) (warmupSeconds * 1e9);
+            long end = measureFrom + (long) (durationSeconds * 1e9);
+            Logger.info("Load testing " + baseUrl + " for " + (warmupSeconds + durationSeconds) + " s");
+
+            List<WebSocketSubscriber> webSocketSubscribers = new ArrayList<>();
+            for (int i = 0; i < subscribers; i++) {
+                WebSocketSubscriber subscriber = new WebSocketSubscriber(HOST, port, SUBSCRIBED_PATH, measureFrom, i);
+                webSocketSubscribers.add(subscriber);
+                executor.submit(subscriber);
+            }
+            MessagePublisher publisher = new MessagePublisher(communicationChannel, measureFrom, end, messageRate);
+            Future<?> publishing = subscribers > 0 ? executor.submit(publisher) : null;
+
+            List<VirtualUser> virtualUsers = new ArrayList<>();
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                VirtualUser user = new VirtualUser(client, baseUrl, mix, measureFrom, end, rate, i);
+                virtualUsers.add(user);
+                running.add(executor.submit(user));
+            }
+            for (Future<?> future : running)
+                future.get();
+            if (publishing != null)
+                publishing.get();
+            // let the last messages arrive
+            Thread.sleep(100);
+            for (WebSocketSubscriber subscriber : webSocketSubscribers)
+                subscriber.close();
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+
+            LatencyStats stats = new LatencyStats();
+            virtualUsers.forEach(user -> stats.add(user.getStats()));
+            webSocketSubscribers.forEach(subscriber -> stats.add(subscriber.getStats()));
+            return report(stats, publisher.getPublished());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private LoadTestReport report(LatencyStats stats, long publishedMessages) {
+        LoadTestReport report = new LoadTestReport();
+        report.setUsers(users);
+        report.setSubscribers(subscribers);
+        report.setDurationSeconds(durationSeconds);
+        long calls = 0;
+        for (Endpoint endpoint : mix.getEndpoints()) {
+            LoadTestReport.Result result = new LoadTestReport.Result(stats.getHistogram(endpoint.getName()),
+                    stats.getErrors(endpoint.getName()), durationSeconds);
+            report.getEndpoints().put(endpoint.getName(), result);
+            calls += result.getCount();
+        }
+        report.setThroughput(calls / durationSeconds);
+        if (subscribers > 0) {
+            report.setWebsocket(new LoadTestReport.Result(stats.getHistogram(WebSocketSubscriber.STATS_NAME),
+                    stats.getErrors(WebSocketSubscriber.STATS_NAME), durationSeconds));
+            report.setPublishedMessages(publishedMessages);
+        }
+        return report;
+    }
+
+    /**
+     * Waits until the server answers ping, Netty binds the port in the background
+     */
+    private static void awaitServer(CloseableHttpClient client, String baseUrl) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            try {
+                client.execute(new HttpGet(baseUrl + Paths.Utils.ping), response -> {
+                    EntityUtils.consume(response.getEntity());
+                    return null;
+                });
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Server at " + baseUrl + " didn't start");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Double optionalDouble(CommandLine cmd, LoadTestOpts opt) {
+        return opt.isSet(cmd) ? opt.getDouble(cmd) : null;
+    }
+
+    /**
+     * Numeric values are checked right away, before the run whose results they limit
+     */
+    private static CommandLine parseArgs(String[] args) {
+        Options options = new Options();
+        for (LoadTestOpts opt : LoadTestOpts.values())
+            options.addOption(opt.option);
+        HelpFormatter helpFormatter = new HelpFormatter();
+        DefaultParser parser = new DefaultParser();
+        String usage = "java -cp benchmarks.jar " + LoadTest.class.getName();
+        try {
+            CommandLine cmd = parser.parse(options, args);
+            if (LoadTestOpts.HELP.isSet(cmd)) {
+                helpFormatter.printHelp(usage, options, true);
+                System.exit(0);
+            }
+            for (LoadTestOpts opt : new LoadTestOpts[]{LoadTestOpts.USERS, LoadTestOpts.SUBSCRIBERS})
+                opt.getInt(cmd);
+            for (LoadTestOpts opt : new LoadTestOpts[]{LoadTestOpts.DURATION, LoadTestOpts.WARMUP, LoadTestOpts.RATE,
+                    LoadTestOpts.MESSAGE_RATE, LoadTestOpts.TOLERANCE})
+                opt.getDouble(cmd);
+            for (LoadTestOpts opt : new LoadTestOpts[]{LoadTestOpts.MAX_P99, LoadTestOpts.MAX_P999,
+                    LoadTestOpts.MIN_THROUGHPUT, LoadTestOpts.MAX_ERROR_RATE})
+                optionalDouble(cmd, opt);
+            return cmd;
+        } catch (ParseException | NumberFormatException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            helpFormatter.printHelp(usage, options, true);
+            System.exit(EXIT_USAGE);
+            return null;
+        }
+    }
+}
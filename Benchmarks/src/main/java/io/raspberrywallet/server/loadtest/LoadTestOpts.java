@@ -0,0 +1,51 @@
+package io.raspberrywallet.server.loadtest;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+
+public enum LoadTestOpts {
+    USERS(new Option("users", true, "Number of concurrent virtual users calling REST API"), "10"),
+    SUBSCRIBERS(new Option("subscribers", true, "Number of websocket subscribers of /info"), "2"),
+    DURATION(new Option("duration", true, "Measured duration in seconds"), "30"),
+    WARMUP(new Option("warmup", true, "Warmup duration in seconds, not measured"), "5"),
+    RATE(new Option("rate", true, "Requests per second of every user, 0 sends next request right after the response"), "0"),
+    MESSAGE_RATE(new Option("messageRate", true, "Messages per second pushed to websocket subscribers"), "10"),
+    MIX(new Option("mix", true, "Weighted endpoints, e.g. walletStatus=5,allTransactions=1"),
+            "walletStatus=40,allTransactions=20,estimatedBalance=15,availableBalance=10,currentAddress=10,unlockWallet=3,lockWallet=2"),
+    OUTPUT(new Option("output", true, "Writes the report as JSON, it can be used as baseline of next runs")),
+    BASELINE(new Option("baseline", true, "JSON report of a previous run, fails if latencies regress over tolerance")),
+    TOLERANCE(new Option("tolerance", true, "Allowed ratio of latencies to the baseline"), "1.25"),
+    MAX_P99(new Option("maxP99", true, "Fails if 99th percentile latency of any endpoint is over this many ms")),
+    MAX_P999(new Option("maxP999", true, "Fails if 99.9th percentile latency of any endpoint is over this many ms")),
+    MIN_THROUGHPUT(new Option("minThroughput", true, "Fails if total throughput is under this many requests per second")),
+    MAX_ERROR_RATE(new Option("maxErrorRate", true, "Fails if more than this fraction of calls of any endpoint failed")),
+    HELP(new Option("help", false, "Prints the options"));
+
+    public final Option option;
+    public final String def;
+
+    LoadTestOpts(Option option) {
+        this(option, null);
+    }
+
+    LoadTestOpts(Option option, String def) {
+        this.option = option;
+        this.def = def;
+    }
+
+    public boolean isSet(CommandLine cmd) {
+        return cmd.hasOption(this.option.getOpt());
+    }
+
+    public String getValue(CommandLine cmd) {
+        return cmd.getOptionValue(this.option.getOpt(), def);
+    }
+
+    public int getInt(CommandLine cmd) {
+        return Integer.parseInt(getValue(cmd));
+    }
+
+    public double getDouble(CommandLine cmd) {
+        return Double.parseDouble(getValue(cmd));
+    }
+}
@@ -0,0 +1,143 @@
+package io.raspberrywallet.server.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of a load test run, written as JSON so later runs can be checked against it.
+ * Latencies are in milliseconds, throughput in successful calls per second.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+public class LoadTestReport {
+    /**
+     * Latencies under this many ms are not compared with baseline, they are dominated by noise
+     */
+    private static final double BASELINE_NOISE_MS = 1.0;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private int users;
+    private int subscribers;
+    private double durationSeconds;
+    private double throughput;
+    private Map<String, Result> endpoints = new LinkedHashMap<>();
+    /**
+     * Delivery of websocket messages, null without subscribers
+     */
+    private Result websocket;
+    private long publishedMessages;
+
+    @NoArgsConstructor
+    @Getter
+    @Setter
+    public static class Result {
+        private long count;
+        private long errors;
+        private double throughput;
+        private double p50;
+        private double p99;
+        private double p999;
+        private double max;
+
+        Result(Histogram micros, long errors, double seconds) {
+            this.count = micros.getTotalCount();
+            this.errors = errors;
+            this.throughput = count / seconds;
+            this.p50 = micros.getValueAtPercentile(50) / 1000.0;
+            this.p99 = micros.getValueAtPercentile(99) / 1000.0;
+            this.p999 = micros.getValueAtPercentile(99.9) / 1000.0;
+            this.max = micros.getMaxValue() / 1000.0;
+        }
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%d users, %d websocket subscribers, %.0f s, %.1f calls/s%n",
+                users, subscribers, durationSeconds, throughput);
+        out.printf("%-18s %9s %7s %9s %9s %9s %9s %9s%n",
+                "Endpoint", "Calls", "Errors", "Calls/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        endpoints.forEach((name, result) -> print(out, name, result));
+        if (websocket != null) {
+            print(out, WebSocketSubscriber.STATS_NAME, websocket);
+            out.printf("%d of %d published messages delivered%n", websocket.count, publishedMessages);
+        }
+    }
+
+    private static void print(PrintStream out, String name, Result result) {
+        out.printf("%-18s %9d %7d %9.1f %9.3f %9.3f %9.3f %9.3f%n", name, result.count, result.errors,
+                result.throughput, result.p50, result.p99, result.p999, result.max);
+    }
+
+    /**
+     * @param maxP99        limit of 99th percentile latency of every endpoint in ms, null for none
+     * @param maxP999       limit of 99.9th percentile latency of every endpoint in ms, null for none
+     * @param minThroughput limit of total throughput in calls per second, null for none
+     * @param maxErrorRate  limit of failed calls of every endpoint as a fraction of all its calls, null for none
+     * @return descriptions of exceeded limits, empty if there are none
+     */
+    public List<String> checkLimits(Double maxP99, Double maxP999, Double minThroughput, Double maxErrorRate) {
+        List<String> violations = new ArrayList<>();
+        endpoints.forEach((name, result) -> {
+            if (maxP99 != null && result.p99 > maxP99)
+                violations.add(String.format("%s p99 %.3f ms > %.3f ms", name, result.p99, maxP99));
+            if (maxP999 != null && result.p999 > maxP999)
+                violations.add(String.format("%s p99.9 %.3f ms > %.3f ms", name, result.p999, maxP999));
+            long calls = result.count + result.errors;
+            if (maxErrorRate != null && calls > 0 && (double) result.errors / calls > maxErrorRate)
+                violations.add(String.format("%s %d of %d calls failed", name, result.errors, calls));
+        });
+        if (minThroughput != null && throughput < minThroughput)
+            violations.add(String.format("throughput %.1f calls/s < %.1f calls/s", throughput, minThroughput));
+        return violations;
+    }
+
+    /**
+     * Compares tail latencies and throughput of endpoints measured in both runs.
+     *
+     * @param tolerance allowed ratio, e.g. 1.25 allows 25% higher latencies and 20% lower throughput
+     * @return descriptions of regressions, empty if there are none
+     */
+    public List<String> checkBaseline(LoadTestReport baseline, double tolerance) {
+        List<String> violations = new ArrayList<>();
+        endpoints.forEach((name, result) -> {
+            Result before = baseline.endpoints.get(name);
+            if (before == null)
+                return;
+            checkLatency(violations, name + " p99", result.p99, before.p99, tolerance);
+            checkLatency(violations, name + " p99.9", result.p999, before.p999, tolerance);
+            if (result.throughput < before.throughput / tolerance)
+                violations.add(String.format("%s throughput %.1f calls/s, baseline %.1f calls/s",
+                        name, result.throughput, before.throughput));
+        });
+        if (websocket != null && baseline.websocket != null)
+            checkLatency(violations, "websocket p99", websocket.p99, baseline.websocket.p99, tolerance);
+        return violations;
+    }
+
+    private static void checkLatency(List<String> violations, String name, double value, double baseline,
+                                     double tolerance) {
+        if (value > Math.max(baseline * tolerance, BASELINE_NOISE_MS))
+            violations.add(String.format("%s %.3f ms, baseline %.3f ms", name, value, baseline));
+    }
+
+    public void write(File file) throws IOException {
+        objectMapper.writeValue(file, this);
+    }
+
+    public static LoadTestReport read(File file) throws IOException {
+        return objectMapper.readValue(file, LoadTestReport.class);
+    }
+}
@@ -0,0 +1,45 @@
+package io.raspberrywallet.server.loadtest;
+
+import io.raspberrywallet.contract.CommunicationChannel;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes info messages through {@link CommunicationChannel} at fixed rate, as the manager does during
+ * long operations. Every message is its publishing time, see {@link WebSocketSubscriber}.
+ */
+public class MessagePublisher implements Runnable {
+    private final CommunicationChannel channel;
+    private final long measureFromNanos;
+    private final long endNanos;
+    private final long intervalNanos;
+    private long published;
+
+    public MessagePublisher(CommunicationChannel channel, long measureFromNanos, long endNanos, double rate) {
+        this.channel = channel;
+        this.measureFromNanos = measureFromNanos;
+        this.endNanos = endNanos;
+        this.intervalNanos = (long) (1e9 / rate);
+    }
+
+    @Override
+    public void run() {
+        long next = System.nanoTime();
+        while (next < endNanos && !Thread.currentThread().isInterrupted()) {
+            long remaining;
+            while ((remaining = next - System.nanoTime()) > 0)
+                LockSupport.parkNanos(remaining);
+            channel.info(Long.toString(System.nanoTime()));
+            if (next >= measureFromNanos)
+                published++;
+            next += intervalNanos;
+        }
+    }
+
+    /**
+     * @return number of messages published after warmup, valid once {@link #run()} returned
+     */
+    public long getPublished() {
+        return published;
+    }
+}
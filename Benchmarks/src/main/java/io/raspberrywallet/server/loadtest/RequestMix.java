@@ -0,0 +1,43 @@
+package io.raspberrywallet.server.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Endpoints with weights, virtual users pick the next call with probability proportional to its weight.
+ */
+public class RequestMix {
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final int[] cumulativeWeights;
+
+    /**
+     * @param mix comma separated name=weight pairs, e.g. walletStatus=5,allTransactions=1
+     */
+    public RequestMix(String mix) {
+        List<Integer> weights = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] nameAndWeight = entry.trim().split("=");
+            int weight = nameAndWeight.length == 1 ? 1 : Integer.parseInt(nameAndWeight[1].trim());
+            if (weight <= 0)
+                throw new IllegalArgumentException("Weight of " + nameAndWeight[0] + " must be positive");
+            endpoints.add(Endpoint.fromName(nameAndWeight[0].trim()));
+            weights.add(weight);
+        }
+        cumulativeWeights = new int[weights.size()];
+        int sum = 0;
+        for (int i = 0; i < cumulativeWeights.length; i++)
+            cumulativeWeights[i] = sum += weights.get(i);
+    }
+
+    public Endpoint next(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; ; i++)
+            if (value < cumulativeWeights[i])
+                return endpoints.get(i);
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+}
@@ -0,0 +1,105 @@
+package io.raspberrywallet.server.loadtest;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Dashboard client calling REST API in a loop, with the next call picked from {@link RequestMix}.
+ * <p>
+ * With a fixed rate latency is measured from the time the request should have been sent, so a stalled server
+ * is charged for the requests it delayed too, instead of hiding them (coordinated omission).
+ */
+public class VirtualUser implements Runnable {
+    private final CloseableHttpClient client;
+    private final String baseUrl;
+    private final RequestMix mix;
+    private final long measureFromNanos;
+    private final long endNanos;
+    private final long intervalNanos;
+    private final Random random;
+    private final LatencyStats stats = new LatencyStats();
+
+    /**
+     * @param rate requests per second or 0 to send next request right after the response
+     */
+    public VirtualUser(CloseableHttpClient client, String baseUrl, RequestMix mix,
+                       long measureFromNanos, long endNanos, double rate, long seed) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.measureFromNanos = measureFromNanos;
+        this.endNanos = endNanos;
+        this.intervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public void run() {
+        // users with fixed rate start at random offsets, so they don't send requests in bursts
+        long next = System.nanoTime() + (intervalNanos > 0 ? (long) (random.nextDouble() * intervalNanos) : 0);
+        while (true) {
+            long intended;
+            if (intervalNanos > 0) {
+                intended = next;
+                next += intervalNanos;
+                sleepUntil(intended);
+            } else {
+                intended = System.nanoTime();
+            }
+            // an overloaded server doesn't keep up with the rate, the test ends on time anyway
+            if (intended >= endNanos || System.nanoTime() >= endNanos || Thread.currentThread().isInterrupted())
+                return;
+
+            Endpoint endpoint = mix.next(random);
+            long sent = System.nanoTime();
+            boolean success = call(endpoint);
+            long latency = System.nanoTime() - intended;
+            // intended time of an overloaded server may never leave warmup, actual time does
+            if (sent < measureFromNanos)
+                continue;
+            if (success)
+                stats.record(endpoint.getName(), latency);
+            else
+                stats.error(endpoint.getName());
+        }
+    }
+
+    private boolean call(Endpoint endpoint) {
+        HttpUriRequest request;
+        if (endpoint.body == null) {
+            request = new HttpGet(baseUrl + endpoint.path);
+        } else {
+            HttpPost post = new HttpPost(baseUrl + endpoint.path);
+            post.setEntity(new StringEntity(endpoint.body, ContentType.APPLICATION_JSON));
+            request = post;
+        }
+        try {
+            int status = client.execute(request, response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getStatusLine().getStatusCode();
+            });
+            return status >= 200 && status < 300;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void sleepUntil(long nanos) {
+        long remaining;
+        while ((remaining = nanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted())
+            LockSupport.parkNanos(remaining);
+    }
+
+    public LatencyStats getStats() {
+        return stats;
+    }
+}
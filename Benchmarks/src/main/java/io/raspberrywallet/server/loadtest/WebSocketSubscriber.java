@@ -0,0 +1,157 @@
+package io.raspberrywallet.server.loadtest;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Dashboard client listening on a websocket. Messages are expected to carry {@link System#nanoTime()} of
+ * the moment they were published by {@link MessagePublisher}, so the delivery latency can be measured
+ * within the same JVM.
+ * <p>
+ * A minimal RFC 6455 client, it reads unfragmented text frames only, which is what KtorServer sends.
+ */
+public class WebSocketSubscriber implements Runnable, Closeable {
+    public static final String STATS_NAME = "websocket";
+
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+
+    private final String host;
+    private final int port;
+    private final String path;
+    private final long measureFromNanos;
+    private final Random random;
+    private final LatencyStats stats = new LatencyStats();
+    private volatile Socket socket;
+
+    public WebSocketSubscriber(String host, int port, String path, long measureFromNanos, long seed) {
+        this.host = host;
+        this.port = port;
+        this.path = path;
+        this.measureFromNanos = measureFromNanos;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public void run() {
+        try (Socket socket = new Socket(host, port)) {
+            this.socket = socket;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = socket.getOutputStream();
+            handshake(in, out);
+
+            while (true) {
+                int first = in.read();
+                if (first == -1)
+                    return;
+                int second = in.readUnsignedByte();
+                long length = second & 0x7f;
+                if (length == 126)
+                    length = in.readUnsignedShort();
+                else if (length == 127)
+                    length = in.readLong();
+                byte[] mask = null;
+                if ((second & 0x80) != 0) {
+                    mask = new byte[4];
+                    in.readFully(mask);
+                }
+                byte[] payload = new byte[(int) length];
+                in.readFully(payload);
+                if (mask != null)
+                    for (int i = 0; i < payload.length; i++)
+                        payload[i] ^= mask[i & 3];
+
+                switch (first & 0x0f) {
+                    case OPCODE_TEXT:
+                        onMessage(new String(payload, StandardCharsets.UTF_8));
+                        break;
+                    case OPCODE_PING:
+                        send(out, OPCODE_PONG, payload);
+                        break;
+                    case OPCODE_CLOSE:
+                        return;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            // closed at the end of the test or by the server, the stats tell how many messages came through
+        }
+    }
+
+    private void handshake(DataInputStream in, OutputStream out) throws IOException {
+        byte[] key = new byte[16];
+        random.nextBytes(key);
+        String request = "GET " + path + " HTTP/1.1\r\n" +
+                "Host: " + host + ":" + port + "\r\n" +
+                "Upgrade: websocket\r\n" +
+                "Connection: Upgrade\r\n" +
+                "Sec-WebSocket-Key: " + Base64.getEncoder().encodeToString(key) + "\r\n" +
+                "Sec-WebSocket-Version: 13\r\n\r\n";
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        String statusLine = readLine(in);
+        if (!statusLine.contains(" 101 "))
+            throw new IOException("Websocket upgrade of " + path + " refused: " + statusLine);
+        // headers up to the empty line
+        while (!readLine(in).isEmpty()) ;
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c == -1)
+                throw new EOFException();
+            if (c != '\r')
+                line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Frames sent by clients must be masked
+     */
+    private void send(OutputStream out, int opcode, byte[] payload) throws IOException {
+        byte[] mask = new byte[4];
+        random.nextBytes(mask);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 8);
+        frame.write(0x80 | opcode);
+        // control frames are at most 125 bytes
+        frame.write(0x80 | payload.length);
+        frame.write(mask);
+        for (int i = 0; i < payload.length; i++)
+            frame.write(payload[i] ^ mask[i & 3]);
+        out.write(frame.toByteArray());
+        out.flush();
+    }
+
+    private void onMessage(String message) {
+        long published;
+        try {
+            published = Long.parseLong(message.trim());
+        } catch (NumberFormatException e) {
+            stats.error(STATS_NAME);
+            return;
+        }
+        if (published >= measureFromNanos)
+            stats.record(STATS_NAME, System.nanoTime() - published);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Socket socket = this.socket;
+        if (socket != null)
+            socket.close();
+    }
+
+    public LatencyStats getStats() {
+        return stats;
+    }
+}
@@ -45,6 +45,18 @@ final public class Configuration {
     @JsonProperty("autolock-seconds")
     private int autoLockSeconds = 60 * 5;
 
+    /**
+     * Time in seconds after which modules that did not yet decrypt their key parts are cancelled on unlock
+     */
+    @JsonProperty("unlock-timeout-seconds")
+    private int unlockTimeoutSeconds = 30;
+
+    /**
+     * Maximum time in seconds for which the wallet password is kept in memory after unlock, so lock does not need modules
+     */
+    @JsonProperty("secret-cache-seconds")
+    private int secretCacheSeconds = 60 * 10;
+
     /**
      * Modules configuration object, hides HashMap<String, JsonNode>
      * TODO unwrap from ModulesConfiguration and provide custom accessors
@@ -131,6 +143,72 @@ final public class Configuration {
         private String networkName = "testnet";
         @JsonProperty("user-agent")
         private String userAgent = "RaspberryWallet";
+        /**
+         * Desired duration of a single wallet key derivation, scrypt parameters are calibrated to meet it
+         */
+        @JsonProperty("scrypt-target-millis")
+        private int scryptTargetMillis = 1000;
+        /**
+         * Upper limit of memory used by a single wallet key derivation
+         */
+        @JsonProperty("scrypt-memory-budget-mb")
+        private int scryptMemoryBudgetMb = 32;
+        /**
+         * Policy of merging small outputs of the wallet in background
+         */
+        @JsonProperty("consolidation")
+        private ConsolidationConfig consolidationConfig = new ConsolidationConfig();
+    }
+
+    /**
+     * Small outputs are merged into one by sending them to the wallet itself, while the wallet is unlocked,
+     * within the time window and only when the fee is acceptable
+     */
+    @NoArgsConstructor
+    @Setter
+    @Getter
+    public static class ConsolidationConfig {
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+        /**
+         * How often the outputs of the wallet are checked
+         */
+        @JsonProperty("check-interval-minutes")
+        private int checkIntervalMinutes = 30;
+        /**
+         * Outputs below this value are merged
+         */
+        @JsonProperty("small-output-satoshis")
+        private long smallOutputSatoshis = 1_000_000;
+        /**
+         * Consolidation starts only when the wallet has at least this many small outputs
+         */
+        @JsonProperty("min-outputs")
+        private int minOutputs = 20;
+        /**
+         * Upper limit of outputs merged by one transaction, smallest are merged first
+         */
+        @JsonProperty("max-inputs")
+        private int maxInputs = 100;
+        /**
+         * Consolidation is skipped unless the merged outputs are worth at least this much
+         */
+        @JsonProperty("min-value-satoshis")
+        private long minValueSatoshis = 100_000;
+        @JsonProperty("fee-sat-per-byte")
+        private long feeSatPerByte = 2;
+        /**
+         * Consolidation is skipped when its fee would take more than this percentage of the merged value
+         */
+        @JsonProperty("max-fee-percent")
+        private double maxFeePercent = 2;
+        /**
+         * Local hour from which consolidation may run, the window wraps around midnight, equal hours mean any time
+         */
+        @JsonProperty("window-start-hour")
+        private int windowStartHour = 1;
+        @JsonProperty("window-end-hour")
+        private int windowEndHour = 6;
     }
 
 }
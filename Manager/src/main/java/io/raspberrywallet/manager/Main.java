@@ -3,6 +3,7 @@ package io.raspberrywallet.manager;
 import com.stasbar.Logger;
 import io.raspberrywallet.contract.CommunicationChannel;
 import io.raspberrywallet.manager.bitcoin.Bitcoin;
+import io.raspberrywallet.manager.bitcoin.ScryptCalibration;
 import io.raspberrywallet.manager.bitcoin.WalletCrypter;
 import io.raspberrywallet.manager.cli.Opts;
 import io.raspberrywallet.manager.database.Database;
@@ -17,6 +18,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import static io.raspberrywallet.manager.cli.CliUtils.parseArgs;
 
@@ -34,7 +36,10 @@ public class Main {
 
         File yamlConfigFile = new File(Opts.CONFIG.getValue(cmd));
         Configuration configuration = Configuration.fromYamlFile(yamlConfigFile);
-        Bitcoin bitcoin = new Bitcoin(configuration, new WalletCrypter(), communicationChannel);
+        ScryptCalibration scryptCalibration = new ScryptCalibration(configuration);
+        // Benchmark scrypt in background on first run, so it's ready before the wallet gets encrypted
+        CompletableFuture.runAsync(scryptCalibration::getResult);
+        Bitcoin bitcoin = new Bitcoin(configuration, new WalletCrypter(scryptCalibration), communicationChannel);
 
         List<Module> modules = ModuleClassLoader.getModules(configuration);
 
@@ -67,6 +72,7 @@ public class Main {
             } catch (NullPointerException e) {
                 // Ignore
             }
+            bitcoin.close();
             // Forcibly terminate the JVM because Orchid likes to spew non-daemon threads everywhere.
             System.exit(0);
         }));
@@ -1,15 +1,21 @@
 package io.raspberrywallet.manager;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.stasbar.Logger;
 import io.raspberrywallet.contract.*;
 import io.raspberrywallet.contract.module.ModuleState;
 import io.raspberrywallet.manager.bitcoin.Bitcoin;
+import io.raspberrywallet.manager.common.ArrayDestroyer;
 import io.raspberrywallet.manager.common.StreamUtils;
+import io.raspberrywallet.manager.cryptography.common.SecretCache;
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.AESCipherParams;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
-import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.Shamir;
 import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirException;
-import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirKey;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirGF256;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirShare;
 import io.raspberrywallet.manager.database.Database;
 import io.raspberrywallet.manager.database.KeyPartEntity;
 import io.raspberrywallet.manager.linux.TemperatureMonitor;
@@ -22,9 +28,9 @@ import kotlin.text.Charsets;
 import lombok.Getter;
 import org.bitcoinj.core.Sha256Hash;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.math.BigInteger;
 import java.net.MalformedURLException;
 import java.time.Duration;
 import java.util.*;
@@ -58,6 +64,13 @@ public class Manager implements io.raspberrywallet.contract.Manager {
     private Configuration configuration;
     @NotNull
     private final Runnable onLockTriggered;
+    @NotNull
+    private final UnlockOrchestrator unlockOrchestrator;
+    /**
+     * Wallet password reconstructed from modules, present only while the wallet is unlocked
+     */
+    @NotNull
+    private final SecretCache privateKeyHashCache;
 
     Manager(@NotNull Configuration configuration,
             @NotNull Database database,
@@ -72,6 +85,8 @@ public class Manager implements io.raspberrywallet.contract.Manager {
         this.tempMonitor = tempMonitor;
         this.wpaConfiguration = new WPAConfiguration();
         this.configuration = configuration;
+        this.unlockOrchestrator = new UnlockOrchestrator(Duration.ofSeconds(configuration.getUnlockTimeoutSeconds()));
+        this.privateKeyHashCache = new SecretCache(Duration.ofSeconds(configuration.getSecretCacheSeconds()));
         onLockTriggered = () -> {
             frontendChannel.info("Autolock triggered");
             try {
@@ -83,6 +98,8 @@ public class Manager implements io.raspberrywallet.contract.Manager {
             } catch (IncorrectPasswordException e) {
                 frontendChannel.error("AutoLock failed: " + e.getMessage());
             }
+            privateKeyHashCache.invalidate();
+            AESCipherParams.clearKeyCache();
             clearModuleInputs();
         };
         restartAutoLockTask();
@@ -142,26 +159,41 @@ public class Manager implements io.raspberrywallet.contract.Manager {
 
 
         byte[] seed = String.join(" ", mnemonicCode).getBytes(Charsets.UTF_8);
-        int numBits = seed.length * 8; //We need bits not bytes
         try {
-            BigInteger[] params = Shamir.generateParams(required, numBits, seed);
-            ShamirKey[] keys = Shamir.generateKeys(modulesToDecrypt.size(), required, numBits, params);
+            ShamirShare[] keys = ShamirGF256.split(seed, modulesToDecrypt.size(), required);
 
             List<KeyPartEntity> keyPartEntities = new ArrayList<>();
             for (int i = 0; i < keys.length; i++) {
                 Module module = modulesToDecrypt.get(i);
                 module.setInputs(selectedModulesWithInputs.get(module.getId()));
                 KeyPartEntity keyPartEntity = new KeyPartEntity();
-                keyPartEntity.setPayload(module.encryptKeyPart(keys[i].toByteArray()));
+                byte[] share = keys[i].toByteArray();
+                try {
+                    keyPartEntity.setPayload(module.encryptKeyPart(share));
+                } finally {
+                    ArrayDestroyer.destroy(share);
+                    keys[i].destroy();
+                }
                 keyPartEntity.setModule(module.getId());
                 keyPartEntities.add(keyPartEntity);
             }
-            database.addAllKeyParts(keyPartEntities);
+            database.setRequiredKeyParts(required);
+            if (!database.addAllKeyParts(keyPartEntities)) {
+                frontendChannel.error("Failed to save key parts, wallet was not restored");
+                return;
+            }
 
-            bitcoin.setupWalletFromMnemonic(mnemonicCode, getPrivateKeyHash());
+            byte[] privateKeyHash = reconstructPrivateKeyHash();
+            try {
+                cacheWhenSetUp(bitcoin.setupWalletFromMnemonic(mnemonicCode, new String(privateKeyHash)), privateKeyHash);
+            } finally {
+                ArrayDestroyer.destroy(privateKeyHash);
+            }
 
-        } catch (ShamirException | EncryptionException | InternalModuleException e) {
+        } catch (ShamirException | EncryptionException | InternalModuleException | IncorrectPasswordException e) {
             e.printStackTrace();
+        } finally {
+            ArrayDestroyer.destroy(seed);
         }
     }
 
@@ -177,24 +209,77 @@ public class Manager implements io.raspberrywallet.contract.Manager {
     }
 
 
-    private String getPrivateKeyHash() {
-        byte[] privateKeyHash = Sha256Hash.hash(getPrivateKeyFromModules());
-        return new String(privateKeyHash);
+    /**
+     * Always asks the modules, unlocking the wallet must not be possible without them
+     *
+     * @throws IncorrectPasswordException when the key parts of the modules don't restore the password
+     */
+    @NotNull
+    private byte[] reconstructPrivateKeyHash() throws IncorrectPasswordException {
+        return Sha256Hash.hash(getPrivateKeyFromModules());
+    }
+
+    /**
+     * Uses password cached since the last unlock if it is still there, otherwise asks the modules again
+     */
+    @NotNull
+    private String getPrivateKeyHash() throws IncorrectPasswordException {
+        byte[] privateKeyHash = privateKeyHashCache.get();
+        if (privateKeyHash == null)
+            privateKeyHash = reconstructPrivateKeyHash();
+        try {
+            return new String(privateKeyHash);
+        } finally {
+            ArrayDestroyer.destroy(privateKeyHash);
+        }
     }
 
     @Override
     public void unlockWallet(Map<String, Map<String, String>> moduleToInputsMap) throws WalletNotInitialized, IncorrectPasswordException {
         bitcoin.ensureWalletInitialized();
         fillModulesWithInputs(moduleToInputsMap);
-        String password = getPrivateKeyHash();
-        bitcoin.decryptWallet(password);
+        byte[] privateKeyHash = reconstructPrivateKeyHash();
+        try {
+            bitcoin.decryptWallet(new String(privateKeyHash));
+            privateKeyHashCache.put(privateKeyHash);
+        } finally {
+            ArrayDestroyer.destroy(privateKeyHash);
+        }
     }
 
     @Override
-    public void loadWalletFromDisk(@NotNull Map<String, Map<String, String>> moduleToInputsMap) {
+    public void loadWalletFromDisk(@NotNull Map<String, Map<String, String>> moduleToInputsMap) throws IncorrectPasswordException {
         fillModulesWithInputs(moduleToInputsMap);
-        String password = getPrivateKeyHash();
-        bitcoin.setupWalletFromFile(password);
+        byte[] privateKeyHash = reconstructPrivateKeyHash();
+        try {
+            cacheWhenSetUp(bitcoin.setupWalletFromFile(new String(privateKeyHash)), privateKeyHash);
+        } finally {
+            ArrayDestroyer.destroy(privateKeyHash);
+        }
+    }
+
+    /**
+     * Setup finishes on a background thread while synchronization is running, the password is cached
+     * only once it decrypted the wallet, never when the setup failed
+     */
+    private void cacheWhenSetUp(@NotNull ListenableFuture<Void> setUp, @NotNull byte[] privateKeyHash) {
+        byte[] copy = privateKeyHash.clone();
+        Futures.addCallback(setUp, new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(@Nullable Void result) {
+                try {
+                    privateKeyHashCache.put(copy);
+                } finally {
+                    ArrayDestroyer.destroy(copy);
+                }
+            }
+
+            @Override
+            public void onFailure(@NotNull Throwable t) {
+                ArrayDestroyer.destroy(copy);
+                privateKeyHashCache.invalidate();
+            }
+        });
     }
 
     private void fillModulesWithInputs(@NotNull Map<String, Map<String, String>> moduleToInputsMap) {
@@ -212,10 +297,11 @@ public class Manager implements io.raspberrywallet.contract.Manager {
         String password = getPrivateKeyHash();
 
         try {
-            bitcoin.saveEncryptedWallet(password);
-            bitcoin.encryptWallet(password);
+            bitcoin.lockWallet(password);
             return true;
         } finally {
+            privateKeyHashCache.invalidate();
+            AESCipherParams.clearKeyCache();
             clearModuleInputs();
         }
     }
@@ -224,29 +310,36 @@ public class Manager implements io.raspberrywallet.contract.Manager {
         modules.values().forEach(Module::clearInputs);
     }
 
-    private byte[] getPrivateKeyFromModules() {
-        ShamirKey[] shamirKeys = modules.values().stream()
-                .map(module -> {
-                    try {
-                        Optional<KeyPartEntity> keyPartEntity = database.getKeypartForModuleId(module.getId());
-                        if (!keyPartEntity.isPresent())  // could not find module with this module.getId()
-                            return null;
-
-                        KeyPartEntity dbEntity = keyPartEntity.get();
-                        return module.decryptKeyPart(dbEntity.getPayload());
-                    } catch (InternalModuleException | DecryptionException e) {
-                        frontendChannel.error("Unlock module exception");
-                        return null;
-                    } catch (RequiredInputNotFound e) {
-                        frontendChannel.info("Required input not set for " + module.getId());
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .map(ShamirKey::fromByteArray)
-                .toArray(ShamirKey[]::new);
+    private byte[] getPrivateKeyFromModules() throws IncorrectPasswordException {
+        List<byte[]> keyParts = unlockOrchestrator.collectKeys(
+                modules.values(), database.getRequiredKeyParts(), this::decryptKeyPart);
 
-        return Shamir.calculateLagrange(shamirKeys);
+        try {
+            return ShamirGF256.combineKeyParts(keyParts);
+        } catch (ShamirException e) {
+            // wrong inputs of a module give a wrong key part, the same as a wrong password
+            throw new IncorrectPasswordException("Could not restore the wallet password from key parts: " + e.getMessage());
+        } finally {
+            keyParts.forEach(ArrayDestroyer::destroy);
+        }
+    }
+
+    @Nullable
+    private byte[] decryptKeyPart(@NotNull Module module) {
+        try {
+            Optional<KeyPartEntity> keyPartEntity = database.getKeypartForModuleId(module.getId());
+            if (!keyPartEntity.isPresent())  // could not find module with this module.getId()
+                return null;
+
+            KeyPartEntity dbEntity = keyPartEntity.get();
+            return module.decryptKeyPart(dbEntity.getPayload());
+        } catch (InternalModuleException | DecryptionException e) {
+            frontendChannel.error("Unlock module exception");
+            return null;
+        } catch (RequiredInputNotFound e) {
+            frontendChannel.info("Required input not set for " + module.getId());
+            return null;
+        }
     }
 
 
@@ -283,10 +376,30 @@ public class Manager implements io.raspberrywallet.contract.Manager {
         bitcoin.sendCoins(amount, recipientAddress);
     }
 
+    @NotNull
+    @Override
+    public BatchSendResult sendBatch(@NotNull List<Payment> payments, @Nullable Long feeSatPerByte, boolean dryRun)
+            throws WalletNotInitialized {
+        return bitcoin.sendBatch(payments, feeSatPerByte, dryRun);
+    }
+
+    @NotNull
+    @Override
+    public KdfCost getKdfCost() {
+        return bitcoin.getKdfCost();
+    }
+
     @Override
     public List<TransactionView> getAllTransactions() throws WalletNotInitialized {
         return bitcoin.getAllTransactions();
     }
+
+    @NotNull
+    @Override
+    public TransactionPage getTransactions(@Nullable String cursor, int limit, @Nullable String address,
+                                           @Nullable Long from, @Nullable Long to) throws WalletNotInitialized {
+        return bitcoin.getTransactions(cursor, limit, address, from, to);
+    }
     /*
      * Utilities
      */
@@ -0,0 +1,100 @@
+package io.raspberrywallet.manager;
+
+import com.stasbar.Logger;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirGF256;
+import io.raspberrywallet.manager.modules.Module;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decrypts key parts of all modules in parallel and returns as soon as enough Shamir's shares have been collected.
+ * Modules that are still working when the threshold is reached, or when the deadline passes, are cancelled.
+ */
+class UnlockOrchestrator {
+
+    /**
+     * Decrypts key part of a single module, returns null if the module could not provide its key part
+     */
+    @FunctionalInterface
+    interface KeyPartDecrypter {
+        @Nullable
+        byte[] decrypt(@NotNull Module module);
+    }
+
+    @NotNull
+    private final ExecutorService executor;
+    @NotNull
+    private final Duration deadline;
+
+    UnlockOrchestrator(@NotNull Duration deadline) {
+        this(deadline, Runtime.getRuntime().availableProcessors());
+    }
+
+    UnlockOrchestrator(@NotNull Duration deadline, int threads) {
+        this.deadline = deadline;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "unlock-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param modules   modules holding encrypted key parts
+     * @param required  number of shares needed to solve Shamir's scheme, 0 or less waits for every module
+     * @param decrypter decrypts key part of given module
+     * @return decrypted key parts which are valid Shamir's shares, collected before the threshold or the deadline was reached
+     */
+    @NotNull
+    List<byte[]> collectKeys(@NotNull Collection<Module> modules, int required, @NotNull KeyPartDecrypter decrypter) {
+        CompletionService<byte[]> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<byte[]>> pending = new ArrayList<>(modules.size());
+        modules.forEach(module -> pending.add(completionService.submit(() -> decryptShare(module, decrypter))));
+
+        int wanted = required > 0 ? Math.min(required, modules.size()) : modules.size();
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        List<byte[]> shares = new ArrayList<>(wanted);
+        try {
+            for (int finished = 0; finished < pending.size() && shares.size() < wanted; finished++) {
+                Future<byte[]> completed = completionService.poll(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (completed == null) {
+                    Logger.err("Unlock deadline of " + deadline.getSeconds() + "s reached, cancelling remaining modules");
+                    break;
+                }
+                byte[] share = completed.get();
+                if (share != null)
+                    shares.add(share);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // decryptShare never throws
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+        return shares;
+    }
+
+    @Nullable
+    private static byte[] decryptShare(@NotNull Module module, @NotNull KeyPartDecrypter decrypter) {
+        try {
+            byte[] keyPart = decrypter.decrypt(module);
+            if (keyPart != null)
+                ShamirGF256.checkKeyPart(keyPart);
+            return keyPart;
+        } catch (RuntimeException e) {
+            // wrong input may yield garbage instead of exception, such share is useless anyway
+            Logger.err("Module " + module.getId() + " returned invalid key part: " + e.getMessage());
+            return null;
+        }
+    }
+}
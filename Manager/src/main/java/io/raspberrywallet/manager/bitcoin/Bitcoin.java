@@ -3,15 +3,21 @@ package io.raspberrywallet.manager.bitcoin;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.stasbar.Logger;
+import io.raspberrywallet.contract.BatchSendResult;
 import io.raspberrywallet.contract.CommunicationChannel;
 import io.raspberrywallet.contract.IncorrectPasswordException;
+import io.raspberrywallet.contract.KdfCost;
+import io.raspberrywallet.contract.Payment;
+import io.raspberrywallet.contract.TransactionPage;
 import io.raspberrywallet.contract.TransactionView;
 import io.raspberrywallet.contract.WalletNotInitialized;
 import io.raspberrywallet.manager.Configuration;
 import lombok.Getter;
 import org.bitcoinj.core.*;
 import org.bitcoinj.core.listeners.DownloadProgressTracker;
+import org.bitcoinj.crypto.KeyCrypter;
 import org.bitcoinj.net.discovery.DnsDiscovery;
 import org.bitcoinj.params.MainNetParams;
 import org.bitcoinj.params.TestNet3Params;
@@ -25,23 +31,22 @@ import org.bitcoinj.wallet.KeyChainGroup;
 import org.bitcoinj.wallet.UnreadableWalletException;
 import org.bitcoinj.wallet.Wallet;
 import org.jetbrains.annotations.NotNull;
+import org.spongycastle.crypto.params.KeyParameter;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.nio.channels.FileLock;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.time.Clock;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.function.DoubleConsumer;
 
-import static java.util.stream.Collectors.toList;
-
 /**
  * Class representing Bitcoin network, IO, key management API,
  * It uses WalletAppKit object composition pattern in order to hide unimportant functionality and safe extension.
@@ -55,6 +60,7 @@ public class Bitcoin {
     private final File walletFile;
     @Getter
     private final File blockStoreFile;
+    private final TransactionHistory history;
 
     private final NetworkParameters params;
     private final Configuration.BitcoinConfig bitcoinConfig;
@@ -62,6 +68,10 @@ public class Bitcoin {
     @Nullable
     private Wallet wallet;
     @Nullable
+    private volatile WalletReadModel readModel;
+    @Nullable
+    private UtxoConsolidator consolidator;
+    @Nullable
     @Getter
     private PeerGroup peerGroup;
     private SPVBlockStore blockStore;
@@ -89,6 +99,8 @@ public class Bitcoin {
                     "\nfuser " + blockStoreFile.getAbsolutePath() + "\nor \nlsof " + blockStoreFile.getAbsolutePath());
 
         this.blockStore = new SPVBlockStore(params, blockStoreFile);
+        this.history = new TransactionHistory(
+                Paths.get(bitcoinRootDirectory.getAbsolutePath(), walletFileName + ".history").toFile());
     }
 
     private NetworkParameters parseNetworkFrom(Configuration.BitcoinConfig bitcoinConfig) {
@@ -101,16 +113,21 @@ public class Bitcoin {
         }
     }
 
-    public void setupWalletFromMnemonic(List<String> mnemonicCode, @Nullable String password) {
-        setupWalletFromMnemonic(mnemonicCode, password, false);
+    /**
+     * @return future completed once the wallet is set up, which happens on a background thread
+     * if the running synchronization has to be stopped first, failed if the setup failed
+     */
+    public ListenableFuture<Void> setupWalletFromMnemonic(List<String> mnemonicCode, @Nullable String password) {
+        return setupWalletFromMnemonic(mnemonicCode, password, false);
     }
 
-    void setupWalletFromMnemonic(List<String> mnemonicCode, @Nullable String password, boolean blocking) {
+    ListenableFuture<Void> setupWalletFromMnemonic(List<String> mnemonicCode, @Nullable String password, boolean blocking) {
         DeterministicSeed seed = new DeterministicSeed(mnemonicCode, null, "", 1539388800);
+        SettableFuture<Void> setUp = SettableFuture.create();
         Runnable setupWalletFromBackup = () -> {
             try {
                 KeyChainGroup keyChainGroup = new KeyChainGroup(params, seed);
-                wallet = new Wallet(params, keyChainGroup); //Wallet.fromSeed(params, seed);
+                useWallet(new Wallet(params, keyChainGroup)); //Wallet.fromSeed(params, seed);
                 if (checkpoints == null)
                     checkpoints = CheckpointManager.openStream(params);
 
@@ -126,9 +143,13 @@ public class Bitcoin {
                 } else removeOldBlockStore();
 
                 synchronizeWalletNonBlocking(wallet, password, blocking);
-
+                setUp.set(null);
             } catch (IOException | BlockStoreException e) {
                 e.printStackTrace();
+                setUp.setException(e);
+            } catch (RuntimeException e) {
+                setUp.setException(e);
+                throw e;
             }
         };
 
@@ -138,6 +159,7 @@ public class Bitcoin {
             future.addListener(setupWalletFromBackup, Executors.newSingleThreadExecutor());
         } else
             setupWalletFromBackup.run();
+        return setUp;
     }
 
     private void removeOldBlockStore() throws BlockStoreException, IOException {
@@ -151,14 +173,20 @@ public class Bitcoin {
         }
     }
 
-    public void setupWalletFromFile(@NotNull String password) {
-        setupWalletFromFile(password, false);
+    /**
+     * @return future completed once the wallet is loaded and decrypted, which happens on a background thread
+     * if the running synchronization has to be stopped first, failed if the password was incorrect or loading failed
+     */
+    public ListenableFuture<Void> setupWalletFromFile(@NotNull String password) {
+        return setupWalletFromFile(password, false);
     }
 
-    void setupWalletFromFile(@NotNull String password, boolean blocking) {
+    ListenableFuture<Void> setupWalletFromFile(@NotNull String password, boolean blocking) {
+        SettableFuture<Void> setUp = SettableFuture.create();
         Runnable setupWalletFromBackup = () -> {
             try {
-                wallet = Wallet.loadFromFile(walletFile);
+                Wallet wallet = Wallet.loadFromFile(walletFile);
+                useWallet(wallet);
 
                 if (!wallet.isEncrypted()) {
                     throw new SecurityException("Decrypted wallet on disk detected");
@@ -166,11 +194,17 @@ public class Bitcoin {
                     decryptWallet(wallet, password);
 
                 synchronizeWalletNonBlocking(wallet, password, blocking);
+                setUp.set(null);
             } catch (IOException | UnreadableWalletException | IllegalArgumentException e) {
                 e.printStackTrace();
                 frontendChannel.error(e.getMessage());
+                setUp.setException(e);
             } catch (IncorrectPasswordException e) {
+                setUp.setException(e);
                 throw new RuntimeException(e);
+            } catch (RuntimeException e) {
+                setUp.setException(e);
+                throw e;
             }
         };
         if (peerGroup != null && peerGroup.isRunning()) {
@@ -179,6 +213,7 @@ public class Bitcoin {
             future.addListener(setupWalletFromBackup, Executors.newSingleThreadExecutor());
         } else
             setupWalletFromBackup.run();
+        return setUp;
     }
 
 
@@ -219,6 +254,7 @@ public class Bitcoin {
             @Override
             public void onSuccess(@Nullable Object result) {
                 completeExtensionInitiations(peerGroup, wallet);
+                startConsolidation(wallet, peerGroup);
                 DownloadProgressTracker listener = new DownloadProgressTracker() {
                     @Override
                     protected void progress(double pct, int blocksSoFar, Date date) {
@@ -258,6 +294,54 @@ public class Bitcoin {
         return _wallet;
     }
 
+    /**
+     * Replaces the wallet without connecting it to the network, for benchmarks over synthetic wallets
+     */
+    void setWallet(@NotNull Wallet wallet) {
+        useWallet(wallet);
+    }
+
+    /**
+     * Makes the wallet current, with a read model following it instead of the previous wallet.
+     * The history stays open, the new read model reconciles it with the new wallet.
+     */
+    private void useWallet(@NotNull Wallet wallet) {
+        WalletReadModel previous = readModel;
+        if (previous != null)
+            previous.detach();
+        stopConsolidation();
+        readModel = new WalletReadModel(wallet, history);
+        this.wallet = wallet;
+    }
+
+    /**
+     * Merges small outputs of the wallet in background, if enabled by the configuration
+     */
+    private synchronized void startConsolidation(@NotNull Wallet wallet, @NotNull TransactionBroadcaster broadcaster) {
+        Configuration.ConsolidationConfig config = bitcoinConfig.getConsolidationConfig();
+        if (config == null || !config.isEnabled())
+            return;
+        stopConsolidation();
+        consolidator = new UtxoConsolidator(wallet, broadcaster, config, Clock.systemDefaultZone());
+        consolidator.start();
+    }
+
+    private synchronized void stopConsolidation() {
+        if (consolidator != null)
+            consolidator.close();
+        consolidator = null;
+    }
+
+    /**
+     * @return balances, current address and transactions of the current wallet, updated by wallet events
+     */
+    @NotNull
+    public WalletReadModel getReadModel() throws WalletNotInitialized {
+        WalletReadModel _readModel = readModel;
+        if (_readModel == null) throw new WalletNotInitialized();
+        return _readModel;
+    }
+
     public void ensureWalletInitialized() throws WalletNotInitialized {
         if (wallet == null) throw new WalletNotInitialized();
     }
@@ -270,14 +354,35 @@ public class Bitcoin {
      * @throws WalletNotInitialized when you try to save not initialized wallet
      */
     public void saveEncryptedWallet(String password) throws IOException, WalletNotInitialized, IncorrectPasswordException {
-        saveEncryptedWallet(getWallet(), password);
+        saveEncryptedWallet(getWallet(), password, true);
+    }
+
+    /**
+     * This method encrypt wallet and saves it onto disk, wallet stays encrypted
+     *
+     * @param password used to encrypt wallet before saving onto disk
+     * @throws IOException          when the problem with saving wallet occurs
+     * @throws WalletNotInitialized when you try to lock not initialized wallet
+     */
+    public void lockWallet(String password) throws IOException, WalletNotInitialized, IncorrectPasswordException {
+        saveEncryptedWallet(getWallet(), password, false);
     }
 
-    private void saveEncryptedWallet(@NotNull Wallet wallet, String password) throws IOException, IncorrectPasswordException {
-        encryptWallet(wallet, password);
-        wallet.saveToFile(walletFile);
-        Logger.d("Saved wallet to: " + walletFile.getAbsolutePath());
-        decryptWallet(wallet, password);
+    /**
+     * Derives the scrypt key only once and reuses it for encryption and optional decryption afterwards
+     */
+    private void saveEncryptedWallet(@NotNull Wallet wallet, String password, boolean decryptAfterSave) throws IOException, IncorrectPasswordException {
+        KeyCrypter keyCrypter = walletCrypter.newKeyCrypter();
+        KeyParameter aesKey = walletCrypter.deriveKey(keyCrypter, password);
+        try {
+            walletCrypter.encryptWallet(wallet, keyCrypter, aesKey);
+            wallet.saveToFile(walletFile);
+            Logger.d("Saved wallet to: " + walletFile.getAbsolutePath());
+            if (decryptAfterSave)
+                walletCrypter.decryptWallet(wallet, aesKey);
+        } finally {
+            walletCrypter.destroyKey(aesKey);
+        }
     }
 
     public void encryptWallet(String password) throws WalletNotInitialized, IncorrectPasswordException {
@@ -296,12 +401,20 @@ public class Bitcoin {
         walletCrypter.decryptWallet(wallet, password);
     }
 
+    /**
+     * @return cost of the scrypt key derivation used to encrypt the wallet
+     */
+    @NotNull
+    public KdfCost getKdfCost() {
+        return walletCrypter.getKdfCost();
+    }
+
     public String getFreshReceiveAddress() throws WalletNotInitialized {
         return getWallet().freshReceiveAddress().toBase58();
     }
 
     public String getCurrentReceiveAddress() throws WalletNotInitialized {
-        return getWallet().currentReceiveAddress().toBase58();
+        return getReadModel().getCurrentReceiveAddress();
     }
 
     /**
@@ -309,7 +422,7 @@ public class Bitcoin {
      * This includes the value of immature coinbase transactions.
      */
     public String getEstimatedBalance() throws WalletNotInitialized {
-        return getWallet().getBalance(Wallet.BalanceType.ESTIMATED).toFriendlyString();
+        return getReadModel().getEstimatedBalance();
     }
 
     /**
@@ -319,7 +432,7 @@ public class Bitcoin {
      * the network. Whether we <i>actually</i> have the private keys or not is irrelevant for this balance type.
      */
     public String getAvailableBalance() throws WalletNotInitialized {
-        return getWallet().getBalance(Wallet.BalanceType.AVAILABLE).toFriendlyString();
+        return getReadModel().getAvailableBalance();
     }
 
     /**
@@ -339,81 +452,77 @@ public class Bitcoin {
     }
 
     /**
-     * @return list of transactions related with this wallet
+     * Pays all recipients with one transaction, broadcast unless it's a dry run
+     *
+     * @param feeSatPerByte fee rate in satoshis per byte, wallet default if null
+     * @param dryRun        only select coins and compute the fee, nothing is signed, committed or broadcast
+     * @throws IllegalArgumentException when payments are invalid or the wallet can't pay them
      */
-    public List<TransactionView> getAllTransactions() throws WalletNotInitialized {
-        final Wallet wallet = getWallet();
-        final List<Transaction> transactions = new ArrayList<>(wallet.getTransactions(false));
-
-        return transactions.stream()
-                .map(tx -> mapTransactionToTransactionView(wallet, tx))
-                .sorted(Comparator.comparing(transactionView -> -transactionView.getCreationTimestamp()))
-                .collect(toList());
+    @NotNull
+    public BatchSendResult sendBatch(@NotNull List<Payment> payments, @Nullable Long feeSatPerByte, boolean dryRun)
+            throws WalletNotInitialized {
+        PaymentBatch batch = new PaymentBatch(params, payments, feeSatPerByte);
+        if (dryRun)
+            return batch.preview(getWallet());
+
+        if (peerGroup == null) throw new WalletNotInitialized();
+        Wallet.SendResult result = batch.send(getWallet(), peerGroup);
+        trackBatch(result);
+        return batch.result(result.tx);
     }
 
     /**
-     * @param wallet final wallet entity
-     * @param tx     BitcoinJ specific transaction entity
-     * @return our domain specific transaction entity
+     * Tells the frontend when the batch transaction is broadcast and when it gets into a block
      */
-    @NotNull
-    private TransactionView mapTransactionToTransactionView(@NotNull final Wallet wallet, @NotNull Transaction tx) {
-        // SHA256(Transaction) in hex encoding
-        final String hashAsString = tx.getHashAsString();
-        // The earliest time at which the transaction was seen
-        final long creationTimestamp = tx.getUpdateTime().getTime();
-
-        // There are different ways of revealing address depending on the script type
-        // 1. P2PKH (Pay to public key hash)
-        // 2. P2SH (Pay to script hash)
-        // 3. P2PK (Pay to public key)
-        // 4. Segregated witness outputs
-        // 5. m-of-n bare multisig
-
-        // Collect input addresses in user friendly Base58 form
-        final List<String> inputAddresses = tx.getInputs().stream()
-                .map(transactionInput -> {
-                    if (transactionInput.isCoinBase()) return "Coinbase";
-                    else try {
-                        return new Address(params,
-                                Utils.sha256hash160(transactionInput
-                                        .getScriptSig()
-                                        .getPubKey()))
-                                .toBase58();
-
-                    } catch (ScriptException e1) {
-                        return "N/A or SegWit";
-                    }
-                }).collect(toList());
-
-
-        // Collect output addresses in user friendly Base58 form
-        final List<String> outputAddresses = tx.getOutputs().stream()
-                .map(transactionOutput ->
-                        transactionOutput
-                                .getScriptPubKey().getToAddress(params).toBase58()
-                ).collect(toList());
-
-        final String amountFromMe = tx.getValueSentFromMe(wallet).toFriendlyString();
-        final String amountToMe = tx.getValueSentToMe(wallet).toFriendlyString();
+    private void trackBatch(Wallet.SendResult result) {
+        String txHash = result.tx.getHashAsString();
+        Futures.addCallback(result.broadcastComplete, new FutureCallback<Transaction>() {
+            @Override
+            public void onSuccess(@Nullable Transaction tx) {
+                frontendChannel.info("Batch transaction " + txHash + " broadcast");
+            }
 
+            @Override
+            public void onFailure(Throwable t) {
+                frontendChannel.error("Batch transaction " + txHash + " failed to broadcast: " + t.getMessage());
+            }
+        });
+        result.tx.getConfidence().addEventListener(new TransactionConfidence.Listener() {
+            @Override
+            public void onConfidenceChanged(TransactionConfidence confidence, ChangeReason reason) {
+                switch (confidence.getConfidenceType()) {
+                    case BUILDING:
+                        frontendChannel.success("Batch transaction " + txHash + " confirmed");
+                        confidence.removeEventListener(this);
+                        break;
+                    case DEAD:
+                        frontendChannel.error("Batch transaction " + txHash + " was double spent");
+                        confidence.removeEventListener(this);
+                        break;
+                }
+            }
+        });
+    }
 
-        // Fee is the difference between outputs and inputs
-        long fee = Math.max(0, tx.getInputSum().getValue() - tx.getOutputSum().getValue());
-        final String feeFormatted = Coin.valueOf(fee).toFriendlyString();
+    /**
+     * @return list of transactions related with this wallet, newest first
+     */
+    public List<TransactionView> getAllTransactions() throws WalletNotInitialized {
+        return getReadModel().getTransactions();
+    }
 
-        // How many blocks have been placed on top of this transaction's block
-        final int confirmations = tx.getConfidence().getDepthInBlocks();
-        return new TransactionView(
-                hashAsString,
-                creationTimestamp,
-                inputAddresses,
-                outputAddresses,
-                amountFromMe,
-                amountToMe,
-                feeFormatted,
-                confirmations
-        );
+    /**
+     * @see io.raspberrywallet.contract.Manager#getTransactions(String, int, String, Long, Long)
+     */
+    @NotNull
+    public TransactionPage getTransactions(@Nullable String cursor, int limit, @Nullable String address,
+                                           @Nullable Long from, @Nullable Long to) throws WalletNotInitialized {
+        Wallet wallet = getWallet();
+        try {
+            return history.query(cursor, limit, address, from, to, wallet.getLastBlockSeenHeight());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 
@@ -461,6 +570,21 @@ public class Bitcoin {
         }
     }
 
+    /**
+     * Stops following the wallet and closes the transaction history, on shutdown
+     */
+    public void close() {
+        stopConsolidation();
+        WalletReadModel _readModel = readModel;
+        if (_readModel != null)
+            _readModel.detach();
+        try {
+            history.close();
+        } catch (IOException e) {
+            Logger.err("Failed to close transaction history: " + e.getMessage());
+        }
+    }
+
     public void addBlockChainProgressListener(DoubleConsumer blockchainProgressListener) {
         this.blockchainProgressListener = blockchainProgressListener;
     }
@@ -0,0 +1,289 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import io.raspberrywallet.manager.common.ArrayDestroyer;
+import org.bitcoinj.crypto.KeyCrypterException;
+import org.bitcoinj.crypto.KeyCrypterScrypt;
+import org.bitcoinj.wallet.Protos;
+import org.jetbrains.annotations.NotNull;
+import org.spongycastle.crypto.PBEParametersGenerator;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.generators.PKCS5S2ParametersGenerator;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Drop-in replacement of {@link KeyCrypterScrypt} which computes p independent ROMix lanes of scrypt in parallel.
+ * Derived keys are identical to the ones of KeyCrypterScrypt, AES part and wallet serialization are inherited,
+ * so wallets encrypted with either of them can be opened with the other one.
+ */
+public class ParallelKeyCrypterScrypt extends KeyCrypterScrypt {
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("scrypt-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private final int maxConcurrentLanes;
+
+    /**
+     * Runs as many lanes at once as there are cores, limited to what fits into half of the heap
+     */
+    public ParallelKeyCrypterScrypt(@NotNull Protos.ScryptParameters scryptParameters) {
+        this(scryptParameters, defaultConcurrentLanes(scryptParameters));
+    }
+
+    /**
+     * @param maxConcurrentLanes upper bound of lanes computed at once, each of them holds its own 128 * r * N bytes
+     */
+    public ParallelKeyCrypterScrypt(@NotNull Protos.ScryptParameters scryptParameters, int maxConcurrentLanes) {
+        super(scryptParameters);
+        this.maxConcurrentLanes = Math.max(1, maxConcurrentLanes);
+    }
+
+    /**
+     * @return memory needed by a single ROMix lane
+     */
+    static long laneMemoryBytes(long n, int r) {
+        return 128L * r * n;
+    }
+
+    private static int defaultConcurrentLanes(@NotNull Protos.ScryptParameters scryptParameters) {
+        long laneMemory = laneMemoryBytes(scryptParameters.getN(), scryptParameters.getR());
+        long byMemory = Runtime.getRuntime().maxMemory() / 2 / laneMemory;
+        return (int) Math.max(1, Math.min(POOL.getParallelism(), byMemory));
+    }
+
+    @Override
+    public KeyParameter deriveKey(CharSequence password) throws KeyCrypterException {
+        byte[] passwordBytes = null;
+        try {
+            passwordBytes = convertToByteArray(password);
+            Protos.ScryptParameters parameters = getScryptParameters();
+            byte[] salt = parameters.getSalt().toByteArray();
+            return new KeyParameter(scrypt(passwordBytes, salt, (int) parameters.getN(), parameters.getR(), parameters.getP()));
+        } catch (Exception e) {
+            throw new KeyCrypterException("Could not generate key from password and salt.", e);
+        } finally {
+            if (passwordBytes != null)
+                ArrayDestroyer.destroy(passwordBytes);
+        }
+    }
+
+    public int getMaxConcurrentLanes() {
+        return maxConcurrentLanes;
+    }
+
+    /**
+     * Same encoding as KeyCrypterScrypt uses, two big-endian bytes per char
+     */
+    @NotNull
+    private static byte[] convertToByteArray(@NotNull CharSequence charSequence) {
+        checkNotNull(charSequence);
+
+        byte[] byteArray = new byte[charSequence.length() << 1];
+        for (int i = 0; i < charSequence.length(); i++) {
+            int bytePosition = i << 1;
+            byteArray[bytePosition] = (byte) ((charSequence.charAt(i) & 0xFF00) >> 8);
+            byteArray[bytePosition + 1] = (byte) (charSequence.charAt(i) & 0x00FF);
+        }
+        return byteArray;
+    }
+
+    /*
+     * scrypt as described in RFC 7914, with the lanes loop distributed over the fork-join pool
+     */
+
+    @NotNull
+    private byte[] scrypt(@NotNull byte[] password, @NotNull byte[] salt, int n, int r, int p) {
+        if (n < 2 || (n & (n - 1)) != 0)
+            throw new IllegalArgumentException("N must be a power of 2 greater than 1");
+        if (r < 1 || p < 1)
+            throw new IllegalArgumentException("r and p must be positive");
+
+        int laneInts = 32 * r;
+        byte[] lanesBytes = pbkdf2(password, salt, 128 * r * p);
+        int[] lanes = new int[laneInts * p];
+        for (int i = 0; i < lanes.length; i++)
+            lanes[i] = littleEndianInt(lanesBytes, i * 4);
+
+        try {
+            if (p == 1 || maxConcurrentLanes == 1) {
+                for (int lane = 0; lane < p; lane++)
+                    romix(lanes, lane * laneInts, n, r);
+            } else {
+                for (int from = 0; from < p; from += maxConcurrentLanes)
+                    POOL.invoke(new Lanes(lanes, from, Math.min(p, from + maxConcurrentLanes), n, r));
+            }
+
+            for (int i = 0; i < lanes.length; i++)
+                putLittleEndianInt(lanesBytes, i * 4, lanes[i]);
+            return pbkdf2(password, lanesBytes, KEY_LENGTH);
+        } finally {
+            Arrays.fill(lanes, 0);
+            ArrayDestroyer.destroy(lanesBytes);
+        }
+    }
+
+    @NotNull
+    private static byte[] pbkdf2(@NotNull byte[] password, @NotNull byte[] salt, int lengthBytes) {
+        PBEParametersGenerator generator = new PKCS5S2ParametersGenerator(new SHA256Digest());
+        generator.init(password, salt, 1);
+        return ((KeyParameter) generator.generateDerivedParameters(lengthBytes * 8)).getKey();
+    }
+
+    /**
+     * Splits range of lanes in halves until a single lane is left
+     */
+    private static class Lanes extends RecursiveAction {
+        private final int[] lanes;
+        private final int from, to, n, r;
+
+        Lanes(int[] lanes, int from, int to, int n, int r) {
+            this.lanes = lanes;
+            this.from = from;
+            this.to = to;
+            this.n = n;
+            this.r = r;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                romix(lanes, from * 32 * r, n, r);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Lanes(lanes, from, middle, n, r), new Lanes(lanes, middle, to, n, r));
+        }
+    }
+
+    /**
+     * Mixes a single lane of 32 * r words starting at offset in place
+     */
+    private static void romix(int[] lanes, int offset, int n, int r) {
+        int laneInts = 32 * r;
+        int[] x = Arrays.copyOfRange(lanes, offset, offset + laneInts);
+        int[] y = new int[laneInts];
+        int[] v = new int[laneInts * n];
+        int[] block = new int[16];
+        try {
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(x, 0, v, i * laneInts, laneInts);
+                blockMix(x, y, block, r);
+                int[] swap = x;
+                x = y;
+                y = swap;
+            }
+            int lastBlock = (2 * r - 1) * 16;
+            for (int i = 0; i < n; i++) {
+                int j = x[lastBlock] & (n - 1);
+                int vOffset = j * laneInts;
+                for (int k = 0; k < laneInts; k++)
+                    x[k] ^= v[vOffset + k];
+                blockMix(x, y, block, r);
+                int[] swap = x;
+                x = y;
+                y = swap;
+            }
+            System.arraycopy(x, 0, lanes, offset, laneInts);
+        } finally {
+            Arrays.fill(v, 0);
+            Arrays.fill(x, 0);
+            Arrays.fill(y, 0);
+            Arrays.fill(block, 0);
+        }
+    }
+
+    /**
+     * BlockMix with Salsa20/8, even output blocks go to the first half of out, odd ones to the second
+     */
+    private static void blockMix(int[] in, int[] out, int[] block, int r) {
+        System.arraycopy(in, (2 * r - 1) * 16, block, 0, 16);
+        for (int i = 0; i < 2 * r; i++) {
+            int inOffset = i * 16;
+            for (int k = 0; k < 16; k++)
+                block[k] ^= in[inOffset + k];
+            salsa20_8(block);
+            System.arraycopy(block, 0, out, ((i >> 1) + (i & 1) * r) * 16, 16);
+        }
+    }
+
+    private static void salsa20_8(int[] b) {
+        int x0 = b[0], x1 = b[1], x2 = b[2], x3 = b[3], x4 = b[4], x5 = b[5], x6 = b[6], x7 = b[7],
+                x8 = b[8], x9 = b[9], x10 = b[10], x11 = b[11], x12 = b[12], x13 = b[13], x14 = b[14], x15 = b[15];
+
+        for (int i = 8; i > 0; i -= 2) {
+            x4 ^= Integer.rotateLeft(x0 + x12, 7);
+            x8 ^= Integer.rotateLeft(x4 + x0, 9);
+            x12 ^= Integer.rotateLeft(x8 + x4, 13);
+            x0 ^= Integer.rotateLeft(x12 + x8, 18);
+            x9 ^= Integer.rotateLeft(x5 + x1, 7);
+            x13 ^= Integer.rotateLeft(x9 + x5, 9);
+            x1 ^= Integer.rotateLeft(x13 + x9, 13);
+            x5 ^= Integer.rotateLeft(x1 + x13, 18);
+            x14 ^= Integer.rotateLeft(x10 + x6, 7);
+            x2 ^= Integer.rotateLeft(x14 + x10, 9);
+            x6 ^= Integer.rotateLeft(x2 + x14, 13);
+            x10 ^= Integer.rotateLeft(x6 + x2, 18);
+            x3 ^= Integer.rotateLeft(x15 + x11, 7);
+            x7 ^= Integer.rotateLeft(x3 + x15, 9);
+            x11 ^= Integer.rotateLeft(x7 + x3, 13);
+            x15 ^= Integer.rotateLeft(x11 + x7, 18);
+
+            x1 ^= Integer.rotateLeft(x0 + x3, 7);
+            x2 ^= Integer.rotateLeft(x1 + x0, 9);
+            x3 ^= Integer.rotateLeft(x2 + x1, 13);
+            x0 ^= Integer.rotateLeft(x3 + x2, 18);
+            x6 ^= Integer.rotateLeft(x5 + x4, 7);
+            x7 ^= Integer.rotateLeft(x6 + x5, 9);
+            x4 ^= Integer.rotateLeft(x7 + x6, 13);
+            x5 ^= Integer.rotateLeft(x4 + x7, 18);
+            x11 ^= Integer.rotateLeft(x10 + x9, 7);
+            x8 ^= Integer.rotateLeft(x11 + x10, 9);
+            x9 ^= Integer.rotateLeft(x8 + x11, 13);
+            x10 ^= Integer.rotateLeft(x9 + x8, 18);
+            x12 ^= Integer.rotateLeft(x15 + x14, 7);
+            x13 ^= Integer.rotateLeft(x12 + x15, 9);
+            x14 ^= Integer.rotateLeft(x13 + x12, 13);
+            x15 ^= Integer.rotateLeft(x14 + x13, 18);
+        }
+
+        b[0] += x0;
+        b[1] += x1;
+        b[2] += x2;
+        b[3] += x3;
+        b[4] += x4;
+        b[5] += x5;
+        b[6] += x6;
+        b[7] += x7;
+        b[8] += x8;
+        b[9] += x9;
+        b[10] += x10;
+        b[11] += x11;
+        b[12] += x12;
+        b[13] += x13;
+        b[14] += x14;
+        b[15] += x15;
+    }
+
+    private static int littleEndianInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff)
+                | (bytes[offset + 1] & 0xff) << 8
+                | (bytes[offset + 2] & 0xff) << 16
+                | (bytes[offset + 3] & 0xff) << 24;
+    }
+
+    private static void putLittleEndianInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,147 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import io.raspberrywallet.contract.BatchSendResult;
+import io.raspberrywallet.contract.Payment;
+import org.bitcoinj.core.*;
+import org.bitcoinj.wallet.SendRequest;
+import org.bitcoinj.wallet.Wallet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payments to many recipients sent as one transaction, so they share inputs, a single change output and the fee,
+ * instead of a transaction, change and fee for every recipient.
+ */
+class PaymentBatch {
+    /**
+     * Guards against fee rates typed in wrong unit, far above anything the network asks for
+     */
+    static final long MAX_FEE_SAT_PER_BYTE = 1000;
+    /**
+     * Signature script spending P2PKH output: push of DER signature with sighash type and push of compressed key
+     */
+    private static final int P2PKH_SCRIPT_SIG_BYTES = 1 + 73 + 1 + 33;
+
+    private final NetworkParameters params;
+    private final List<Address> recipients = new ArrayList<>();
+    private final List<Coin> values = new ArrayList<>();
+    private final Coin amount;
+    @Nullable
+    private final Coin feePerKb;
+
+    /**
+     * @param feeSatPerByte fee rate in satoshis per byte, wallet default if null
+     * @throws IllegalArgumentException when there are no payments or any of them is invalid
+     */
+    PaymentBatch(@NotNull NetworkParameters params, @NotNull List<Payment> payments, @Nullable Long feeSatPerByte) {
+        if (payments.isEmpty())
+            throw new IllegalArgumentException("Batch has no payments");
+        if (feeSatPerByte != null && (feeSatPerByte < 1 || feeSatPerByte > MAX_FEE_SAT_PER_BYTE))
+            throw new IllegalArgumentException("Fee rate has to be between 1 and " + MAX_FEE_SAT_PER_BYTE + " sat/B");
+
+        this.params = params;
+        Coin amount = Coin.ZERO;
+        for (Payment payment : payments) {
+            Coin value = Coin.parseCoin(payment.getAmount());
+            if (!value.isPositive())
+                throw new IllegalArgumentException("Amount has to be positive, was " + payment.getAmount());
+            Address recipient;
+            try {
+                recipient = Address.fromBase58(params, payment.getRecipient());
+            } catch (AddressFormatException e) {
+                throw new IllegalArgumentException("Invalid recipient " + payment.getRecipient(), e);
+            }
+            recipients.add(recipient);
+            values.add(value);
+            amount = amount.add(value);
+        }
+        this.amount = amount;
+        this.feePerKb = feeSatPerByte == null ? null : Coin.valueOf(feeSatPerByte * 1000);
+    }
+
+    /**
+     * Selects coins and adds change without signing or committing anything, so keys of locked wallet are not needed
+     *
+     * @return result with estimated size of the signed transaction
+     */
+    @NotNull
+    BatchSendResult preview(@NotNull Wallet wallet) {
+        SendRequest request = newRequest();
+        request.signInputs = false;
+        complete(wallet, request);
+        int size = request.tx.unsafeBitcoinSerialize().length + request.tx.getInputs().size() * P2PKH_SCRIPT_SIG_BYTES;
+        return result(request.tx, size, false);
+    }
+
+    /**
+     * Completes, signs and commits the transaction, then broadcasts it
+     */
+    @NotNull
+    Wallet.SendResult send(@NotNull Wallet wallet, @NotNull TransactionBroadcaster broadcaster) {
+        try {
+            return wallet.sendCoins(broadcaster, newRequest());
+        } catch (InsufficientMoneyException e) {
+            throw insufficientMoney(e);
+        } catch (Wallet.CompletionException e) {
+            throw completionFailed(e);
+        }
+    }
+
+    @NotNull
+    BatchSendResult result(@NotNull Transaction sent) {
+        return result(sent, sent.unsafeBitcoinSerialize().length, true);
+    }
+
+    private BatchSendResult result(Transaction completed, int size, boolean broadcast) {
+        Coin fee = completed.getFee();
+        Coin change = completed.getInputSum().subtract(amount).subtract(fee);
+        return new BatchSendResult(
+                broadcast ? completed.getHashAsString() : null,
+                recipients.size(),
+                completed.getInputs().size(),
+                size,
+                amount.toPlainString(),
+                fee.toPlainString(),
+                change.toPlainString(),
+                broadcast);
+    }
+
+    /**
+     * @return request for a new transaction, so the batch can be previewed and sent afterwards
+     */
+    private SendRequest newRequest() {
+        Transaction tx = new Transaction(params);
+        for (int i = 0; i < recipients.size(); i++)
+            tx.addOutput(values.get(i), recipients.get(i));
+        SendRequest request = SendRequest.forTx(tx);
+        if (feePerKb != null)
+            request.feePerKb = feePerKb;
+        return request;
+    }
+
+    private static void complete(Wallet wallet, SendRequest request) {
+        try {
+            wallet.completeTx(request);
+        } catch (InsufficientMoneyException e) {
+            throw insufficientMoney(e);
+        } catch (Wallet.CompletionException e) {
+            throw completionFailed(e);
+        }
+    }
+
+    private static IllegalArgumentException insufficientMoney(InsufficientMoneyException e) {
+        String missing = e.missing != null ? ", missing " + e.missing.toFriendlyString() : "";
+        return new IllegalArgumentException("Insufficient funds" + missing, e);
+    }
+
+    private static IllegalArgumentException completionFailed(Wallet.CompletionException e) {
+        if (e instanceof Wallet.DustySendRequested)
+            return new IllegalArgumentException("Amount below the dust limit", e);
+        if (e instanceof Wallet.ExceededMaxTransactionSize)
+            return new IllegalArgumentException("Too many payments for one transaction", e);
+        return new IllegalArgumentException("Transaction could not be completed: " + e.getClass().getSimpleName(), e);
+    }
+}
@@ -0,0 +1,234 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import com.stasbar.Logger;
+import io.raspberrywallet.contract.KdfCost;
+import io.raspberrywallet.manager.Configuration;
+import io.raspberrywallet.manager.common.ArrayDestroyer;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.bitcoinj.crypto.KeyCrypter;
+import org.bitcoinj.crypto.KeyCrypterScrypt;
+import org.bitcoinj.wallet.Protos;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Picks scrypt parameters that fit into configured latency and memory budget on the device we are running on.
+ * The benchmark runs once, its result is stored next to the wallet and reused until the hardware changes.
+ * Parameters end up in every wallet encrypted with {@link WalletCrypter}, as part of its KeyCrypterScrypt.
+ * Lanes of scrypt are computed in parallel by {@link ParallelKeyCrypterScrypt}, as many at once as the memory budget allows.
+ */
+public class ScryptCalibration {
+    private final static String CALIBRATION_FILE_NAME = "scrypt-calibration.json";
+
+    // Recommended by Colin Percival for interactive logins, we never go below it even on slow hardware
+    private final static long MIN_N = 1 << 14;
+    private final static int R = 8;
+    private final static int MAX_P = 16;
+    private final static String BENCHMARK_PASSWORD = "raspberrywallet scrypt calibration";
+
+    private final File calibrationFile;
+    private final long targetMillis;
+    private final long memoryBudgetBytes;
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+    @Nullable
+    private Result result;
+
+    public ScryptCalibration(@NotNull Configuration configuration) {
+        Configuration.BitcoinConfig bitcoinConfig = configuration.getBitcoinConfig();
+        this.calibrationFile = Paths.get(configuration.getBasePathPrefix(), CALIBRATION_FILE_NAME).toFile();
+        this.targetMillis = bitcoinConfig.getScryptTargetMillis();
+        this.memoryBudgetBytes = bitcoinConfig.getScryptMemoryBudgetMb() * 1024L * 1024L;
+    }
+
+    /**
+     * @return key crypter with calibrated parameters and fresh salt
+     */
+    @NotNull
+    KeyCrypter newKeyCrypter() {
+        return keyCrypterFor(newParameters());
+    }
+
+    /**
+     * @return parallel key crypter for given parameters, running as many lanes at once as fit into memory budget
+     */
+    @NotNull
+    KeyCrypter keyCrypterFor(@NotNull Protos.ScryptParameters parameters) {
+        return new ParallelKeyCrypterScrypt(parameters, concurrentLanes(parameters.getN(), parameters.getR()));
+    }
+
+    /**
+     * @return parameters calibrated for this device with fresh random salt
+     */
+    @NotNull
+    Protos.ScryptParameters newParameters() {
+        Result result = getResult();
+        return Protos.ScryptParameters.newBuilder()
+                .setN(result.n)
+                .setR(result.r)
+                .setP(result.p)
+                .setSalt(ByteString.copyFrom(KeyCrypterScrypt.randomSalt()))
+                .build();
+    }
+
+    /**
+     * @return measured cost of currently used scrypt parameters
+     */
+    @NotNull
+    public KdfCost getCost() {
+        Result result = getResult();
+        long memoryBytes = ParallelKeyCrypterScrypt.laneMemoryBytes(result.n, result.r)
+                * Math.min(result.p, concurrentLanes(result.n, result.r));
+        return new KdfCost(result.n, result.r, result.p, result.millis, memoryBytes, result.hardware, result.calibratedAt);
+    }
+
+    /**
+     * Loads stored calibration, runs the benchmark if there is none or it was done on different hardware
+     */
+    @NotNull
+    public synchronized Result getResult() {
+        String hardware = hardwareFingerprint();
+        if (result == null)
+            result = load();
+
+        if (result == null || !hardware.equals(result.hardware)
+                || result.targetMillis != targetMillis || result.memoryBudgetBytes != memoryBudgetBytes) {
+            result = calibrate(hardware);
+            save(result);
+        }
+        return result;
+    }
+
+    @NotNull
+    private Result calibrate(@NotNull String hardware) {
+        Logger.info("Calibrating scrypt for " + targetMillis + "ms and " + memoryBudgetBytes / 1024 / 1024 + "MB");
+        measure(MIN_N, R, 1); // warm up JIT
+        long baseMillis = Math.max(1, measure(MIN_N, R, 1));
+
+        // Cost of a lane grows linearly with N, lanes running at once share the time but multiply the memory
+        long n = MIN_N;
+        while (ParallelKeyCrypterScrypt.laneMemoryBytes(n * 2, R) <= memoryBudgetBytes && baseMillis * (n * 2 / MIN_N) <= targetMillis)
+            n *= 2;
+
+        long estimatedMillis = baseMillis * (n / MIN_N);
+        long rounds = Math.max(1, targetMillis / estimatedMillis);
+        int p = (int) Math.min(MAX_P, rounds * concurrentLanes(n, R));
+
+        Result result = new Result(n, R, p, measure(n, R, p), hardware, targetMillis, memoryBudgetBytes);
+        Logger.info(String.format("Scrypt calibrated to N=%d r=%d p=%d, derivation takes %dms",
+                result.n, result.r, result.p, result.millis));
+        return result;
+    }
+
+    /**
+     * @return time of a single key derivation in milliseconds
+     */
+    private long measure(long n, int r, int p) {
+        Protos.ScryptParameters parameters = Protos.ScryptParameters.newBuilder()
+                .setN(n).setR(r).setP(p)
+                .setSalt(ByteString.copyFrom(KeyCrypterScrypt.randomSalt()))
+                .build();
+        KeyCrypter keyCrypter = keyCrypterFor(parameters);
+
+        long start = System.nanoTime();
+        KeyParameter key = keyCrypter.deriveKey(BENCHMARK_PASSWORD);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        ArrayDestroyer.destroy(key.getKey());
+        return millis;
+    }
+
+    /**
+     * @return number of lanes which may be computed at once without exceeding the memory budget
+     */
+    int concurrentLanes(long n, int r) {
+        long byMemory = memoryBudgetBytes / ParallelKeyCrypterScrypt.laneMemoryBytes(n, r);
+        return (int) Math.max(1, Math.min(parallelism, byMemory));
+    }
+
+    /**
+     * Anything that changes scrypt performance, if it differs from stored one we have to calibrate again
+     */
+    @NotNull
+    static String hardwareFingerprint() {
+        String cpuModel = "unknown";
+        try {
+            List<String> cpuInfo = Files.readAllLines(Paths.get("/proc/cpuinfo"));
+            cpuModel = cpuInfo.stream()
+                    .filter(line -> line.startsWith("model name") || line.startsWith("Hardware") || line.startsWith("Revision"))
+                    .map(line -> line.substring(line.indexOf(':') + 1).trim())
+                    .distinct()
+                    .reduce((acc, value) -> acc + " " + value)
+                    .orElse(cpuModel);
+        } catch (IOException | RuntimeException ignored) {
+            // not linux or not readable, rely on the rest of properties
+        }
+        return System.getProperty("os.arch") + "/"
+                + Runtime.getRuntime().availableProcessors() + " cores/"
+                + Runtime.getRuntime().maxMemory() / 1024 / 1024 + "MB heap/"
+                + cpuModel;
+    }
+
+    @Nullable
+    private Result load() {
+        if (!calibrationFile.exists())
+            return null;
+        try {
+            return new ObjectMapper().readValue(calibrationFile, Result.class);
+        } catch (IOException e) {
+            Logger.err("Failed to read scrypt calibration, calibrating again: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void save(@NotNull Result result) {
+        try {
+            calibrationFile.getParentFile().mkdirs();
+            new ObjectMapper().writeValue(calibrationFile, result);
+        } catch (IOException e) {
+            Logger.err("Failed to save scrypt calibration: " + e.getMessage());
+        }
+    }
+
+    @Getter
+    @NoArgsConstructor
+    public static class Result {
+        @JsonProperty("n")
+        private long n;
+        @JsonProperty("r")
+        private int r;
+        @JsonProperty("p")
+        private int p;
+        @JsonProperty("millis")
+        private long millis;
+        @JsonProperty("hardware")
+        private String hardware;
+        @JsonProperty("target-millis")
+        private long targetMillis;
+        @JsonProperty("memory-budget-bytes")
+        private long memoryBudgetBytes;
+        @JsonProperty("calibrated-at")
+        private long calibratedAt;
+
+        Result(long n, int r, int p, long millis, String hardware, long targetMillis, long memoryBudgetBytes) {
+            this.n = n;
+            this.r = r;
+            this.p = p;
+            this.millis = millis;
+            this.hardware = hardware;
+            this.targetMillis = targetMillis;
+            this.memoryBudgetBytes = memoryBudgetBytes;
+            this.calibratedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stasbar.Logger;
+import io.raspberrywallet.contract.TransactionPage;
+import io.raspberrywallet.contract.TransactionView;
+import lombok.NoArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Transactions of the wallet kept on disk, so a page of history costs O(page) however old the wallet is.
+ * <p>
+ * Every version of a transaction is appended to a log as one JSON line and the latest versions are indexed by
+ * txid, time and address in memory. The indexes hold offsets into the log only, they are built by one pass over
+ * the log on open, so history survives restarts without going through the wallet. Records keep the height of
+ * the block the transaction appeared in rather than its confirmations, a new block does not rewrite them.
+ * The log is compacted when superseded versions take more than half of it. Appends reach the disk on
+ * {@link #sync()}, so a batch of changes costs one flush of the SD card.
+ */
+public class TransactionHistory implements Closeable {
+    private final static int MAX_LIMIT = 500;
+    private final static long MIN_COMPACTED_BYTES = 64 * 1024;
+    /**
+     * Order of pages, probe records with empty txid go before all records of their time
+     */
+    private final static Comparator<Record> NEWEST_FIRST = Comparator
+            .comparingLong((Record record) -> -record.timestamp)
+            .thenComparing(record -> record.txHash);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File logFile;
+    private RandomAccessFile log;
+    /**
+     * Bytes taken by the latest versions of transactions in the history, the rest of the log is garbage
+     */
+    private long liveBytes;
+    /**
+     * Whether anything was appended since the last sync
+     */
+    private boolean dirty;
+
+    private final Map<String, Record> byTxHash = new HashMap<>();
+    private final NavigableSet<Record> byTime = new TreeSet<>(NEWEST_FIRST);
+    private final Map<String, NavigableSet<Record>> byAddress = new HashMap<>();
+
+    /**
+     * Opens the history, a record torn by a crash and everything after it are dropped
+     *
+     * @param logFile log of the history, created if it doesn't exist
+     */
+    public TransactionHistory(@NotNull File logFile) throws IOException {
+        this.logFile = logFile;
+        logFile.getAbsoluteFile().getParentFile().mkdirs();
+        this.log = new RandomAccessFile(logFile, "rw");
+        long validLength = load();
+        if (log.length() > validLength) {
+            Logger.err("Dropping damaged end of transaction history " + logFile.getAbsolutePath());
+            log.setLength(validLength);
+        }
+    }
+
+    /**
+     * @return length of the log up to the first damaged record
+     */
+    private long load() throws IOException {
+        long lineStart = 0;
+        long position = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(logFile))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                StoredTransaction stored;
+                try {
+                    stored = mapper.readValue(line.toByteArray(), StoredTransaction.class);
+                } catch (IOException e) {
+                    break;
+                }
+                index(stored, lineStart, (int) (position - lineStart));
+                line.reset();
+                lineStart = position;
+            }
+        }
+        return lineStart;
+    }
+
+    /**
+     * @return number of transactions in the history
+     */
+    public synchronized int size() {
+        return byTxHash.size();
+    }
+
+    /**
+     * Stores the transaction unless the history has it already, differing in confirmations at most
+     *
+     * @param appearedAtHeight height of the block with the transaction, -1 if it's not in the best chain
+     */
+    public synchronized void put(@NotNull TransactionView view, int appearedAtHeight) throws IOException {
+        StoredTransaction stored = new StoredTransaction(view, appearedAtHeight);
+        byte[] line = toLine(stored);
+        // confirmations are not stored, so an equal line means nothing else changed
+        Record current = byTxHash.get(view.getTxHash());
+        if (current != null && current.length == line.length && Arrays.equals(readLine(current), line))
+            return;
+        append(stored, line);
+    }
+
+    /**
+     * @return stored view of the transaction if it was seen at the same time and appeared in the same block,
+     * with no confirmations, null otherwise
+     */
+    @Nullable
+    public synchronized TransactionView find(@NotNull String txHash, long creationTimestamp, int appearedAtHeight)
+            throws IOException {
+        Record record = byTxHash.get(txHash);
+        if (record == null || record.timestamp != creationTimestamp || record.appearedAtHeight != appearedAtHeight)
+            return null;
+        return read(record).toView(-1);
+    }
+
+    public synchronized void remove(@NotNull String txHash) throws IOException {
+        if (byTxHash.containsKey(txHash))
+            append(StoredTransaction.removed(txHash));
+    }
+
+    /**
+     * Removes transactions which are not in the given set, e.g. after the wallet was replaced
+     */
+    public synchronized void retainAll(@NotNull Set<String> txHashes) throws IOException {
+        List<String> removed = new ArrayList<>();
+        for (String txHash : byTxHash.keySet())
+            if (!txHashes.contains(txHash))
+                removed.add(txHash);
+        for (String txHash : removed)
+            append(StoredTransaction.removed(txHash));
+    }
+
+    /**
+     * @param bestHeight height of the best chain, used to count confirmations
+     * @see io.raspberrywallet.contract.Manager#getTransactions(String, int, String, Long, Long)
+     */
+    @NotNull
+    public synchronized TransactionPage query(@Nullable String cursor, int limit, @Nullable String address,
+                                              @Nullable Long from, @Nullable Long to, int bestHeight) throws IOException {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit has to be positive");
+        limit = Math.min(limit, MAX_LIMIT);
+
+        NavigableSet<Record> index = address == null
+                ? byTime
+                : byAddress.getOrDefault(address, Collections.emptyNavigableSet());
+        // the page starts after the cursor or at the upper time bound, whichever is later in the order
+        Record start = to != null ? Record.probe(to, "") : null;
+        boolean startInclusive = true;
+        if (cursor != null) {
+            Record after = decodeCursor(cursor);
+            if (start == null || NEWEST_FIRST.compare(after, start) >= 0) {
+                start = after;
+                startInclusive = false;
+            }
+        }
+        Record end = from != null && from > Long.MIN_VALUE ? Record.probe(from - 1, "") : null;
+        if (start != null && end != null && NEWEST_FIRST.compare(start, end) > 0) {
+            index = Collections.emptyNavigableSet();
+        } else {
+            if (start != null)
+                index = index.tailSet(start, startInclusive);
+            if (end != null)
+                index = index.headSet(end, false);
+        }
+
+        List<TransactionView> transactions = new ArrayList<>();
+        Record last = null;
+        Iterator<Record> records = index.iterator();
+        while (records.hasNext() && transactions.size() < limit) {
+            last = records.next();
+            transactions.add(read(last).toView(bestHeight));
+        }
+        String nextCursor = records.hasNext() ? encodeCursor(last) : null;
+        return new TransactionPage(Collections.unmodifiableList(transactions), nextCursor);
+    }
+
+    /**
+     * Forces appended records to the disk
+     */
+    public synchronized void sync() throws IOException {
+        if (!dirty)
+            return;
+        log.getChannel().force(false);
+        dirty = false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            log.close();
+        }
+    }
+
+    private void append(StoredTransaction stored) throws IOException {
+        append(stored, toLine(stored));
+    }
+
+    private void append(StoredTransaction stored, byte[] line) throws IOException {
+        long offset = log.length();
+        log.seek(offset);
+        log.write(line);
+        dirty = true;
+        index(stored, offset, line.length);
+        compactIfNeeded();
+    }
+
+    private byte[] toLine(StoredTransaction stored) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(stored);
+        byte[] line = Arrays.copyOf(json, json.length + 1);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    private void index(StoredTransaction stored, long offset, int length) {
+        Record previous = byTxHash.remove(stored.txHash);
+        if (previous != null) {
+            liveBytes -= previous.length;
+            byTime.remove(previous);
+            for (String address : previous.addresses) {
+                NavigableSet<Record> records = byAddress.get(address);
+                records.remove(previous);
+                if (records.isEmpty())
+                    byAddress.remove(address);
+            }
+        }
+        if (stored.removed)
+            return;
+
+        Record record = new Record(stored, offset, length);
+        liveBytes += length;
+        byTxHash.put(record.txHash, record);
+        byTime.add(record);
+        for (String address : record.addresses)
+            byAddress.computeIfAbsent(address, key -> new TreeSet<>(NEWEST_FIRST)).add(record);
+    }
+
+    private StoredTransaction read(Record record) throws IOException {
+        return mapper.readValue(readLine(record), 0, record.length - 1, StoredTransaction.class);
+    }
+
+    private byte[] readLine(Record record) throws IOException {
+        byte[] line = new byte[record.length];
+        log.seek(record.offset);
+        log.readFully(line);
+        return line;
+    }
+
+    /**
+     * Rewrites the latest versions into a new log which replaces the current one.
+     * The current log stays in use until the new one is in place, a failed compaction is tried again later.
+     */
+    private void compactIfNeeded() throws IOException {
+        long length = log.length();
+        if (length < MIN_COMPACTED_BYTES || length - liveBytes < liveBytes)
+            return;
+
+        File compactedFile = new File(logFile.getPath() + ".compact");
+        Map<Record, Long> offsets = new HashMap<>();
+        long offset = 0;
+        RandomAccessFile compacted;
+        try {
+            try (FileOutputStream file = new FileOutputStream(compactedFile);
+                 OutputStream out = new BufferedOutputStream(file)) {
+                // oldest first, as they would be appended
+                for (Record record : byTime.descendingSet()) {
+                    out.write(readLine(record));
+                    offsets.put(record, offset);
+                    offset += record.length;
+                }
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(compactedFile.toPath(), logFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            compacted = new RandomAccessFile(logFile, "rw");
+        } catch (IOException e) {
+            Logger.err("Failed to compact transaction history: " + e.getMessage());
+            if (compactedFile.isFile())
+                Files.delete(compactedFile.toPath());
+            return;
+        }
+        RandomAccessFile previous = log;
+        log = compacted;
+        offsets.forEach((record, newOffset) -> record.offset = newOffset);
+        liveBytes = offset;
+        // everything in the new log is on the disk already
+        dirty = false;
+        try {
+            previous.close();
+        } catch (IOException e) {
+            Logger.err("Failed to close replaced transaction history: " + e.getMessage());
+        }
+        Logger.d("Compacted transaction history from " + length + " to " + offset + " bytes");
+    }
+
+    private static String encodeCursor(Record record) {
+        String position = record.timestamp + ":" + record.txHash;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Record decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            return Record.probe(Long.parseLong(position.substring(0, separator)), position.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+    }
+
+    /**
+     * Position of the latest version of a transaction in the log
+     */
+    private static class Record {
+        final String txHash;
+        final long timestamp;
+        final int appearedAtHeight;
+        final Set<String> addresses;
+        long offset;
+        final int length;
+
+        Record(StoredTransaction stored, long offset, int length) {
+            this.txHash = stored.txHash;
+            this.timestamp = stored.creationTimestamp;
+            this.appearedAtHeight = stored.appearedAtHeight;
+            this.addresses = new HashSet<>(stored.inputAddresses);
+            this.addresses.addAll(stored.outputAddresses);
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private Record(long timestamp, String txHash) {
+            this.txHash = txHash;
+            this.timestamp = timestamp;
+            this.appearedAtHeight = -1;
+            this.addresses = Collections.emptySet();
+            this.length = 0;
+        }
+
+        static Record probe(long timestamp, String txHash) {
+            return new Record(timestamp, txHash);
+        }
+    }
+
+    /**
+     * Line of the log, a removed transaction has its txid only
+     */
+    @NoArgsConstructor
+    static class StoredTransaction {
+        @JsonProperty("txHash")
+        private String txHash;
+        @JsonProperty("creationTimestamp")
+        private long creationTimestamp;
+        @JsonProperty("inputAddresses")
+        private List<String> inputAddresses = Collections.emptyList();
+        @JsonProperty("outputAddresses")
+        private List<String> outputAddresses = Collections.emptyList();
+        @JsonProperty("amountFromMe")
+        private String amountFromMe;
+        @JsonProperty("amountToMe")
+        private String amountToMe;
+        @JsonProperty("fee")
+        private String fee;
+        @JsonProperty("appearedAtHeight")
+        private int appearedAtHeight = -1;
+        @JsonProperty("removed")
+        private boolean removed;
+
+        StoredTransaction(TransactionView view, int appearedAtHeight) {
+            this.txHash = view.getTxHash();
+            this.creationTimestamp = view.getCreationTimestamp();
+            this.inputAddresses = view.getInputAddresses();
+            this.outputAddresses = view.getOutputAddresses();
+            this.amountFromMe = view.getAmountFromMe();
+            this.amountToMe = view.getAmountToMe();
+            this.fee = view.getFee();
+            this.appearedAtHeight = appearedAtHeight;
+        }
+
+        static StoredTransaction removed(String txHash) {
+            StoredTransaction stored = new StoredTransaction();
+            stored.txHash = txHash;
+            stored.removed = true;
+            return stored;
+        }
+
+        TransactionView toView(int bestHeight) {
+            int confirmations = appearedAtHeight < 0 ? 0 : Math.max(0, bestHeight - appearedAtHeight + 1);
+            return new TransactionView(txHash, creationTimestamp,
+                    Collections.unmodifiableList(inputAddresses), Collections.unmodifiableList(outputAddresses),
+                    amountFromMe, amountToMe, fee, confirmations);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import com.stasbar.Logger;
+import io.raspberrywallet.manager.Configuration;
+import org.bitcoinj.core.*;
+import org.bitcoinj.wallet.CoinSelection;
+import org.bitcoinj.wallet.SendRequest;
+import org.bitcoinj.wallet.Wallet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges small outputs of the wallet into one by sending them to the wallet itself.
+ * Every output is another input the coin selection has to consider and a later payment has to pay for,
+ * so merging them while the fees are low keeps future sends fast and cheap.
+ * It runs only while the wallet is unlocked, within the configured time window and fee limits.
+ * The wallet's monitor is held from the last check of the lock until the transaction is signed,
+ * {@link WalletCrypter} encrypts the wallet under the same monitor.
+ */
+class UtxoConsolidator implements Closeable {
+    /**
+     * Outpoint, script length, signature script of P2PKH output and sequence
+     */
+    static final int P2PKH_INPUT_BYTES = 36 + 1 + 108 + 4;
+    /**
+     * Version, input and output counts, lock time and the single P2PKH output
+     */
+    private static final int TRANSACTION_BYTES = 4 + 1 + 1 + 4 + 8 + 1 + 25;
+
+    private final Wallet wallet;
+    private final TransactionBroadcaster broadcaster;
+    private final Configuration.ConsolidationConfig config;
+    private final Clock clock;
+    @Nullable
+    private ScheduledExecutorService executor;
+
+    UtxoConsolidator(@NotNull Wallet wallet, @NotNull TransactionBroadcaster broadcaster,
+                     @NotNull Configuration.ConsolidationConfig config, @NotNull Clock clock) {
+        this.wallet = wallet;
+        this.broadcaster = broadcaster;
+        this.config = config;
+        this.clock = clock;
+    }
+
+    /**
+     * Checks the wallet periodically on a background thread, until closed
+     */
+    synchronized void start() {
+        if (executor != null)
+            return;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "consolidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, config.getCheckIntervalMinutes());
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                consolidate();
+            } catch (RuntimeException e) {
+                // a failing check must not cancel the next ones
+                Logger.err("Consolidation failed: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null)
+            executor.shutdownNow();
+        executor = null;
+    }
+
+    /**
+     * Sends small outputs to the wallet if the policy allows it now
+     *
+     * @return sent consolidation transaction, null if there was nothing to do
+     */
+    @Nullable
+    Transaction consolidate() {
+        List<TransactionOutput> outputs = select();
+        if (outputs == null)
+            return null;
+        try {
+            Wallet.SendResult result;
+            synchronized (wallet) {
+                // the wallet may have been locked since the outputs were selected
+                if (wallet.isEncrypted())
+                    return null;
+                result = wallet.sendCoins(broadcaster, newRequest(outputs));
+            }
+            Logger.info("Consolidated " + outputs.size() + " outputs into " + result.tx.getHashAsString()
+                    + ", fee " + result.tx.getFee().toFriendlyString());
+            return result.tx;
+        } catch (InsufficientMoneyException | Wallet.CompletionException e) {
+            Logger.err("Consolidation could not be completed: " + e.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    /**
+     * @return outputs to merge, smallest first, null when the wallet is locked or the policy does not allow it now
+     */
+    @Nullable
+    List<TransactionOutput> select() {
+        if (wallet.isEncrypted() || !inWindow(LocalTime.now(clock)))
+            return null;
+
+        Coin smallOutput = Coin.valueOf(config.getSmallOutputSatoshis());
+        long feePerByte = Math.max(1, config.getFeeSatPerByte());
+        // an output worth less than its own input costs money to merge, it waits for lower fees
+        Coin inputFee = Coin.valueOf(P2PKH_INPUT_BYTES * feePerByte);
+        List<TransactionOutput> small = new ArrayList<>();
+        int unspent = 0;
+        for (TransactionOutput output : wallet.calculateAllSpendCandidates(true, true)) {
+            // pending outputs, including change of the previous consolidation, wait for a confirmation
+            if (output.getParentTransactionDepthInBlocks() < 1)
+                continue;
+            unspent++;
+            if (output.getValue().isLessThan(smallOutput) && output.getValue().isGreaterThan(inputFee))
+                small.add(output);
+        }
+        Logger.d("Wallet has " + unspent + " confirmed outputs, " + small.size() + " of them small");
+        if (small.size() < Math.max(2, config.getMinOutputs()))
+            return null;
+
+        small.sort(Comparator.comparing(TransactionOutput::getValue));
+        List<TransactionOutput> selected = small.subList(0, Math.min(small.size(), Math.max(2, config.getMaxInputs())));
+        Coin value = Coin.ZERO;
+        for (TransactionOutput output : selected)
+            value = value.add(output.getValue());
+        if (value.isLessThan(Coin.valueOf(config.getMinValueSatoshis())))
+            return null;
+        long fee = estimateSize(selected.size()) * feePerByte;
+        if (fee * 100 > value.value * config.getMaxFeePercent()) {
+            Logger.d("Consolidation fee " + fee + " sat is too high for " + value.toFriendlyString());
+            return null;
+        }
+        return new ArrayList<>(selected);
+    }
+
+    static int estimateSize(int inputs) {
+        return TRANSACTION_BYTES + inputs * P2PKH_INPUT_BYTES;
+    }
+
+    boolean inWindow(@NotNull LocalTime time) {
+        int start = config.getWindowStartHour();
+        int end = config.getWindowEndHour();
+        int hour = time.getHour();
+        if (start == end)
+            return true;
+        if (start < end)
+            return hour >= start && hour < end;
+        return hour >= start || hour < end;
+    }
+
+    /**
+     * Whole value of the outputs, less the fee, goes to the current change address of the wallet.
+     * It's a new key only once a consolidation was sent to the previous one, failed attempts don't widen the gap.
+     */
+    private SendRequest newRequest(List<TransactionOutput> outputs) {
+        SendRequest request = SendRequest.emptyWallet(wallet.currentChangeAddress());
+        request.coinSelector = (target, candidates) -> {
+            List<TransactionOutput> gathered = new ArrayList<>(outputs);
+            gathered.retainAll(candidates);
+            Coin value = Coin.ZERO;
+            for (TransactionOutput output : gathered)
+                value = value.add(output.getValue());
+            return new CoinSelection(value, gathered);
+        };
+        request.feePerKb = Coin.valueOf(Math.max(1, config.getFeeSatPerByte()) * 1000);
+        // the configured rate is the point, it must not be raised to the default minimum
+        request.ensureMinRequiredFee = false;
+        return request;
+    }
+}
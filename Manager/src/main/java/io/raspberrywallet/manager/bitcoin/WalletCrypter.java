@@ -3,10 +3,14 @@ package io.raspberrywallet.manager.bitcoin;
 import com.google.protobuf.ByteString;
 import com.stasbar.Logger;
 import io.raspberrywallet.contract.IncorrectPasswordException;
+import io.raspberrywallet.contract.KdfCost;
+import io.raspberrywallet.manager.common.ArrayDestroyer;
+import org.bitcoinj.crypto.KeyCrypter;
 import org.bitcoinj.crypto.KeyCrypterScrypt;
 import org.bitcoinj.wallet.Protos;
 import org.bitcoinj.wallet.Wallet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.spongycastle.crypto.params.KeyParameter;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -21,32 +25,125 @@ public class WalletCrypter {
             .setSalt(ByteString.copyFrom(KeyCrypterScrypt.randomSalt()))
             .build();
 
+    @Nullable
+    private final ScryptCalibration scryptCalibration;
+
+    /**
+     * Uses fixed scrypt parameters, regardless of the device
+     */
+    public WalletCrypter() {
+        this(null);
+    }
+
+    /**
+     * @param scryptCalibration source of scrypt parameters calibrated for this device
+     */
+    public WalletCrypter(@Nullable ScryptCalibration scryptCalibration) {
+        this.scryptCalibration = scryptCalibration;
+    }
 
     void decryptWallet(@NotNull Wallet wallet, @NotNull String password) throws IncorrectPasswordException {
         if (password.length() == 0 || password.length() < 4)
             throw new IncorrectPasswordException("Bad password. The password you entered is empty or too short.");
 
 
-        final KeyCrypterScrypt scrypt = (KeyCrypterScrypt) wallet.getKeyCrypter();
+        final KeyCrypter scrypt = parallelKeyCrypter(wallet.getKeyCrypter());
         checkNotNull(scrypt);   // We should never arrive at this GUI if the wallet isn't actually encrypted.
         KeyParameter aesKey = scrypt.deriveKey(password);
-        if (wallet.checkAESKey(aesKey)) {
-            wallet.decrypt(aesKey);
-        } else {
-            throw new IncorrectPasswordException("Incorrect password, Please try entering your password again, carefully checking for typos or spelling errors.");
+        try {
+            decryptWallet(wallet, aesKey);
+        } finally {
+            destroyKey(aesKey);
         }
     }
 
     public void encryptWallet(@NotNull Wallet wallet, @NotNull String password) throws IncorrectPasswordException {
+        KeyCrypter script = newKeyCrypter();
+        KeyParameter aesKey = deriveKey(script, password);
+        try {
+            encryptWallet(wallet, script, aesKey);
+        } finally {
+            destroyKey(aesKey);
+        }
+    }
+
+    /*
+     * Single derivation API, used when the same key is needed more than once within one operation
+     */
+
+    /**
+     * @return new key crypter with fresh salt, which should be used to encrypt the wallet
+     */
+    @NotNull
+    KeyCrypter newKeyCrypter() {
+        if (scryptCalibration == null)
+            return new ParallelKeyCrypterScrypt(SCRYPT_PARAMETERS);
+        return scryptCalibration.newKeyCrypter();
+    }
+
+    /**
+     * Wallets loaded from disk come with stock KeyCrypterScrypt, which computes scrypt lanes one by one.
+     * Derived key is the same, so we derive it with the parallel implementation instead.
+     */
+    @Nullable
+    private KeyCrypter parallelKeyCrypter(@Nullable KeyCrypter keyCrypter) {
+        if (!(keyCrypter instanceof KeyCrypterScrypt) || keyCrypter instanceof ParallelKeyCrypterScrypt)
+            return keyCrypter;
+        Protos.ScryptParameters parameters = ((KeyCrypterScrypt) keyCrypter).getScryptParameters();
+        if (scryptCalibration == null)
+            return new ParallelKeyCrypterScrypt(parameters);
+        return scryptCalibration.keyCrypterFor(parameters);
+    }
+
+    /**
+     * @return cost of the key derivation for newly encrypted wallets
+     */
+    @NotNull
+    KdfCost getKdfCost() {
+        if (scryptCalibration != null)
+            return scryptCalibration.getCost();
+        int concurrentLanes = new ParallelKeyCrypterScrypt(SCRYPT_PARAMETERS).getMaxConcurrentLanes();
+        long memoryBytes = ParallelKeyCrypterScrypt.laneMemoryBytes(SCRYPT_PARAMETERS.getN(), SCRYPT_PARAMETERS.getR())
+                * Math.min(SCRYPT_PARAMETERS.getP(), concurrentLanes);
+        return new KdfCost(SCRYPT_PARAMETERS.getN(), SCRYPT_PARAMETERS.getR(), SCRYPT_PARAMETERS.getP(),
+                -1, memoryBytes, null, 0);
+    }
+
+    /**
+     * Runs the scrypt derivation, the returned key should be passed to {@link #destroyKey(KeyParameter)} when done
+     */
+    @NotNull
+    KeyParameter deriveKey(@NotNull KeyCrypter keyCrypter, @NotNull String password) throws IncorrectPasswordException {
         // This is kind of arbitrary and we could do much more to help people pick strong passwords.
         if (password.length() < 4)
             throw new IncorrectPasswordException("Password too short. You need to pick a password at least five characters or longer.");
 
+        return keyCrypter.deriveKey(password);
+    }
 
-        KeyCrypterScrypt script = new KeyCrypterScrypt(SCRYPT_PARAMETERS);
-        KeyParameter aesKey = script.deriveKey(password);
+    /**
+     * Encrypts under the wallet's monitor, so {@link UtxoConsolidator} never signs with a wallet locked meanwhile
+     */
+    void encryptWallet(@NotNull Wallet wallet, @NotNull KeyCrypter keyCrypter, @NotNull KeyParameter aesKey) {
         Logger.info("Key derived, now encrypting");
-        wallet.encrypt(script, aesKey);
+        synchronized (wallet) {
+            wallet.encrypt(keyCrypter, aesKey);
+        }
         Logger.info("Wallet encrypted");
     }
+
+    void decryptWallet(@NotNull Wallet wallet, @NotNull KeyParameter aesKey) throws IncorrectPasswordException {
+        if (wallet.checkAESKey(aesKey)) {
+            wallet.decrypt(aesKey);
+        } else {
+            throw new IncorrectPasswordException("Incorrect password, Please try entering your password again, carefully checking for typos or spelling errors.");
+        }
+    }
+
+    /**
+     * Fills derived key with zeros, KeyParameter exposes its internal array so no copy is left behind
+     */
+    void destroyKey(@NotNull KeyParameter aesKey) {
+        ArrayDestroyer.destroy(aesKey.getKey());
+    }
 }
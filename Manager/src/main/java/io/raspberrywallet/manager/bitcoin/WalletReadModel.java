@@ -0,0 +1,372 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import com.stasbar.Logger;
+import io.raspberrywallet.contract.TransactionView;
+import org.bitcoinj.core.*;
+import org.bitcoinj.core.listeners.TransactionConfidenceEventListener;
+import org.bitcoinj.utils.Threading;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.listeners.KeyChainEventListener;
+import org.bitcoinj.wallet.listeners.WalletCoinsReceivedEventListener;
+import org.bitcoinj.wallet.listeners.WalletCoinsSentEventListener;
+import org.bitcoinj.wallet.listeners.WalletReorganizeEventListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Balances, current receive address and transaction views of a wallet, kept up to date by wallet listeners,
+ * so the values polled by the dashboard are returned from a prepared snapshot instead of walking the wallet.
+ * <p>
+ * Events are coalesced, the first one after a refresh schedules the next refresh on the listener executor and
+ * the events queued meanwhile, e.g. confidence of every transaction on a new block, are applied by the same
+ * refresh. Only transactions named by the events are mapped again, a transaction which just got deeper in the
+ * chain gets new number of confirmations only. Reads may lag behind the wallet until the refresh runs.
+ * The refresh passes the same changes on to {@link TransactionHistory}, if there is one. The first snapshot
+ * takes views of transactions which did not change since they were stored from the history instead of mapping them.
+ */
+public class WalletReadModel {
+    private static final Comparator<TransactionView> NEWEST_FIRST = Comparator
+            .comparingLong((TransactionView view) -> -view.getCreationTimestamp())
+            .thenComparing(TransactionView::getTxHash);
+
+    private final Wallet wallet;
+    private final NetworkParameters params;
+    @Nullable
+    private final TransactionHistory history;
+
+    private final Set<Sha256Hash> changed = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private volatile boolean rebuild = true;
+    /**
+     * Whether the next rebuild may take views from the history, only the first one does
+     */
+    private boolean seedFromHistory;
+    /**
+     * Views of the transactions in the snapshot by hash, used by refresh only
+     */
+    private final Map<Sha256Hash, Entry> entries = new HashMap<>();
+    private volatile Snapshot snapshot;
+
+    private final WalletCoinsReceivedEventListener coinsReceivedListener =
+            (wallet, tx, prevBalance, newBalance) -> changed(tx);
+    private final WalletCoinsSentEventListener coinsSentListener =
+            (wallet, tx, prevBalance, newBalance) -> changed(tx);
+    private final TransactionConfidenceEventListener confidenceListener = (wallet, tx) -> changed(tx);
+    private final WalletReorganizeEventListener reorganizeListener = wallet -> {
+        rebuild = true;
+        scheduleRefresh();
+    };
+    private final KeyChainEventListener keyChainListener = keys -> scheduleRefresh();
+
+    /**
+     * Builds the snapshot and starts following the wallet. Listeners and refreshes run on bitcoinj user thread,
+     * they must not run under wallet locks as the refresh takes them in different order.
+     */
+    public WalletReadModel(@NotNull Wallet wallet) {
+        this(wallet, null);
+    }
+
+    /**
+     * @param history history to keep in sync with the wallet, it's reconciled with the wallet by the first refresh
+     */
+    public WalletReadModel(@NotNull Wallet wallet, @Nullable TransactionHistory history) {
+        this.wallet = wallet;
+        this.params = wallet.getParams();
+        this.history = history;
+        this.seedFromHistory = history != null;
+        // listeners first, changes made while the first snapshot is built are applied by next refresh
+        wallet.addCoinsReceivedEventListener(coinsReceivedListener);
+        wallet.addCoinsSentEventListener(coinsSentListener);
+        wallet.addTransactionConfidenceEventListener(confidenceListener);
+        wallet.addReorganizeEventListener(reorganizeListener);
+        wallet.addKeyChainEventListener(keyChainListener);
+        refresh();
+    }
+
+    /**
+     * Stops following the wallet, e.g. when it's replaced by another one
+     */
+    public void detach() {
+        wallet.removeCoinsReceivedEventListener(coinsReceivedListener);
+        wallet.removeCoinsSentEventListener(coinsSentListener);
+        wallet.removeTransactionConfidenceEventListener(confidenceListener);
+        wallet.removeReorganizeEventListener(reorganizeListener);
+        wallet.removeKeyChainEventListener(keyChainListener);
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    /**
+     * @see Bitcoin#getEstimatedBalance()
+     */
+    public String getEstimatedBalance() {
+        return snapshot.estimatedBalance;
+    }
+
+    /**
+     * @see Bitcoin#getAvailableBalance()
+     */
+    public String getAvailableBalance() {
+        return snapshot.availableBalance;
+    }
+
+    public String getCurrentReceiveAddress() {
+        return snapshot.currentReceiveAddress;
+    }
+
+    /**
+     * @return unmodifiable list of transactions which are not dead, newest first
+     */
+    public List<TransactionView> getTransactions() {
+        return snapshot.transactionList;
+    }
+
+    private void changed(Transaction tx) {
+        changed.add(tx.getHash());
+        scheduleRefresh();
+    }
+
+    private void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true))
+            Threading.USER_THREAD.execute(this::refresh);
+    }
+
+    /**
+     * Maps all transactions again, e.g. for benchmarks of the worst case
+     */
+    void rebuild() {
+        rebuild = true;
+        refresh();
+    }
+
+    synchronized void refresh() {
+        refreshScheduled.set(false);
+        List<Sha256Hash> hashes = new ArrayList<>(changed);
+        changed.removeAll(hashes);
+
+        TransactionView[] transactions;
+        boolean rebuilt = rebuild;
+        if (rebuilt) {
+            rebuild = false;
+            entries.clear();
+            for (Transaction tx : wallet.getTransactions(false)) {
+                TransactionView stored = seedFromHistory ? storedView(tx) : null;
+                entries.put(tx.getHash(), new Entry(tx, stored != null ? stored : mapTransactionToTransactionView(tx)));
+            }
+            seedFromHistory = false;
+            transactions = entries.values().stream().map(entry -> entry.view)
+                    .sorted(NEWEST_FIRST).toArray(TransactionView[]::new);
+        } else if (!hashes.isEmpty()) {
+            transactions = update(snapshot.transactions, hashes);
+        } else {
+            transactions = snapshot.transactions;
+        }
+
+        snapshot = new Snapshot(
+                wallet.getBalance(Wallet.BalanceType.ESTIMATED).toFriendlyString(),
+                wallet.getBalance(Wallet.BalanceType.AVAILABLE).toFriendlyString(),
+                wallet.currentReceiveAddress().toBase58(),
+                transactions);
+        if (history != null)
+            updateHistory(history, rebuilt ? null : hashes);
+    }
+
+    /**
+     * @param hashes changed transactions, null to reconcile the history with all transactions
+     */
+    private void updateHistory(TransactionHistory history, @Nullable List<Sha256Hash> hashes) {
+        try {
+            if (hashes == null) {
+                Set<String> txHashes = new HashSet<>();
+                for (Entry entry : entries.values()) {
+                    history.put(entry.view, entry.appearedAtChainHeight);
+                    txHashes.add(entry.view.getTxHash());
+                }
+                history.retainAll(txHashes);
+            } else {
+                for (Sha256Hash hash : hashes) {
+                    Entry entry = entries.get(hash);
+                    if (entry != null)
+                        history.put(entry.view, entry.appearedAtChainHeight);
+                    else
+                        history.remove(hash.toString());
+                }
+            }
+            history.sync();
+        } catch (IOException e) {
+            // the next rebuild reconciles it again
+            Logger.err("Failed to update transaction history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return view of the transaction stored in the history, if it was seen at the same time and is in the same block
+     */
+    @Nullable
+    private TransactionView storedView(Transaction tx) {
+        TransactionConfidence confidence = tx.getConfidence();
+        int appearedAtChainHeight = confidence.getConfidenceType() == TransactionConfidence.ConfidenceType.BUILDING
+                ? confidence.getAppearedAtChainHeight() : -1;
+        try {
+            TransactionView view = history.find(tx.getHashAsString(), tx.getUpdateTime().getTime(), appearedAtChainHeight);
+            return view != null ? view.withConfirmations(confidence.getDepthInBlocks()) : null;
+        } catch (IOException e) {
+            Logger.err("Failed to read transaction history: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replaces views of the changed transactions and merges them into the sorted array in O(n + k log k)
+     */
+    private TransactionView[] update(TransactionView[] transactions, List<Sha256Hash> hashes) {
+        Set<String> replaced = new HashSet<>();
+        List<TransactionView> updated = new ArrayList<>();
+        for (Sha256Hash hash : hashes) {
+            Entry previous = entries.remove(hash);
+            if (previous != null)
+                replaced.add(previous.view.getTxHash());
+
+            Transaction tx = wallet.getTransaction(hash);
+            if (tx == null || tx.getConfidence().getConfidenceType() == TransactionConfidence.ConfidenceType.DEAD)
+                continue;
+            Entry entry = previous != null && previous.onlyDeeper(tx)
+                    ? new Entry(tx, previous.view.withConfirmations(tx.getConfidence().getDepthInBlocks()))
+                    : new Entry(tx, mapTransactionToTransactionView(tx));
+            entries.put(hash, entry);
+            updated.add(entry.view);
+        }
+        updated.sort(NEWEST_FIRST);
+
+        TransactionView[] merged = new TransactionView[transactions.length - replaced.size() + updated.size()];
+        int i = 0, u = 0, m = 0;
+        while (i < transactions.length || u < updated.size()) {
+            if (i < transactions.length && replaced.contains(transactions[i].getTxHash())) {
+                i++;
+            } else if (u == updated.size()
+                    || i < transactions.length && NEWEST_FIRST.compare(transactions[i], updated.get(u)) <= 0) {
+                merged[m++] = transactions[i++];
+            } else {
+                merged[m++] = updated.get(u++);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @param tx BitcoinJ specific transaction entity
+     * @return our domain specific transaction entity
+     */
+    @NotNull
+    private TransactionView mapTransactionToTransactionView(@NotNull Transaction tx) {
+        // SHA256(Transaction) in hex encoding
+        final String hashAsString = tx.getHashAsString();
+        // The earliest time at which the transaction was seen
+        final long creationTimestamp = tx.getUpdateTime().getTime();
+
+        // There are different ways of revealing address depending on the script type
+        // 1. P2PKH (Pay to public key hash)
+        // 2. P2SH (Pay to script hash)
+        // 3. P2PK (Pay to public key)
+        // 4. Segregated witness outputs
+        // 5. m-of-n bare multisig
+
+        // Collect input addresses in user friendly Base58 form
+        final List<String> inputAddresses = tx.getInputs().stream()
+                .map(transactionInput -> {
+                    if (transactionInput.isCoinBase()) return "Coinbase";
+                    else try {
+                        return new Address(params,
+                                Utils.sha256hash160(transactionInput
+                                        .getScriptSig()
+                                        .getPubKey()))
+                                .toBase58();
+
+                    } catch (ScriptException e1) {
+                        return "N/A or SegWit";
+                    }
+                }).collect(toList());
+
+
+        // Collect output addresses in user friendly Base58 form
+        final List<String> outputAddresses = tx.getOutputs().stream()
+                .map(transactionOutput ->
+                        transactionOutput
+                                .getScriptPubKey().getToAddress(params).toBase58()
+                ).collect(toList());
+
+        final String amountFromMe = tx.getValueSentFromMe(wallet).toFriendlyString();
+        final String amountToMe = tx.getValueSentToMe(wallet).toFriendlyString();
+
+
+        // Fee is the difference between outputs and inputs
+        long fee = Math.max(0, tx.getInputSum().getValue() - tx.getOutputSum().getValue());
+        final String feeFormatted = Coin.valueOf(fee).toFriendlyString();
+
+        // How many blocks have been placed on top of this transaction's block
+        final int confirmations = tx.getConfidence().getDepthInBlocks();
+        return new TransactionView(
+                hashAsString,
+                creationTimestamp,
+                Collections.unmodifiableList(inputAddresses),
+                Collections.unmodifiableList(outputAddresses),
+                amountFromMe,
+                amountToMe,
+                feeFormatted,
+                confirmations
+        );
+    }
+
+    private static class Entry {
+        final TransactionView view;
+        final TransactionConfidence.ConfidenceType confidenceType;
+        final int appearedAtChainHeight;
+        final long updateTime;
+
+        Entry(Transaction tx, TransactionView view) {
+            TransactionConfidence confidence = tx.getConfidence();
+            this.view = view;
+            this.confidenceType = confidence.getConfidenceType();
+            this.appearedAtChainHeight = confidenceType == TransactionConfidence.ConfidenceType.BUILDING
+                    ? confidence.getAppearedAtChainHeight() : -1;
+            this.updateTime = tx.getUpdateTime().getTime();
+        }
+
+        /**
+         * @return true if the transaction stays in the same block and only blocks were added on top of it
+         */
+        boolean onlyDeeper(Transaction tx) {
+            TransactionConfidence confidence = tx.getConfidence();
+            return confidenceType == TransactionConfidence.ConfidenceType.BUILDING
+                    && confidence.getConfidenceType() == TransactionConfidence.ConfidenceType.BUILDING
+                    && confidence.getAppearedAtChainHeight() == appearedAtChainHeight
+                    && tx.getUpdateTime().getTime() == updateTime;
+        }
+    }
+
+    private static class Snapshot {
+        final String estimatedBalance;
+        final String availableBalance;
+        final String currentReceiveAddress;
+        final TransactionView[] transactions;
+        final List<TransactionView> transactionList;
+
+        Snapshot(String estimatedBalance, String availableBalance, String currentReceiveAddress,
+                 TransactionView[] transactions) {
+            this.estimatedBalance = estimatedBalance;
+            this.availableBalance = availableBalance;
+            this.currentReceiveAddress = currentReceiveAddress;
+            this.transactions = transactions;
+            this.transactionList = Collections.unmodifiableList(Arrays.asList(transactions));
+        }
+    }
+}
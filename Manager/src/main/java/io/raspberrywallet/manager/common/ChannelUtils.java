@@ -0,0 +1,53 @@
+package io.raspberrywallet.manager.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+public abstract class ChannelUtils {
+    
+    private ChannelUtils() {}
+    
+    /**
+     * Reads from channel until the buffer is full. Unlike single read, it does not stop on short reads from pipes.
+     * @throws EOFException if the channel ends before the buffer is filled
+     */
+    public static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Unexpected end of channel, " + buffer.remaining() + " bytes missing");
+        }
+    }
+    
+    /**
+     * Writes all remaining bytes of the buffer, single write may take only part of them.
+     */
+    public static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+    
+    /**
+     * Positional variant of {@link #readFully(ReadableByteChannel, ByteBuffer)}, safe to call from many threads at once.
+     */
+    public static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new EOFException("Unexpected end of file, " + buffer.remaining() + " bytes missing");
+            position += read;
+        }
+    }
+    
+    /**
+     * Positional variant of {@link #writeFully(WritableByteChannel, ByteBuffer)}, safe to call from many threads at once.
+     */
+    public static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+    
+}
@@ -0,0 +1,91 @@
+package io.raspberrywallet.manager.cryptography.common;
+
+import io.raspberrywallet.manager.common.interfaces.Destroyable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds a single secret outside of the Java heap, so it is not copied around by the garbage collector
+ * and can be reliably zeroed. The secret expires after given lifetime and is wiped on {@link #invalidate()}.
+ */
+public class SecretCache implements Destroyable {
+    @NotNull
+    private final Duration lifetime;
+    @NotNull
+    private final LongSupplier nanoTime;
+
+    @Nullable
+    private ByteBuffer buffer;
+    private int length;
+    private long expiresAtNanos;
+
+    public SecretCache(@NotNull Duration lifetime) {
+        this(lifetime, System::nanoTime);
+    }
+
+    SecretCache(@NotNull Duration lifetime, @NotNull LongSupplier nanoTime) {
+        this.lifetime = lifetime;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Stores copy of the secret, replacing the previous one, caller stays responsible for destroying its own array
+     */
+    public synchronized void put(@NotNull byte[] secret) {
+        wipe();
+        if (buffer == null || buffer.capacity() < secret.length)
+            buffer = ByteBuffer.allocateDirect(secret.length);
+        buffer.clear();
+        buffer.put(secret);
+        length = secret.length;
+        expiresAtNanos = nanoTime.getAsLong() + lifetime.toNanos();
+    }
+
+    /**
+     * @return copy of the secret which should be destroyed by the caller, or null if there is none or it expired
+     */
+    @Nullable
+    public synchronized byte[] get() {
+        if (!isPresent())
+            return null;
+        byte[] secret = new byte[length];
+        buffer.clear();
+        buffer.get(secret);
+        return secret;
+    }
+
+    public synchronized boolean isPresent() {
+        if (length == 0)
+            return false;
+        if (nanoTime.getAsLong() - expiresAtNanos >= 0) {
+            wipe();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Overwrites stored secret with zeros
+     */
+    public synchronized void invalidate() {
+        wipe();
+    }
+
+    @Override
+    public void destroy() {
+        invalidate();
+    }
+
+    private void wipe() {
+        if (buffer != null) {
+            buffer.clear();
+            while (buffer.hasRemaining())
+                buffer.put((byte) 0);
+        }
+        length = 0;
+    }
+}
@@ -1,5 +1,8 @@
 package io.raspberrywallet.manager.cryptography.crypto;
 
+import io.raspberrywallet.manager.common.ChannelUtils;
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.CipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
 import org.apache.commons.lang.SerializationUtils;
 
 import java.io.IOException;
@@ -8,6 +11,9 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * This class is needed for reading/writing header to stream with encrypted data.
@@ -21,6 +27,8 @@ import java.nio.ByteOrder;
  * other data   -> serialized object, which is real header
  *
  * You can use any object as header and this class is going to handle read/write operations.
+ * CipherParams are written in {@link EncryptedObjectCodec} format, other objects and headers written before
+ * that format existed go through Java serialization.
  */
 
 class CipherHeaderManager {
@@ -28,9 +36,13 @@ class CipherHeaderManager {
     // in bytes
     private final static int HEADER_METADATA_SIZE = 5;
     private final static int INT_SIZE = 4;
+    /**
+     * Cipher params take tens of bytes, Java serialized ones a few hundred, the length is read from the file
+     */
+    private final static int MAX_CIPHER_DATA_SIZE = 16 * 1024;
     
     static <E extends Serializable> void writeCipherData(E cipherData, OutputStream outputStream) throws IOException {
-        byte[] cipherDataSerialized = SerializationUtils.serialize(cipherData);
+        byte[] cipherDataSerialized = serialize(cipherData);
         byte[] serializedDataLength = convertIntToByteArray(cipherDataSerialized.length);
         
         outputStream.write(getEndianByte());
@@ -39,12 +51,54 @@ class CipherHeaderManager {
     }
     
     static <E extends Serializable> E readCipherData(InputStream inputStream) throws IOException {
-        int cipherDataLength = getHeaderSize(inputStream);
-        
-        byte[] cipherDataBytes = new byte[cipherDataLength];
-        inputStream.read(cipherDataBytes, 0, cipherDataLength);
+        return readCipherData(Channels.newChannel(inputStream));
+    }
+    
+    /**
+     * Writes whole header with a single write, so it can be followed by encrypted data in the same channel
+     */
+    static <E extends Serializable> void writeCipherData(E cipherData, WritableByteChannel channel) throws IOException {
+        byte[] cipherDataSerialized = serialize(cipherData);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_METADATA_SIZE + cipherDataSerialized.length);
+        header.put(getEndianByte());
+        header.put(convertIntToByteArray(cipherDataSerialized.length));
+        header.put(cipherDataSerialized);
+        header.flip();
+        ChannelUtils.writeFully(channel, header);
+    }
+    
+    /**
+     * Reads exactly the header, channel is left at the first byte of encrypted data
+     */
+    static <E extends Serializable> E readCipherData(ReadableByteChannel channel) throws IOException {
+        ByteBuffer metadata = ByteBuffer.allocate(HEADER_METADATA_SIZE);
+        ChannelUtils.readFully(channel, metadata);
+        metadata.flip();
+        byte isBigEndian = metadata.get();
+        metadata.order(isBigEndian == 1 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int cipherDataLength = metadata.getInt();
+        if (cipherDataLength <= 0 || cipherDataLength > MAX_CIPHER_DATA_SIZE)
+            throw new IOException("Corrupted cipher header, data length: " + cipherDataLength);
         
-        return (E)SerializationUtils.deserialize(cipherDataBytes);
+        ByteBuffer cipherData = ByteBuffer.allocate(cipherDataLength);
+        ChannelUtils.readFully(channel, cipherData);
+        return deserialize(cipherData.array());
+    }
+    
+    private static byte[] serialize(Serializable cipherData) {
+        if (cipherData instanceof CipherParams)
+            return EncryptedObjectCodec.encodeParams((CipherParams) cipherData);
+        return SerializationUtils.serialize(cipherData);
+    }
+    
+    private static <E extends Serializable> E deserialize(byte[] cipherData) throws IOException {
+        if (!EncryptedObjectCodec.isEncoded(cipherData))
+            return (E)SerializationUtils.deserialize(cipherData);
+        try {
+            return (E)EncryptedObjectCodec.decodeParams(cipherData);
+        } catch (DecryptionException e) {
+            throw new IOException(e);
+        }
     }
     
     static int getTotalHeaderSize(InputStream inputStream) throws IOException {
@@ -55,10 +109,6 @@ class CipherHeaderManager {
         return cipherDataLength + HEADER_METADATA_SIZE;
     }
     
-    private static int getHeaderSize(InputStream inputStream) throws IOException {
-        return getTotalHeaderSize(inputStream) - HEADER_METADATA_SIZE;
-    }
-    
     private static int getCipherDataLength(byte[] bytesWithCipherDataLength, byte isBigEndian) {
         return isBigEndian == 1 ? convertByteArrayToInt(bytesWithCipherDataLength, true)
                 : convertByteArrayToInt(bytesWithCipherDataLength, false);
@@ -4,6 +4,7 @@ import io.raspberrywallet.manager.cryptography.crypto.algorithms.AESCipherParams
 import io.raspberrywallet.manager.cryptography.crypto.algorithms.RSACipherParams;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+import org.apache.commons.lang.SerializationException;
 import org.apache.commons.lang.SerializationUtils;
 
 import javax.crypto.BadPaddingException;
@@ -63,6 +64,40 @@ public class CryptoObject {
         }
     }
     
+    /**
+     * This method is using AES algorithm to encrypt given bytes and encode them with their AES parameters
+     * in {@link EncryptedObjectCodec} format, without Java serialization.
+     * @param data Bytes to encrypt, they are not modified.
+     * @param password Password that will be used with PBEKeySpec for AES encryption.
+     * @return Encoded encrypted data, which can be decrypted with {@link #decryptBytes(byte[], String)}.
+     * @throws EncryptionException If there is any error with encryption, then it's caught and thrown as
+     *                             EncryptionException, with original or custom error message.
+     */
+    public static byte[] encryptBytes(byte[] data, String password) throws EncryptionException {
+        return encryptBytes(data, password, new AESCipherParams());
+    }
+    
+    /**
+     * Same as {@link #encryptBytes(byte[], String)}, but with given AES parameters. Use it with
+     * {@link AESCipherParams#withNewIv()} of previously encrypted data to skip deriving the key again.
+     * @param data Bytes to encrypt, they are not modified.
+     * @param password Password that will be used with PBEKeySpec for AES encryption.
+     * @param aesCipherParams Parameters used for encryption, they must never be used to encrypt other data.
+     * @return Encoded encrypted data, which can be decrypted with {@link #decryptBytes(byte[], String)}.
+     * @throws EncryptionException If there is any error with encryption, then it's caught and thrown as
+     *                             EncryptionException, with original or custom error message.
+     */
+    public static byte[] encryptBytes(byte[] data, String password, AESCipherParams aesCipherParams) throws EncryptionException {
+        try {
+            Cipher cipher = aesCipherParams.getCipher(password, Cipher.ENCRYPT_MODE);
+            
+            byte[] encryptedData = cipher.doFinal(data);
+            return EncryptedObjectCodec.encode(new AESEncryptedObject<>(encryptedData, aesCipherParams));
+        } catch (NoSuchAlgorithmException | InvalidKeyException | InvalidAlgorithmParameterException | NoSuchPaddingException | BadPaddingException | IllegalBlockSizeException | InvalidKeySpecException exception) {
+            throw new EncryptionException(exception);
+        }
+    }
+    
     private static byte[] encrypt(Serializable object, Cipher cipher) throws BadPaddingException, IllegalBlockSizeException {
         byte[] serializedObject = SerializationUtils.serialize(object);
         return cipher.doFinal(serializedObject);
@@ -118,6 +153,44 @@ public class CryptoObject {
         }
     }
     
+    /**
+     * This method is used for decryption of bytes encrypted with {@link #encryptBytes(byte[], String)}.
+     * @param data Encoded encrypted data.
+     * @param password Password that will be used for creating PBBKeySpec for AES decryption.
+     * @return Decrypted bytes, the caller should destroy them when done.
+     * @throws DecryptionException If data is not in {@link EncryptedObjectCodec} format or there is any error in
+     *                             decryption, then it is caught and thrown as DecryptionException.
+     */
+    public static byte[] decryptBytes(byte[] data, String password) throws DecryptionException {
+        AESEncryptedObject<?> object = EncryptedObjectCodec.decode(data);
+        try {
+            Cipher cipher = object.getCipherParams().getCipher(password, Cipher.DECRYPT_MODE);
+            
+            return cipher.doFinal(object.getSerializedObject());
+        } catch (NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException | InvalidAlgorithmParameterException | InvalidKeySpecException | BadPaddingException | IllegalBlockSizeException exception) {
+            throw new DecryptionException(exception);
+        }
+    }
+    
+    /**
+     * This method is used for decryption of data written before {@link EncryptedObjectCodec} existed,
+     * which is Java serialized AESEncryptedObject, check it with {@link EncryptedObjectCodec#isLegacy(byte[])}.
+     * @param data Serialized AESEncryptedObject.
+     * @param password Password that will be used for creating PBBKeySpec for AES decryption.
+     * @param <E> A type of an object, that is stored inside AESEncryptedObject wrapper class.
+     * @return Original, decrypted and deserialized object.
+     * @throws DecryptionException If there is any error in deserialization or decryption.
+     */
+    public static <E extends Serializable> E decryptLegacy(byte[] data, String password) throws DecryptionException {
+        AESEncryptedObject<E> object;
+        try {
+            object = (AESEncryptedObject<E>) SerializationUtils.deserialize(data);
+        } catch (SerializationException | ClassCastException exception) {
+            throw new DecryptionException(exception);
+        }
+        return decrypt(object, password);
+    }
+    
     private static <E extends Serializable> E decrypt(EncryptedObject<E> object, Cipher cipher) throws BadPaddingException, IllegalBlockSizeException {
         byte[] decryptedObject = cipher.doFinal(object.getSerializedObject());
         return object.getOriginalObject(decryptedObject);
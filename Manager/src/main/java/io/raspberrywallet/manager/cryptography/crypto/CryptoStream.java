@@ -5,23 +5,33 @@ import io.raspberrywallet.manager.cryptography.crypto.algorithms.RSACipherParams
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
 
+import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
+import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.*;
 import java.security.spec.InvalidKeySpecException;
 
 /**
  * Class that is used for Stream encryption and decryption.
- * It keeps instances of streams to encrypt or decrypt.
+ * It keeps instances of channels to encrypt or decrypt, data is processed in chunks through pooled direct buffers.
+ * Encrypted output starts with a header written by {@link CipherHeaderManager}, followed by the cipher text.
+ * Target is closed when the operation finishes.
  */
 public class CryptoStream {
     
-    final private InputStream inputStream;
-    final private OutputStream outputStream;
+    final private ReadableByteChannel source;
+    final private WritableByteChannel target;
     
     /**
      * Pass streams that are going to be encrypted or decrypted.
@@ -29,16 +39,45 @@ public class CryptoStream {
      * @param outputStream To this stream, the encryption or decryption operation will save the data.
      */
     public CryptoStream(InputStream inputStream, OutputStream outputStream) {
-        this.inputStream = inputStream;
-        this.outputStream = outputStream;
+        this(Channels.newChannel(inputStream), Channels.newChannel(outputStream));
     }
     
     /**
-     * Method transferTo was added in Java 9 and it's simple work around to keep with Java 8.
+     * Pass channels that are going to be encrypted or decrypted, preferably FileChannels.
+     * @param source From this channel, the encryption or decryption operation will fetch the data.
+     * @param target To this channel, the encryption or decryption operation will save the data.
      */
-    private static void transferTo(InputStream inputStream, OutputStream outputStream) throws IOException {
-        while (inputStream.available() > 0)
-            outputStream.write(inputStream.read());
+    public CryptoStream(ReadableByteChannel source, WritableByteChannel target) {
+        this.source = source;
+        this.target = target;
+    }
+    
+    /**
+     * Encrypts the file with AES, target file is created or overwritten.
+     */
+    public static void encryptFile(Path sourceFile, Path targetFile, String password) throws EncryptionException {
+        try (FileChannel source = FileChannel.open(sourceFile, StandardOpenOption.READ);
+             FileChannel target = openForWriting(targetFile)) {
+            new CryptoStream(source, target).encrypt(password);
+        } catch (IOException e) {
+            throw new EncryptionException(e);
+        }
+    }
+    
+    /**
+     * Decrypts the file encrypted with {@link #encryptFile(Path, Path, String)}, target file is created or overwritten.
+     */
+    public static void decryptFile(Path sourceFile, Path targetFile, String password) throws DecryptionException {
+        try (FileChannel source = FileChannel.open(sourceFile, StandardOpenOption.READ);
+             FileChannel target = openForWriting(targetFile)) {
+            new CryptoStream(source, target).decrypt(password);
+        } catch (IOException e) {
+            throw new DecryptionException(e);
+        }
+    }
+    
+    private static FileChannel openForWriting(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
     }
     
     // encryption
@@ -54,10 +93,11 @@ public class CryptoStream {
         try {
             AESCipherParams aesCipherParams = new AESCipherParams();
             Cipher cipher = aesCipherParams.getCipher(password, Cipher.ENCRYPT_MODE);
-    
+            
+            CipherHeaderManager.writeCipherData(aesCipherParams, target);
             encrypt(cipher);
         }
-        catch (IOException | InvalidKeyException e) {
+        catch (IOException | InvalidKeyException | ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
             throw new EncryptionException(e);
         }
         catch (NoSuchPaddingException | NoSuchAlgorithmException | InvalidAlgorithmParameterException | InvalidKeySpecException e) {
@@ -76,9 +116,10 @@ public class CryptoStream {
         try {
             Cipher cipher = cipherFactory.getEncryptCipher(publicKey);
             
+            CipherHeaderManager.writeCipherData(cipherFactory, target);
             encrypt(cipher);
         }
-        catch (IOException | InvalidKeyException exception) {
+        catch (IOException | InvalidKeyException | ShortBufferException | IllegalBlockSizeException | BadPaddingException exception) {
             throw new EncryptionException(exception);
         }
         catch (NoSuchPaddingException | NoSuchAlgorithmException e) {
@@ -87,9 +128,9 @@ public class CryptoStream {
         }
     }
     
-    private void encrypt(Cipher cipher) throws IOException {
-        try (CipherOutputStream cipherOutputStream = new CipherOutputStream(outputStream, cipher)) {
-            transferTo(inputStream, cipherOutputStream);
+    private void encrypt(Cipher cipher) throws IOException, ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        try (WritableByteChannel target = this.target) {
+            StreamingCipher.transfer(cipher, source, target);
         }
     }
     
@@ -104,10 +145,11 @@ public class CryptoStream {
      */
     public void decrypt(String password) throws DecryptionException {
         try {
-            AESCipherParams aesCipherParams = CipherHeaderManager.readCipherData(inputStream);
+            AESCipherParams aesCipherParams = CipherHeaderManager.readCipherData(source);
             Cipher cipher = aesCipherParams.getCipher(password, Cipher.DECRYPT_MODE);
             decrypt(cipher);
-        } catch (IOException | NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException | InvalidAlgorithmParameterException | InvalidKeySpecException exception) {
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException | InvalidAlgorithmParameterException | InvalidKeySpecException
+                | ShortBufferException | IllegalBlockSizeException | BadPaddingException | ClassCastException exception) {
             throw new DecryptionException(exception);
         }
     }
@@ -121,18 +163,19 @@ public class CryptoStream {
      */
     public void decrypt(PrivateKey privateKey) throws DecryptionException {
         try {
-            RSACipherParams rsaCipherParams = CipherHeaderManager.readCipherData(inputStream);
+            RSACipherParams rsaCipherParams = CipherHeaderManager.readCipherData(source);
             Cipher cipher = rsaCipherParams.getDecryptCipher(privateKey);
             
             decrypt(cipher);
-        } catch (NoSuchPaddingException | NoSuchAlgorithmException | InvalidKeyException | IOException exception) {
+        } catch (NoSuchPaddingException | NoSuchAlgorithmException | InvalidKeyException | IOException
+                | ShortBufferException | IllegalBlockSizeException | BadPaddingException | ClassCastException exception) {
             throw new DecryptionException(exception);
         }
     }
     
-    private void decrypt(Cipher cipher) throws IOException {
-        try (CipherOutputStream cipherOutputStream = new CipherOutputStream(outputStream, cipher)) {
-             transferTo(inputStream, cipherOutputStream);
+    private void decrypt(Cipher cipher) throws IOException, ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        try (WritableByteChannel target = this.target) {
+            StreamingCipher.transfer(cipher, source, target);
         }
     }
 }
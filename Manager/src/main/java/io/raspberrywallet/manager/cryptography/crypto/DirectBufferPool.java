@@ -0,0 +1,55 @@
+package io.raspberrywallet.manager.cryptography.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct buffers of equal size. Allocating direct memory is expensive and it is released only by GC,
+ * so buffers are reused between operations instead. Buffers hold plaintext, they are zeroed before going back.
+ */
+class DirectBufferPool {
+    
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    
+    DirectBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+    
+    int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /**
+     * @return cleared buffer of pool's size, pooled one if available
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(bufferSize);
+        pooled.decrementAndGet();
+        return buffer;
+    }
+    
+    /**
+     * Zeroes the buffer and keeps it for later, unless the pool is already full
+     */
+    void release(ByteBuffer buffer) {
+        buffer.clear();
+        while (buffer.remaining() >= Long.BYTES)
+            buffer.putLong(0);
+        while (buffer.hasRemaining())
+            buffer.put((byte) 0);
+        buffer.clear();
+        
+        if (buffer.capacity() == bufferSize && pooled.incrementAndGet() <= maxPooled)
+            buffers.offer(buffer);
+        else if (buffer.capacity() == bufferSize)
+            pooled.decrementAndGet();
+    }
+    
+}
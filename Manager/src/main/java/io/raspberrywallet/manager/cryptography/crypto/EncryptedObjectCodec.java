@@ -0,0 +1,187 @@
+package io.raspberrywallet.manager.cryptography.crypto;
+
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.AESCipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.CipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.RSACipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary format of encrypted objects and cipher parameters, replacing Java serialization of
+ * {@link AESEncryptedObject} and {@link CipherParams}. It is not tied to class names and takes a single allocation.
+ *
+ * How this works:
+ * magic        -> 4 bytes "RWEO", Java serialization starts with 0xACED so the formats can't be confused
+ * version      -> 1 byte
+ * algorithm    -> 1 byte id, see ALGORITHM_* constants
+ * AES          -> key size (2 bytes), iteration count (4 bytes), salt and IV (1 byte length followed by bytes)
+ * RSA          -> key size (2 bytes)
+ * cipher text  -> 4 bytes length followed by bytes, only in encoded objects
+ *
+ * All numbers are big endian.
+ */
+public class EncryptedObjectCodec {
+
+    private final static byte[] MAGIC = {'R', 'W', 'E', 'O'};
+    private final static byte VERSION = 1;
+    private final static int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    // AES/CBC/PKCS5Padding, key derived with PBKDF2WithHmacSHA1
+    private final static byte ALGORITHM_AES_CBC_PBKDF2_SHA1 = 1;
+    // RSA/ECB/OAEPWithSHA-256AndMGF1Padding
+    private final static byte ALGORITHM_RSA_OAEP_SHA256 = 2;
+
+    private final static String AES_NAME = "AES";
+    private final static String AES_FULL_NAME = "AES/CBC/PKCS5Padding";
+    private final static String AES_HASH_NAME = "PBKDF2WithHmacSHA1";
+    private final static String RSA_NAME = "RSA";
+    private final static String RSA_FULL_NAME = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
+
+    private EncryptedObjectCodec() {}
+
+    /**
+     * @return true if data was written with Java serialization, before this format existed
+     */
+    public static boolean isLegacy(byte[] data) {
+        return data.length >= 2 && ((data[0] & 0xff) << 8 | data[1] & 0xff) == JAVA_SERIALIZATION_MAGIC;
+    }
+
+    /**
+     * @return true if data starts with this format's magic
+     */
+    static boolean isEncoded(byte[] data) {
+        if (data.length < MAGIC.length)
+            return false;
+        for (int i = 0; i < MAGIC.length; i++)
+            if (data[i] != MAGIC[i])
+                return false;
+        return true;
+    }
+
+    public static byte[] encode(AESEncryptedObject<?> object) {
+        byte[] cipherText = object.getSerializedObject();
+        AESCipherParams params = object.getCipherParams();
+        ByteBuffer buffer = ByteBuffer.allocate(paramsSize(params) + 4 + cipherText.length);
+        putParams(buffer, params);
+        buffer.putInt(cipherText.length);
+        buffer.put(cipherText);
+        return buffer.array();
+    }
+
+    /**
+     * @throws DecryptionException if data is not in this format or it is corrupted
+     */
+    public static <E extends Serializable> AESEncryptedObject<E> decode(byte[] data) throws DecryptionException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            CipherParams params = getParams(buffer);
+            if (!(params instanceof AESCipherParams))
+                throw new DecryptionException("Expected AES encrypted object, got " + params.getAlgorithmFullName());
+
+            byte[] cipherText = getBytes(buffer, buffer.getInt());
+            if (buffer.hasRemaining())
+                throw new DecryptionException("Unexpected " + buffer.remaining() + " bytes after encrypted object");
+            return new AESEncryptedObject<>(cipherText, (AESCipherParams) params);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new DecryptionException(e);
+        }
+    }
+
+    public static byte[] encodeParams(CipherParams params) {
+        ByteBuffer buffer = ByteBuffer.allocate(paramsSize(params));
+        putParams(buffer, params);
+        return buffer.array();
+    }
+
+    /**
+     * @throws DecryptionException if data is not in this format or it is corrupted
+     */
+    public static CipherParams decodeParams(byte[] data) throws DecryptionException {
+        try {
+            return getParams(ByteBuffer.wrap(data));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new DecryptionException(e);
+        }
+    }
+
+    private static int paramsSize(CipherParams params) {
+        int size = MAGIC.length + 1 + 1 + 2;
+        if (params instanceof AESCipherParams) {
+            AESCipherParams aesParams = (AESCipherParams) params;
+            size += 4 + 1 + aesParams.getKeySalt().length + 1 + aesParams.getIvBytes().length;
+        }
+        return size;
+    }
+
+    private static void putParams(ByteBuffer buffer, CipherParams params) {
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+        buffer.put(algorithmId(params));
+        buffer.putShort(checkedShort(params.getKeySize()));
+        if (params instanceof AESCipherParams) {
+            AESCipherParams aesParams = (AESCipherParams) params;
+            buffer.putInt(aesParams.getIterationsAmount());
+            putShortBytes(buffer, aesParams.getKeySalt());
+            putShortBytes(buffer, aesParams.getIvBytes());
+        }
+    }
+
+    private static CipherParams getParams(ByteBuffer buffer) throws DecryptionException {
+        byte[] magic = getBytes(buffer, MAGIC.length);
+        for (int i = 0; i < MAGIC.length; i++)
+            if (magic[i] != MAGIC[i])
+                throw new DecryptionException("Not an encrypted object");
+        byte version = buffer.get();
+        if (version != VERSION)
+            throw new DecryptionException("Unsupported encrypted object version: " + version);
+
+        byte algorithm = buffer.get();
+        int keySize = buffer.getShort() & 0xffff;
+        switch (algorithm) {
+            case ALGORITHM_AES_CBC_PBKDF2_SHA1:
+                int iterations = buffer.getInt();
+                byte[] salt = getBytes(buffer, buffer.get() & 0xff);
+                byte[] iv = getBytes(buffer, buffer.get() & 0xff);
+                return new AESCipherParams(AES_NAME, AES_FULL_NAME, AES_HASH_NAME, keySize, iterations, salt, iv);
+            case ALGORITHM_RSA_OAEP_SHA256:
+                return new RSACipherParams(RSA_NAME, RSA_FULL_NAME, keySize);
+            default:
+                throw new DecryptionException("Unknown encryption algorithm: " + algorithm);
+        }
+    }
+
+    private static byte algorithmId(CipherParams params) {
+        if (params instanceof AESCipherParams
+                && AES_FULL_NAME.equals(params.getAlgorithmFullName())
+                && AES_HASH_NAME.equals(((AESCipherParams) params).getHashAlgorithmName()))
+            return ALGORITHM_AES_CBC_PBKDF2_SHA1;
+        if (params instanceof RSACipherParams && RSA_FULL_NAME.equals(params.getAlgorithmFullName()))
+            return ALGORITHM_RSA_OAEP_SHA256;
+        throw new IllegalArgumentException("No algorithm id for " + params.getAlgorithmFullName());
+    }
+
+    private static short checkedShort(int value) {
+        if (value < 0 || value > 0xffff)
+            throw new IllegalArgumentException("Value doesn't fit into 2 bytes: " + value);
+        return (short) value;
+    }
+
+    private static void putShortBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes.length > 0xff)
+            throw new IllegalArgumentException("Too long: " + bytes.length);
+        buffer.put((byte) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining())
+            throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+}
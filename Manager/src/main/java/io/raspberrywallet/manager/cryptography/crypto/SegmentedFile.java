@@ -0,0 +1,416 @@
+package io.raspberrywallet.manager.cryptography.crypto;
+
+import io.raspberrywallet.manager.common.ArrayDestroyer;
+import io.raspberrywallet.manager.common.ChannelUtils;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Encrypted file split into fixed-size segments, each of them sealed separately with AES-GCM.
+ * Unlike {@link CryptoStream}, segments are encrypted and decrypted in parallel on a fork-join pool of its own
+ * and any byte range can be read without decrypting the rest of the file.
+ *
+ * How this works:
+ * header       -> magic "RWSG", version, segment size, plaintext size, PBKDF2 iterations, salt, nonce prefix
+ * segment i    -> min(segment size, remaining plaintext) bytes of cipher text followed by 16 bytes GCM tag
+ *
+ * Per-file key is derived from the password and random salt with PBKDF2. Nonce of segment i is
+ * nonce prefix, i as 4 bytes big endian and a byte set to 1 for the last segment, so segments cannot be
+ * reordered or the file truncated unnoticed. Header is authenticated as additional data of every segment.
+ * Empty file still has a single, empty segment.
+ */
+public class SegmentedFile implements Closeable {
+
+    final static int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    // header is not authenticated until the first segment is decrypted, so its segment size must be sane before that
+    final static int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private final static byte[] MAGIC = {'R', 'W', 'S', 'G'};
+    private final static byte VERSION = 1;
+    private final static String ALGORITHM_FULL_NAME = "AES/GCM/NoPadding";
+    private final static String HASH_ALGORITHM_NAME = "PBKDF2WithHmacSHA256";
+    private final static int KEY_SIZE = 256;
+    private final static int KEY_HASH_ITERATIONS_AMOUNT = 16000;
+    private final static int SALT_SIZE = 16;
+    private final static int NONCE_PREFIX_SIZE = 7;
+    private final static int TAG_SIZE = 16;
+    // magic, version, segment size, plaintext size, iterations, salt, nonce prefix
+    final static int HEADER_SIZE = MAGIC.length + 1 + 4 + 8 + 4 + SALT_SIZE + NONCE_PREFIX_SIZE;
+    // below that many segments it is not worth to fork
+    private final static int SEGMENTS_PER_TASK = 8;
+    // segment tasks block on file I/O, so they must not occupy the common pool shared with the rest of the JVM
+    private final static ForkJoinPool POOL = new ForkJoinPool(Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final FileChannel channel;
+    private final Header header;
+    private final SecretKeySpec key;
+
+    private SegmentedFile(FileChannel channel, Header header, SecretKeySpec key) {
+        this.channel = channel;
+        this.header = header;
+        this.key = key;
+    }
+
+    // encryption
+
+    /**
+     * Encrypts the file into segmented format, target file is created or overwritten.
+     * @param password Password that will be used with PBKDF2 to derive the key of this file.
+     * @throws EncryptionException If there is any error with encryption, then it's caught and thrown as
+     *                             EncryptionException, with original or custom error message.
+     */
+    public static void encrypt(Path sourceFile, Path targetFile, String password) throws EncryptionException {
+        encrypt(sourceFile, targetFile, password, DEFAULT_SEGMENT_SIZE);
+    }
+
+    static void encrypt(Path sourceFile, Path targetFile, String password, int segmentSize) throws EncryptionException {
+        try (FileChannel source = FileChannel.open(sourceFile, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(targetFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            Header header = Header.create(segmentSize, source.size());
+            SecretKeySpec key = deriveKey(password, header);
+
+            ChannelUtils.writeFully(target, ByteBuffer.wrap(header.bytes), 0);
+            invoke(new Segments(header, 0, header.segmentCount(), (cipher, index, plain, sealed) -> {
+                plain.limit(header.plainLength(index));
+                ChannelUtils.readFully(source, plain, header.plainOffset(index));
+                plain.flip();
+
+                initCipher(cipher, Cipher.ENCRYPT_MODE, key, header, index);
+                cipher.doFinal(plain, sealed);
+                sealed.flip();
+                ChannelUtils.writeFully(target, sealed, header.sealedOffset(index));
+            }));
+            target.truncate(header.encryptedSize());
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            throw new EncryptionException(e);
+        }
+    }
+
+    // decryption
+
+    /**
+     * Opens segmented file for reading, nothing is decrypted until read.
+     * @param password Password the file was encrypted with.
+     * @throws DecryptionException If the file is not in segmented format or it was truncated.
+     */
+    public static SegmentedFile open(Path file, String password) throws DecryptionException {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            ByteBuffer headerBytes = ByteBuffer.allocate(HEADER_SIZE);
+            ChannelUtils.readFully(channel, headerBytes, 0);
+            Header header = Header.parse(headerBytes.array());
+            if (channel.size() != header.encryptedSize())
+                throw new DecryptionException("Segmented file has " + channel.size() + " bytes, expected " + header.encryptedSize());
+
+            return new SegmentedFile(channel, header, deriveKey(password, header));
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            closeQuietly(channel);
+            throw new DecryptionException(e);
+        } catch (DecryptionException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * @return size of decrypted content
+     */
+    public long size() {
+        return header.plaintextSize;
+    }
+
+    /**
+     * Decrypts bytes starting at given position of the content, only segments overlapping the range are touched.
+     * @return number of bytes read, which is less than remaining bytes of destination only at the end of content,
+     *         or -1 if position is at or past the end
+     * @throws DecryptionException If any of read segments was modified or the password is wrong.
+     */
+    public int read(long position, ByteBuffer destination) throws DecryptionException {
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position: " + position);
+        if (position >= header.plaintextSize)
+            return destination.hasRemaining() ? -1 : 0;
+
+        int length = (int) Math.min(destination.remaining(), header.plaintextSize - position);
+        if (length == 0)
+            return 0;
+        long end = position + length;
+        long firstSegment = position / header.segmentSize;
+        long lastSegment = (end - 1) / header.segmentSize;
+        int destinationStart = destination.position();
+
+        decrypt(firstSegment, lastSegment + 1, (index, plain) -> {
+            long segmentStart = header.plainOffset(index);
+            int from = (int) (Math.max(position, segmentStart) - segmentStart);
+            int to = (int) (Math.min(end, segmentStart + plain.limit()) - segmentStart);
+            plain.position(from).limit(to);
+
+            ByteBuffer slice = destination.duplicate();
+            slice.position(destinationStart + (int) (segmentStart + from - position));
+            slice.put(plain);
+        });
+        destination.position(destinationStart + length);
+        return length;
+    }
+
+    /**
+     * Decrypts whole content into given file, target file is created or overwritten.
+     * @throws DecryptionException If any segment was modified or the password is wrong.
+     */
+    public void decryptTo(Path targetFile) throws DecryptionException {
+        try (FileChannel target = FileChannel.open(targetFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            decrypt(0, header.segmentCount(), (index, plain) ->
+                    ChannelUtils.writeFully(target, plain, header.plainOffset(index)));
+        } catch (IOException e) {
+            throw new DecryptionException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @FunctionalInterface
+    private interface PlainConsumer {
+        void accept(long index, ByteBuffer plain) throws IOException;
+    }
+
+    private void decrypt(long fromSegment, long toSegment, PlainConsumer consumer) throws DecryptionException {
+        try {
+            invoke(new Segments(header, fromSegment, toSegment, (cipher, index, plain, sealed) -> {
+                sealed.limit(header.plainLength(index) + TAG_SIZE);
+                ChannelUtils.readFully(channel, sealed, header.sealedOffset(index));
+                sealed.flip();
+
+                initCipher(cipher, Cipher.DECRYPT_MODE, key, header, index);
+                cipher.doFinal(sealed, plain);
+                plain.flip();
+                consumer.accept(index, plain);
+            }));
+        } catch (AEADBadTagException e) {
+            throw new DecryptionException(DecryptionException.BAD_KEY);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new DecryptionException(e);
+        }
+    }
+
+    // segments
+
+    @FunctionalInterface
+    private interface SegmentAction {
+        /**
+         * @param plain  cleared buffer of at least the plain length of the segment
+         * @param sealed cleared buffer of at least the plain length of the segment with tag
+         */
+        void apply(Cipher cipher, long index, ByteBuffer plain, ByteBuffer sealed) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Processes range of segments, splitting it in halves until it is small enough to be done by a single worker
+     */
+    private static class Segments extends RecursiveAction {
+        private final Header header;
+        private final long from, to;
+        private final SegmentAction action;
+
+        Segments(Header header, long from, long to, SegmentAction action) {
+            this.header = header;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SEGMENTS_PER_TASK) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new Segments(header, from, middle, action), new Segments(header, middle, to, action));
+                return;
+            }
+
+            // only the last segment is shorter, so the first one of the range is the longest
+            int length = header.plainLength(from);
+            ByteBuffer plain = ByteBuffer.allocate(length);
+            ByteBuffer sealed = ByteBuffer.allocate(length + TAG_SIZE);
+            try {
+                Cipher cipher = Cipher.getInstance(ALGORITHM_FULL_NAME);
+                for (long index = from; index < to; index++) {
+                    plain.clear();
+                    sealed.clear();
+                    action.apply(cipher, index, plain, sealed);
+                }
+            } catch (IOException | GeneralSecurityException e) {
+                throw new SegmentException(e);
+            } finally {
+                ArrayDestroyer.destroy(plain.array());
+            }
+        }
+    }
+
+    /**
+     * Carries checked exceptions out of fork-join tasks
+     */
+    private static class SegmentException extends RuntimeException {
+        SegmentException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private static void invoke(Segments segments) throws IOException, GeneralSecurityException {
+        try {
+            POOL.invoke(segments);
+        } catch (SegmentException e) {
+            // fork-join may wrap the exception thrown in other thread once more
+            Throwable cause = e;
+            while (cause instanceof SegmentException)
+                cause = cause.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof GeneralSecurityException)
+                throw (GeneralSecurityException) cause;
+            throw e;
+        }
+    }
+
+    private static void initCipher(Cipher cipher, int cipherMode, SecretKeySpec key, Header header, long index)
+            throws GeneralSecurityException {
+        byte[] nonce = Arrays.copyOf(header.noncePrefix, NONCE_PREFIX_SIZE + 5);
+        ByteBuffer.wrap(nonce, NONCE_PREFIX_SIZE, 5)
+                .putInt((int) index)
+                .put((byte) (index == header.segmentCount() - 1 ? 1 : 0));
+        cipher.init(cipherMode, key, new GCMParameterSpec(TAG_SIZE * 8, nonce));
+        cipher.updateAAD(header.bytes);
+    }
+
+    private static SecretKeySpec deriveKey(String password, Header header) throws GeneralSecurityException {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance(HASH_ALGORITHM_NAME);
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), header.salt, header.iterations, KEY_SIZE);
+        try {
+            byte[] encoded = factory.generateSecret(spec).getEncoded();
+            SecretKeySpec key = new SecretKeySpec(encoded, "AES");
+            ArrayDestroyer.destroy(encoded);
+            return key;
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null)
+            return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // already failing, original exception is more interesting
+        }
+    }
+
+    /**
+     * Header of segmented file, its serialized form is authenticated with every segment
+     */
+    private static class Header {
+        private final int segmentSize;
+        private final long plaintextSize;
+        private final int iterations;
+        private final byte[] salt;
+        private final byte[] noncePrefix;
+        private final byte[] bytes;
+
+        private Header(int segmentSize, long plaintextSize, int iterations, byte[] salt, byte[] noncePrefix, byte[] bytes) {
+            this.segmentSize = segmentSize;
+            this.plaintextSize = plaintextSize;
+            this.iterations = iterations;
+            this.salt = salt;
+            this.noncePrefix = noncePrefix;
+            this.bytes = bytes;
+        }
+
+        static Header create(int segmentSize, long plaintextSize) {
+            if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE)
+                throw new IllegalArgumentException("Segment size must be between 1 and " + MAX_SEGMENT_SIZE);
+            SecureRandom random = new SecureRandom();
+            byte[] salt = new byte[SALT_SIZE];
+            byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+            random.nextBytes(salt);
+            random.nextBytes(noncePrefix);
+
+            ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE)
+                    .put(MAGIC)
+                    .put(VERSION)
+                    .putInt(segmentSize)
+                    .putLong(plaintextSize)
+                    .putInt(KEY_HASH_ITERATIONS_AMOUNT)
+                    .put(salt)
+                    .put(noncePrefix);
+            Header header = new Header(segmentSize, plaintextSize, KEY_HASH_ITERATIONS_AMOUNT, salt, noncePrefix, bytes.array());
+            if (header.segmentCount() > 0xFFFFFFFFL)
+                throw new IllegalArgumentException("Too many segments, use bigger segment size");
+            return header;
+        }
+
+        static Header parse(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(MAGIC, magic))
+                throw new IllegalArgumentException("Not a segmented file");
+            byte version = buffer.get();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unsupported segmented file version: " + version);
+
+            int segmentSize = buffer.getInt();
+            long plaintextSize = buffer.getLong();
+            int iterations = buffer.getInt();
+            if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE || plaintextSize < 0 || iterations <= 0)
+                throw new IllegalArgumentException("Corrupted segmented file header");
+            byte[] salt = new byte[SALT_SIZE];
+            byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+            buffer.get(salt);
+            buffer.get(noncePrefix);
+            return new Header(segmentSize, plaintextSize, iterations, salt, noncePrefix, bytes);
+        }
+
+        long segmentCount() {
+            return Math.max(1, (plaintextSize + segmentSize - 1) / segmentSize);
+        }
+
+        long plainOffset(long index) {
+            return index * segmentSize;
+        }
+
+        int plainLength(long index) {
+            return (int) Math.min(segmentSize, plaintextSize - plainOffset(index));
+        }
+
+        long sealedOffset(long index) {
+            return HEADER_SIZE + index * (segmentSize + TAG_SIZE);
+        }
+
+        long encryptedSize() {
+            return HEADER_SIZE + plaintextSize + segmentCount() * TAG_SIZE;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.raspberrywallet.manager.cryptography.crypto;
+
+import io.raspberrywallet.manager.common.ChannelUtils;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Runs data from one channel through a cipher into another one, in chunks, using pooled direct buffers.
+ */
+class StreamingCipher {
+    
+    final static int CHUNK_SIZE = 64 * 1024;
+    // output of a chunk may be longer by padding or by data buffered in the cipher, also for RSA blocks
+    private final static int OUTPUT_SLACK = 1024;
+    
+    private final static DirectBufferPool INPUT_BUFFERS = new DirectBufferPool(CHUNK_SIZE, 8);
+    private final static DirectBufferPool OUTPUT_BUFFERS = new DirectBufferPool(CHUNK_SIZE + OUTPUT_SLACK, 8);
+    
+    private StreamingCipher() {}
+    
+    /**
+     * Reads source until its end, source and target are not closed.
+     * @return number of bytes written to target
+     */
+    static long transfer(Cipher cipher, ReadableByteChannel source, WritableByteChannel target)
+            throws IOException, ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        ByteBuffer input = INPUT_BUFFERS.acquire();
+        ByteBuffer output = OUTPUT_BUFFERS.acquire();
+        long written = 0;
+        try {
+            while (source.read(input) >= 0) {
+                if (input.hasRemaining())
+                    continue; // fill the whole chunk first, pipes tend to return just a few bytes
+                input.flip();
+                output = ensureCapacity(output, cipher.getOutputSize(input.remaining()));
+                cipher.update(input, output);
+                written += flush(output, target);
+                input.clear();
+            }
+            
+            input.flip();
+            output = ensureCapacity(output, cipher.getOutputSize(input.remaining()));
+            cipher.doFinal(input, output);
+            written += flush(output, target);
+            return written;
+        } finally {
+            INPUT_BUFFERS.release(input);
+            OUTPUT_BUFFERS.release(output);
+        }
+    }
+    
+    private static ByteBuffer ensureCapacity(ByteBuffer output, int size) {
+        output.clear();
+        if (output.capacity() >= size)
+            return output;
+        OUTPUT_BUFFERS.release(output);
+        return ByteBuffer.allocateDirect(size);
+    }
+    
+    private static int flush(ByteBuffer output, WritableByteChannel target) throws IOException {
+        output.flip();
+        int length = output.remaining();
+        ChannelUtils.writeFully(target, output);
+        return length;
+    }
+    
+}
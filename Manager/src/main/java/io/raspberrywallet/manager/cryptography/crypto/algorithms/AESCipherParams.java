@@ -1,6 +1,6 @@
 package io.raspberrywallet.manager.cryptography.crypto.algorithms;
 
-
+import io.raspberrywallet.manager.common.ArrayDestroyer;
 
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
@@ -15,9 +15,21 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
+import java.time.Duration;
 
 public class AESCipherParams extends CipherParams implements Serializable {
     
+    /**
+     * Pinned to the value computed for the first version of this class, so objects serialized before will still load
+     */
+    private static final long serialVersionUID = -3042184992462909188L;
+    
+    /**
+     * Keys derived from password, shared by all parameters with the same salt, so repeated decryption
+     * and re-encryption with {@link #withNewIv()} skip PBKDF2. Cleared with {@link #clearKeyCache()} when the wallet is locked.
+     */
+    private static final DerivedKeyCache keyCache = new DerivedKeyCache(16, Duration.ofMinutes(2));
+    
     private String hashAlgorithmName;
     private byte[] ivBytes;
     private byte[] keySalt;
@@ -42,6 +54,20 @@ public class AESCipherParams extends CipherParams implements Serializable {
         keySize = algorithmFactory.getKeySize();
         iterationsAmount = algorithmFactory.getKeyHashIterationsAmount();
     }
+    
+    /**
+     * Restores parameters of already encrypted data, e.g. read by {@link io.raspberrywallet.manager.cryptography.crypto.EncryptedObjectCodec}.
+     */
+    public AESCipherParams(String algorithmName, String algorithmFullName, String hashAlgorithmName, int keySize,
+                           int iterationsAmount, byte[] keySalt, byte[] ivBytes) {
+        this.algorithmName = algorithmName;
+        this.algorithmFullName = algorithmFullName;
+        this.hashAlgorithmName = hashAlgorithmName;
+        this.keySize = keySize;
+        this.iterationsAmount = iterationsAmount;
+        this.keySalt = keySalt;
+        this.ivBytes = ivBytes;
+    }
 
     public Cipher getCipher(String password, int cipherMode) throws NoSuchPaddingException, NoSuchAlgorithmException,
             InvalidKeySpecException, InvalidAlgorithmParameterException, InvalidKeyException {
@@ -49,15 +75,49 @@ public class AESCipherParams extends CipherParams implements Serializable {
         Cipher cipher = Cipher.getInstance(algorithmFullName);
         
         IvParameterSpec ivParameterSpec = new IvParameterSpec(ivBytes);
-        SecretKeyFactory factory = SecretKeyFactory.getInstance(hashAlgorithmName);
-        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), keySalt, iterationsAmount, keySize);
-        SecretKey secretKey = factory.generateSecret(spec);
-        SecretKeySpec secret = new SecretKeySpec(secretKey.getEncoded(), algorithmName);
+        SecretKeySpec secret = getSecretKey(password);
         cipher.init(cipherMode, secret, ivParameterSpec);
         
         return cipher;
     }
     
+    /**
+     * @return Parameters with the same key salt and a new IV, encrypting with them reuses already derived key.
+     */
+    public AESCipherParams withNewIv() {
+        byte[] newIvBytes = new byte[ivBytes.length];
+        new SecureRandom().nextBytes(newIvBytes);
+        return new AESCipherParams(algorithmName, algorithmFullName, hashAlgorithmName, keySize, iterationsAmount,
+                keySalt.clone(), newIvBytes);
+    }
+    
+    /**
+     * Overwrites all cached derived keys with zeros, should be called when the wallet gets locked.
+     */
+    public static void clearKeyCache() {
+        keyCache.clear();
+    }
+    
+    private SecretKeySpec getSecretKey(String password) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        byte[] derivedKey = keyCache.get(password, keySalt, iterationsAmount, keySize, hashAlgorithmName);
+        if (derivedKey == null) {
+            SecretKeyFactory factory = SecretKeyFactory.getInstance(hashAlgorithmName);
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), keySalt, iterationsAmount, keySize);
+            try {
+                SecretKey secretKey = factory.generateSecret(spec);
+                derivedKey = secretKey.getEncoded();
+            } finally {
+                spec.clearPassword();
+            }
+            keyCache.put(password, keySalt, iterationsAmount, keySize, hashAlgorithmName, derivedKey);
+        }
+        try {
+            return new SecretKeySpec(derivedKey, algorithmName);
+        } finally {
+            ArrayDestroyer.destroy(derivedKey);
+        }
+    }
+    
     public String getHashAlgorithmName() {
         return hashAlgorithmName;
     }
@@ -70,4 +130,8 @@ public class AESCipherParams extends CipherParams implements Serializable {
         return keySalt;
     }
     
+    public int getIterationsAmount() {
+        return iterationsAmount;
+    }
+    
 }
@@ -0,0 +1,189 @@
+package io.raspberrywallet.manager.cryptography.crypto.algorithms;
+
+import io.raspberrywallet.manager.common.ArrayDestroyer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of PBKDF2 derived keys, so data encrypted under the same password and salt
+ * doesn't pay for the key hashing again. Entries expire after given lifetime, least recently used entry
+ * is dropped when the cache is full, and every dropped key is overwritten with zeros.
+ *
+ * Passwords are not kept, entries are looked up by SHA-256 of a random per-process pepper, salt and password.
+ */
+final class DerivedKeyCache {
+
+    private final int maxEntries;
+    private final long lifetimeNanos;
+    private final LongSupplier nanoTime;
+    private final byte[] pepper = new byte[32];
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    DerivedKeyCache(int maxEntries, Duration lifetime) {
+        this(maxEntries, lifetime, System::nanoTime);
+    }
+
+    DerivedKeyCache(int maxEntries, Duration lifetime, LongSupplier nanoTime) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        this.maxEntries = maxEntries;
+        this.lifetimeNanos = lifetime.toNanos();
+        this.nanoTime = nanoTime;
+        new SecureRandom().nextBytes(pepper);
+    }
+
+    /**
+     * @return copy of the derived key which should be destroyed by the caller, or null if it's not cached or expired
+     */
+    synchronized byte[] get(String password, byte[] salt, int iterations, int keySize, String hashAlgorithmName) {
+        Key key = key(password, salt, iterations, keySize, hashAlgorithmName);
+        try {
+            Entry entry = entries.get(key);
+            if (entry == null)
+                return null;
+            if (entry.isExpired(nanoTime.getAsLong())) {
+                remove(key);
+                return null;
+            }
+            return entry.derivedKey.clone();
+        } finally {
+            key.destroy();
+        }
+    }
+
+    /**
+     * Stores copy of the derived key, caller stays responsible for destroying its own array
+     */
+    synchronized void put(String password, byte[] salt, int iterations, int keySize, String hashAlgorithmName, byte[] derivedKey) {
+        Key key = key(password, salt, iterations, keySize, hashAlgorithmName);
+        Entry previous = entries.put(key, new Entry(derivedKey.clone(), nanoTime.getAsLong() + lifetimeNanos));
+        if (previous != null) {
+            key.destroy();
+            previous.destroy();
+        }
+        evict();
+    }
+
+    /**
+     * Overwrites all cached keys with zeros and drops them
+     */
+    synchronized void clear() {
+        entries.forEach((key, entry) -> {
+            key.destroy();
+            entry.destroy();
+        });
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        long now = nanoTime.getAsLong();
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> next = iterator.next();
+            if (entries.size() > maxEntries || next.getValue().isExpired(now)) {
+                next.getKey().destroy();
+                next.getValue().destroy();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void remove(Key key) {
+        for (Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Key, Entry> next = iterator.next();
+            if (next.getKey().equals(key)) {
+                next.getKey().destroy();
+                next.getValue().destroy();
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    private Key key(String password, byte[] salt, int iterations, int keySize, String hashAlgorithmName) {
+        ByteBuffer passwordBytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(pepper);
+            digest.update(salt);
+            digest.update(passwordBytes.duplicate());
+            return new Key(digest.digest(), iterations, keySize, hashAlgorithmName);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        } finally {
+            if (passwordBytes.hasArray())
+                ArrayDestroyer.destroy(passwordBytes.array());
+        }
+    }
+
+    private static final class Key {
+        private final byte[] digest;
+        private final int iterations;
+        private final int keySize;
+        private final String hashAlgorithmName;
+        private final int hashCode;
+
+        private Key(byte[] digest, int iterations, int keySize, String hashAlgorithmName) {
+            this.digest = digest;
+            this.iterations = iterations;
+            this.keySize = keySize;
+            this.hashAlgorithmName = hashAlgorithmName;
+            this.hashCode = 31 * (31 * (31 * Arrays.hashCode(digest) + iterations) + keySize) + hashAlgorithmName.hashCode();
+        }
+
+        private void destroy() {
+            ArrayDestroyer.destroy(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return iterations == key.iterations
+                    && keySize == key.keySize
+                    && hashAlgorithmName.equals(key.hashAlgorithmName)
+                    && MessageDigest.isEqual(digest, key.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] derivedKey;
+        private final long expiresAtNanos;
+
+        private Entry(byte[] derivedKey, long expiresAtNanos) {
+            this.derivedKey = derivedKey;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+
+        private void destroy() {
+            ArrayDestroyer.destroy(derivedKey);
+        }
+    }
+}
@@ -7,10 +7,24 @@ import java.security.*;
 
 public class RSACipherParams extends CipherParams implements Serializable {
     
+    /**
+     * Pinned to the value computed for the first version of this class, so objects serialized before will still load
+     */
+    private static final long serialVersionUID = -381722655518678794L;
+    
     public RSACipherParams() {
         this(new RSAParams());
     }
     
+    /**
+     * Restores parameters of already encrypted data, e.g. read by {@link io.raspberrywallet.manager.cryptography.crypto.EncryptedObjectCodec}.
+     */
+    public RSACipherParams(String algorithmName, String algorithmFullName, int keySize) {
+        this.algorithmName = algorithmName;
+        this.algorithmFullName = algorithmFullName;
+        this.keySize = keySize;
+    }
+    
     RSACipherParams(RSAParams algorithmFactory) {
         algorithmName = algorithmFactory.getAlgorithmName();
         algorithmFullName = algorithmFactory.getFullAlgorithmName();
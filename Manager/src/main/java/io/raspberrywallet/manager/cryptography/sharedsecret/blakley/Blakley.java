@@ -1,16 +1,17 @@
 package io.raspberrywallet.manager.cryptography.sharedsecret.blakley;
 
 
-import io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg.*;
-
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * <p> Calculate Bakley scheme. You need t keys of n for resolve the secret </p>
  * <p> A Blakley's key is an array of BigInteger. It defines a hyperplane</p>
- * <p> Note: <br>
- * blackey class need use library JLinAlg http://jlinalg.sourceforge.net/ </p>
+ * <p> Keys are solved over prime fields on primitive longs, see {@link PrimeField}.
+ * {@link PrimeFieldBlakley} shares secrets directly in the field, with keys of fixed size. </p>
  */
 public class Blakley {
     /**
@@ -38,46 +39,116 @@ public class Blakley {
      * @return secret
      */
     static public byte[] solutionKey(BigInteger[][] cords){
-        FieldElement fields[][] = new FieldElement[cords.length][cords[0].length-1];
-
-        Vector vector = new Vector(cords.length);
-        for(int i1 = 0; i1 < cords.length; i1++){
-            for(int i2 = 0; i2 < cords[0].length-1; i2++){
-                fields[i1][i2] = new Rational(cords[i1][i2]);
-            }
-            vector.set(i1+1, new Rational(cords[i1][cords[0].length-1]));
-        }
-
-        Matrix matrix = new Matrix(fields);
-
-        //System.out.println("Vector \n" + vector);
-        //System.out.println("Matrix \n" + matrix);
-        Vector solve = new LinSysSolver().solve(matrix, vector);
-        //System.out.println("Solution \n" + solve);
-        BigInteger solution[] = new BigInteger[solve.length()];
-
-        for(int i = 1; i < vector.length()+1; i++){
-            solution[i-1] = new BigInteger(solve.getEntry(i).toString());
-        }
+        BigInteger[] solution = solveIntegerSystem(cords);
 
+        byte[][] parts = new byte[solution.length][];
         int size = 0;
         for(int i = 0; i < solution.length; i++){
-            size += solution[i].toByteArray().length;
+            parts[i] = solution[i].toByteArray();
+            size += parts[i].length;
         }
 
-        //System.out.println("size: "+ size);
         byte[] ret = new byte[size];
         int pos = size-1;
         for(int i = 0; i < solution.length; i++){
-            for(int j = solution[i].toByteArray().length-1; j >= 0 ; j--){
-                ret[pos] = solution[i].toByteArray()[j];
+            for(int j = parts[i].length-1; j >= 0 ; j--){
+                ret[pos] = parts[i][j];
                 pos--;
-                //System.out.println("pos: "+ pos);
             }
         }
         return ret;
     }
 
+    /**
+     * Keys have integer coefficients and the secret is an integer point, so it's solved modulo 61-bit primes
+     * and combined with Chinese remainder theorem, until the combined point lies on every given hyperplane.
+     * Cramer's rule bounds the point, so after enough primes there is no integer solution.
+     * The determinant is bounded too, so only a few of the primes can divide it unless it's zero.
+     * @param cords hyperplanes a1..at, b, at least t of them
+     * @return integer point lying on all hyperplanes
+     * @throws ArithmeticException if the first t hyperplanes are linearly dependent, e.g. the same key twice
+     */
+    private static BigInteger[] solveIntegerSystem(BigInteger[][] cords){
+        int unknowns = cords[0].length-1;
+        if(cords.length < unknowns)
+            throw new IllegalArgumentException("need " + unknowns + " keys, got " + cords.length);
+
+        int maxBits = 0;
+        for(BigInteger[] cord : cords)
+            for(BigInteger value : cord)
+                maxBits = Math.max(maxBits, value.bitLength());
+        int boundBits = 2 + unknowns * (maxBits + 32 - Integer.numberOfLeadingZeros(unknowns));
+
+        // every prime is above 2^60, a nonzero determinant below 2^boundBits is divisible by fewer of them
+        int maxSingularPrimes = boundBits / 60 + 1;
+        int singularPrimes = 0;
+        BigInteger modulus = BigInteger.ONE;
+        BigInteger[] residues = new BigInteger[unknowns];
+        Arrays.fill(residues, BigInteger.ZERO);
+        for(int primeIndex = 0; modulus.bitLength() <= boundBits; primeIndex++){
+            long prime = prime(primeIndex);
+            PrimeField field = new PrimeField(prime);
+            long[][] rows = new long[unknowns][unknowns+1];
+            for(int i = 0; i < unknowns; i++)
+                for(int j = 0; j <= unknowns; j++)
+                    rows[i][j] = field.toMontgomery(field.reduce(cords[i][j]));
+
+            long[] solution;
+            try {
+                solution = PrimeFieldSolver.solve(field, rows);
+            } catch (ArithmeticException e) {
+                // determinant is divisible by this prime, the next one will do
+                if(++singularPrimes > maxSingularPrimes)
+                    throw new ArithmeticException("Keys are linearly dependent");
+                continue;
+            }
+
+            BigInteger bigPrime = BigInteger.valueOf(prime);
+            BigInteger modulusInverse = modulus.mod(bigPrime).modInverse(bigPrime);
+            for(int i = 0; i < unknowns; i++){
+                BigInteger residue = BigInteger.valueOf(field.fromMontgomery(solution[i]));
+                BigInteger lift = residue.subtract(residues[i]).multiply(modulusInverse).mod(bigPrime);
+                residues[i] = residues[i].add(modulus.multiply(lift));
+            }
+            modulus = modulus.multiply(bigPrime);
+
+            BigInteger half = modulus.shiftRight(1);
+            BigInteger[] point = new BigInteger[unknowns];
+            for(int i = 0; i < unknowns; i++)
+                point[i] = residues[i].compareTo(half) > 0 ? residues[i].subtract(modulus) : residues[i];
+            if(liesOnAll(cords, point))
+                return point;
+        }
+        throw new ArithmeticException("Keys don't intersect in an integer point");
+    }
+
+    private static boolean liesOnAll(BigInteger[][] cords, BigInteger[] point){
+        for(BigInteger[] cord : cords){
+            BigInteger sum = BigInteger.ZERO;
+            for(int j = 0; j < point.length; j++)
+                sum = sum.add(cord[j].multiply(point[j]));
+            if(!sum.equals(cord[point.length]))
+                return false;
+        }
+        return true;
+    }
+
+    private static final List<Long> primes = new ArrayList<>();
+
+    /**
+     * @return index-th largest prime below 2^61, computed once
+     */
+    private static synchronized long prime(int index){
+        long candidate = primes.isEmpty() ? PrimeField.MERSENNE_61 + 2 : primes.get(primes.size()-1);
+        while(primes.size() <= index){
+            do {
+                candidate -= 2;
+            } while(!BigInteger.valueOf(candidate).isProbablePrime(64));
+            primes.add(candidate);
+        }
+        return primes.get(index);
+    }
+
     /**
      * Create coordinates for calculate a key using Blakley's scheme. Divide a secret in t parts
      * @param n numbers of parts
@@ -0,0 +1,197 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import java.math.BigInteger;
+
+/**
+ * Fraction-free elimination (Bareiss) for matrices of Rationals. Every row is
+ * multiplied by the least common multiple of its denominators, which changes
+ * neither the rank nor the reduced row echelon form, and the elimination then
+ * works on BigIntegers only. A step replaces an entry by
+ * (pivot * a[i][j] - a[i][col] * a[row][j]) / previousPivot, and the division
+ * is always exact: every entry is a minor of the integer matrix, so entries
+ * grow linearly in the number of steps instead of exponentially like the
+ * fractions of the generic algorithms. Only the final result is divided.
+ */
+
+final class BareissElimination {
+
+	private BareissElimination() {
+	}
+
+	/**
+	 * @param matrix
+	 * @return true if all entries are Rationals
+	 */
+	static boolean isApplicable(Matrix matrix) {
+		if (matrix.getRows() == 0 || matrix.getCols() == 0) {
+			return false;
+		}
+		for (int row = 1; row <= matrix.getRows(); row++) {
+			for (int col = 1; col <= matrix.getCols(); col++) {
+				FieldElement entry = matrix.get(row, col);
+				if (entry == null || entry.getClass() != Rational.class) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param matrix
+	 *            square matrix of Rationals
+	 * @return determinant, same as Matrix.det()
+	 */
+	static FieldElement det(Matrix matrix) {
+		int n = matrix.getRows();
+		BigInteger[] scales = new BigInteger[n];
+		BigInteger[][] rows = integerRows(matrix, scales);
+		Elimination elimination = new Elimination(rows, matrix.getCols());
+		elimination.run(false);
+		if (elimination.rank < n) {
+			return new Rational(BigInteger.ZERO);
+		}
+
+		BigInteger determinant = rows[n - 1][n - 1];
+		if (elimination.swaps % 2 != 0) {
+			determinant = determinant.negate();
+		}
+		BigInteger scale = BigInteger.ONE;
+		for (BigInteger rowScale : scales) {
+			scale = scale.multiply(rowScale);
+		}
+		return new Rational(determinant, scale);
+	}
+
+	/**
+	 * @param matrix
+	 *            matrix of Rationals
+	 * @return rank, same as Matrix.rank()
+	 */
+	static int rank(Matrix matrix) {
+		BigInteger[][] rows = integerRows(matrix,
+				new BigInteger[matrix.getRows()]);
+		Elimination elimination = new Elimination(rows, matrix.getCols());
+		elimination.run(false);
+		return elimination.rank;
+	}
+
+	/**
+	 * @param matrix
+	 *            matrix of Rationals
+	 * @return reduced row echelon form, same as Matrix.gaussjord()
+	 */
+	static Matrix gaussjord(Matrix matrix) {
+		BigInteger[][] rows = integerRows(matrix,
+				new BigInteger[matrix.getRows()]);
+		Elimination elimination = new Elimination(rows, matrix.getCols());
+		elimination.run(true);
+
+		// fraction-free Gauss-Jordan leaves the last pivot on every pivot
+		BigInteger divisor = elimination.previousPivot;
+		FieldElement[][] entries = new FieldElement[matrix.getRows()][matrix
+				.getCols()];
+		for (int row = 0; row < rows.length; row++) {
+			for (int col = 0; col < rows[row].length; col++) {
+				entries[row][col] = row < elimination.rank ? new Rational(
+						rows[row][col], divisor) : new Rational(
+						BigInteger.ZERO);
+			}
+		}
+		return new Matrix(entries, matrix.getRows(), matrix.getCols());
+	}
+
+	/**
+	 * @param scales
+	 *            receives the factor every row has been multiplied with
+	 * @return the rows of matrix multiplied by the lcm of their denominators
+	 */
+	private static BigInteger[][] integerRows(Matrix matrix,
+			BigInteger[] scales) {
+		BigInteger[][] rows = new BigInteger[matrix.getRows()][matrix
+				.getCols()];
+		for (int row = 0; row < rows.length; row++) {
+			BigInteger lcm = BigInteger.ONE;
+			for (int col = 0; col < rows[row].length; col++) {
+				BigInteger denominator = ((Rational) matrix.get(row + 1,
+						col + 1)).getDenominator().abs();
+				lcm = lcm.divide(lcm.gcd(denominator)).multiply(denominator);
+			}
+			for (int col = 0; col < rows[row].length; col++) {
+				Rational entry = (Rational) matrix.get(row + 1, col + 1);
+				rows[row][col] = entry.getNumerator().multiply(
+						lcm.divide(entry.getDenominator()));
+			}
+			scales[row] = lcm;
+		}
+		return rows;
+	}
+
+	/**
+	 * One run of the elimination on integer rows, in place.
+	 */
+	private static class Elimination {
+
+		private final BigInteger[][] rows;
+
+		private final int numOfCols;
+
+		int rank = 0;
+
+		int swaps = 0;
+
+		BigInteger previousPivot = BigInteger.ONE;
+
+		Elimination(BigInteger[][] rows, int numberOfCols) {
+			this.rows = rows;
+			this.numOfCols = numberOfCols;
+		}
+
+		/**
+		 * @param jordan
+		 *            false for row echelon form, true to eliminate above the
+		 *            pivots as well
+		 */
+		void run(boolean jordan) {
+			for (int col = 0; col < numOfCols && rank < rows.length; col++) {
+				int pivotRow = rank;
+				while (pivotRow < rows.length
+						&& rows[pivotRow][col].signum() == 0) {
+					pivotRow++;
+				}
+				if (pivotRow == rows.length) {
+					continue;
+				}
+				if (pivotRow != rank) {
+					BigInteger[] tmp = rows[pivotRow];
+					rows[pivotRow] = rows[rank];
+					rows[rank] = tmp;
+					swaps++;
+				}
+
+				BigInteger[] pivot = rows[rank];
+				for (int i = jordan ? 0 : rank + 1; i < rows.length; i++) {
+					if (i != rank) {
+						// left of col only rows above have non zero entries
+						eliminate(rows[i], pivot, col, i < rank ? 0 : col);
+					}
+				}
+				previousPivot = pivot[col];
+				rank++;
+			}
+		}
+
+		private void eliminate(BigInteger[] target, BigInteger[] pivot,
+				int col, int from) {
+			BigInteger factor = target[col];
+			BigInteger pivotEntry = pivot[col];
+			for (int j = from; j < numOfCols; j++) {
+				BigInteger scaled = pivotEntry.multiply(target[j]);
+				if (factor.signum() != 0 && pivot[j].signum() != 0) {
+					scaled = scaled.subtract(factor.multiply(pivot[j]));
+				}
+				target[j] = scaled.divide(previousPivot);
+			}
+		}
+	}
+}
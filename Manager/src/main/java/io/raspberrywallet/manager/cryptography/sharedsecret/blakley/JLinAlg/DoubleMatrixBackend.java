@@ -0,0 +1,101 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+/**
+ * MatrixBackend for matrices of DoubleWrappers. Every row is a double[], the
+ * operations are done in the same order as by DoubleWrapper, so the rounding
+ * is the same too.
+ */
+
+class DoubleMatrixBackend extends MatrixBackend {
+
+	private final double[][] rows;
+
+	DoubleMatrixBackend(double[][] rows, int numberOfCols) {
+		super(rows.length, numberOfCols);
+		this.rows = rows;
+	}
+
+	/**
+	 * @return backend holding a copy of the entries of matrix, which must all
+	 *         be DoubleWrappers
+	 */
+	static DoubleMatrixBackend of(Matrix matrix) {
+		FieldElement[][] entries = matrix.getEntries();
+		double[][] rows = new double[matrix.getRows()][matrix.getCols()];
+		for (int row = 0; row < rows.length; row++) {
+			for (int col = 0; col < rows[row].length; col++) {
+				rows[row][col] = ((DoubleWrapper) entries[row][col]).value;
+			}
+		}
+		return new DoubleMatrixBackend(rows, matrix.getCols());
+	}
+
+	boolean isZero(int row, int col) {
+		return rows[row][col] == 0.0;
+	}
+
+	void swapRows(int row1, int row2) {
+		double[] tmp = rows[row1];
+		rows[row1] = rows[row2];
+		rows[row2] = tmp;
+	}
+
+	void eliminate(int pivotRow, int targetRow, int col) {
+		double[] pivot = rows[pivotRow];
+		double[] target = rows[targetRow];
+		double factor = target[col] / pivot[col];
+		if (factor == 0.0) {
+			return;
+		}
+		for (int k = col; k < numOfCols; k++) {
+			target[k] = target[k] - factor * pivot[k];
+		}
+	}
+
+	void normalize(MatrixBackend divisors, int row, int col, int from) {
+		double divisor = ((DoubleMatrixBackend) divisors).rows[row][col];
+		double[] target = rows[row];
+		for (int k = from; k < numOfCols; k++) {
+			target[k] = target[k] / divisor;
+		}
+	}
+
+	void reduce(MatrixBackend factors, int pivotRow, int targetRow, int col,
+			int from) {
+		double factor = ((DoubleMatrixBackend) factors).rows[targetRow][col];
+		if (factor == 0.0) {
+			return;
+		}
+		double[] pivot = rows[pivotRow];
+		double[] target = rows[targetRow];
+		for (int k = from; k < numOfCols; k++) {
+			target[k] = target[k] - pivot[k] * factor;
+		}
+	}
+
+	FieldElement diagonalProduct() {
+		double product = 1.0;
+		for (int row = 0; row < numOfRows; row++) {
+			product = product * rows[row][row];
+		}
+		return new DoubleWrapper(product);
+	}
+
+	MatrixBackend identity(int size) {
+		double[][] identity = new double[size][size];
+		for (int i = 0; i < size; i++) {
+			identity[i][i] = 1.0;
+		}
+		return new DoubleMatrixBackend(identity, size);
+	}
+
+	Matrix toMatrix() {
+		FieldElement[][] entries = new FieldElement[numOfRows][numOfCols];
+		for (int row = 0; row < numOfRows; row++) {
+			for (int col = 0; col < numOfCols; col++) {
+				entries[row][col] = new DoubleWrapper(rows[row][col]);
+			}
+		}
+		return new Matrix(entries, numOfRows, numOfCols);
+	}
+}
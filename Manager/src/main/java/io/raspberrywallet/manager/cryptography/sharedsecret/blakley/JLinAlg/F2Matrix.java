@@ -0,0 +1,456 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class represents a matrix over F2 with every row packed into longs, 64
+ * entries a word, the same way as F2Vector. Adding rows is a XOR of words, so
+ * elimination works on whole words and a 1024x1024 matrix takes 128 KB
+ * instead of a million F2 objects. Multiplication uses the Method of Four
+ * Russians.
+ */
+
+public class F2Matrix implements Serializable {
+
+	/** Rows of the other matrix combined in one lookup table of multiply */
+	private static final int RUSSIANS_BITS = 8;
+
+	private final int numOfRows;
+
+	private final int numOfCols;
+
+	final long[][] rows;
+
+	/**
+	 * Creates a zero matrix with a certain number of rows and columns.
+	 *
+	 * @param numberOfRows
+	 * @param numberOfCols
+	 */
+
+	public F2Matrix(int numberOfRows, int numberOfCols) {
+		this(new long[numberOfRows][F2Vector.words(numberOfCols)], numberOfCols);
+	}
+
+	F2Matrix(long[][] rows, int numberOfCols) {
+		this.numOfRows = rows.length;
+		this.numOfCols = numberOfCols;
+		this.rows = rows;
+	}
+
+	/**
+	 * Packs a Matrix of F2 elements.
+	 *
+	 * @param matrix
+	 * @return packed matrix
+	 * @throws InvalidOperationException
+	 *             if an entry is not an F2
+	 */
+
+	public static F2Matrix fromMatrix(Matrix matrix)
+			throws InvalidOperationException {
+		F2Matrix packed = new F2Matrix(matrix.getRows(), matrix.getCols());
+		for (int row = 1; row <= matrix.getRows(); row++) {
+			for (int col = 1; col <= matrix.getCols(); col++) {
+				packed.set(row, col, bit(matrix.get(row, col)));
+			}
+		}
+		return packed;
+	}
+
+	/**
+	 * @param size
+	 * @return identity matrix of size x size
+	 */
+
+	public static F2Matrix identity(int size) {
+		F2Matrix identity = new F2Matrix(size, size);
+		for (int i = 0; i < size; i++) {
+			identity.rows[i][i / F2Vector.WORD_BITS] = 1L << i;
+		}
+		return identity;
+	}
+
+	/**
+	 * Tests whether all entries of matrix are F2s with value 0 or 1, so that
+	 * packing it gives exactly the same results as its F2 arithmetic.
+	 *
+	 * @param matrix
+	 * @return true if matrix can be packed
+	 */
+
+	public static boolean isF2(Matrix matrix) {
+		for (int row = 1; row <= matrix.getRows(); row++) {
+			for (int col = 1; col <= matrix.getCols(); col++) {
+				if (!isF2(matrix.get(row, col))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tests whether all entries of vector are F2s with value 0 or 1.
+	 *
+	 * @param vector
+	 * @return true if vector can be packed
+	 */
+
+	public static boolean isF2(Vector vector) {
+		for (int i = 1; i <= vector.length(); i++) {
+			if (!isF2(vector.getEntry(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return number of rows
+	 */
+
+	public int getRows() {
+		return numOfRows;
+	}
+
+	/**
+	 * @return number of columns
+	 */
+
+	public int getCols() {
+		return numOfCols;
+	}
+
+	/**
+	 * @param rowIndex
+	 *            1-based
+	 * @param colIndex
+	 *            1-based
+	 * @return true if the entry is one
+	 */
+
+	public boolean get(int rowIndex, int colIndex) {
+		checkIndices(rowIndex, colIndex);
+		return bit(rowIndex - 1, colIndex - 1);
+	}
+
+	/**
+	 * @param rowIndex
+	 *            1-based
+	 * @param colIndex
+	 *            1-based
+	 * @param value
+	 *            true for one, false for zero
+	 */
+
+	public void set(int rowIndex, int colIndex, boolean value) {
+		checkIndices(rowIndex, colIndex);
+		long mask = 1L << (colIndex - 1);
+		int word = (colIndex - 1) / F2Vector.WORD_BITS;
+		if (value) {
+			rows[rowIndex - 1][word] |= mask;
+		} else {
+			rows[rowIndex - 1][word] &= ~mask;
+		}
+	}
+
+	/**
+	 * @param rowIndex
+	 *            1-based
+	 * @return copy of the row
+	 */
+
+	public F2Vector getRow(int rowIndex) {
+		checkIndices(rowIndex, 1);
+		return new F2Vector(numOfCols, rows[rowIndex - 1].clone());
+	}
+
+	/**
+	 * @param rowIndex
+	 *            1-based
+	 * @return true if there are only zero entries in the row
+	 */
+
+	public boolean isZeroRow(int rowIndex) {
+		checkIndices(rowIndex, 1);
+		return leadingCol(rowIndex - 1) < 0;
+	}
+
+	/**
+	 * Returns the sum of this matrix and another one, the XOR of both.
+	 *
+	 * @param anotherMatrix
+	 * @return this + anotherMatrix
+	 * @throws InvalidOperationException
+	 *             if matrices differ in size
+	 */
+
+	public F2Matrix add(F2Matrix anotherMatrix)
+			throws InvalidOperationException {
+		if (numOfRows != anotherMatrix.numOfRows
+				|| numOfCols != anotherMatrix.numOfCols) {
+			throw new InvalidOperationException("Tried to add a " + numOfRows
+					+ "x" + numOfCols + " and a " + anotherMatrix.numOfRows
+					+ "x" + anotherMatrix.numOfCols + " matrix");
+		}
+		F2Matrix sum = copy();
+		for (int row = 0; row < numOfRows; row++) {
+			xor(sum.rows[row], anotherMatrix.rows[row]);
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the product of this matrix and a vector. Every entry is the
+	 * parity of a row AND the vector.
+	 *
+	 * @param vector
+	 * @return this * vector
+	 * @throws InvalidOperationException
+	 *             if the length of vector differs from the number of columns
+	 */
+
+	public F2Vector multiply(F2Vector vector) throws InvalidOperationException {
+		if (numOfCols != vector.length()) {
+			throw new InvalidOperationException("Tried to multiply a matrix"
+					+ " with " + numOfCols + " columns and a vector with"
+					+ " length " + vector.length());
+		}
+		F2Vector product = new F2Vector(numOfRows);
+		for (int row = 0; row < numOfRows; row++) {
+			if (F2Vector.dot(rows[row], vector.words)) {
+				product.set(row + 1, true);
+			}
+		}
+		return product;
+	}
+
+	/**
+	 * Returns the product of this matrix and another one with the Method of
+	 * Four Russians: for every group of RUSSIANS_BITS rows of anotherMatrix
+	 * all their sums are put into a table once, then every row of the product
+	 * takes one entry of it selected by its RUSSIANS_BITS bits of this.
+	 * Runtime: O(n^3 / (RUSSIANS_BITS * 64)) word operations
+	 *
+	 * @param anotherMatrix
+	 * @return this * anotherMatrix
+	 * @throws InvalidOperationException
+	 *             if the number of columns of this differs from the number of
+	 *             rows of anotherMatrix
+	 */
+
+	public F2Matrix multiply(F2Matrix anotherMatrix)
+			throws InvalidOperationException {
+		if (numOfCols != anotherMatrix.numOfRows) {
+			throw new InvalidOperationException("Tried to multiply a matrix"
+					+ " with " + numOfCols + " columns and a matrix with "
+					+ anotherMatrix.numOfRows + " rows");
+		}
+		F2Matrix product = new F2Matrix(numOfRows, anotherMatrix.numOfCols);
+		long[][] table = new long[1 << RUSSIANS_BITS][F2Vector
+				.words(anotherMatrix.numOfCols)];
+
+		// RUSSIANS_BITS divides WORD_BITS, a group never spans two words
+		for (int k = 0; k < numOfCols; k += RUSSIANS_BITS) {
+			int bits = Math.min(RUSSIANS_BITS, numOfCols - k);
+			// table[i] is the sum of rows k + j for all bits j set in i
+			for (int i = 1; i < 1 << bits; i++) {
+				long[] entry = table[i];
+				long[] smaller = table[i & (i - 1)];
+				long[] row = anotherMatrix.rows[k
+						+ Integer.numberOfTrailingZeros(i)];
+				for (int word = 0; word < entry.length; word++) {
+					entry[word] = smaller[word] ^ row[word];
+				}
+			}
+
+			int mask = (1 << bits) - 1;
+			for (int row = 0; row < numOfRows; row++) {
+				int index = (int) (rows[row][k / F2Vector.WORD_BITS] >>> k)
+						& mask;
+				if (index != 0) {
+					xor(product.rows[row], table[index]);
+				}
+			}
+		}
+		return product;
+	}
+
+	/**
+	 * @return matrix in row-echelon form, like Matrix.gausselim()
+	 */
+
+	public F2Matrix gausselim() {
+		return new F2MatrixBackend(copy()).gausselim().packed();
+	}
+
+	/**
+	 * @return matrix in reduced row-echelon form, like Matrix.gaussjord()
+	 */
+
+	public F2Matrix gaussjord() {
+		return new F2MatrixBackend(copy()).gaussjord().packed();
+	}
+
+	/**
+	 * @return inverse or null if this matrix is singular
+	 */
+
+	public F2Matrix inverse() {
+		if (numOfRows != numOfCols) {
+			return null;
+		}
+		F2Matrix reduced = copy();
+		F2MatrixBackend inverse = new F2MatrixBackend(reduced).inverse();
+		// Matrix.inverse() misses some singular matrices, they don't reduce to I
+		if (inverse == null || !reduced.equals(identity(numOfRows))) {
+			return null;
+		}
+		return inverse.packed();
+	}
+
+	/**
+	 * @return rank
+	 */
+
+	public int rank() {
+		return new F2MatrixBackend(copy()).rank();
+	}
+
+	/**
+	 * @return determinant, true for one
+	 * @throws InvalidOperationException
+	 *             if matrix is not square
+	 */
+
+	public boolean det() throws InvalidOperationException {
+		if (numOfRows != numOfCols) {
+			throw new InvalidOperationException(
+					"Sqare matrix needed for determinant");
+		}
+		return rank() == numOfRows;
+	}
+
+	/**
+	 * @return deep copy of this matrix
+	 */
+
+	public F2Matrix copy() {
+		long[][] copy = new long[numOfRows][];
+		for (int row = 0; row < numOfRows; row++) {
+			copy[row] = rows[row].clone();
+		}
+		return new F2Matrix(copy, numOfCols);
+	}
+
+	/**
+	 * @return this matrix with F2 entries
+	 */
+
+	public Matrix toMatrix() {
+		FieldElement[][] entries = new FieldElement[numOfRows][numOfCols];
+		for (int row = 0; row < numOfRows; row++) {
+			for (int col = 0; col < numOfCols; col++) {
+				entries[row][col] = new F2(bit(row, col) ? 1 : 0);
+			}
+		}
+		return new Matrix(entries, numOfRows, numOfCols);
+	}
+
+	public boolean equals(Object o) {
+		if (!(o instanceof F2Matrix)) {
+			return false;
+		}
+		F2Matrix anotherMatrix = (F2Matrix) o;
+		return numOfCols == anotherMatrix.numOfCols
+				&& Arrays.deepEquals(rows, anotherMatrix.rows);
+	}
+
+	public int hashCode() {
+		return 31 * numOfCols + Arrays.deepHashCode(rows);
+	}
+
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int row = 1; row <= numOfRows; row++) {
+			builder.append(getRow(row)).append('\n');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @param row
+	 *            0-based
+	 * @param col
+	 *            0-based
+	 */
+	boolean bit(int row, int col) {
+		return (rows[row][col / F2Vector.WORD_BITS] & 1L << col) != 0;
+	}
+
+	/**
+	 * @param row
+	 *            0-based
+	 * @return 0-based column of the first one in row or -1 for a zero row
+	 */
+	int leadingCol(int row) {
+		long[] words = rows[row];
+		for (int word = 0; word < words.length; word++) {
+			if (words[word] != 0) {
+				return word * F2Vector.WORD_BITS
+						+ Long.numberOfTrailingZeros(words[word]);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return this matrix with vector appended as last column
+	 */
+	F2Matrix withCol(F2Vector vector) {
+		F2Matrix extended = new F2Matrix(numOfRows, numOfCols + 1);
+		for (int row = 0; row < numOfRows; row++) {
+			System.arraycopy(rows[row], 0, extended.rows[row], 0,
+					rows[row].length);
+			if (vector.get(row + 1)) {
+				extended.set(row + 1, numOfCols + 1, true);
+			}
+		}
+		return extended;
+	}
+
+	/**
+	 * @return true for an F2 with value 1 (or -1), false for 0
+	 * @throws InvalidOperationException
+	 *             if element is no F2
+	 */
+	static boolean bit(FieldElement element) {
+		if (!(element instanceof F2)) {
+			throw new InvalidOperationException(element
+					+ " is not an element of F2");
+		}
+		return ((F2) element).value != 0;
+	}
+
+	private static boolean isF2(FieldElement element) {
+		return element != null && element.getClass() == F2.class
+				&& (((F2) element).value == 0 || ((F2) element).value == 1);
+	}
+
+	private static void xor(long[] target, long[] source) {
+		for (int word = 0; word < target.length; word++) {
+			target[word] ^= source[word];
+		}
+	}
+
+	private void checkIndices(int rowIndex, int colIndex) {
+		if (rowIndex < 1 || rowIndex > numOfRows || colIndex < 1
+				|| colIndex > numOfCols) {
+			throw new InvalidOperationException("Tried to access entry ("
+					+ rowIndex + ", " + colIndex + ") of a " + numOfRows
+					+ "x" + numOfCols + " matrix");
+		}
+	}
+}
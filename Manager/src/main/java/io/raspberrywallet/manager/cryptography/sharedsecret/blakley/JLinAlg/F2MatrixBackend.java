@@ -0,0 +1,96 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+/**
+ * MatrixBackend for matrices of F2s, working on the packed rows of an
+ * F2Matrix, so subtracting a row is a XOR of whole words. The only non zero
+ * element is 1, hence dividing by a pivot does nothing.
+ */
+
+class F2MatrixBackend extends MatrixBackend {
+
+	private final F2Matrix matrix;
+
+	private final long[][] rows;
+
+	/**
+	 * @param matrix
+	 *            modified in place
+	 */
+	F2MatrixBackend(F2Matrix matrix) {
+		super(matrix.getRows(), matrix.getCols());
+		this.matrix = matrix;
+		this.rows = matrix.rows;
+	}
+
+	boolean isZero(int row, int col) {
+		return !matrix.bit(row, col);
+	}
+
+	void swapRows(int row1, int row2) {
+		long[] tmp = rows[row1];
+		rows[row1] = rows[row2];
+		rows[row2] = tmp;
+	}
+
+	void eliminate(int pivotRow, int targetRow, int col) {
+		if (!isZero(targetRow, col)) {
+			xorRow(rows[targetRow], rows[pivotRow], col);
+		}
+	}
+
+	void normalize(MatrixBackend divisors, int row, int col, int from) {
+	}
+
+	void reduce(MatrixBackend factors, int pivotRow, int targetRow, int col,
+			int from) {
+		if (!factors.isZero(targetRow, col)) {
+			xorRow(rows[targetRow], rows[pivotRow], from);
+		}
+	}
+
+	FieldElement diagonalProduct() {
+		for (int row = 0; row < numOfRows; row++) {
+			if (isZero(row, row)) {
+				return new F2(0);
+			}
+		}
+		return new F2(1);
+	}
+
+	MatrixBackend identity(int size) {
+		return new F2MatrixBackend(F2Matrix.identity(size));
+	}
+
+	F2MatrixBackend gausselim() {
+		super.gausselim();
+		return this;
+	}
+
+	F2MatrixBackend gaussjord() {
+		super.gaussjord();
+		return this;
+	}
+
+	F2MatrixBackend inverse() {
+		return (F2MatrixBackend) super.inverse();
+	}
+
+	Matrix toMatrix() {
+		return matrix.toMatrix();
+	}
+
+	F2Matrix packed() {
+		return matrix;
+	}
+
+	/**
+	 * target ^= pivot for the entries from from on.
+	 */
+	private static void xorRow(long[] target, long[] pivot, int from) {
+		int word = from / F2Vector.WORD_BITS;
+		target[word] ^= pivot[word] & -1L << from;
+		for (word++; word < target.length; word++) {
+			target[word] ^= pivot[word];
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class represents a vector over F2 with its entries packed into longs,
+ * 64 entries a word. Entry i (1-based) is bit (i - 1) % 64 of word
+ * (i - 1) / 64, bits past the length are always zero.
+ */
+
+public class F2Vector implements Serializable {
+
+	static final int WORD_BITS = 64;
+
+	private final int length;
+
+	final long[] words;
+
+	/**
+	 * Creates a zero vector of a given length.
+	 *
+	 * @param length
+	 */
+
+	public F2Vector(int length) {
+		this(length, new long[words(length)]);
+	}
+
+	F2Vector(int length, long[] words) {
+		this.length = length;
+		this.words = words;
+	}
+
+	/**
+	 * Packs a Vector of F2 elements.
+	 *
+	 * @param vector
+	 * @return packed vector
+	 * @throws InvalidOperationException
+	 *             if an entry is not an F2
+	 */
+
+	public static F2Vector fromVector(Vector vector)
+			throws InvalidOperationException {
+		F2Vector packed = new F2Vector(vector.length());
+		for (int i = 1; i <= vector.length(); i++) {
+			packed.set(i, F2Matrix.bit(vector.getEntry(i)));
+		}
+		return packed;
+	}
+
+	/**
+	 * @return length
+	 */
+
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @param index
+	 *            1-based
+	 * @return true if the entry at index is one
+	 */
+
+	public boolean get(int index) {
+		checkIndex(index);
+		return (words[(index - 1) / WORD_BITS] & 1L << (index - 1)) != 0;
+	}
+
+	/**
+	 * @param index
+	 *            1-based
+	 * @param value
+	 *            true for one, false for zero
+	 */
+
+	public void set(int index, boolean value) {
+		checkIndex(index);
+		if (value) {
+			words[(index - 1) / WORD_BITS] |= 1L << (index - 1);
+		} else {
+			words[(index - 1) / WORD_BITS] &= ~(1L << (index - 1));
+		}
+	}
+
+	/**
+	 * Returns the sum of this vector and another one, which is the XOR of
+	 * both.
+	 *
+	 * @param anotherVector
+	 * @return this + anotherVector
+	 * @throws InvalidOperationException
+	 *             if lengths differ
+	 */
+
+	public F2Vector add(F2Vector anotherVector)
+			throws InvalidOperationException {
+		checkLength(anotherVector);
+		F2Vector sum = copy();
+		for (int i = 0; i < words.length; i++) {
+			sum.words[i] ^= anotherVector.words[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the dot product of this vector and another one, the parity of
+	 * the entries that are one in both.
+	 *
+	 * @param anotherVector
+	 * @return this * anotherVector
+	 * @throws InvalidOperationException
+	 *             if lengths differ
+	 */
+
+	public boolean multiply(F2Vector anotherVector)
+			throws InvalidOperationException {
+		checkLength(anotherVector);
+		return dot(words, anotherVector.words);
+	}
+
+	/**
+	 * @return number of entries that are one
+	 */
+
+	public int weight() {
+		int weight = 0;
+		for (long word : words) {
+			weight += Long.bitCount(word);
+		}
+		return weight;
+	}
+
+	/**
+	 * @return true if all entries are zero
+	 */
+
+	public boolean isZero() {
+		for (long word : words) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return deep copy of this vector
+	 */
+
+	public F2Vector copy() {
+		return new F2Vector(length, words.clone());
+	}
+
+	/**
+	 * @return this vector with F2 entries
+	 */
+
+	public Vector toVector() {
+		FieldElement[] entries = new FieldElement[length];
+		for (int i = 1; i <= length; i++) {
+			entries[i - 1] = new F2(get(i) ? 1 : 0);
+		}
+		return new Vector(entries);
+	}
+
+	public boolean equals(Object o) {
+		if (!(o instanceof F2Vector)) {
+			return false;
+		}
+		F2Vector anotherVector = (F2Vector) o;
+		return length == anotherVector.length
+				&& Arrays.equals(words, anotherVector.words);
+	}
+
+	public int hashCode() {
+		return 31 * length + Arrays.hashCode(words);
+	}
+
+	public String toString() {
+		StringBuilder builder = new StringBuilder("(");
+		for (int i = 1; i <= length; i++) {
+			builder.append(get(i) ? '1' : '0');
+		}
+		return builder.append(')').toString();
+	}
+
+	static int words(int length) {
+		return (length + WORD_BITS - 1) / WORD_BITS;
+	}
+
+	/**
+	 * Parity of the common bits of two rows of packed entries.
+	 */
+	static boolean dot(long[] a, long[] b) {
+		long common = 0;
+		for (int i = 0; i < a.length; i++) {
+			common ^= a[i] & b[i];
+		}
+		return (Long.bitCount(common) & 1) != 0;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 1 || index > length) {
+			throw new InvalidOperationException("Tried to access entry "
+					+ index + " of a vector with length " + length);
+		}
+	}
+
+	private void checkLength(F2Vector anotherVector) {
+		if (length != anotherVector.length) {
+			throw new InvalidOperationException("Tried to operate on vectors"
+					+ " with lengths " + length + " and "
+					+ anotherVector.length + ". Not correct format!");
+		}
+	}
+}
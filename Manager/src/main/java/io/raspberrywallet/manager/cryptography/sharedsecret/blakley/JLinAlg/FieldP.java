@@ -1,9 +1,7 @@
 package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
 
-import java.lang.ref.WeakReference;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.HashMap;
 import java.util.Random;
 
 /**
@@ -26,8 +24,9 @@ public class FieldP extends FieldElement {
 		BigInteger.valueOf(PRIME_SEPARATION_BOUNDARY);
 
 	/** for all Fp with p &lt;= inversesLookupTableBoundary inverses are stored
-	 * in a lookup table of size p , for bigger fields inverses are stored with the
-	 * element. It is assumed that inversesLookupTableBoundary < PRIME_SEPARATION_BOUNDARY */
+	 * in a lookup table of size p (see FieldPInverses), for bigger fields inverses
+	 * are stored with the element. It is assumed that
+	 * inversesLookupTableBoundary < PRIME_SEPARATION_BOUNDARY */
 	private static long inversesLookupTableBoundary = 65521;
 
 	/** Reference to the implementation of this element */
@@ -211,6 +210,15 @@ public class FieldP extends FieldElement {
 		return element.equals(((FieldP) o).element);
 	}
 
+	/**
+	 * Returns the implementation of this element if p is small enough for long
+	 * arithmetic. For the primitive matrix backends.
+	 * @return The FieldPLong of this element or null if p is too big.
+	 */
+	FieldPLong longElement() {
+		return element instanceof FieldPLong ? (FieldPLong) element : null;
+	}
+
 	/**
 	 * Returns the number n which decides whether to store inverses in a lookup table
 	 * (for fields with less or equal than n elements) or with the elements (otherwise)
@@ -223,21 +231,16 @@ public class FieldP extends FieldElement {
 	/**
 	 * This methods sets the boundary on the elements of Fp above which all inverses
 	 * are stored with the elements and therefore may be computed several times instead
-	 * of storing them in a lookup table. When using a lookup table for the inverses
-	 * the inverse of a element will be automatically computed at creation time and stored
-	 * in the table. If you are sure you will never need division it might be faster to
-	 * set the boundary lower than the number of elements in your field BEFORE creating the
-	 * first element of it. 
+	 * of storing them in a lookup table. A lookup table for Fp takes 4 * p bytes, it
+	 * is shared by all threads and filled when an inverse is first needed.
 	 * 
 	 * WARNING: If you change this boundary AFTER you have instantiated at least one
 	 * element of Fp where p is less than Integer.MAX_VALUE, all existing elements
 	 * which have not used the lookup-table won't use it either afterwards. Moreover,
 	 * any new elements generated from these by unary operations or by binary operations
-	 * where they from the first operand won't use it either. Similarily all elements which
-	 * have used the lookup table and all elements generated from them in the same way will
-	 * still use the lookup table. The memory allocated to the lookup table will not be freed
-	 * before all elements using the lookup table are removed. Lookup tables are separate for
-	 * each Fp. 
+	 * where they from the first operand won't use it either. Elements which have used
+	 * the lookup table compute their inverses on demand while Fp is above the boundary.
+	 * Lookup tables are separate for each Fp. 
 	 * 
 	 * @param boundary The number n of elements in Fp above which no lookup table should be
 	 * used.
@@ -246,10 +249,31 @@ public class FieldP extends FieldElement {
 		inversesLookupTableBoundary = Math.min(Integer.MAX_VALUE, boundary);
 	}
 
+	/**
+	 * Returns the maximal number of inverses stored in the lookup tables of all
+	 * fields together.
+	 * @return The capacity of the lookup tables in entries
+	 */
+	public static long getInversesLookupTableCapacity() {
+		return FieldPInverses.getCapacity();
+	}
+
+	/**
+	 * Bounds the memory of the lookup tables of all fields together, an entry
+	 * takes 4 bytes. If creating the table of a field exceeds the capacity, the
+	 * tables of other fields are evicted, oldest first, and their inverses are
+	 * computed again when needed. Fields with more elements than the capacity
+	 * get no lookup table at all.
+	 * @param entries The maximal number of inverses in all lookup tables.
+	 */
+	public static void setInversesLookupTableCapacity(long entries) {
+		FieldPInverses.setCapacity(entries);
+	}
+
 	/**
 	 * Tuning option. If you expect to need most of the inverses in Fp, i.e. want to
 	 * divide by most of the elements, then this speeds the division up by computing
-	 * the inverses ahead.
+	 * the inverses ahead, all of them in O(p) multiplications.
 	 * This method only computes the inverse if there is a lookup table for the inverses.
 	 */
 	public void computeAllInverses() {
@@ -562,55 +586,27 @@ abstract class FieldPLong extends FieldPAbstract {
 }
 
 /**
-  * This class implements an element of Fp using a static lookup table for storing
-  * multiplicative inverses. This lookup table for Fp is kept in memory as long as there is
-  * at least one element of Fp in memory. If at some point no element of Fp can be
-  * strongly referenced it is up to the garbage collector to remove the lookup table
-  * for Fp.
+  * This class implements an element of Fp using the lookup table of
+  * multiplicative inverses in FieldPInverses, which is shared by all elements of
+  * Fp and filled on demand.
   * 
   * IMPORTANT: This class and its subclasses make use of the concept of immutability
-  * of objects. It is somewhat like a singleton except that there may be p objects of it, each
-  * with a different attribute value.
-  * If you make changes or subclass these classes, ensure immutability
-  * or overwrite the methods affected, i.e. constructor, instance, enterInverses,
-  * equals, clone.
+  * of objects. If you make changes or subclass these classes, ensure immutability
+  * or overwrite the methods affected.
   * 
   * @author Andreas Lochbihler
   */
 class FieldPLongLookup extends FieldPLong {
 
-	/**
-	 * Maps from Long(p) objects to WeakReference objects referencing
-	 * FieldPLongLookup[] arrays of length (p-1).
-	 * The j-th entry contains the multiplicative inverse of j if already computed
-	 * otherwise it is 0. The mapping has not to be right total.
-	 */
-	private static HashMap inverses = new HashMap();
-
-	/**
-	 * Reference to the lookup table of inverses for Fp.
-	 * Must always be initialized. If the inverse of i is in the table and ist j,
-	 * then there must also be inverseTable[j] = i and inverseTable[p-i]=p-j and
-	 * inverseTable[p-j]=p-i.
-	 * inverseTable[0] stores the zero element,
-	 * inverseTable[1] stores the one element.
-	 */
-	private FieldPLongLookup[] inverseTable;
-
 	/**
 	 * Generates a new element of Fp. Only for internal use within this class.
 	 * No parameter checking is done. 
-	 * @param value The new element is the equivalence class of value
+	 * @param value The smallest nonnegative representant of the equivalence class
 	 * @param p The number of elements in the field. Must be prime.
-	 * @param inverseTable The table of inverses for this field Fp
 	 */
-	private FieldPLongLookup(
-		long value,
-		long p,
-		FieldPLongLookup[] inverseTable) {
+	private FieldPLongLookup(long value, long p) {
 		super(p);
 		this.value = value;
-		this.inverseTable = inverseTable;
 	}
 
 	/**
@@ -622,14 +618,12 @@ class FieldPLongLookup extends FieldPLong {
 	public FieldElement invert() {
 		if (this.isZero()) {
 			throw new InvalidOperationException("Inversion of 0");
-		} else {
-			/* The inverse has already been computed at creation time */
-			return inverseTable[(int) value];
 		}
+		return new FieldPLongLookup(FieldPInverses.inverse(value, p), p);
 	}
 
 	/**
-	 * Returns this field element since each element may exist only once!
+	 * Returns this field element since it is immutable.
 	 * @return The field element
 	 */
 	public Object clone() {
@@ -642,92 +636,23 @@ class FieldPLongLookup extends FieldPLong {
 	 * @return True if and only if this is equal to o in the above sense.
 	 */
 	public boolean equals(Object o) {
-		return (this == o);
-	}
-
-	/**
-	 * Computes all the inverses for this field Fp and stores them in the
-	 * lookup table.
-	 */
-	public void computeAllInverses() {
-		if (p > 2) {
-			// compute 2 separately
-			if (inverseTable[2] == null) {
-				long q = (p - 1) / 2;
-
-				enterInverses(2, q);
-
-				long a = 2;
-
-				long q1 = q;
-				while (q > 0 && a < q1) {
-					if (q % 2 == 0) {
-						q = q >> 1;
-						a = a << 1;
-					} else {
-						q = (q + p) / 2; // p is odd since p is a prime > 2
-						a = a << 1;
-					}
-					enterInverses(a, q);
-				}
-			}
-
-			long a = 3;
-			long q, a1;
-			while (a < p) {
-				if (inverseTable[(int) a] == null) {
-					q = computeInverse(a);
-					enterInverses(a, q);
-					a1 = a;
-					while (q % a1 == 0) {
-						q /= a1;
-						a = (a * a1) % p;
-						enterInverses(a, q);
-					}
-				}
-				a++;
-			}
-
+		if (!(o instanceof FieldPLongLookup)) {
+			return false;
 		}
+		FieldPLongLookup element = (FieldPLongLookup) o;
+		return this.value == element.value && this.p == element.p;
 	}
 
-	/**
-	 * Enters the multiplicative inverses of a, b, (p-a) and (p-b) in the lookup table. 
-	 * @param a The inverse of b
-	 * @param b The inverse of a
-	 */
-	private void enterInverses(long a, long b) {
-		if (inverseTable[(int) a] == null) {
-			enterInverses(a, b, p, inverseTable);
-		}
+	public int hashCode() {
+		return (int) (31 * p + value);
 	}
 
 	/**
-	 * Enters the multiplicative inverses of a, b, (p-a) and (p-b) in the lookup table.
-	 * @param a The inverse of b wrt p
-	 * @param b The inverse of a wrt p
-	 * @param p The number of elements in the field.
-	 * @param inverseTable The inverse lookup table.
+	 * Computes all the inverses for this field Fp and stores them in the
+	 * lookup table.
 	 */
-	private static void enterInverses(
-		long a,
-		long b,
-		long p,
-		FieldPLongLookup[] inverseTable) {
-
-		inverseTable[(int) a] = new FieldPLongLookup(b, p, inverseTable);
-		if (a != b) {
-			inverseTable[(int) b] = new FieldPLongLookup(a, p, inverseTable);
-			if (inverseTable[(int) (p - a)] == null) {
-				inverseTable[(int) (p - a)] =
-					new FieldPLongLookup(p - b, p, inverseTable);
-				inverseTable[(int) (p - b)] =
-					new FieldPLongLookup(p - a, p, inverseTable);
-			}
-		} else if (inverseTable[(int) (p - b)] == null) {
-			inverseTable[(int) (p - b)] =
-				new FieldPLongLookup(p - a, p, inverseTable);
-		}
+	public void computeAllInverses() {
+		FieldPInverses.computeAll(p);
 	}
 
 	/**
@@ -737,67 +662,17 @@ class FieldPLongLookup extends FieldPLong {
 	 * @return The equivalence class containing val in Fp.
 	 */
 	public FieldPAbstract instance(long val) {
-		return instance(val, this.p, this.inverseTable);
+		return new FieldPLongLookup(normalize(val, p), p);
 	}
 
 	/**
 	 * Returns the element representing the equivalence class in which val is of the field Fp.
-	 * If this is the first element of Fp to be created, the lookup table will be
-	 * initialized. 
 	 * @param val The value specifying the equivalence class to return
 	 * @param p The number of elements in Fp
 	 * @return The equivalence class containing val in Fp.
 	 */
 	public static FieldPAbstract instance(long val, long p) {
-		/* Does the table of inverses exist? */
-		Long pL = new Long(p);
-		WeakReference wref = (WeakReference) inverses.get(pL);
-
-		FieldPLongLookup[] inverseTable;
-
-		if ((wref == null)
-			|| ((inverseTable = (FieldPLongLookup[]) wref.get()) == null)) {
-			// No -> create a new one
-			inverseTable = new FieldPLongLookup[(int) p];
-
-			/* add the zero element */
-			inverseTable[0] = new FieldPLongLookup(0, p, inverseTable);
-
-			// fill automatically inverses of 1 and (p-1)
-			inverseTable[1] = new FieldPLongLookup(1, p, inverseTable);
-			inverseTable[(int) p - 1] =
-				new FieldPLongLookup(p - 1, p, inverseTable);
-
-			// store for further usage
-			inverses.put(pL, new WeakReference(inverseTable));
-		}
-
-		return instance(val, p, inverseTable);
-	}
-
-	/**
-	 * Returns the element of Fp which val is in.
-	 * @param val The value specifying the equivalence class to return
-	 * @param p The number of elements of Fp
-	 * @param inverseTable The lookup table for multiplicative inverses in Fp
-	 * @return The equivalence class in which val is.
-	 */
-	private static FieldPAbstract instance(
-		long val,
-		long p,
-		FieldPLongLookup[] inverseTable) {
-		val = normalize(val, p);
-
-		FieldPLongLookup inverseFP = inverseTable[(int) val];
-		FieldPLongLookup element;
-		if (inverseFP == null) {
-			long inverse = computeInverse(val, p);
-			enterInverses(val, inverse, p, inverseTable);
-			element = inverseTable[(int) inverse];
-		} else {
-			element = inverseTable[(int) inverseFP.value];
-		}
-		return element;
+		return new FieldPLongLookup(normalize(val, p), p);
 	}
 
 }
@@ -0,0 +1,208 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lookup table of the multiplicative inverses in one field Fp, shared by all
+ * elements of Fp and all threads. The table is filled lazily without locks:
+ * an entry is 0 until the inverse is known (0 is nobody's inverse), and as the
+ * inverse of a value never changes, racing threads can only write the same
+ * entries.
+ * <p>
+ * Tables exist for p &lt;= FieldP.getInversesLookupTableBoundary() only, so
+ * one field never takes more than 4 * p bytes. All tables together hold at
+ * most FieldP.getInversesLookupTableCapacity() entries; creating a table
+ * beyond that evicts the tables of other fields, oldest first. Tables are
+ * softly referenced as well, so the garbage collector may evict whole fields
+ * under memory pressure. Inverses of an evicted field are recomputed on
+ * demand.
+ */
+
+final class FieldPInverses {
+
+	/** Tables of all fields by p */
+	private static final ConcurrentHashMap<Long, SoftReference<FieldPInverses>> tables =
+			new ConcurrentHashMap<>();
+
+	/** Sum of the sizes of all tables in tables */
+	private static final AtomicLong cachedEntries = new AtomicLong();
+
+	private static final AtomicLong creations = new AtomicLong();
+
+	private static volatile long capacity = 1L << 22;
+
+	/** The number of elements in the field */
+	private final long p;
+
+	/** inverses[i] is the inverse of i or 0 if not computed yet */
+	private final AtomicIntegerArray inverses;
+
+	/** Orders tables by age for eviction */
+	private final long created;
+
+	private volatile boolean complete;
+
+	private FieldPInverses(long p) {
+		this.p = p;
+		this.inverses = new AtomicIntegerArray((int) p);
+		this.created = creations.incrementAndGet();
+	}
+
+	/**
+	 * Returns the inverse of value in Fp, from the table of Fp if there is
+	 * one.
+	 * @param value The smallest non-negative representative, not 0
+	 * @param p The number of elements in the field
+	 * @return The multiplicative inverse of value in Fp
+	 */
+	static long inverse(long value, long p) {
+		FieldPInverses table = forPrime(p);
+		return table == null ? FieldPLong.computeInverse(value, p) : table
+				.inverse(value);
+	}
+
+	/**
+	 * Fills the table of Fp, if Fp gets one.
+	 * @param p The number of elements in the field
+	 */
+	static void computeAll(long p) {
+		FieldPInverses table = forPrime(p);
+		if (table != null) {
+			table.computeAll();
+		}
+	}
+
+	/**
+	 * Returns the table of Fp, creating it if necessary.
+	 * @param p The number of elements in the field
+	 * @return The table or null if Fp is too big for a table
+	 */
+	static FieldPInverses forPrime(long p) {
+		if (p > FieldP.getInversesLookupTableBoundary() || p > capacity) {
+			return null;
+		}
+		SoftReference<FieldPInverses> reference = tables.get(p);
+		FieldPInverses table = reference == null ? null : reference.get();
+		if (table != null) {
+			return table;
+		}
+
+		final FieldPInverses[] created = new FieldPInverses[1];
+		tables.compute(p, (key, old) -> {
+			created[0] = old == null ? null : old.get();
+			if (created[0] != null) {
+				return old;
+			}
+			if (old != null) {
+				// cleared by the garbage collector
+				cachedEntries.addAndGet(-key);
+			}
+			created[0] = new FieldPInverses(key);
+			cachedEntries.addAndGet(key);
+			return new SoftReference<>(created[0]);
+		});
+		evict(created[0]);
+		return created[0];
+	}
+
+	/**
+	 * @return The maximal number of entries in all tables together
+	 */
+	static long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Sets the maximal number of entries in all tables together and evicts
+	 * tables if they exceed the new capacity.
+	 * @param entries The new capacity
+	 */
+	static void setCapacity(long entries) {
+		capacity = entries;
+		evict(null);
+	}
+
+	/**
+	 * @return The number of entries in all tables together
+	 */
+	static long getCachedEntries() {
+		return cachedEntries.get();
+	}
+
+	/**
+	 * Evicts the oldest tables until the capacity is kept.
+	 * @param keep A table not to evict, may be null
+	 */
+	private static void evict(FieldPInverses keep) {
+		if (cachedEntries.get() <= capacity) {
+			return;
+		}
+		// {age, p}, tables cleared by the garbage collector first
+		List<long[]> candidates = new ArrayList<>();
+		for (Map.Entry<Long, SoftReference<FieldPInverses>> entry : tables
+				.entrySet()) {
+			FieldPInverses table = entry.getValue().get();
+			if (table != keep) {
+				candidates.add(new long[] { table == null ? 0 : table.created,
+						entry.getKey() });
+			}
+		}
+		candidates.sort((a, b) -> Long.compare(a[0], b[0]));
+
+		for (long[] candidate : candidates) {
+			if (cachedEntries.get() <= capacity) {
+				return;
+			}
+			SoftReference<FieldPInverses> reference = tables.get(candidate[1]);
+			if (reference != null && tables.remove(candidate[1], reference)) {
+				cachedEntries.addAndGet(-candidate[1]);
+			}
+		}
+	}
+
+	/**
+	 * @param value The smallest non-negative representative, not 0
+	 * @return The multiplicative inverse of value in Fp
+	 */
+	long inverse(long value) {
+		int inverse = inverses.get((int) value);
+		if (inverse == 0) {
+			inverse = (int) FieldPLong.computeInverse(value, p);
+			inverses.lazySet((int) value, inverse);
+			inverses.lazySet(inverse, (int) value);
+		}
+		return inverse;
+	}
+
+	/**
+	 * Computes all inverses in O(p) with a single inversion: with
+	 * f(i) = 1 * 2 * ... * i the inverse of i is f(i)^-1 * f(i-1), and
+	 * f(i-1)^-1 = f(i)^-1 * i.
+	 */
+	void computeAll() {
+		if (complete) {
+			return;
+		}
+		int size = inverses.length();
+		int[] factorials = new int[size];
+		long factorial = 1;
+		for (int i = 1; i < size; i++) {
+			factorial = factorial * i % p;
+			factorials[i] = (int) factorial;
+		}
+		factorials[0] = 1;
+
+		long inverse = FieldPLong.computeInverse(factorial, p);
+		for (int i = size - 1; i > 0; i--) {
+			inverses.lazySet(i, (int) (inverse * factorials[i - 1] % p));
+			inverse = inverse * i % p;
+		}
+		complete = true;
+	}
+}
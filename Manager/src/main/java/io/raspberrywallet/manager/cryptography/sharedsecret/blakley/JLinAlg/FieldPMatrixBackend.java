@@ -0,0 +1,125 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+/**
+ * MatrixBackend for matrices of FieldPs of one field Fp with p small enough for
+ * long arithmetic (see FieldPLong). Every row is a long[] of least non-negative
+ * representants, a pivot is inverted once and not for every row it
+ * eliminates.
+ */
+
+class FieldPMatrixBackend extends MatrixBackend {
+
+	private final long[][] rows;
+
+	private final long p;
+
+	/** Last inverted pivot and its inverse */
+	private long invertedPivot = 1;
+
+	private long pivotInverse = 1;
+
+	FieldPMatrixBackend(long[][] rows, int numberOfCols, long p) {
+		super(rows.length, numberOfCols);
+		this.rows = rows;
+		this.p = p;
+	}
+
+	/**
+	 * @return backend holding a copy of the entries of matrix, which must all
+	 *         be FieldPs of the field with p elements and p below the
+	 *         FieldPLong boundary
+	 */
+	static FieldPMatrixBackend of(Matrix matrix, long p) {
+		FieldElement[][] entries = matrix.getEntries();
+		long[][] rows = new long[matrix.getRows()][matrix.getCols()];
+		for (int row = 0; row < rows.length; row++) {
+			for (int col = 0; col < rows[row].length; col++) {
+				rows[row][col] = ((FieldP) entries[row][col]).longElement().value;
+			}
+		}
+		return new FieldPMatrixBackend(rows, matrix.getCols(), p);
+	}
+
+	boolean isZero(int row, int col) {
+		return rows[row][col] == 0;
+	}
+
+	void swapRows(int row1, int row2) {
+		long[] tmp = rows[row1];
+		rows[row1] = rows[row2];
+		rows[row2] = tmp;
+	}
+
+	void eliminate(int pivotRow, int targetRow, int col) {
+		long[] pivot = rows[pivotRow];
+		long[] target = rows[targetRow];
+		long factor = target[col] * inverse(pivot[col]) % p;
+		if (factor == 0) {
+			return;
+		}
+		subtractMultiple(target, pivot, factor, col);
+	}
+
+	void normalize(MatrixBackend divisors, int row, int col, int from) {
+		long inverse = inverse(((FieldPMatrixBackend) divisors).rows[row][col]);
+		long[] target = rows[row];
+		for (int k = from; k < numOfCols; k++) {
+			target[k] = target[k] * inverse % p;
+		}
+	}
+
+	void reduce(MatrixBackend factors, int pivotRow, int targetRow, int col,
+			int from) {
+		long factor = ((FieldPMatrixBackend) factors).rows[targetRow][col];
+		if (factor == 0) {
+			return;
+		}
+		subtractMultiple(rows[targetRow], rows[pivotRow], factor, from);
+	}
+
+	FieldElement diagonalProduct() {
+		long product = 1 % p;
+		for (int row = 0; row < numOfRows; row++) {
+			product = product * rows[row][row] % p;
+		}
+		return new FieldP(product, p);
+	}
+
+	MatrixBackend identity(int size) {
+		long[][] identity = new long[size][size];
+		for (int i = 0; i < size; i++) {
+			identity[i][i] = 1 % p;
+		}
+		return new FieldPMatrixBackend(identity, size, p);
+	}
+
+	Matrix toMatrix() {
+		FieldElement[][] entries = new FieldElement[numOfRows][numOfCols];
+		for (int row = 0; row < numOfRows; row++) {
+			for (int col = 0; col < numOfCols; col++) {
+				entries[row][col] = new FieldP(rows[row][col], p);
+			}
+		}
+		return new Matrix(entries, numOfRows, numOfCols);
+	}
+
+	/**
+	 * target[k] -= factor * pivot[k] for k from from on. Both are less than p
+	 * and p^2 fits into a long, so the product doesn't overflow.
+	 */
+	private void subtractMultiple(long[] target, long[] pivot, long factor,
+			int from) {
+		for (int k = from; k < numOfCols; k++) {
+			long difference = target[k] - factor * pivot[k] % p;
+			target[k] = difference < 0 ? difference + p : difference;
+		}
+	}
+
+	private long inverse(long pivot) {
+		if (pivot != invertedPivot) {
+			pivotInverse = FieldPInverses.inverse(pivot, p);
+			invertedPivot = pivot;
+		}
+		return pivotInverse;
+	}
+}
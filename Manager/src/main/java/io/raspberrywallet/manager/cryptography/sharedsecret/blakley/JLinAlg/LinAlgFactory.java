@@ -232,6 +232,61 @@ public class LinAlgFactory implements Serializable {
 		return new Vector(wrap(theValues));
 	}
 
+	/**
+	 * Chooses a primitive backend for the elimination algorithms of matrix.
+	 * There is one if all entries are DoubleWrappers, all are F2s or all are
+	 * FieldPs of the same field with p small enough for long arithmetic.
+	 * @param matrix
+	 * @return backend holding a copy of the entries of matrix, or null if the
+	 *         generic FieldElement algorithms have to be used
+	 */
+	static MatrixBackend backendFor(Matrix matrix) {
+		FieldElement[][] entries = matrix.getEntries();
+		if (entries == null || matrix.getRows() == 0 || matrix.getCols() == 0
+				|| entries[0][0] == null) {
+			return null;
+		}
+		Class type = entries[0][0].getClass();
+		if (type == DoubleWrapper.class) {
+			return allOfType(matrix, type) ? DoubleMatrixBackend.of(matrix)
+					: null;
+		}
+		if (type == F2.class) {
+			return F2Matrix.isF2(matrix) ? new F2MatrixBackend(F2Matrix
+					.fromMatrix(matrix)) : null;
+		}
+		if (type == FieldP.class) {
+			FieldPLong first = ((FieldP) entries[0][0]).longElement();
+			if (first == null || !allOfType(matrix, type)) {
+				return null;
+			}
+			for (int row = 0; row < matrix.getRows(); row++) {
+				for (int col = 0; col < matrix.getCols(); col++) {
+					FieldPLong element = ((FieldP) entries[row][col])
+							.longElement();
+					if (element == null || element.p != first.p) {
+						return null;
+					}
+				}
+			}
+			return FieldPMatrixBackend.of(matrix, first.p);
+		}
+		return null;
+	}
+
+	private static boolean allOfType(Matrix matrix, Class type) {
+		FieldElement[][] entries = matrix.getEntries();
+		for (int row = 0; row < matrix.getRows(); row++) {
+			for (int col = 0; col < matrix.getCols(); col++) {
+				if (entries[row][col] == null
+						|| entries[row][col].getClass() != type) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	// I am the Queen / Of the wrapping scene
 	public FieldElement[] wrap(double[] x) {
 		FieldElement[] d = new FieldElement[x.length];
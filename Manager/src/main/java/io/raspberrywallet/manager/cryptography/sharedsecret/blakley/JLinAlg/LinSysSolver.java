@@ -126,6 +126,12 @@ public class LinSysSolver implements Serializable {
 							+ ". Not correct format!");
 		}
 
+		if (F2Matrix.isF2(a) && F2Matrix.isF2(b)) {
+			F2Vector solution = solve(F2Matrix.fromMatrix(a), F2Vector
+					.fromVector(b));
+			return solution == null ? null : solution.toVector();
+		}
+
 		Matrix extCoeff = LinSysSolver.isSolvableHelper(a, b);
 
 		if (extCoeff == null) {
@@ -234,6 +240,10 @@ public class LinSysSolver implements Serializable {
 							+ ". Not correct format!");
 		}
 
+		if (F2Matrix.isF2(a) && F2Matrix.isF2(b)) {
+			return isSolvable(F2Matrix.fromMatrix(a), F2Vector.fromVector(b));
+		}
+
 		Matrix tmp = a.insertCol(a.getCols() + 1, b);
 		// The Following is equivalent to: return tmp.rank() == a.rank();
 		// But it is more efficient.
@@ -259,4 +269,68 @@ public class LinSysSolver implements Serializable {
 
 	}
 
+	/**
+	 * Calculates a solution of a given linear equation system over F2 of the
+	 * form A*x=b. Like solve(Matrix, Vector) all free variables are zero.
+	 * 
+	 * @param a
+	 *            coefficient matrix
+	 * @param b
+	 *            result vector
+	 * @return solution or null if there is none
+	 */
+
+	public static F2Vector solve(F2Matrix a, F2Vector b) {
+		checkF2Sizes(a, b);
+
+		F2Matrix reduced = a.withCol(b).gaussjord();
+		F2Vector solution = new F2Vector(a.getCols());
+		for (int row = 0; row < reduced.getRows(); row++) {
+			int pivotCol = reduced.leadingCol(row);
+			if (pivotCol < 0) {
+				break;
+			}
+			if (pivotCol == a.getCols()) {
+				return null;
+			}
+			if (reduced.bit(row, a.getCols())) {
+				solution.set(pivotCol + 1, true);
+			}
+		}
+		return solution;
+	}
+
+	/**
+	 * Tests whether a linear equation system over F2 (A*x=b) is solvable or
+	 * not.
+	 * 
+	 * @param a
+	 *            coefficient matrix
+	 * @param b
+	 *            result vector
+	 * @return true if and only if there is a solution
+	 */
+
+	public static boolean isSolvable(F2Matrix a, F2Vector b) {
+		checkF2Sizes(a, b);
+
+		F2Matrix echelon = a.withCol(b).gausselim();
+		for (int row = 0; row < echelon.getRows(); row++) {
+			if (echelon.leadingCol(row) == a.getCols()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void checkF2Sizes(F2Matrix a, F2Vector b) {
+		if (a.getRows() != b.length()) {
+			throw new InvalidOperationException(
+					"Tried to solve an equation system with a coefficient matrix"
+							+ " with " + a.getRows() + " rows and a"
+							+ " vector with length " + b.length()
+							+ ". Not correct format!");
+		}
+	}
+
 }
@@ -5,6 +5,10 @@ import java.io.Serializable;
 /**
  * This class represents a matrix.
  * 
+ * Gauss elimination, inverse, rank and determinant run on primitive arrays if
+ * LinAlgFactory.backendFor finds a backend for the entries. Gauss-Jordan,
+ * rank and determinant of Rationals use fraction-free BareissElimination.
+ * 
  * @author Andreas Keilhauer, Simon D. Levy
  */
 
@@ -523,15 +527,7 @@ public class Matrix implements Serializable {
 	 */
 
 	public Matrix add(Matrix anotherMatrix) throws InvalidOperationException {
-		FieldElement[][] anotherMatrixEntries = this.getEntries();
-		FieldElement[][] resultMatrixEntries = new FieldElement[this.numOfRows][this.numOfCols];
-		for (int row = 0; row < this.numOfRows; row++) {
-			for (int col = 0; col < this.numOfCols; col++) {
-				resultMatrixEntries[row][col] = entries[row][col]
-						.add(anotherMatrixEntries[row][col]);
-			}
-		}
-		return new Matrix(entries);
+		return operate(this, anotherMatrix, new AddOperator(), "add");
 	}
 
 	/**
@@ -557,15 +553,7 @@ public class Matrix implements Serializable {
 
 	public Matrix subtract(Matrix anotherMatrix)
 			throws InvalidOperationException {
-		FieldElement[][] anotherMatrixEntries = this.getEntries();
-		FieldElement[][] resultMatrixEntries = new FieldElement[this.numOfRows][this.numOfCols];
-		for (int row = 0; row < this.numOfRows; row++) {
-			for (int col = 0; col < this.numOfCols; col++) {
-				resultMatrixEntries[row][col] = entries[row][col]
-						.subtract(anotherMatrixEntries[row][col]);
-			}
-		}
-		return new Matrix(entries);
+		return operate(this, anotherMatrix, new SubtractOperator(), "subtract");
 	}
 
 	/**
@@ -640,7 +628,7 @@ public class Matrix implements Serializable {
 
 	public Matrix multiply(Matrix anotherMatrix)
 			throws InvalidOperationException {
-		return MatrixMultiplication.simple(this, anotherMatrix);
+		return MatrixMultiplication.automatic(this, anotherMatrix);
 	}
 
 	/**
@@ -676,14 +664,24 @@ public class Matrix implements Serializable {
 	}
 
 	private FieldElement detCalc() {
-		Matrix tmp = this.gausselim();
+		MatrixBackend backend = LinAlgFactory.backendFor(this);
+		if (backend != null) {
+			return backend.det();
+		}
+		if (BareissElimination.isApplicable(this)) {
+			return BareissElimination.det(this);
+		}
+
+		int[] swaps = new int[1];
+		Matrix tmp = this.gausselim(swaps);
 		FieldElement determinant = (tmp.get(1, 1).one());
 
 		for (int row = 1; row <= tmp.getRows(); row++) {
 			determinant = determinant.multiply(tmp.get(row, row));
 		}
 
-		return determinant;
+		// every row swap changes the sign
+		return swaps[0] % 2 == 0 ? determinant : determinant.negate();
 	}
 
 	/**
@@ -725,6 +723,14 @@ public class Matrix implements Serializable {
 	 */
 
 	public Matrix gaussjord() {
+		MatrixBackend backend = LinAlgFactory.backendFor(this);
+		if (backend != null) {
+			return backend.gaussjord().toMatrix();
+		}
+		if (BareissElimination.isApplicable(this)) {
+			return BareissElimination.gaussjord(this);
+		}
+
 		Matrix tmp = this.copy();
 
 		int minOfRowsCols = Math.min(tmp.getRows(), tmp.getCols());
@@ -789,6 +795,22 @@ public class Matrix implements Serializable {
 	 */
 
 	public Matrix gausselim() {
+		MatrixBackend backend = LinAlgFactory.backendFor(this);
+		if (backend != null) {
+			return backend.gausselim().toMatrix();
+		}
+		return gausselim(null);
+	}
+
+	/**
+	 * Generic Gauss-elimination.
+	 * 
+	 * @param swaps
+	 *            if not null, swaps[0] is increased for every row swap
+	 * @return matrix in row-echelon form
+	 */
+
+	private Matrix gausselim(int[] swaps) {
 		Matrix tmp = this.copy();
 
 		int minOfRowsCols = Math.min(tmp.getRows(), tmp.getCols());
@@ -806,6 +828,9 @@ public class Matrix implements Serializable {
 				for (int candidate = row + 1; candidate <= tmp.getRows(); candidate++) {
 					if (!tmp.get(candidate, colCounter).isZero()) {
 						tmp.swapRows(row, candidate);
+						if (swaps != null) {
+							swaps[0]++;
+						}
 						found = true;
 						break;
 					}
@@ -896,6 +921,14 @@ public class Matrix implements Serializable {
 	 */
 
 	public int rank() {
+		MatrixBackend backend = LinAlgFactory.backendFor(this);
+		if (backend != null) {
+			return backend.rank();
+		}
+		if (BareissElimination.isApplicable(this)) {
+			return BareissElimination.rank(this);
+		}
+
 		Matrix tmp = this.gausselim();
 		int numberOfZeroRows = 0;
 		int row = tmp.getRows();
@@ -984,6 +1017,12 @@ public class Matrix implements Serializable {
 			return null;
 		}
 
+		MatrixBackend backend = LinAlgFactory.backendFor(this);
+		if (backend != null) {
+			MatrixBackend inverse = backend.inverse();
+			return inverse == null ? null : inverse.toMatrix();
+		}
+
 		Matrix tmp = this.copy();
 
 		FieldElement zero = tmp.get(1, 1).zero();
@@ -0,0 +1,213 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+/**
+ * Dense storage of a matrix in primitive arrays, used by Matrix for Gauss
+ * elimination, Gauss-Jordan elimination, inverse, rank and determinant when all
+ * entries are of a type with a specialized backend (see
+ * LinAlgFactory.backendFor). Row operations work directly on the arrays and
+ * allocate nothing, entries are converted back to FieldElements only once in
+ * toMatrix().
+ *
+ * The pivoting follows exactly the generic algorithms in Matrix, so both give
+ * the same results.
+ */
+
+abstract class MatrixBackend {
+
+	protected final int numOfRows;
+
+	protected final int numOfCols;
+
+	/** Number of row swaps so far */
+	private int swaps = 0;
+
+	protected MatrixBackend(int numberOfRows, int numberOfCols) {
+		this.numOfRows = numberOfRows;
+		this.numOfCols = numberOfCols;
+	}
+
+	/**
+	 * @return true if the entry at 0-based row and col is zero
+	 */
+	abstract boolean isZero(int row, int col);
+
+	abstract void swapRows(int row1, int row2);
+
+	/**
+	 * Subtracts factor times pivotRow from targetRow, starting at col, where
+	 * factor is the entry of targetRow in col divided by the entry of pivotRow
+	 * in col. Does nothing if factor is zero.
+	 */
+	abstract void eliminate(int pivotRow, int targetRow, int col);
+
+	/**
+	 * Divides entries of row starting at from by the entry of divisors at row
+	 * and col.
+	 */
+	abstract void normalize(MatrixBackend divisors, int row, int col, int from);
+
+	/**
+	 * Subtracts factor times pivotRow from targetRow, starting at from, where
+	 * factor is the entry of factors at targetRow and col. Does nothing if
+	 * factor is zero.
+	 */
+	abstract void reduce(MatrixBackend factors, int pivotRow, int targetRow,
+			int col, int from);
+
+	/**
+	 * @return product of the diagonal entries
+	 */
+	abstract FieldElement diagonalProduct();
+
+	/**
+	 * @return identity matrix of the same field with this backend
+	 */
+	abstract MatrixBackend identity(int size);
+
+	abstract Matrix toMatrix();
+
+	/**
+	 * Row echelon form in place, same as Matrix.gausselim().
+	 */
+	MatrixBackend gausselim() {
+		int minOfRowsCols = Math.min(numOfRows, numOfCols);
+		int colCounter = 0;
+
+		int row = 0;
+		while (row < minOfRowsCols && colCounter < numOfCols) {
+			row++;
+			colCounter++;
+			if (!findPivot(row - 1, colCounter - 1, null)) {
+				if (colCounter == numOfCols) {
+					return this;
+				}
+				row--;
+				continue;
+			}
+
+			for (int j = row; j < numOfRows; j++) {
+				eliminate(row - 1, j, colCounter - 1);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Reduced row echelon form in place, same as Matrix.gaussjord().
+	 */
+	MatrixBackend gaussjord() {
+		int minOfRowsCols = Math.min(numOfRows, numOfCols);
+		int colCounter = 0;
+
+		int row = 0;
+		while (row < minOfRowsCols && colCounter < numOfCols) {
+			row++;
+			colCounter++;
+			if (!findPivot(row - 1, colCounter - 1, null)) {
+				if (colCounter == numOfCols) {
+					return this;
+				}
+				row--;
+				continue;
+			}
+
+			normalize(this, row - 1, colCounter - 1, colCounter - 1);
+			for (int j = 0; j < numOfRows; j++) {
+				if (j != row - 1) {
+					reduce(this, row - 1, j, colCounter - 1, colCounter - 1);
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Inverse of this square matrix, same as Matrix.inverse(). This matrix is
+	 * destroyed.
+	 *
+	 * @return inverse or null if there is none
+	 */
+	MatrixBackend inverse() {
+		MatrixBackend inverse = identity(numOfRows);
+
+		int minOfRowsCols = Math.min(numOfRows, numOfCols);
+		int colCounter = 0;
+
+		int row = 0;
+		while (row < minOfRowsCols && colCounter < numOfCols) {
+			row++;
+			colCounter++;
+			if (!findPivot(row - 1, colCounter - 1, inverse)) {
+				if (colCounter == numOfCols) {
+					return null; // Because there is no inverse of this.
+				}
+				row--;
+				continue;
+			}
+
+			// inverse first, it takes divisor and factors from this
+			inverse.normalize(this, row - 1, colCounter - 1, 0);
+			normalize(this, row - 1, colCounter - 1, 0);
+			for (int j = 0; j < numOfRows; j++) {
+				if (j != row - 1) {
+					inverse.reduce(this, row - 1, j, colCounter - 1, 0);
+					reduce(this, row - 1, j, colCounter - 1, 0);
+				}
+			}
+		}
+		return inverse;
+	}
+
+	/**
+	 * Rank of this matrix, same as Matrix.rank(). This matrix is destroyed.
+	 */
+	int rank() {
+		gausselim();
+		int row = numOfRows;
+		while (row > 0 && isZeroRow(row - 1)) {
+			row--;
+		}
+		return row;
+	}
+
+	/**
+	 * Determinant of this square matrix, same as Matrix.det(). This matrix is
+	 * destroyed.
+	 */
+	FieldElement det() {
+		FieldElement determinant = gausselim().diagonalProduct();
+		return swaps % 2 == 0 ? determinant : determinant.negate();
+	}
+
+	private boolean isZeroRow(int row) {
+		for (int col = 0; col < numOfCols; col++) {
+			if (!isZero(row, col)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Makes the entry at row and col non zero by swapping with the first
+	 * suitable row below, in both this and companion if it's not null.
+	 *
+	 * @return false if all entries from row down in col are zero
+	 */
+	private boolean findPivot(int row, int col, MatrixBackend companion) {
+		if (!isZero(row, col)) {
+			return true;
+		}
+		for (int candidate = row + 1; candidate < numOfRows; candidate++) {
+			if (!isZero(candidate, col)) {
+				swapRows(row, candidate);
+				swaps++;
+				if (companion != null) {
+					companion.swapRows(row, candidate);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+}
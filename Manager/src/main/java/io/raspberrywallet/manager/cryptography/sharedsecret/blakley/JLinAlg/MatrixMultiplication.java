@@ -1,8 +1,12 @@
 package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * This includes some different methods of multiplying two matrices. 
- * The standard method of the Matrix class is the school-method.
+ * The standard method of the Matrix class is automatic, which picks one of
+ * the others by the dimensions and the number of processors.
  * All the other stuff is to be considered experimental stuff.
  * 
  * @author Andreas
@@ -14,6 +18,19 @@ public class MatrixMultiplication {
 	private static int STRASSEN_ORIGINAL_TRUNCATION_POINT = 48;
 	private static int STRASSEN_WINOGRAD_TRUNCATION_POINT = 48;
 
+	/** Block edge of parallelTiled, a 64x64 block of references fits into L1 */
+	private static final int TILE_SIZE = 64;
+
+	/** Products with fewer multiplications are done by school */
+	private static final long TILED_THRESHOLD = 32L * 32 * 32;
+
+	/**
+	 * Smallest square dimension automatic hands to strassenOriginal, per
+	 * processor. On one processor Strassen overtakes parallelTiled between 128
+	 * and 192 (see MatrixMultiplicationBenchmark).
+	 */
+	private static final int STRASSEN_THRESHOLD = 192;
+
 	private static void checkDimensions(Matrix m1, Matrix m2)
 		throws InvalidOperationException {
 		if (m1.getCols() != m2.getRows()) {
@@ -51,6 +68,182 @@ public class MatrixMultiplication {
 		return resultMatrix;
 	}
 
+	/**
+	 * Chooses the method by the dimensions of the matrices and the number of
+	 * available processors: school for small products, strassenOriginal for big
+	 * square matrices of exact elements if there are not enough processors to
+	 * make up for its fewer multiplications, parallelTiled otherwise. Matrices
+	 * with their own storage (e.g. DiagonalMatrix) are multiplied by simple.
+	 * @param m1
+	 * @param m2
+	 * @return m1 multiplied by m2
+	 * @throws InvalidOperationException
+	 */
+	public static Matrix automatic(Matrix m1, Matrix m2)
+		throws InvalidOperationException {
+		checkDimensions(m1, m2);
+
+		if (m1.getClass() != Matrix.class || m2.getClass() != Matrix.class) {
+			return simple(m1, m2);
+		}
+
+		long multiplications =
+			(long) m1.getRows() * m1.getCols() * m2.getCols();
+		if (multiplications < TILED_THRESHOLD) {
+			return school(m1, m2);
+		}
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		if (isStrassenSuitable(m1, m2)
+			&& m1.getRows() >= STRASSEN_THRESHOLD * processors) {
+			return strassenOriginal(m1, m2);
+		}
+		return parallelTiled(m1, m2);
+	}
+
+	/**
+	 * Strassen splits into halves down to its truncation point, so the matrices
+	 * have to be square with an even dimension on every level. DoubleWrappers
+	 * are left to the other methods, Strassen is numerically less stable.
+	 */
+	private static boolean isStrassenSuitable(Matrix m1, Matrix m2) {
+		int n = m1.getRows();
+		if (m1.getCols() != n || m2.getCols() != n
+			|| m1.get(1, 1) instanceof DoubleWrapper) {
+			return false;
+		}
+		while (n > STRASSEN_ORIGINAL_TRUNCATION_POINT) {
+			if (n % 2 != 0) {
+				return false;
+			}
+			n /= 2;
+		}
+		return true;
+	}
+
+	/**
+	 * The school-method on blocks of TILE_SIZE x TILE_SIZE entries, so that
+	 * the rows of m2 used by a block stay in cache. The blocks of the result
+	 * are computed in parallel in the common ForkJoinPool. Every entry sums
+	 * its products in the same order as school.
+	 * Asymptotic runtime: 0(n^3)
+	 * @param m1
+	 * @param m2
+	 * @return m1 multiplied by m2
+	 * @throws InvalidOperationException
+	 */
+	public static Matrix parallelTiled(Matrix m1, Matrix m2)
+		throws InvalidOperationException {
+		checkDimensions(m1, m2);
+
+		int resultRows = m1.getRows();
+		int resultCols = m2.getCols();
+
+		FieldElement zero = m1.get(1, 1).zero();
+		FieldElement[][] resultEntries =
+			new FieldElement[resultRows][resultCols];
+		for (int i = 0; i < resultRows; i++) {
+			for (int j = 0; j < resultCols; j++) {
+				resultEntries[i][j] = zero;
+			}
+		}
+
+		ForkJoinPool.commonPool().invoke(
+			new TiledMultiplication(
+				m1.getEntries(),
+				m2.getEntries(),
+				resultEntries,
+				0,
+				resultRows,
+				0,
+				resultCols));
+		return new Matrix(resultEntries, resultRows, resultCols);
+	}
+
+	/**
+	 * Computes rows [rowFrom, rowTo) and columns [colFrom, colTo) of the
+	 * product. Splits the longer side in halves until the block is a tile.
+	 */
+	private static class TiledMultiplication extends RecursiveAction {
+
+		private final FieldElement[][] m1Entries;
+		private final FieldElement[][] m2Entries;
+		private final FieldElement[][] resultEntries;
+		private final int rowFrom;
+		private final int rowTo;
+		private final int colFrom;
+		private final int colTo;
+
+		TiledMultiplication(
+			FieldElement[][] m1Entries,
+			FieldElement[][] m2Entries,
+			FieldElement[][] resultEntries,
+			int rowFrom,
+			int rowTo,
+			int colFrom,
+			int colTo) {
+			this.m1Entries = m1Entries;
+			this.m2Entries = m2Entries;
+			this.resultEntries = resultEntries;
+			this.rowFrom = rowFrom;
+			this.rowTo = rowTo;
+			this.colFrom = colFrom;
+			this.colTo = colTo;
+		}
+
+		protected void compute() {
+			int rows = rowTo - rowFrom;
+			int cols = colTo - colFrom;
+			if (rows <= TILE_SIZE && cols <= TILE_SIZE) {
+				multiplyTile();
+			} else if (rows >= cols) {
+				int split = rowFrom + rows / 2;
+				invokeAll(
+					part(rowFrom, split, colFrom, colTo),
+					part(split, rowTo, colFrom, colTo));
+			} else {
+				int split = colFrom + cols / 2;
+				invokeAll(
+					part(rowFrom, rowTo, colFrom, split),
+					part(rowFrom, rowTo, split, colTo));
+			}
+		}
+
+		private TiledMultiplication part(
+			int rowFrom,
+			int rowTo,
+			int colFrom,
+			int colTo) {
+			return new TiledMultiplication(
+				m1Entries,
+				m2Entries,
+				resultEntries,
+				rowFrom,
+				rowTo,
+				colFrom,
+				colTo);
+		}
+
+		private void multiplyTile() {
+			int inner = m2Entries.length;
+			for (int kFrom = 0; kFrom < inner; kFrom += TILE_SIZE) {
+				int kTo = Math.min(inner, kFrom + TILE_SIZE);
+				for (int i = rowFrom; i < rowTo; i++) {
+					FieldElement[] m1Row = m1Entries[i];
+					FieldElement[] resultRow = resultEntries[i];
+					for (int k = kFrom; k < kTo; k++) {
+						FieldElement factor = m1Row[k];
+						FieldElement[] m2Row = m2Entries[k];
+						for (int j = colFrom; j < colTo; j++) {
+							resultRow[j] =
+								resultRow[j].add(factor.multiply(m2Row[j]));
+						}
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * This could be considered the school-method of multiplying matrices.
 	 * Asymptotic runtime: 0(n^3)
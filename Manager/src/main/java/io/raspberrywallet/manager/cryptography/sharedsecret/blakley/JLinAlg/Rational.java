@@ -7,25 +7,55 @@ import java.math.BigInteger;
  * denominator as BigInteger. The rational number will be kept
  * canceled all the time.  Furthermore complex numbers and rational
  * number are compatible in all operations.
+ * <p>
+ * As long as numerator and denominator fit into longs they are kept
+ * as longs and the BigInteger fields are null. Arithmetic on longs
+ * detects overflows by the bit lengths of the operands and then falls
+ * back to BigInteger; a result that fits into longs again is kept as longs.
+ * Cancelling such a small value is deferred: it happens when the value
+ * is printed or asked for its numerator or denominator, or as soon as
+ * numerator or denominator reach NORMALIZE_THRESHOLD. Comparisons use
+ * cross products and need no cancelling. Rationals stay immutable, the
+ * deferred cancellation is never stored.
  * @author Andreas Keilhauer, Simon D. Levy
  */
 
 public class Rational extends FieldElement {
 
+	/**
+	 * Small values with numerator or denominator beyond this are
+	 * cancelled right away, so the next product still fits into a long.
+	 */
+
+	static final long NORMALIZE_THRESHOLD = 1L << 31;
+
 	protected BigInteger numerator;
 	protected BigInteger denominator;
 
+	/** used if numerator is null, smallDenominator is always positive */
+	private long smallNumerator;
+	private long smallDenominator = 1;
+
 	/** 
 	 * This constructor takes two longs as numerator and denominator.
+	 * The fraction is cancelled right away.
 	 * 
 	 * @param numerator
 	 * @param denominator
 	 */
 
 	public Rational(long numerator, long denominator) {
-		this.numerator = BigInteger.valueOf(numerator);
-		this.denominator = BigInteger.valueOf(denominator);
-		cancel();
+		if (denominator > 0) {
+			setSmall(numerator, denominator);
+			cancelSmall();
+		} else if (denominator < 0 && numerator != Long.MIN_VALUE
+			&& denominator != Long.MIN_VALUE) {
+			setSmall(-numerator, -denominator);
+			cancelSmall();
+		} else {
+			set(BigInteger.valueOf(numerator),
+				BigInteger.valueOf(denominator), true);
+		}
 	}
 
 	/**
@@ -35,8 +65,7 @@ public class Rational extends FieldElement {
 	 */
 
 	public Rational(BigInteger value) {
-		this.numerator = value;
-		this.denominator = BigInteger.valueOf(1);
+		set(value, BigInteger.ONE, false);
 	}
 
 	/**
@@ -47,15 +76,7 @@ public class Rational extends FieldElement {
 	 */
 
 	public Rational(BigInteger numerator, BigInteger denominator) {
-		if ((numerator.equals(BigInteger.valueOf(0))
-			&& !denominator.equals(BigInteger.valueOf(0)))) {
-			this.numerator = numerator;
-			this.denominator = BigInteger.valueOf(1);
-		} else {
-			this.numerator = numerator;
-			this.denominator = denominator;
-			cancel();
-		}
+		set(numerator, denominator, true);
 	}
 
 	/**
@@ -70,6 +91,47 @@ public class Rational extends FieldElement {
 	public Rational(
 		BigInteger numerator,
 		BigInteger denominator,
+		boolean cancel) {
+		set(numerator, denominator, cancel);
+	}
+
+	/**
+	 * Small values only, denominator has to be positive.
+	 */
+
+	private Rational(long numerator, long denominator, boolean cancel) {
+		setSmall(numerator, denominator);
+		if (cancel) {
+			cancelSmall();
+		}
+	}
+
+	/**
+	 * Creates a small Rational, cancelled if it got too big.
+	 *
+	 * @param numerator
+	 * @param denominator
+	 *            positive
+	 * @return numerator/denominator
+	 */
+
+	private static Rational small(long numerator, long denominator) {
+		boolean big = numerator >= NORMALIZE_THRESHOLD
+			|| numerator <= -NORMALIZE_THRESHOLD
+			|| denominator >= NORMALIZE_THRESHOLD;
+		return new Rational(numerator, denominator, big);
+	}
+
+	private void setSmall(long numerator, long denominator) {
+		this.smallNumerator = numerator;
+		this.smallDenominator = denominator;
+	}
+
+	/**
+	 * Sets numerator and denominator and switches to longs if both fit.
+	 */
+
+	private void set(BigInteger numerator, BigInteger denominator,
 		boolean cancel) {
 		this.numerator = numerator;
 		this.denominator = denominator;
@@ -80,6 +142,76 @@ public class Rational extends FieldElement {
 			this.numerator = this.numerator.negate();
 			this.denominator = this.denominator.negate();
 		}
+		if (this.denominator.signum() == 1
+			&& this.numerator.bitLength() < Long.SIZE
+			&& this.denominator.bitLength() < Long.SIZE) {
+			setSmall(this.numerator.longValue(),
+				this.denominator.longValue());
+			this.numerator = null;
+			this.denominator = null;
+		}
+	}
+
+	private boolean isSmall() {
+		return numerator == null;
+	}
+
+	/**
+	 * @return numerator, not necessarily cancelled
+	 */
+
+	private BigInteger bigNumerator() {
+		return isSmall() ? BigInteger.valueOf(smallNumerator) : numerator;
+	}
+
+	/**
+	 * @return denominator, not necessarily cancelled
+	 */
+
+	private BigInteger bigDenominator() {
+		return isSmall() ? BigInteger.valueOf(smallDenominator) : denominator;
+	}
+
+	/**
+	 * @return gcd of the small numerator and denominator
+	 */
+
+	private long smallGcd() {
+		return gcd(smallNumerator, smallDenominator);
+	}
+
+	/**
+	 * Cancels the small numerator and denominator. Only used while
+	 * constructing, Rationals are not changed after that.
+	 */
+
+	private void cancelSmall() {
+		long gcd = smallGcd();
+		if (gcd > 1) {
+			smallNumerator /= gcd;
+			smallDenominator /= gcd;
+		}
+	}
+
+	/**
+	 * Overflow check without throwing, an exception per overflow would
+	 * cost more than the BigInteger fallback. Conservative by one bit.
+	 *
+	 * @return true if |a * b| is below 2^bits
+	 */
+
+	private static boolean fits(long a, long b, int bits) {
+		return Long.numberOfLeadingZeros(Math.abs(a))
+			+ Long.numberOfLeadingZeros(Math.abs(b)) >= 2 * Long.SIZE - bits;
+	}
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long tmp = a % b;
+			a = b;
+			b = tmp;
+		}
+		return Math.abs(a);
 	}
 
 	/**
@@ -127,11 +259,11 @@ public class Rational extends FieldElement {
 			(Rational) tmp.multiply(
 				new Rational(BigInteger.valueOf((long) Math.pow(10, exp))));
 
-		this.numerator = tmp.getNumerator();
+		BigInteger newNumerator3 = tmp.getNumerator();
 		if (isNegative) {
-			this.numerator = this.numerator.negate();
+			newNumerator3 = newNumerator3.negate();
 		}
-		this.denominator = tmp.getDenominator();
+		set(newNumerator3, tmp.getDenominator(), false);
 	}
 
 	/**
@@ -139,7 +271,9 @@ public class Rational extends FieldElement {
 	 */
 
 	public String toString() {
-		if (this.denominator.equals(BigInteger.valueOf(1))) {
+		BigInteger numerator = getNumerator();
+		BigInteger denominator = getDenominator();
+		if (denominator.equals(BigInteger.valueOf(1))) {
 			return numerator.toString();
 		}
 		return numerator + "/" + denominator;
@@ -150,6 +284,10 @@ public class Rational extends FieldElement {
 	 */
 
 	protected void cancel() {
+		if (isSmall()) {
+			cancelSmall();
+			return;
+		}
 		BigInteger cancelledBy = this.numerator.gcd(denominator);
 		this.numerator = numerator.divide(cancelledBy);
 		this.denominator = denominator.divide(cancelledBy);
@@ -171,11 +309,33 @@ public class Rational extends FieldElement {
 				added.getImaginary());
 		}
 		Rational added = (Rational) val;
+		if (isSmall() && added.isSmall()) {
+			long a = this.smallNumerator;
+			long b = this.smallDenominator;
+			long c = added.smallNumerator;
+			long d = added.smallDenominator;
+			if (b == d) {
+				long sum = a + c;
+				if (((a ^ sum) & (c ^ sum)) >= 0) {
+					return small(sum, b);
+				}
+			} else if (fits(a, d, 62) && fits(c, b, 62) && fits(b, d, 63)) {
+				return small(a * d + c * b, b * d);
+			} else {
+				// retry over the lcm of the denominators
+				long gcdBD = gcd(b, d);
+				long b1 = b / gcdBD;
+				long d1 = d / gcdBD;
+				if (fits(a, d1, 62) && fits(c, b1, 62) && fits(b1, d, 63)) {
+					return small(a * d1 + c * b1, b1 * d);
+				}
+			}
+		}
 		BigInteger a, b, c, d, gcdBD, p1, q1;
-		a = this.numerator;
-		b = this.denominator;
-		c = added.getNumerator();
-		d = added.getDenominator();
+		a = this.bigNumerator();
+		b = this.bigDenominator();
+		c = added.bigNumerator();
+		d = added.bigDenominator();
 		gcdBD = b.gcd(d);
 		p1 = a.multiply(d.divide(gcdBD)).add(c.multiply(b.divide(gcdBD)));
 		q1 = b.multiply(d).divide(gcdBD);
@@ -194,20 +354,46 @@ public class Rational extends FieldElement {
 				(Rational) this.multiply(factor.getImaginary()));
 		}
 		Rational factor = (Rational) val;
-		BigInteger d1 = this.numerator.gcd(factor.getDenominator());
-		BigInteger d2 = this.denominator.gcd(factor.getNumerator());
+		if (isSmall() && factor.isSmall()) {
+			long a = this.smallNumerator;
+			long b = this.smallDenominator;
+			long c = factor.smallNumerator;
+			long d = factor.smallDenominator;
+			if (fits(a, c, 63) && fits(b, d, 63)) {
+				return small(a * c, b * d);
+			}
+			long d1 = gcd(a, d);
+			long d2 = gcd(c, b);
+			a /= d1;
+			d /= d1;
+			c /= d2;
+			b /= d2;
+			if (fits(a, c, 63) && fits(b, d, 63)) {
+				return small(a * c, b * d);
+			}
+		}
+		BigInteger numerator = this.bigNumerator();
+		BigInteger denominator = this.bigDenominator();
+		BigInteger d1 = numerator.gcd(factor.bigDenominator());
+		BigInteger d2 = denominator.gcd(factor.bigNumerator());
 		BigInteger newNumerator =
-			this.numerator.divide(d1).multiply(
-				factor.getNumerator().divide(d2));
+			numerator.divide(d1).multiply(
+				factor.bigNumerator().divide(d2));
 		BigInteger newDenominator =
-			this.denominator.divide(d2).multiply(
-				factor.getDenominator().divide(d1));
-		Rational tmp = new Rational(newNumerator, newDenominator, false);
+			denominator.divide(d2).multiply(
+				factor.bigDenominator().divide(d1));
+		// small values may not have been cancelled
+		Rational tmp = new Rational(newNumerator, newDenominator,
+			isSmall() || factor.isSmall());
 		return tmp;
 	}
 
 	public FieldElement negate() {
-		return new Rational(numerator.negate(), denominator, false);
+		if (isSmall() && smallNumerator != Long.MIN_VALUE) {
+			return new Rational(-smallNumerator, smallDenominator, false);
+		}
+		return new Rational(bigNumerator().negate(), bigDenominator(),
+			isSmall());
 	}
 
 	/**
@@ -219,7 +405,14 @@ public class Rational extends FieldElement {
 		if (this.isZero()) {
 			throw new InvalidOperationException("Division by 0");
 		}
-		return new Rational(this.getDenominator(), this.getNumerator(), false);
+		if (isSmall() && smallNumerator > 0) {
+			return new Rational(smallDenominator, smallNumerator, false);
+		}
+		if (isSmall() && smallNumerator != Long.MIN_VALUE) {
+			return new Rational(-smallDenominator, -smallNumerator, false);
+		}
+		return new Rational(this.bigDenominator(), this.bigNumerator(),
+			isSmall());
 	}
 
 	/**
@@ -229,6 +422,9 @@ public class Rational extends FieldElement {
 	 */
 
 	public BigInteger getNumerator() {
+		if (isSmall()) {
+			return BigInteger.valueOf(smallNumerator / smallGcd());
+		}
 		return this.numerator;
 	}
 
@@ -239,6 +435,9 @@ public class Rational extends FieldElement {
 	 */
 
 	public BigInteger getDenominator() {
+		if (isSmall()) {
+			return BigInteger.valueOf(smallDenominator / smallGcd());
+		}
 		return this.denominator;
 	}
 
@@ -250,6 +449,9 @@ public class Rational extends FieldElement {
 	 */
 
 	public double doubleValue() {
+		if (isSmall()) {
+			return (double) smallNumerator / smallDenominator;
+		}
 		return numerator.doubleValue() / denominator.doubleValue();
 	}
 
@@ -269,10 +471,28 @@ public class Rational extends FieldElement {
 				return this.equals(comp.getReal());
 			}
 		}
-		Rational comp = (Rational) obj;
-		return (
-			this.numerator.equals(comp.getNumerator())
-				&& this.denominator.equals(comp.getDenominator()));
+		return this.compareTo(obj) == 0;
+	}
+
+	/**
+	 * Hashes the cancelled fraction, so it's the same for equal values
+	 * no matter how they are stored.
+	 */
+
+	public int hashCode() {
+		BigInteger numerator = getNumerator();
+		BigInteger denominator = getDenominator();
+		if (!isSmall()) {
+			// may have been created without cancelling
+			BigInteger gcd = numerator.gcd(denominator);
+			numerator = numerator.divide(gcd);
+			denominator = denominator.divide(gcd);
+		}
+		return 31 * numerator.hashCode() + denominator.hashCode();
+	}
+
+	public boolean isZero() {
+		return isSmall() ? smallNumerator == 0 : numerator.signum() == 0;
 	}
 
 	/**
@@ -282,7 +502,7 @@ public class Rational extends FieldElement {
 	 */
 
 	public FieldElement zero() {
-		return new Rational(0);
+		return new Rational(0, 1, false);
 	}
 
 	/**
@@ -292,7 +512,7 @@ public class Rational extends FieldElement {
 	 */
 
 	public FieldElement one() {
-		return new Rational(1);
+		return new Rational(1, 1, false);
 	}
 
 	/**
@@ -304,7 +524,15 @@ public class Rational extends FieldElement {
 
 	public int compareTo(Object o) {
 		Rational comp = (Rational) o;
-		return ((Rational) this.subtract(comp)).getNumerator().signum();
+		// denominators are positive, compare the cross products
+		if (isSmall() && comp.isSmall()
+			&& fits(this.smallNumerator, comp.smallDenominator, 63)
+			&& fits(comp.smallNumerator, this.smallDenominator, 63)) {
+			return Long.compare(this.smallNumerator * comp.smallDenominator,
+				comp.smallNumerator * this.smallDenominator);
+		}
+		return this.bigNumerator().multiply(comp.bigDenominator()).compareTo(
+			comp.bigNumerator().multiply(this.bigDenominator()));
 	}
 
 	/**
@@ -313,7 +541,12 @@ public class Rational extends FieldElement {
 	 * @return absolute value
 	 */
 	public FieldElement abs() {
-		return new Rational(this.numerator.abs(), this.denominator, false);
+		if (isSmall() && smallNumerator != Long.MIN_VALUE) {
+			return new Rational(Math.abs(smallNumerator), smallDenominator,
+				false);
+		}
+		return new Rational(this.bigNumerator().abs(), this.bigDenominator(),
+			isSmall());
 	}
 
 	/**
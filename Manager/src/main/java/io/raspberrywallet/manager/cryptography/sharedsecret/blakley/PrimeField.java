@@ -0,0 +1,125 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley;
+
+import java.math.BigInteger;
+
+/**
+ * <p> Arithmetic modulo an odd prime p &lt; 2^62 on plain longs. </p>
+ * <p> Multiplication uses Montgomery reduction with R = 2^64, so elements taking part in {@link #mul(long, long)}
+ * must be converted with {@link #toMontgomery(long)} first and back with {@link #fromMontgomery(long)}.
+ * Addition and subtraction work the same in both forms. </p>
+ */
+final class PrimeField {
+    /**
+     * Mersenne prime 2^61 - 1
+     */
+    static final long MERSENNE_61 = (1L << 61) - 1;
+
+    private final long p;
+    /**
+     * -p^-1 mod 2^64
+     */
+    private final long negativeInverse;
+    /**
+     * R^2 mod p
+     */
+    private final long r2;
+    private final long montgomeryOne;
+
+    PrimeField(long p) {
+        if (p < 3 || p >= 1L << 62 || (p & 1) == 0)
+            throw new IllegalArgumentException("p must be an odd prime below 2^62: " + p);
+        this.p = p;
+        // Newton's iteration, every step doubles number of correct low bits
+        long inverse = p;
+        for (int i = 0; i < 5; i++)
+            inverse *= 2 - p * inverse;
+        this.negativeInverse = -inverse;
+        this.r2 = BigInteger.ONE.shiftLeft(128).mod(BigInteger.valueOf(p)).longValue();
+        this.montgomeryOne = toMontgomery(1);
+    }
+
+    long getP() {
+        return p;
+    }
+
+    /**
+     * @return value mod p, value may be negative
+     */
+    long reduce(long value) {
+        long reduced = value % p;
+        return reduced < 0 ? reduced + p : reduced;
+    }
+
+    long reduce(BigInteger value) {
+        return value.mod(BigInteger.valueOf(p)).longValue();
+    }
+
+    long toMontgomery(long a) {
+        return mul(a, r2);
+    }
+
+    long fromMontgomery(long a) {
+        return mul(a, 1);
+    }
+
+    long add(long a, long b) {
+        long sum = a + b;
+        return sum >= p ? sum - p : sum;
+    }
+
+    long sub(long a, long b) {
+        long difference = a - b;
+        return difference < 0 ? difference + p : difference;
+    }
+
+    /**
+     * Montgomery product a * b * R^-1 mod p of a, b &lt; p
+     */
+    long mul(long a, long b) {
+        long low = a * b;
+        long high = multiplyHigh(a, b);
+        long m = low * negativeInverse;
+        // low + low(m * p) is 0 mod 2^64, it carries unless low is 0
+        long carry = (low | -low) >>> 63;
+        long t = high + unsignedMultiplyHigh(m, p) + carry;
+        return t >= p ? t - p : t;
+    }
+
+    /**
+     * @param a non-zero element in Montgomery form
+     * @return inverse of a in Montgomery form
+     */
+    long inverse(long a) {
+        if (a == 0)
+            throw new ArithmeticException("0 has no inverse");
+        // Fermat's little theorem, a^(p-2)
+        long result = montgomeryOne;
+        long base = a;
+        for (long exponent = p - 2; exponent > 0; exponent >>>= 1) {
+            if ((exponent & 1) != 0)
+                result = mul(result, base);
+            base = mul(base, base);
+        }
+        return result;
+    }
+
+    /**
+     * High half of signed 128-bit product, same as Math.multiplyHigh of Java 9
+     */
+    static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+}
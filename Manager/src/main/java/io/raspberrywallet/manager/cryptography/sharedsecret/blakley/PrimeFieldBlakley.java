@@ -0,0 +1,157 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * <p> Blakley's scheme in the field of integers modulo 2^61 - 1. You need t keys of n for resolve the secret </p>
+ * <p> Secret is cut into 7-byte chunks. Every chunk is the first coordinate of its own random point in t dimensions,
+ * and every key holds one random hyperplane through each of these points. Fewer than t hyperplanes leave
+ * every value of the first coordinate possible. </p>
+ * <p> A key is an array of longs: secret length, t, then a1..at, b of every chunk. </p>
+ */
+public class PrimeFieldBlakley {
+    private static final int CHUNK_BYTES = 7;
+    private static final int HEADER_SIZE = 2;
+
+    private static final PrimeField field = new PrimeField(PrimeField.MERSENNE_61);
+    private static final SecureRandom random = new SecureRandom();
+
+    private PrimeFieldBlakley() {}
+
+    /**
+     * Create keys using Blakley's scheme
+     * @param secret secret, not modified
+     * @param n number of keys
+     * @param t number of keys for solve the secret
+     * @return n keys
+     */
+    public static long[][] split(byte[] secret, int n, int t) {
+        if (secret.length == 0)
+            throw new IllegalArgumentException("secret can not be empty");
+        if (t < 1 || t > n)
+            throw new IllegalArgumentException("need 1 <= t <= n, got t = " + t + ", n = " + n);
+
+        int chunks = chunks(secret.length);
+        long[][] keys = new long[n][HEADER_SIZE + chunks * (t + 1)];
+        for (long[] key : keys) {
+            key[0] = secret.length;
+            key[1] = t;
+        }
+
+        long[] point = new long[t];
+        try {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                point[0] = field.toMontgomery(readChunk(secret, chunk));
+                for (int j = 1; j < t; j++)
+                    point[j] = field.toMontgomery(randomElement());
+
+                int offset = HEADER_SIZE + chunk * (t + 1);
+                for (long[] key : keys) {
+                    long b = 0;
+                    for (int j = 0; j < t; j++) {
+                        long a = randomElement();
+                        key[offset + j] = a;
+                        b = field.add(b, field.mul(field.toMontgomery(a), point[j]));
+                    }
+                    key[offset + t] = field.fromMontgomery(b);
+                }
+            }
+        } finally {
+            Arrays.fill(point, 0);
+        }
+        return keys;
+    }
+
+    /**
+     * Solve a group of keys using Blakley's scheme
+     * @param keys at least t keys of the same secret, only first t of them are used
+     * @return secret
+     * @throws ArithmeticException if keys don't belong together
+     */
+    public static byte[] combine(long[]... keys) {
+        if (keys.length == 0)
+            throw new IllegalArgumentException("no keys given");
+        long length = keys[0][0];
+        long t = keys[0][1];
+        if (length < 1 || t < 1 || t > keys.length)
+            throw new IllegalArgumentException("need " + t + " keys, got " + keys.length);
+        int chunks = chunks((int) length);
+        int size = HEADER_SIZE + chunks * ((int) t + 1);
+        for (int i = 0; i < t; i++)
+            if (keys[i].length != size || keys[i][0] != length || keys[i][1] != t)
+                throw new IllegalArgumentException("keys belong to different secrets");
+
+        byte[] secret = new byte[(int) length];
+        long[][] rows = new long[(int) t][(int) t + 1];
+        try {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int offset = HEADER_SIZE + chunk * ((int) t + 1);
+                for (int i = 0; i < t; i++)
+                    for (int j = 0; j <= t; j++)
+                        rows[i][j] = field.toMontgomery(field.reduce(keys[i][offset + j]));
+
+                long value = field.fromMontgomery(PrimeFieldSolver.solve(field, rows)[0]);
+                if (value >>> (8 * CHUNK_BYTES) != 0)
+                    throw new ArithmeticException("keys belong to different secrets");
+                writeChunk(secret, chunk, value);
+            }
+        } finally {
+            for (long[] row : rows)
+                Arrays.fill(row, 0);
+        }
+        return secret;
+    }
+
+    public static byte[] toByteArray(long[] key) {
+        ByteBuffer buffer = ByteBuffer.allocate(key.length * Long.BYTES);
+        buffer.asLongBuffer().put(key);
+        return buffer.array();
+    }
+
+    public static long[] fromByteArray(byte[] bytes) {
+        if (bytes.length % Long.BYTES != 0 || bytes.length < HEADER_SIZE * Long.BYTES)
+            throw new IllegalArgumentException("not a Blakley's key");
+        long[] key = new long[bytes.length / Long.BYTES];
+        try {
+            ByteBuffer.wrap(bytes).asLongBuffer().get(key);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("not a Blakley's key", e);
+        }
+        return key;
+    }
+
+    private static int chunks(int length) {
+        return (length + CHUNK_BYTES - 1) / CHUNK_BYTES;
+    }
+
+    private static long readChunk(byte[] secret, int chunk) {
+        long value = 0;
+        int end = Math.min(secret.length, (chunk + 1) * CHUNK_BYTES);
+        for (int i = chunk * CHUNK_BYTES; i < end; i++)
+            value = value << 8 | secret[i] & 0xff;
+        return value;
+    }
+
+    private static void writeChunk(byte[] secret, int chunk, long value) {
+        int start = chunk * CHUNK_BYTES;
+        int end = Math.min(secret.length, start + CHUNK_BYTES);
+        for (int i = end - 1; i >= start; i--) {
+            secret[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * @return uniformly random element of the field
+     */
+    private static long randomElement() {
+        long value;
+        do {
+            value = random.nextLong() >>> 3;
+        } while (value >= PrimeField.MERSENNE_61);
+        return value;
+    }
+}
@@ -0,0 +1,52 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley;
+
+/**
+ * <p> Solves square linear systems over {@link PrimeField} with Gaussian elimination in place. </p>
+ */
+final class PrimeFieldSolver {
+
+    private PrimeFieldSolver() {}
+
+    /**
+     * @param field field of the system
+     * @param rows  augmented matrix n x (n + 1) in Montgomery form, every row is a hyperplane a1..an, b.
+     *              It is overwritten by the elimination.
+     * @return solution in Montgomery form
+     * @throws ArithmeticException if the system is singular in this field
+     */
+    static long[] solve(PrimeField field, long[][] rows) {
+        int n = rows.length;
+        for (int column = 0; column < n; column++) {
+            int pivot = column;
+            while (pivot < n && rows[pivot][column] == 0)
+                pivot++;
+            if (pivot == n)
+                throw new ArithmeticException("Hyperplanes don't intersect in a single point mod " + field.getP());
+            long[] pivotRow = rows[pivot];
+            rows[pivot] = rows[column];
+            rows[column] = pivotRow;
+
+            long inverse = field.inverse(pivotRow[column]);
+            for (int j = column; j <= n; j++)
+                pivotRow[j] = field.mul(pivotRow[j], inverse);
+
+            for (int i = column + 1; i < n; i++) {
+                long[] row = rows[i];
+                long factor = row[column];
+                if (factor == 0)
+                    continue;
+                for (int j = column; j <= n; j++)
+                    row[j] = field.sub(row[j], field.mul(factor, pivotRow[j]));
+            }
+        }
+
+        long[] solution = new long[n];
+        for (int i = n - 1; i >= 0; i--) {
+            long value = rows[i][n];
+            for (int j = i + 1; j < n; j++)
+                value = field.sub(value, field.mul(rows[i][j], solution[j]));
+            solution[i] = value;
+        }
+        return solution;
+    }
+}
@@ -0,0 +1,46 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.shamir;
+
+/**
+ * <p> Arithmetic in GF(2^8) with AES polynomial x^8 + x^4 + x^3 + x + 1. <br>
+ * Multiplication and division use log/exp tables and don't branch on their arguments. </p>
+ */
+final class GF256 {
+
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+
+    static {
+        int value = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = value;
+            LOG[value] = i;
+            // multiply by generator 3
+            value ^= value << 1;
+            if ((value & 0x100) != 0)
+                value ^= 0x11B;
+        }
+        for (int i = 255; i < EXP.length; i++)
+            EXP[i] = EXP[i - 255];
+    }
+
+    private GF256() {}
+
+    static int add(int a, int b) {
+        return a ^ b;
+    }
+
+    static int mul(int a, int b) {
+        int product = EXP[LOG[a] + LOG[b]];
+        int anyZero = (a - 1) >> 31 | (b - 1) >> 31;
+        return product & ~anyZero;
+    }
+
+    /**
+     * @param b divisor, must not be 0
+     */
+    static int div(int a, int b) {
+        int quotient = EXP[LOG[a] + 255 - LOG[b]];
+        int zero = (a - 1) >> 31;
+        return quotient & ~zero;
+    }
+}
@@ -3,7 +3,8 @@ package io.raspberrywallet.manager.cryptography.sharedsecret.shamir;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 /**
- * <p> Calculate Shamir scheme. You need t shares of n for resolve the secret </p>
+ * <p> Calculate Shamir scheme. You need t shares of n for resolve the secret <br>
+ * Kept for key parts of existing wallets, new ones are split with {@link ShamirGF256} </p>
  */
 
 public class Shamir {
@@ -130,7 +131,6 @@ public class Shamir {
             keys[i - 1].setP(prime);
             keys[i - 1].setX(x);
             keys[i - 1].setF(fx);
-            System.out.println(i + "-> f(" + x + ") = " + keys[i - 1].getF());
         }
         return keys;
     }
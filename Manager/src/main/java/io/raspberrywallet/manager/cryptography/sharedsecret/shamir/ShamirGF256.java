@@ -0,0 +1,147 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.shamir;
+
+import io.raspberrywallet.manager.common.ArrayDestroyer;
+import org.jetbrains.annotations.NotNull;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p> Shamir's scheme over GF(256), every byte of the secret is shared with its own random polynomial
+ * of degree t - 1. Shares are as long as the secret and there is no prime to search for. <br>
+ * Key parts of wallets created with {@link Shamir} are still solved by {@link #combineKeyParts(List)}. </p>
+ */
+public class ShamirGF256 {
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private ShamirGF256() {}
+
+    /**
+     * Split secret into shares
+     *
+     * @param secret secret, not modified
+     * @param n      number of shares, at most 255
+     * @param t      number of shares for solve Shamir scheme
+     * @return shares with x from 1 to n
+     * @throws ShamirException if parameters don't make a valid scheme
+     */
+    @NotNull
+    public static ShamirShare[] split(@NotNull byte[] secret, int n, int t) throws ShamirException {
+        if (secret.length == 0)
+            throw new ShamirException("secret can not be empty");
+        if (t < 1)
+            throw new ShamirException("number of need shares must be positive");
+        if (t > n)
+            throw new ShamirException("number of need shares greater than number of shares");
+        if (n > 255)
+            throw new ShamirException("at most 255 shares are supported");
+
+        // coefficients[i][k] is coefficient of x^(i+1) in the polynomial of k-th secret byte
+        byte[][] coefficients = new byte[t - 1][secret.length];
+        for (byte[] coefficient : coefficients)
+            random.nextBytes(coefficient);
+
+        ShamirShare[] shares = new ShamirShare[n];
+        try {
+            for (int x = 1; x <= n; x++) {
+                byte[] y = new byte[secret.length];
+                for (int k = 0; k < secret.length; k++) {
+                    // Horner's method
+                    int value = 0;
+                    for (int i = coefficients.length - 1; i >= 0; i--)
+                        value = GF256.mul(GF256.add(value, coefficients[i][k] & 0xff), x);
+                    y[k] = (byte) GF256.add(value, secret[k] & 0xff);
+                }
+                shares[x - 1] = new ShamirShare(t, x, y);
+            }
+        } finally {
+            for (byte[] coefficient : coefficients)
+                ArrayDestroyer.destroy(coefficient);
+        }
+        return shares;
+    }
+
+    /**
+     * Solve Shamir's scheme
+     *
+     * @param shares at least threshold shares of the same secret, only first threshold of them are used
+     * @return secret
+     * @throws ShamirException if there are not enough shares or they don't belong together
+     */
+    @NotNull
+    public static byte[] combine(@NotNull ShamirShare... shares) throws ShamirException {
+        if (shares.length == 0)
+            throw new ShamirException("no shares given");
+        int t = shares[0].getThreshold();
+        if (shares.length < t)
+            throw new ShamirException("need " + t + " shares, got " + shares.length);
+        int length = shares[0].getY().length;
+        for (int i = 0; i < t; i++) {
+            if (shares[i].getThreshold() != t || shares[i].getY().length != length)
+                throw new ShamirException("shares belong to different secrets");
+            for (int j = 0; j < i; j++)
+                if (shares[i].getX() == shares[j].getX())
+                    throw new ShamirException("repeated share x = " + shares[i].getX());
+        }
+
+        byte[] secret = new byte[length];
+        for (int i = 0; i < t; i++) {
+            // Lagrange basis polynomial of i-th share in 0
+            int basis = 1;
+            for (int j = 0; j < t; j++) {
+                if (j == i)
+                    continue;
+                basis = GF256.mul(basis, GF256.div(shares[j].getX(), GF256.add(shares[j].getX(), shares[i].getX())));
+            }
+            byte[] y = shares[i].getY();
+            for (int k = 0; k < length; k++)
+                secret[k] = (byte) GF256.add(secret[k] & 0xff, GF256.mul(basis, y[k] & 0xff));
+        }
+        return secret;
+    }
+
+    /**
+     * Checks format of decrypted key part, so invalid ones are not used for solving the scheme
+     *
+     * @throws IllegalArgumentException if key part is neither {@link ShamirShare} nor {@link ShamirKey}
+     */
+    public static void checkKeyPart(@NotNull byte[] keyPart) {
+        if (ShamirShare.isShare(keyPart))
+            ShamirShare.fromByteArray(keyPart);
+        else
+            ShamirKey.fromByteArray(keyPart);
+    }
+
+    /**
+     * Solve Shamir's scheme from decrypted key parts, which are either all {@link ShamirShare}s
+     * or all {@link ShamirKey}s of wallets created before this scheme
+     *
+     * @param keyParts decrypted key parts
+     * @return secret
+     * @throws ShamirException if key parts are mixed or can't be combined
+     */
+    @NotNull
+    public static byte[] combineKeyParts(@NotNull List<byte[]> keyParts) throws ShamirException {
+        if (keyParts.isEmpty())
+            throw new ShamirException("no shares given");
+
+        boolean shares = ShamirShare.isShare(keyParts.get(0));
+        for (byte[] keyPart : keyParts)
+            if (ShamirShare.isShare(keyPart) != shares)
+                throw new ShamirException("key parts of different Shamir's schemes");
+
+        if (!shares) {
+            ShamirKey[] keys = keyParts.stream().map(ShamirKey::fromByteArray).toArray(ShamirKey[]::new);
+            return Shamir.calculateLagrange(keys);
+        }
+
+        ShamirShare[] parsed = keyParts.stream().map(ShamirShare::fromByteArray).toArray(ShamirShare[]::new);
+        try {
+            return combine(parsed);
+        } finally {
+            Arrays.stream(parsed).forEach(ShamirShare::destroy);
+        }
+    }
+}
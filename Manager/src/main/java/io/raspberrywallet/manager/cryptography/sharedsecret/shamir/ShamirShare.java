@@ -0,0 +1,69 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.shamir;
+
+import io.raspberrywallet.manager.common.ArrayDestroyer;
+import io.raspberrywallet.manager.common.interfaces.Destroyable;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * <p> Contains a share of {@link ShamirGF256} scheme, value of the polynomial in x for every byte of the secret </p>
+ *
+ * Encoded as: format (1 byte, 0x81), threshold (1 byte), x (1 byte), y (1 byte per secret byte).
+ * Format byte is never ASCII, so shares can't be confused with Base58 encoded {@link ShamirKey}.
+ */
+public class ShamirShare implements Destroyable {
+    private static final int FORMAT = 0x81;
+    private static final int HEADER_SIZE = 3;
+
+    @Getter
+    private final int threshold;
+    @Getter
+    private final int x;
+    private final byte[] y;
+
+    ShamirShare(int threshold, int x, @NotNull byte[] y) {
+        if (threshold < 1 || threshold > 255)
+            throw new IllegalArgumentException("threshold must be within 1 and 255: " + threshold);
+        if (x < 1 || x > 255)
+            throw new IllegalArgumentException("x must be within 1 and 255: " + x);
+        this.threshold = threshold;
+        this.x = x;
+        this.y = y;
+    }
+
+    byte[] getY() {
+        return y;
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[HEADER_SIZE + y.length];
+        bytes[0] = (byte) FORMAT;
+        bytes[1] = (byte) threshold;
+        bytes[2] = (byte) x;
+        System.arraycopy(y, 0, bytes, HEADER_SIZE, y.length);
+        return bytes;
+    }
+
+    /**
+     * @return true if bytes are in this format, otherwise they should be read with {@link ShamirKey#fromByteArray(byte[])}
+     */
+    public static boolean isShare(@NotNull byte[] bytes) {
+        return bytes.length > 0 && (bytes[0] & 0xff) == FORMAT;
+    }
+
+    @NotNull
+    public static ShamirShare fromByteArray(@NotNull byte[] bytes) {
+        if (!isShare(bytes))
+            throw new IllegalArgumentException("not a GF(256) Shamir's share");
+        if (bytes.length <= HEADER_SIZE)
+            throw new IllegalArgumentException("share has no value");
+        return new ShamirShare(bytes[1] & 0xff, bytes[2] & 0xff, Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length));
+    }
+
+    @Override
+    public void destroy() {
+        ArrayDestroyer.destroy(y);
+    }
+}
@@ -3,24 +3,43 @@ package io.raspberrywallet.manager.database;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.stasbar.Logger;
 import io.raspberrywallet.manager.Configuration;
+import io.raspberrywallet.manager.common.ArrayDestroyer;
 import io.raspberrywallet.manager.common.interfaces.Destroyable;
-import io.raspberrywallet.manager.cryptography.crypto.AESEncryptedObject;
 import io.raspberrywallet.manager.cryptography.crypto.CryptoObject;
+import io.raspberrywallet.manager.cryptography.crypto.EncryptedObjectCodec;
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.AESCipherParams;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
 import lombok.Getter;
 import lombok.Setter;
-import org.apache.commons.lang.SerializationUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Wallet database, stored as encrypted snapshot in database.bin and {@link Journal} of key parts added since.
+ * Adding key parts appends a single encrypted record to the journal, the snapshot is rewritten only on
+ * {@link #saveWallet()} or when the journal grows over {@link #COMPACT_AFTER_RECORDS} records.
+ * Appends hold only the read lock of {@link #journalLock}, so key parts added concurrently are synced by the journal
+ * together. Saves take the write lock, the journal can't be replaced under an append.
+ * The lock is always taken before the monitor, which guards the wallet.
+ */
 public class Database implements Destroyable {
 
     private final static String DATABASE_FILE_NAME = "database.bin";
+    private final static String JOURNAL_FILE_NAME = "database.journal";
+    private final static int COMPACT_AFTER_RECORDS = 32;
 
     @Getter
     @Setter
@@ -28,24 +47,38 @@ public class Database implements Destroyable {
     private WalletEntity wallet = null;
 
     private final File databaseFile;
+    private final File journalFile;
+    private Journal journal;
+    private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
     private String password;
+    /**
+     * Key parameters of the saved database, next saves keep the salt so the derived key is reused
+     */
+    private AESCipherParams keyParams;
 
     public Database(Configuration config) {
         databaseFile = new File(config.getBasePathPrefix(), DATABASE_FILE_NAME);
+        journalFile = new File(config.getBasePathPrefix(), JOURNAL_FILE_NAME);
     }
 
     public void setPassword(String password) throws EncryptionException, DecryptionException, IOException {
         this.password = password;
+        this.keyParams = null;
         initDatabase();
     }
 
     void initDatabase() throws IOException, DecryptionException, EncryptionException {
-        if (!databaseFile.exists()) {
-            databaseFile.getParentFile().mkdirs();
-            databaseFile.createNewFile();
-            saveDatabase();
-        } else {
-            loadDatabase(databaseFile);
+        journalLock.writeLock().lock();
+        try {
+            if (!databaseFile.exists()) {
+                databaseFile.getParentFile().mkdirs();
+                databaseFile.createNewFile();
+                saveDatabase();
+            } else {
+                loadDatabase(databaseFile);
+            }
+        } finally {
+            journalLock.writeLock().unlock();
         }
     }
 
@@ -56,6 +89,16 @@ public class Database implements Destroyable {
         destroy();
         byte[] encryptedDatabase = Files.readAllBytes(file.toPath());
         WalletEntity wallet = decrypt(encryptedDatabase);
+
+        byte[] snapshotDigest = digest(encryptedDatabase);
+        Journal.Replay replay = Journal.open(journalFile.toPath(), snapshotDigest);
+        if (replay == null) {
+            journal = Journal.create(journalFile.toPath(), snapshotDigest);
+        } else {
+            journal = replay.journal;
+            for (byte[] record : replay.records)
+                apply(wallet, decryptRecord(record));
+        }
         Logger.info("decrypted wallet " + wallet.toString());
         setWallet(wallet);
     }
@@ -70,11 +113,12 @@ public class Database implements Destroyable {
      */
     @Deprecated
     public byte[] encrypt(WalletEntity wallet) throws EncryptionException {
-
-        AESEncryptedObject<WalletEntity> encryptedData =
-                CryptoObject.encrypt(wallet, password);
-
-        return SerializationUtils.serialize(encryptedData);
+        byte[] encodedWallet = WalletEntityCodec.encode(wallet);
+        try {
+            return CryptoObject.encryptBytes(encodedWallet, password, keyParams().withNewIv());
+        } finally {
+            ArrayDestroyer.destroy(encodedWallet);
+        }
     }
 
     /**
@@ -83,10 +127,17 @@ public class Database implements Destroyable {
      */
     @Deprecated
     public WalletEntity decrypt(byte[] data) throws DecryptionException {
-        AESEncryptedObject<WalletEntity> encryptedObject =
-                (AESEncryptedObject<WalletEntity>) SerializationUtils.deserialize(data);
+        // databases saved before EncryptedObjectCodec, they are rewritten in the new format on next save
+        if (EncryptedObjectCodec.isLegacy(data))
+            return CryptoObject.decryptLegacy(data, password);
 
-        return CryptoObject.decrypt(encryptedObject, password);
+        byte[] encodedWallet = CryptoObject.decryptBytes(data, password);
+        try {
+            keyParams = EncryptedObjectCodec.decode(data).getCipherParams();
+            return WalletEntityCodec.decode(encodedWallet);
+        } finally {
+            ArrayDestroyer.destroy(encodedWallet);
+        }
     }
 
     public void saveWallet() throws IOException, EncryptionException {
@@ -94,45 +145,220 @@ public class Database implements Destroyable {
         saveDatabase();
     }
 
+    /**
+     * Writes the whole wallet as a new snapshot and starts an empty journal for it
+     */
     private void saveDatabase() throws IOException, EncryptionException {
-        if (getWallet() == null)
-            setWallet(new WalletEntity());
+        journalLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (getWallet() == null)
+                    setWallet(new WalletEntity());
 
-        Files.write(databaseFile.toPath(), encrypt());
+                byte[] encryptedDatabase = encrypt();
+                DurableFiles.writeAtomically(databaseFile.toPath(), ByteBuffer.wrap(encryptedDatabase));
+                closeJournal();
+                journal = Journal.create(journalFile.toPath(), digest(encryptedDatabase));
+            }
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    private WalletEntity decryptRecord(byte[] record) throws DecryptionException {
+        byte[] encodedChange = CryptoObject.decryptBytes(record, password);
+        try {
+            return WalletEntityCodec.decode(encodedChange);
+        } finally {
+            ArrayDestroyer.destroy(encodedChange);
+        }
+    }
+
+    private static void apply(WalletEntity wallet, WalletEntity change) {
+        wallet.getParts().addAll(change.getParts());
+        if (change.getRequiredParts() != 0)
+            wallet.setRequiredParts(change.getRequiredParts());
+    }
+
+    private AESCipherParams keyParams() {
+        if (keyParams == null)
+            keyParams = new AESCipherParams();
+        return keyParams;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private static byte[] digest(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
     }
 
     public Optional<KeyPartEntity> getKeypartForModuleId(String id) {
         return wallet.getParts().stream().filter(keyPart -> keyPart.getModule().equals(id)).findFirst();
     }
 
+    /**
+     * @return number of key parts required to restore the secret or 0 if it's unknown
+     */
+    public int getRequiredKeyParts() {
+        return wallet == null ? 0 : wallet.getRequiredParts();
+    }
+
+    /**
+     * Sets number of key parts required to restore the secret, it's persisted along with next saved key parts
+     */
+    public void setRequiredKeyParts(int requiredParts) {
+        wallet.setRequiredParts(requiredParts);
+    }
+
+    /**
+     * @return false if the key part could not be persisted, it's not added then
+     */
     public boolean addKeyPart(KeyPartEntity keyPartEntity) {
-        final boolean success = wallet.getParts().add(keyPartEntity);
+        return addKeyParts(Collections.singletonList(keyPartEntity));
+    }
+
+    /**
+     * @return false if the key parts could not be persisted, none of them is added then
+     */
+    public boolean addAllKeyParts(Collection<KeyPartEntity> keyPartEntities) {
+        return addKeyParts(new ArrayList<>(keyPartEntities));
+    }
+
+    private boolean addKeyParts(Collection<KeyPartEntity> keyPartEntities) {
+        Journal journal;
+        journalLock.readLock().lock();
         try {
-            saveDatabase();
-        } catch (IOException | EncryptionException e) {
-            e.printStackTrace();
+            journal = this.journal;
+            if (journal != null && !appendKeyParts(journal, keyPartEntities))
+                return false;
+        } finally {
+            journalLock.readLock().unlock();
         }
-        return success;
+
+        if (journal == null)
+            return saveKeyParts(keyPartEntities);
+        if (journal.size() >= COMPACT_AFTER_RECORDS)
+            compact(journal);
+        return true;
     }
 
-    public boolean addAllKeyParts(Collection<KeyPartEntity> keyPartEntities) {
-        final boolean success = wallet.getParts().addAll(keyPartEntities);
+    /**
+     * Persists key parts added to the wallet as a single journal record, with current number of required parts.
+     * Called with the read lock held, so a save can't snapshot the parts before the record is appended.
+     */
+    private boolean appendKeyParts(Journal journal, Collection<KeyPartEntity> keyPartEntities) {
+        byte[] record;
+        synchronized (this) {
+            wallet.getParts().addAll(keyPartEntities);
+            WalletEntity change = new WalletEntity();
+            change.setRequiredParts(wallet.getRequiredParts());
+            change.getParts().addAll(keyPartEntities);
+            byte[] encodedChange = WalletEntityCodec.encode(change);
+            try {
+                record = CryptoObject.encryptBytes(encodedChange, password, keyParams().withNewIv());
+            } catch (EncryptionException e) {
+                Logger.err("Failed to save key parts: " + e.getMessage());
+                removeKeyParts(keyPartEntities);
+                return false;
+            } finally {
+                ArrayDestroyer.destroy(encodedChange);
+            }
+        }
+
         try {
-            saveDatabase();
+            // outside of the monitor, records appended by other threads meanwhile are synced together
+            journal.append(record);
+            return true;
+        } catch (IOException e) {
+            Logger.err("Failed to save key parts: " + e.getMessage());
+            synchronized (this) {
+                removeKeyParts(keyPartEntities);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Persists key parts with a new snapshot, when there is no journal to append them to yet
+     */
+    private boolean saveKeyParts(Collection<KeyPartEntity> keyPartEntities) {
+        journalLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                wallet.getParts().addAll(keyPartEntities);
+                try {
+                    saveDatabase();
+                    return true;
+                } catch (IOException | EncryptionException e) {
+                    Logger.err("Failed to save key parts: " + e.getMessage());
+                    removeKeyParts(keyPartEntities);
+                    return false;
+                }
+            }
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    private void compact(Journal journal) {
+        journalLock.writeLock().lock();
+        try {
+            // another thread may have compacted it already
+            if (this.journal == journal && journal.size() >= COMPACT_AFTER_RECORDS)
+                saveDatabase();
         } catch (IOException | EncryptionException e) {
-            e.printStackTrace();
+            // the records are already durable in the journal, compaction is tried again with the next one
+            Logger.err("Failed to compact database journal: " + e.getMessage());
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes exactly the given instances, equal key parts added by other threads stay
+     */
+    private void removeKeyParts(Collection<KeyPartEntity> keyPartEntities) {
+        List<KeyPartEntity> parts = wallet.getParts();
+        for (KeyPartEntity keyPartEntity : keyPartEntities) {
+            for (int i = parts.size() - 1; i >= 0; i--) {
+                if (parts.get(i) == keyPartEntity) {
+                    parts.remove(i);
+                    break;
+                }
+            }
         }
-        return success;
     }
 
     @Override
-    public synchronized void destroy() {
-        if (wallet == null)
-            return;
+    public void destroy() {
+        journalLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                try {
+                    closeJournal();
+                } catch (IOException e) {
+                    Logger.err("Failed to close database journal: " + e.getMessage());
+                }
+                if (wallet == null)
+                    return;
 
-        wallet.getParts().forEach(KeyPartEntity::destroy);
-        wallet.getParts().clear();
-        wallet = null;
+                wallet.getParts().forEach(KeyPartEntity::destroy);
+                wallet.getParts().clear();
+                wallet = null;
+            }
+        } finally {
+            journalLock.writeLock().unlock();
+        }
     }
 
     public boolean isFirstTime() {
@@ -0,0 +1,46 @@
+package io.raspberrywallet.manager.database;
+
+import io.raspberrywallet.manager.common.ChannelUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes which survive power loss, after they return either old or new content is on the disk, never a torn mix.
+ */
+class DurableFiles {
+
+    private DurableFiles() {}
+
+    /**
+     * Writes data next to the target, syncs it, renames it over the target and syncs the directory entry.
+     */
+    static void writeAtomically(Path target, ByteBuffer... data) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (ByteBuffer buffer : data)
+                ChannelUtils.writeFully(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Makes renames and newly created files in the directory durable. Not every platform can open a directory,
+     * there it is skipped and the rename relies on the file system.
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // e.g. Windows, directories can't be opened as channels
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package io.raspberrywallet.manager.database;
+
+import io.raspberrywallet.manager.common.ChannelUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes made after the last database snapshot.
+ * Records are opaque to the journal, {@link Database} encrypts every one of them separately.
+ *
+ * How this works:
+ * header    -> magic "RWJL" (4 bytes), version (1 byte), SHA-256 of the snapshot it applies to (32 bytes)
+ * record    -> length (4 bytes), CRC32 of the record (4 bytes), record
+ *
+ * The snapshot digest makes journal of older snapshot stale, so it is ignored after crash between writing
+ * a new snapshot and starting a new journal. Torn record at the end, left by a crash during append,
+ * fails its length or CRC check and is cut off when the journal is opened.
+ *
+ * Appends from many threads are committed together, one thread writes all waiting records and syncs them once.
+ */
+class Journal implements Closeable {
+
+    private final static byte[] MAGIC = {'R', 'W', 'J', 'L'};
+    private final static byte VERSION = 1;
+    private final static int DIGEST_LENGTH = 32;
+    private final static int HEADER_SIZE = MAGIC.length + 1 + DIGEST_LENGTH;
+    private final static int RECORD_HEADER_SIZE = 4 + 4;
+
+    private final FileChannel channel;
+    private final Object flushLock = new Object();
+    private final List<PendingRecord> pending = new ArrayList<>();
+
+    private long end;
+    private int records;
+
+    private Journal(FileChannel channel, long end, int records) {
+        this.channel = channel;
+        this.end = end;
+        this.records = records;
+    }
+
+    /**
+     * Replaces journal at given path with an empty one for the snapshot with given digest.
+     */
+    static Journal create(Path path, byte[] snapshotDigest) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put(VERSION).put(snapshotDigest);
+        header.flip();
+        DurableFiles.writeAtomically(path, header);
+        return new Journal(FileChannel.open(path, StandardOpenOption.WRITE), HEADER_SIZE, 0);
+    }
+
+    /**
+     * Reads records of the journal and opens it for appending after the last valid one.
+     * @return records in order of appending or null if there is no journal for the snapshot with given digest
+     */
+    static Replay open(Path path, byte[] snapshotDigest) throws IOException {
+        if (!Files.exists(path))
+            return null;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < HEADER_SIZE)
+            return null;
+        byte[] magic = new byte[MAGIC.length];
+        byte[] digest = new byte[DIGEST_LENGTH];
+        buffer.get(magic);
+        byte version = buffer.get();
+        buffer.get(digest);
+        if (!Arrays.equals(MAGIC, magic) || version != VERSION || !MessageDigest.isEqual(snapshotDigest, digest))
+            return null;
+
+        List<byte[]> records = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining())
+                break;
+            byte[] record = new byte[length];
+            buffer.get(record);
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != checksum)
+                break;
+            records.add(record);
+        }
+        long end = HEADER_SIZE;
+        for (byte[] record : records)
+            end += RECORD_HEADER_SIZE + record.length;
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        if (channel.size() > end) {
+            channel.truncate(end);
+            channel.force(true);
+        }
+        return new Replay(new Journal(channel, end, records.size()), records);
+    }
+
+    /**
+     * Appends the record and returns after it is synced to the disk.
+     * @throws IOException if writing the record failed, then the journal ends before it
+     */
+    void append(byte[] record) throws IOException {
+        PendingRecord pendingRecord = new PendingRecord(frame(record));
+        synchronized (pending) {
+            pending.add(pendingRecord);
+        }
+        synchronized (flushLock) {
+            if (!pendingRecord.done)
+                flush();
+            if (pendingRecord.failure != null)
+                throw new IOException("Couldn't append journal record", pendingRecord.failure);
+        }
+    }
+
+    /**
+     * @return number of records in the journal
+     */
+    int size() {
+        synchronized (flushLock) {
+            return records;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void flush() {
+        List<PendingRecord> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        long position = end;
+        try {
+            for (PendingRecord record : batch) {
+                ChannelUtils.writeFully(channel, record.frame, position);
+                position += record.frame.capacity();
+            }
+            channel.force(false);
+            end = position;
+            records += batch.size();
+        } catch (IOException e) {
+            try {
+                channel.truncate(end);
+            } catch (IOException ignored) {
+                // torn tail is cut off on next open anyway
+            }
+            batch.forEach(record -> record.failure = e);
+        }
+        batch.forEach(record -> record.done = true);
+    }
+
+    private static ByteBuffer frame(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer frame = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.length);
+        frame.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        frame.flip();
+        return frame;
+    }
+
+    private static class PendingRecord {
+        private final ByteBuffer frame;
+        private boolean done;
+        private IOException failure;
+
+        private PendingRecord(ByteBuffer frame) {
+            this.frame = frame;
+        }
+    }
+
+    static class Replay {
+        final Journal journal;
+        final List<byte[]> records;
+
+        private Replay(Journal journal, List<byte[]> records) {
+            this.journal = journal;
+            this.records = records;
+        }
+    }
+}
@@ -12,11 +12,24 @@ import java.util.Objects;
 
 @ToString
 public class WalletEntity implements Serializable {
+
+    /**
+     * Pinned to the value computed for the first version of this class, so databases saved before will still load
+     */
+    private static final long serialVersionUID = -5682654040133016666L;
     
     @Getter
     @Setter
     @JsonProperty("keyparts")
     private List<KeyPartEntity> parts = new ArrayList<>();
+
+    /**
+     * Number of key parts required to restore the secret, 0 if unknown (databases created before it was stored)
+     */
+    @Getter
+    @Setter
+    @JsonProperty("required")
+    private int requiredParts;
     
     /**
      * Needed to override this, so `WalletEntity` can be easily compared.
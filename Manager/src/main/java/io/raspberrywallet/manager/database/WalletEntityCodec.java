@@ -0,0 +1,84 @@
+package io.raspberrywallet.manager.database;
+
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary form of {@link WalletEntity}, encrypted into database.bin instead of its Java serialization.
+ *
+ * How this works:
+ * version         -> 1 byte
+ * required parts  -> 4 bytes
+ * key parts count -> 4 bytes
+ * every key part  -> module id (2 bytes length + UTF-8), payload (4 bytes length + bytes, -1 for null)
+ */
+class WalletEntityCodec {
+
+    private final static byte VERSION = 1;
+
+    private WalletEntityCodec() {}
+
+    static byte[] encode(WalletEntity wallet) {
+        List<KeyPartEntity> parts = wallet.getParts();
+        List<byte[]> modules = new ArrayList<>(parts.size());
+        int size = 1 + 4 + 4;
+        for (KeyPartEntity part : parts) {
+            byte[] module = part.getModule().getBytes(StandardCharsets.UTF_8);
+            if (module.length > 0xffff)
+                throw new IllegalArgumentException("Module id too long: " + part.getModule());
+            modules.add(module);
+            size += 2 + module.length + 4 + (part.getPayload() == null ? 0 : part.getPayload().length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.putInt(wallet.getRequiredParts());
+        buffer.putInt(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            byte[] payload = parts.get(i).getPayload();
+            buffer.putShort((short) modules.get(i).length);
+            buffer.put(modules.get(i));
+            buffer.putInt(payload == null ? -1 : payload.length);
+            if (payload != null)
+                buffer.put(payload);
+        }
+        return buffer.array();
+    }
+
+    static WalletEntity decode(byte[] data) throws DecryptionException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte version = buffer.get();
+            if (version != VERSION)
+                throw new DecryptionException("Unsupported database version: " + version);
+
+            WalletEntity wallet = new WalletEntity();
+            wallet.setRequiredParts(buffer.getInt());
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining())
+                throw new DecryptionException("Corrupted database, key parts count: " + count);
+            for (int i = 0; i < count; i++) {
+                String module = new String(getBytes(buffer, buffer.getShort() & 0xffff), StandardCharsets.UTF_8);
+                int payloadLength = buffer.getInt();
+                byte[] payload = payloadLength == -1 ? null : getBytes(buffer, payloadLength);
+                wallet.getParts().add(new KeyPartEntity(payload, module));
+            }
+            return wallet;
+        } catch (BufferUnderflowException e) {
+            throw new DecryptionException(e);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining())
+            throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
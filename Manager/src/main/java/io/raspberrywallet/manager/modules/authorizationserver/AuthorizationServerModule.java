@@ -7,12 +7,11 @@ import io.raspberrywallet.manager.common.generators.RandomStringGenerator;
 import io.raspberrywallet.manager.common.readers.WalletUUIDReader;
 import io.raspberrywallet.manager.common.wrappers.ByteWrapper;
 import io.raspberrywallet.manager.common.wrappers.Credentials;
-import io.raspberrywallet.manager.cryptography.crypto.AESEncryptedObject;
 import io.raspberrywallet.manager.cryptography.crypto.CryptoObject;
+import io.raspberrywallet.manager.cryptography.crypto.EncryptedObjectCodec;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
 import io.raspberrywallet.manager.modules.Module;
-import org.apache.commons.lang.SerializationUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -73,10 +72,7 @@ public class AuthorizationServerModule extends Module<AuthorizationServerConfig>
             callServer(serverCredentials);
             String password = serverAPI.getSecret(serverCredentials);
 
-            AESEncryptedObject<ByteWrapper> encryptedSecret =
-                    CryptoObject.encrypt(new ByteWrapper(payload), password);
-
-            return SerializationUtils.serialize(encryptedSecret);
+            return CryptoObject.encryptBytes(payload, password);
 
         } catch (RequestException e) {
             throw new EncryptionException(e.getMessage());
@@ -90,10 +86,10 @@ public class AuthorizationServerModule extends Module<AuthorizationServerConfig>
             callServer(serverCredentials);
             String password = serverAPI.getSecret(serverCredentials);
 
-            AESEncryptedObject<ByteWrapper> deserializedKeyPart =
-                    (AESEncryptedObject<ByteWrapper>) SerializationUtils.deserialize(keyPart);
+            if (EncryptedObjectCodec.isLegacy(keyPart))
+                return CryptoObject.<ByteWrapper>decryptLegacy(keyPart, password).getData();
 
-            return CryptoObject.decrypt(deserializedKeyPart, password).getData();
+            return CryptoObject.decryptBytes(keyPart, password);
 
         } catch (RequestException e) {
             throw new InternalModuleException(e.getMessage());
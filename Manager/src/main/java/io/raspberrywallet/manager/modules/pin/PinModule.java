@@ -3,12 +3,11 @@ package io.raspberrywallet.manager.modules.pin;
 import io.raspberrywallet.contract.RequiredInputNotFound;
 import io.raspberrywallet.manager.Configuration;
 import io.raspberrywallet.manager.common.wrappers.ByteWrapper;
-import io.raspberrywallet.manager.cryptography.crypto.AESEncryptedObject;
 import io.raspberrywallet.manager.cryptography.crypto.CryptoObject;
+import io.raspberrywallet.manager.cryptography.crypto.EncryptedObjectCodec;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
 import io.raspberrywallet.manager.modules.Module;
-import org.apache.commons.lang.SerializationUtils;
 import org.jetbrains.annotations.NotNull;
 
 public class PinModule extends Module<PinConfig> {
@@ -35,18 +34,15 @@ public class PinModule extends Module<PinConfig> {
 
     @Override
     protected byte[] encrypt(byte[] payload) throws EncryptionException {
-        AESEncryptedObject<ByteWrapper> encryptedObject =
-                CryptoObject.encrypt(new ByteWrapper(payload), getInput(PIN));
-
-        return SerializationUtils.serialize(encryptedObject);
+        return CryptoObject.encryptBytes(payload, getInput(PIN));
     }
 
     @Override
     protected byte[] decrypt(byte[] payload) throws DecryptionException {
-        AESEncryptedObject<ByteWrapper> encryptedObject =
-                (AESEncryptedObject<ByteWrapper>) SerializationUtils.deserialize(payload);
+        if (EncryptedObjectCodec.isLegacy(payload))
+            return CryptoObject.<ByteWrapper>decryptLegacy(payload, getInput(PIN)).getData();
 
-        return CryptoObject.decrypt(encryptedObject, getInput(PIN)).getData();
+        return CryptoObject.decryptBytes(payload, getInput(PIN));
     }
 
     @Override
@@ -1,10 +1,14 @@
 package io.raspberrywallet.manager;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import io.raspberrywallet.contract.*;
 import io.raspberrywallet.contract.module.ModuleState;
 import io.raspberrywallet.manager.bitcoin.Bitcoin;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirGF256;
 import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirKey;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirShare;
 import io.raspberrywallet.manager.database.Database;
 import io.raspberrywallet.manager.database.KeyPartEntity;
 import io.raspberrywallet.manager.linux.TemperatureMonitor;
@@ -120,6 +124,9 @@ class ManagerTest {
         selectedModulesWithInputs.put(pinModule.getId(), pinInputs);
         selectedModulesWithInputs.put(exampleModule.getId(), new HashMap<>());
 
+        when(database.addAllKeyParts(Mockito.any())).thenReturn(true);
+        when(bitcoin.setupWalletFromMnemonic(Mockito.eq(mnemonicCode), Mockito.anyString()))
+                .thenReturn(Futures.immediateFuture(null));
         manager.restoreFromBackupPhrase(mnemonicCode, selectedModulesWithInputs, 2);
         Mockito.verify(bitcoin).setupWalletFromMnemonic(mnemonicCode, null);
     }
@@ -148,6 +155,44 @@ class ManagerTest {
         assertThrows(IllegalStateException.class, () -> manager.unlockWallet(selectedModulesWithInputs));
     }
 
+    @Test
+    void unlockWithoutKeyPartsIsIncorrectPassword() throws WalletNotInitialized, IncorrectPasswordException {
+        when(database.getKeypartForModuleId(Mockito.anyString())).thenReturn(Optional.empty());
+
+        assertThrows(IncorrectPasswordException.class, () -> manager.unlockWallet(new HashMap<>()));
+        assertThrows(IncorrectPasswordException.class, () -> manager.loadWalletFromDisk(new HashMap<>()));
+        Mockito.verify(bitcoin, Mockito.never()).decryptWallet(Mockito.anyString());
+    }
+
+    @Test
+    void passwordIsCachedOnlyAfterWalletWasSetUp() throws Exception {
+        ShamirShare[] shares = ShamirGF256.split("password".getBytes(), 2, 2);
+        pinModule.setInput(PinModule.PIN, "1234");
+        KeyPartEntity exampleKeyPart = new KeyPartEntity(exampleModule.encryptKeyPart(shares[0].toByteArray()), exampleModule.getId());
+        KeyPartEntity pinKeyPart = new KeyPartEntity(pinModule.encryptKeyPart(shares[1].toByteArray()), pinModule.getId());
+        Map<String, Map<String, String>> inputs = new HashMap<>();
+        inputs.put(pinModule.getId(), Collections.singletonMap(PinModule.PIN, "1234"));
+
+        SettableFuture<Void> failedSetUp = SettableFuture.create();
+        when(bitcoin.setupWalletFromFile(Mockito.anyString())).thenReturn(failedSetUp);
+        when(database.getKeypartForModuleId(exampleModule.getId())).thenReturn(Optional.of(exampleKeyPart));
+        when(database.getKeypartForModuleId(pinModule.getId())).thenReturn(Optional.of(pinKeyPart));
+        manager.loadWalletFromDisk(inputs);
+        failedSetUp.setException(new IncorrectPasswordException("wrong password"));
+        // without the key parts only a cached password could lock the wallet
+        when(database.getKeypartForModuleId(Mockito.anyString())).thenReturn(Optional.empty());
+        assertThrows(IncorrectPasswordException.class, () -> manager.lockWallet());
+
+        SettableFuture<Void> setUp = SettableFuture.create();
+        when(bitcoin.setupWalletFromFile(Mockito.anyString())).thenReturn(setUp);
+        when(database.getKeypartForModuleId(exampleModule.getId())).thenReturn(Optional.of(exampleKeyPart));
+        when(database.getKeypartForModuleId(pinModule.getId())).thenReturn(Optional.of(pinKeyPart));
+        manager.loadWalletFromDisk(inputs);
+        setUp.set(null);
+        when(database.getKeypartForModuleId(Mockito.anyString())).thenReturn(Optional.empty());
+        assertTrue(manager.lockWallet());
+    }
+
     @Test
     void lockWalletWhenUnlocked() throws WalletNotInitialized, EncryptionException, InternalModuleException, RequiredInputNotFound, IOException, IncorrectPasswordException {
         when(bitcoin.getWallet()).thenReturn(Wallet.fromSeed(TestNet3Params.get(), seed));
@@ -0,0 +1,97 @@
+package io.raspberrywallet.manager;
+
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirException;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirGF256;
+import io.raspberrywallet.manager.cryptography.sharedsecret.shamir.ShamirKey;
+import io.raspberrywallet.manager.modules.Module;
+import io.raspberrywallet.manager.modules.example.ExampleModule;
+import io.raspberrywallet.manager.modules.pin.PinModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnlockOrchestratorTest {
+    private static final byte[] SHARE = new ShamirKey(BigInteger.TEN, BigInteger.ONE, BigInteger.TEN).toByteArray();
+    private static final byte[] GF256_SHARE;
+
+    static {
+        try {
+            GF256_SHARE = ShamirGF256.split("secret".getBytes(), 2, 2)[0].toByteArray();
+        } catch (ShamirException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Module> modules;
+    private Module slowModule;
+
+    @BeforeEach
+    void setup() throws IllegalAccessException, InstantiationException {
+        slowModule = new PinModule();
+        modules = Arrays.asList(new ExampleModule(), slowModule);
+    }
+
+    @Test
+    void returnsAsSoonAsThresholdIsReached() {
+        UnlockOrchestrator orchestrator = new UnlockOrchestrator(Duration.ofSeconds(30), 2);
+
+        long start = System.currentTimeMillis();
+        List<byte[]> keys = orchestrator.collectKeys(modules, 1, module -> {
+            if (module == slowModule) sleep(10_000);
+            return SHARE;
+        });
+
+        assertEquals(1, keys.size());
+        assertTrue(System.currentTimeMillis() - start < 5_000);
+    }
+
+    @Test
+    void waitsForAllModulesWhenThresholdIsUnknown() {
+        UnlockOrchestrator orchestrator = new UnlockOrchestrator(Duration.ofSeconds(30), 2);
+
+        List<byte[]> keys = orchestrator.collectKeys(modules, 0, module -> {
+            if (module == slowModule) sleep(200);
+            return module == slowModule ? GF256_SHARE : SHARE;
+        });
+
+        assertEquals(2, keys.size());
+    }
+
+    @Test
+    void cancelsModulesExceedingDeadline() {
+        UnlockOrchestrator orchestrator = new UnlockOrchestrator(Duration.ofMillis(500), 2);
+
+        long start = System.currentTimeMillis();
+        List<byte[]> keys = orchestrator.collectKeys(modules, 2, module -> {
+            if (module == slowModule) sleep(10_000);
+            return SHARE;
+        });
+
+        assertEquals(1, keys.size());
+        assertTrue(System.currentTimeMillis() - start < 5_000);
+    }
+
+    @Test
+    void skipsFailingAndInvalidModules() {
+        UnlockOrchestrator orchestrator = new UnlockOrchestrator(Duration.ofSeconds(30), 2);
+
+        List<byte[]> keys = orchestrator.collectKeys(modules, 2, module ->
+                module == slowModule ? "garbage".getBytes() : new byte[]{(byte) 0x81, 2, 1});
+
+        assertEquals(0, keys.size());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import com.google.protobuf.ByteString;
+import org.bitcoinj.crypto.KeyCrypterScrypt;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.wallet.Protos;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.WalletProtobufSerializer;
+import org.junit.jupiter.api.Test;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import static io.raspberrywallet.manager.TestUtils.generateRandomDeterministicSeed;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelKeyCrypterScryptTest {
+    private static final String PASSWORD = "rasperrywallet is the best bitcoin wallet ever";
+
+    @Test
+    void derivesSameKeyAsStockImplementation() {
+        int[][] nrp = {{1024, 8, 1}, {1024, 8, 6}, {2048, 1, 3}, {512, 4, 16}, {16, 2, 5}};
+        for (int[] params : nrp) {
+            Protos.ScryptParameters parameters = parameters(params[0], params[1], params[2]);
+
+            byte[] expected = new KeyCrypterScrypt(parameters).deriveKey(PASSWORD).getKey();
+
+            assertArrayEquals(expected, new ParallelKeyCrypterScrypt(parameters).deriveKey(PASSWORD).getKey());
+            assertArrayEquals(expected, new ParallelKeyCrypterScrypt(parameters, 1).deriveKey(PASSWORD).getKey());
+            assertArrayEquals(expected, new ParallelKeyCrypterScrypt(parameters, 2).deriveKey(PASSWORD).getKey());
+        }
+    }
+
+    @Test
+    void derivesSameKeyForNonAsciiAndEmptyPasswords() {
+        Protos.ScryptParameters parameters = parameters(256, 8, 2);
+        for (String password : new String[]{"", "zażółć gęślą jaźń", "🔑 key"}) {
+            assertArrayEquals(new KeyCrypterScrypt(parameters).deriveKey(password).getKey(),
+                    new ParallelKeyCrypterScrypt(parameters).deriveKey(password).getKey());
+        }
+    }
+
+    @Test
+    void walletEncryptedInParallelOpensWithStockImplementation() throws Exception {
+        Wallet wallet = Wallet.fromSeed(TestNet3Params.get(), generateRandomDeterministicSeed());
+        ParallelKeyCrypterScrypt keyCrypter = new ParallelKeyCrypterScrypt(parameters(1024, 8, 4));
+        wallet.encrypt(keyCrypter, keyCrypter.deriveKey(PASSWORD));
+
+        Protos.Wallet proto = new WalletProtobufSerializer().walletToProto(wallet);
+        Wallet loaded = new WalletProtobufSerializer().readWallet(TestNet3Params.get(), null, proto);
+
+        assertEquals(Protos.Wallet.EncryptionType.ENCRYPTED_SCRYPT_AES, proto.getEncryptionType());
+        KeyParameter stockKey = loaded.getKeyCrypter().deriveKey(PASSWORD);
+        assertTrue(loaded.checkAESKey(stockKey));
+    }
+
+    @Test
+    void rejectsInvalidN() {
+        ParallelKeyCrypterScrypt keyCrypter = new ParallelKeyCrypterScrypt(parameters(1000, 8, 1));
+        assertThrows(RuntimeException.class, () -> keyCrypter.deriveKey(PASSWORD));
+    }
+
+    private static Protos.ScryptParameters parameters(long n, int r, int p) {
+        return Protos.ScryptParameters.newBuilder()
+                .setN(n).setR(r).setP(p)
+                .setSalt(ByteString.copyFrom(KeyCrypterScrypt.randomSalt()))
+                .build();
+    }
+}
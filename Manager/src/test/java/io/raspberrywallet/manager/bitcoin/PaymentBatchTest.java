@@ -0,0 +1,143 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.raspberrywallet.contract.BatchSendResult;
+import io.raspberrywallet.contract.Payment;
+import org.bitcoinj.core.*;
+import org.bitcoinj.crypto.TransactionSignature;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.script.ScriptBuilder;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.WalletTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentBatchTest {
+    private final NetworkParameters params = TestNet3Params.get();
+    private final Random random = new Random(1);
+    private Wallet wallet;
+
+    @BeforeEach
+    void setup() {
+        wallet = new Wallet(params);
+        for (int i = 0; i < 5; i++)
+            fund(Coin.COIN);
+    }
+
+    @Test
+    void previewPaysAllRecipientsWithoutCommitting() {
+        Coin balance = wallet.getBalance();
+
+        BatchSendResult result = new PaymentBatch(params, payments(20, "0.01"), 10L).preview(wallet);
+
+        assertNull(result.getTxHash());
+        assertFalse(result.isBroadcast());
+        assertEquals(20, result.getRecipients());
+        assertEquals(1, result.getInputs());
+        assertEquals(Coin.parseCoin("0.20"), Coin.parseCoin(result.getAmount()));
+        Coin fee = Coin.parseCoin(result.getFee());
+        long expectedFee = 10L * result.getSizeBytes();
+        assertTrue(Math.abs(fee.value - expectedFee) < expectedFee / 20, fee + " for " + result.getSizeBytes() + " B");
+        assertEquals(Coin.COIN.subtract(Coin.parseCoin("0.20")).subtract(fee), Coin.parseCoin(result.getChange()));
+        assertEquals(balance, wallet.getBalance());
+        assertTrue(wallet.getPendingTransactions().isEmpty());
+    }
+
+    @Test
+    void batchCostsFractionOfSeparateSends() {
+        long separateFees = 0;
+        int separateBytes = 0;
+        for (Payment payment : payments(20, "0.01")) {
+            BatchSendResult single = new PaymentBatch(params, Collections.singletonList(payment), 10L).preview(wallet);
+            separateFees += Coin.parseCoin(single.getFee()).value;
+            separateBytes += single.getSizeBytes();
+        }
+
+        BatchSendResult batch = new PaymentBatch(params, payments(20, "0.01"), 10L).preview(wallet);
+
+        assertTrue(batch.getSizeBytes() * 4 < separateBytes, batch.getSizeBytes() + " B of " + separateBytes);
+        assertTrue(Coin.parseCoin(batch.getFee()).value * 4 < separateFees);
+    }
+
+    @Test
+    void previewNeedsNoKeys() {
+        wallet.encrypt("password");
+
+        BatchSendResult result = new PaymentBatch(params, payments(3, "0.5"), null).preview(wallet);
+
+        assertEquals(2, result.getInputs());
+    }
+
+    @Test
+    void sendSignsCommitsAndBroadcastsOneTransaction() {
+        List<Transaction> broadcast = new ArrayList<>();
+        TransactionBroadcaster broadcaster = tx -> {
+            broadcast.add(tx);
+            SettableFuture<Transaction> future = SettableFuture.create();
+            future.set(tx);
+            return TransactionBroadcast.createMockBroadcast(tx, future);
+        };
+        PaymentBatch batch = new PaymentBatch(params, payments(10, "0.05"), 5L);
+
+        Wallet.SendResult sent = batch.send(wallet, broadcaster);
+        BatchSendResult result = batch.result(sent.tx);
+
+        assertEquals(Collections.singletonList(sent.tx), broadcast);
+        assertEquals(sent.tx.getHashAsString(), result.getTxHash());
+        assertTrue(result.isBroadcast());
+        assertEquals(11, sent.tx.getOutputs().size());
+        sent.tx.getInputs().forEach(input -> assertTrue(input.getScriptBytes().length > 0));
+        assertEquals(sent.tx.unsafeBitcoinSerialize().length, result.getSizeBytes());
+        assertEquals(1, wallet.getPendingTransactions().size());
+        assertTrue(wallet.getPendingTransactions().contains(sent.tx));
+    }
+
+    @Test
+    void invalidBatchIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PaymentBatch(params, Collections.emptyList(), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PaymentBatch(params, payments(1, "0.01"), PaymentBatch.MAX_FEE_SAT_PER_BYTE + 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PaymentBatch(params, payments(1, "0"), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PaymentBatch(params, Collections.singletonList(new Payment("not an address", "0.01")), null));
+
+        IllegalArgumentException insufficient = assertThrows(IllegalArgumentException.class,
+                () -> new PaymentBatch(params, payments(2, "3"), null).preview(wallet));
+        assertTrue(insufficient.getMessage().startsWith("Insufficient funds"));
+        IllegalArgumentException dust = assertThrows(IllegalArgumentException.class,
+                () -> new PaymentBatch(params, payments(2, "0.00000100"), null).preview(wallet));
+        assertEquals("Amount below the dust limit", dust.getMessage());
+    }
+
+    private List<Payment> payments(int count, String amount) {
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            payments.add(new Payment(new ECKey().toAddress(params).toBase58(), amount));
+        return payments;
+    }
+
+    /**
+     * Adds confirmed transaction paying the wallet from a foreign key
+     */
+    private void fund(Coin value) {
+        Transaction tx = new Transaction(params);
+        byte[] previousHash = new byte[32];
+        random.nextBytes(previousHash);
+        byte[] script = ScriptBuilder.createInputScript(TransactionSignature.dummy(), new ECKey()).getProgram();
+        tx.addInput(new TransactionInput(params, tx, script,
+                new TransactionOutPoint(params, 0, Sha256Hash.wrap(previousHash)), value.add(Coin.MILLICOIN)));
+        tx.addOutput(value, wallet.freshReceiveAddress());
+        tx.getConfidence().setAppearedAtChainHeight(1);
+        tx.getConfidence().setDepthInBlocks(6);
+        wallet.addWalletTransaction(new WalletTransaction(WalletTransaction.Pool.UNSPENT, tx));
+    }
+}
@@ -0,0 +1,72 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.raspberrywallet.manager.Configuration;
+import org.bitcoinj.crypto.KeyCrypterScrypt;
+import org.bitcoinj.wallet.Protos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScryptCalibrationTest {
+    private Configuration configuration;
+    private File calibrationFile;
+
+    @BeforeEach
+    void setup() throws IOException {
+        File baseDir = Files.createTempDirectory("scrypt-calibration").toFile();
+        baseDir.deleteOnExit();
+        configuration = new Configuration(baseDir.getAbsolutePath());
+        configuration.getBitcoinConfig().setScryptTargetMillis(1);
+        calibrationFile = new File(baseDir, "scrypt-calibration.json");
+        calibrationFile.deleteOnExit();
+    }
+
+    @Test
+    void neverGoesBelowInteractiveLoginParameters() {
+        Protos.ScryptParameters parameters = new ScryptCalibration(configuration).newParameters();
+
+        assertEquals(1 << 14, parameters.getN());
+        assertEquals(8, parameters.getR());
+        assertEquals(1, parameters.getP());
+        assertEquals(KeyCrypterScrypt.SALT_LENGTH, parameters.getSalt().size());
+    }
+
+    @Test
+    void respectsMemoryBudget() {
+        configuration.getBitcoinConfig().setScryptTargetMillis(60_000);
+        configuration.getBitcoinConfig().setScryptMemoryBudgetMb(16);
+
+        ScryptCalibration.Result result = new ScryptCalibration(configuration).getResult();
+
+        assertEquals(1 << 14, result.getN());
+        assertTrue(result.getP() > 1);
+    }
+
+    @Test
+    void storedCalibrationIsReusedOnSameHardware() {
+        long calibratedAt = new ScryptCalibration(configuration).getResult().getCalibratedAt();
+        assertTrue(calibrationFile.exists());
+
+        assertEquals(calibratedAt, new ScryptCalibration(configuration).getResult().getCalibratedAt());
+    }
+
+    @Test
+    void hardwareChangeTriggersCalibration() throws IOException {
+        new ScryptCalibration(configuration).getResult();
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode stored = (ObjectNode) mapper.readTree(calibrationFile);
+        stored.put("hardware", "some other board");
+        mapper.writeValue(calibrationFile, stored);
+
+        ScryptCalibration.Result result = new ScryptCalibration(configuration).getResult();
+
+        assertEquals(ScryptCalibration.hardwareFingerprint(), result.getHardware());
+    }
+}
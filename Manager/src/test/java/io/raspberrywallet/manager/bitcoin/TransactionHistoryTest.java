@@ -0,0 +1,224 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import io.raspberrywallet.contract.TransactionPage;
+import io.raspberrywallet.contract.TransactionView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionHistoryTest {
+    private static final long NOW = 1_540_000_000_000L;
+
+    private Path directory;
+    private File logFile;
+    private TransactionHistory history;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("transaction-history");
+        logFile = directory.resolve("wallet.history").toFile();
+        history = new TransactionHistory(logFile);
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        history.close();
+        File[] files = directory.toFile().listFiles();
+        if (files != null)
+            for (File file : files)
+                Files.delete(file.toPath());
+        Files.delete(directory);
+    }
+
+    @Test
+    void pagesFollowCursorNewestFirst() throws IOException {
+        for (int i = 0; i < 25; i++)
+            history.put(view(i, "a" + i % 3), -1);
+
+        List<TransactionView> all = new ArrayList<>();
+        TransactionPage page = history.query(null, 10, null, null, null, 0);
+        all.addAll(page.getTransactions());
+        while (page.getNextCursor() != null) {
+            page = history.query(page.getNextCursor(), 10, null, null, null, 0);
+            all.addAll(page.getTransactions());
+        }
+
+        assertEquals(25, all.size());
+        assertEquals(5, page.getTransactions().size());
+        for (int i = 0; i < all.size(); i++)
+            assertEquals("tx" + i, all.get(i).getTxHash());
+    }
+
+    @Test
+    void filtersByAddressAndTime() throws IOException {
+        for (int i = 0; i < 30; i++)
+            history.put(view(i, "a" + i % 3), -1);
+
+        List<TransactionView> byAddress = history.query(null, 100, "a1", null, null, 0).getTransactions();
+        assertEquals(10, byAddress.size());
+        byAddress.forEach(view -> assertTrue(view.getOutputAddresses().contains("a1")));
+
+        // tx5 to tx10 by time, tx7 and tx10 pay to a1
+        List<TransactionView> byTime = history.query(null, 100, null, time(10), time(5), 0).getTransactions();
+        assertEquals(6, byTime.size());
+        assertEquals("tx5", byTime.get(0).getTxHash());
+        assertEquals("tx10", byTime.get(5).getTxHash());
+        TransactionPage both = history.query(null, 1, "a1", time(10), time(5), 0);
+        assertEquals("tx7", both.getTransactions().get(0).getTxHash());
+        assertEquals("tx10", history.query(both.getNextCursor(), 1, "a1", time(10), time(5), 0)
+                .getTransactions().get(0).getTxHash());
+
+        assertTrue(history.query(null, 10, null, time(5), time(10), 0).getTransactions().isEmpty());
+        assertTrue(history.query(null, 10, "unknown", null, null, 0).getTransactions().isEmpty());
+    }
+
+    @Test
+    void confirmationsAreCountedFromBestHeight() throws IOException {
+        history.put(view(0, "a"), 100);
+        history.put(view(1, "a"), -1);
+
+        List<TransactionView> transactions = history.query(null, 10, null, null, null, 104).getTransactions();
+        assertEquals(5, transactions.get(0).getConfirmations());
+        assertEquals(0, transactions.get(1).getConfirmations());
+    }
+
+    @Test
+    void survivesReopen() throws IOException {
+        for (int i = 0; i < 10; i++)
+            history.put(view(i, "a"), -1);
+        history.put(view(3, "a"), 50);
+        history.remove("tx4");
+        history.close();
+
+        history = new TransactionHistory(logFile);
+        assertEquals(9, history.size());
+        List<TransactionView> transactions = history.query(null, 10, null, null, null, 50).getTransactions();
+        assertEquals(9, transactions.size());
+        assertEquals(1, transactions.get(3).getConfirmations());
+        assertFalse(transactions.stream().anyMatch(view -> view.getTxHash().equals("tx4")));
+    }
+
+    @Test
+    void unchangedTransactionIsNotAppended() throws IOException {
+        history.put(view(0, "a"), 100);
+        long length = logFile.length();
+
+        history.put(view(0, "a").withConfirmations(7), 100);
+        assertEquals(length, logFile.length());
+        history.put(view(0, "a"), 101);
+        assertTrue(logFile.length() > length);
+    }
+
+    @Test
+    void retainAllRemovesOthers() throws IOException {
+        for (int i = 0; i < 5; i++)
+            history.put(view(i, "a" + i), -1);
+
+        history.retainAll(new HashSet<>(Arrays.asList("tx1", "tx3")));
+
+        assertEquals(2, history.size());
+        assertTrue(history.query(null, 10, "a0", null, null, 0).getTransactions().isEmpty());
+        assertEquals(1, history.query(null, 10, "a3", null, null, 0).getTransactions().size());
+    }
+
+    @Test
+    void tornRecordIsDropped() throws IOException {
+        history.put(view(0, "a"), -1);
+        history.put(view(1, "a"), -1);
+        history.close();
+        long length = logFile.length();
+        try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+            out.write("{\"txHash\":\"tx2\",\"creat".getBytes(StandardCharsets.UTF_8));
+        }
+
+        history = new TransactionHistory(logFile);
+        assertEquals(length, logFile.length());
+        assertEquals(2, history.size());
+        history.put(view(2, "a"), -1);
+        history.close();
+
+        history = new TransactionHistory(logFile);
+        assertEquals(3, history.size());
+    }
+
+    @Test
+    void supersededVersionsAreCompacted() throws IOException {
+        for (int i = 0; i < 10; i++)
+            history.put(view(i, "a"), -1);
+        long liveLength = logFile.length();
+
+        // a few hundred kilobytes of versions without compaction
+        for (int height = 0; height < 2000; height++)
+            history.put(view(height % 10, "a"), height);
+
+        assertTrue(logFile.length() < 100 * 1024, "log of " + logFile.length() + " bytes");
+        assertTrue(logFile.length() >= liveLength);
+        assertEquals(10, history.query(null, 10, null, null, null, 1999)
+                .getTransactions().get(0).getConfirmations());
+        history.close();
+
+        history = new TransactionHistory(logFile);
+        assertEquals(10, history.size());
+        assertEquals(10, history.query(null, 10, "a", null, null, 0).getTransactions().size());
+    }
+
+    @Test
+    void failedCompactionKeepsHistoryUsable() throws IOException {
+        // compacted log can't be created in place of a directory
+        File blocker = new File(logFile.getPath() + ".compact");
+        assertTrue(blocker.mkdir());
+        for (int i = 0; i < 10; i++)
+            history.put(view(i, "a"), -1);
+
+        for (int height = 0; height < 1000; height++)
+            history.put(view(height % 10, "a"), height);
+
+        assertEquals(10, history.size());
+        assertEquals(10, history.query(null, 10, null, null, null, 999).getTransactions().get(0).getConfirmations());
+        Files.delete(blocker.toPath());
+        history.put(view(0, "a"), -1);
+        assertTrue(logFile.length() < 100 * 1024, "log of " + logFile.length() + " bytes");
+    }
+
+    @Test
+    void findReturnsUnchangedTransactionOnly() throws IOException {
+        history.put(view(0, "a"), 100);
+
+        TransactionView found = history.find("tx0", time(0), 100);
+        assertNotNull(found);
+        assertEquals(Arrays.asList("a", "change0"), found.getOutputAddresses());
+        assertEquals(0, found.getConfirmations());
+        assertNull(history.find("tx0", time(0), 101));
+        assertNull(history.find("tx0", time(1), 100));
+        assertNull(history.find("tx1", time(1), 100));
+    }
+
+    @Test
+    void invalidQueryIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> history.query("not a cursor", 10, null, null, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> history.query(null, 0, null, null, null, 0));
+    }
+
+    /**
+     * @param age minutes before {@link #NOW}, the higher the older
+     */
+    private static TransactionView view(int age, String outputAddress) {
+        return new TransactionView("tx" + age, time(age),
+                Collections.singletonList("input" + age), Arrays.asList(outputAddress, "change" + age),
+                "0.00 BTC", "0.01 BTC", "0.0001 BTC", 0);
+    }
+
+    private static long time(int age) {
+        return NOW - age * 60_000L;
+    }
+}
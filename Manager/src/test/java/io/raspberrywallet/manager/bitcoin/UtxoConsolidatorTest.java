@@ -0,0 +1,181 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.raspberrywallet.manager.Configuration;
+import org.bitcoinj.core.*;
+import org.bitcoinj.crypto.TransactionSignature;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.script.ScriptBuilder;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.WalletTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtxoConsolidatorTest {
+    private static final Clock NIGHT = Clock.fixed(Instant.parse("2018-10-20T03:00:00Z"), ZoneOffset.UTC);
+
+    private final NetworkParameters params = TestNet3Params.get();
+    private final Random random = new Random(1);
+    private final List<Transaction> broadcast = new ArrayList<>();
+    private final TransactionBroadcaster broadcaster = tx -> {
+        broadcast.add(tx);
+        SettableFuture<Transaction> future = SettableFuture.create();
+        future.set(tx);
+        return TransactionBroadcast.createMockBroadcast(tx, future);
+    };
+    private Configuration.ConsolidationConfig config;
+    private Wallet wallet;
+
+    @BeforeEach
+    void setup() {
+        config = new Configuration.ConsolidationConfig();
+        config.setEnabled(true);
+        config.setWindowStartHour(1);
+        config.setWindowEndHour(6);
+        wallet = new Wallet(params);
+        fund(Coin.COIN);
+        fund(Coin.COIN);
+    }
+
+    @Test
+    void smallOutputsAreMergedIntoOne() {
+        for (int i = 0; i < 30; i++)
+            fund(Coin.valueOf(100_000 + i));
+        Coin balance = wallet.getBalance();
+
+        Transaction tx = consolidator().consolidate();
+
+        assertNotNull(tx);
+        assertEquals(Collections.singletonList(tx), broadcast);
+        assertEquals(30, tx.getInputs().size());
+        tx.getInputs().forEach(input -> assertTrue(input.getConnectedOutput().getValue().isLessThan(Coin.COIN)));
+        assertEquals(1, tx.getOutputs().size());
+        assertTrue(tx.getOutput(0).isMine(wallet));
+        long size = tx.unsafeBitcoinSerialize().length;
+        assertTrue(Math.abs(size - UtxoConsolidator.estimateSize(30)) < 30 * 2, size + " B");
+        assertTrue(Math.abs(tx.getFee().value - 2 * size) < size / 10, tx.getFee() + " for " + size + " B");
+        assertEquals(balance.subtract(tx.getFee()), wallet.getBalance(Wallet.BalanceType.ESTIMATED));
+        // change of the consolidation waits for a confirmation, nothing else to merge
+        assertNull(consolidator().consolidate());
+    }
+
+    @Test
+    void consolidationGoesToCurrentChangeAddress() {
+        for (int i = 0; i < 30; i++)
+            fund(Coin.valueOf(100_000));
+        Address change = wallet.currentChangeAddress();
+        int issuedReceiveAddresses = wallet.getIssuedReceiveAddresses().size();
+
+        Transaction tx = consolidator().consolidate();
+
+        assertNotNull(tx);
+        assertEquals(change, tx.getOutput(0).getScriptPubKey().getToAddress(params));
+        assertEquals(issuedReceiveAddresses, wallet.getIssuedReceiveAddresses().size());
+    }
+
+    @Test
+    void smallestAreMergedUpToMaxInputs() {
+        for (int i = 0; i < 30; i++)
+            fund(Coin.valueOf(200_000 - i * 1000));
+        config.setMaxInputs(10);
+
+        List<TransactionOutput> selected = consolidator().select();
+
+        assertNotNull(selected);
+        assertEquals(10, selected.size());
+        for (int i = 0; i < 10; i++)
+            assertEquals(Coin.valueOf(171_000 + i * 1000), selected.get(i).getValue());
+    }
+
+    @Test
+    void policyIsRespected() {
+        for (int i = 0; i < 10; i++)
+            fund(Coin.valueOf(100_000));
+        config.setMinOutputs(20);
+        assertNull(consolidator().select(), "too few small outputs");
+
+        config.setMinOutputs(10);
+        config.setMinValueSatoshis(2_000_000);
+        assertNull(consolidator().select(), "too little value");
+
+        config.setMinValueSatoshis(0);
+        config.setFeeSatPerByte(50);
+        assertNull(consolidator().select(), "fee too high");
+
+        config.setFeeSatPerByte(2);
+        assertNotNull(consolidator().select());
+        assertNull(new UtxoConsolidator(wallet, broadcaster, config,
+                Clock.fixed(Instant.parse("2018-10-20T12:00:00Z"), ZoneOffset.UTC)).select(), "outside of window");
+        assertTrue(broadcast.isEmpty());
+    }
+
+    @Test
+    void uneconomicDustWaits() {
+        for (int i = 0; i < 20; i++)
+            fund(Coin.valueOf(100_000));
+        for (int i = 0; i < 5; i++)
+            fund(Coin.valueOf(1_000));
+        config.setFeeSatPerByte(10);
+
+        List<TransactionOutput> selected = consolidator().select();
+
+        assertNotNull(selected);
+        assertEquals(20, selected.size());
+    }
+
+    @Test
+    void lockedWalletIsLeftAlone() {
+        for (int i = 0; i < 30; i++)
+            fund(Coin.valueOf(100_000));
+        wallet.encrypt("password");
+
+        assertNull(consolidator().consolidate());
+        assertTrue(broadcast.isEmpty());
+    }
+
+    @Test
+    void windowWrapsAroundMidnight() {
+        config.setWindowStartHour(22);
+        config.setWindowEndHour(4);
+        UtxoConsolidator consolidator = consolidator();
+
+        assertTrue(consolidator.inWindow(LocalTime.of(23, 30)));
+        assertTrue(consolidator.inWindow(LocalTime.of(3, 59)));
+        assertFalse(consolidator.inWindow(LocalTime.of(4, 0)));
+        assertFalse(consolidator.inWindow(LocalTime.of(12, 0)));
+
+        config.setWindowEndHour(22);
+        assertTrue(consolidator.inWindow(LocalTime.of(12, 0)));
+    }
+
+    private UtxoConsolidator consolidator() {
+        return new UtxoConsolidator(wallet, broadcaster, config, NIGHT);
+    }
+
+    /**
+     * Adds confirmed transaction paying the wallet from a foreign key
+     */
+    private void fund(Coin value) {
+        Transaction tx = new Transaction(params);
+        byte[] previousHash = new byte[32];
+        random.nextBytes(previousHash);
+        byte[] script = ScriptBuilder.createInputScript(TransactionSignature.dummy(), new ECKey()).getProgram();
+        tx.addInput(new TransactionInput(params, tx, script,
+                new TransactionOutPoint(params, 0, Sha256Hash.wrap(previousHash)), value.add(Coin.MILLICOIN)));
+        tx.addOutput(value, wallet.freshReceiveAddress());
+        tx.getConfidence().setAppearedAtChainHeight(1);
+        tx.getConfidence().setDepthInBlocks(6);
+        wallet.addWalletTransaction(new WalletTransaction(WalletTransaction.Pool.UNSPENT, tx));
+    }
+}
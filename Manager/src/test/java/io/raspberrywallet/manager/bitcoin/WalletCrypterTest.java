@@ -0,0 +1,60 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import io.raspberrywallet.contract.IncorrectPasswordException;
+import org.bitcoinj.crypto.KeyCrypter;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.wallet.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.security.NoSuchAlgorithmException;
+
+import static io.raspberrywallet.manager.TestUtils.generateRandomDeterministicSeed;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalletCrypterTest {
+    private static final String PASSWORD = "rasperrywallet is the best bitcoin wallet ever";
+
+    private WalletCrypter walletCrypter;
+    private Wallet wallet;
+
+    @BeforeEach
+    void setup() throws NoSuchAlgorithmException {
+        walletCrypter = new WalletCrypter();
+        wallet = Wallet.fromSeed(TestNet3Params.get(), generateRandomDeterministicSeed());
+    }
+
+    @Test
+    void singleDerivedKeyEncryptsAndDecryptsWallet() throws IncorrectPasswordException {
+        KeyCrypter keyCrypter = walletCrypter.newKeyCrypter();
+        KeyParameter aesKey = walletCrypter.deriveKey(keyCrypter, PASSWORD);
+
+        walletCrypter.encryptWallet(wallet, keyCrypter, aesKey);
+        assertTrue(wallet.isEncrypted());
+
+        walletCrypter.decryptWallet(wallet, aesKey);
+        assertFalse(wallet.isEncrypted());
+    }
+
+    @Test
+    void walletEncryptedWithDerivedKeyOpensWithPassword() throws IncorrectPasswordException {
+        KeyCrypter keyCrypter = walletCrypter.newKeyCrypter();
+        KeyParameter aesKey = walletCrypter.deriveKey(keyCrypter, PASSWORD);
+        walletCrypter.encryptWallet(wallet, keyCrypter, aesKey);
+        walletCrypter.destroyKey(aesKey);
+
+        assertThrows(IncorrectPasswordException.class, () -> walletCrypter.decryptWallet(wallet, "wrong password"));
+        walletCrypter.decryptWallet(wallet, PASSWORD);
+        assertFalse(wallet.isEncrypted());
+    }
+
+    @Test
+    void destroyedKeyIsZeroed() throws IncorrectPasswordException {
+        KeyParameter aesKey = walletCrypter.deriveKey(walletCrypter.newKeyCrypter(), PASSWORD);
+        walletCrypter.destroyKey(aesKey);
+
+        for (byte b : aesKey.getKey())
+            assertEquals(0, b);
+    }
+}
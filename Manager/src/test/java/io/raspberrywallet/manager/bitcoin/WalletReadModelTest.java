@@ -0,0 +1,247 @@
+package io.raspberrywallet.manager.bitcoin;
+
+import io.raspberrywallet.contract.TransactionPage;
+import io.raspberrywallet.contract.TransactionView;
+import org.bitcoinj.core.*;
+import org.bitcoinj.crypto.TransactionSignature;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.script.ScriptBuilder;
+import org.bitcoinj.utils.Threading;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.WalletTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalletReadModelTest {
+    private final NetworkParameters params = TestNet3Params.get();
+    private final Random random = new Random(1);
+    private Wallet wallet;
+
+    @BeforeEach
+    void setup() {
+        wallet = new Wallet(params);
+        for (int i = 0; i < 20; i++)
+            wallet.addWalletTransaction(new WalletTransaction(WalletTransaction.Pool.UNSPENT, incoming(i)));
+    }
+
+    @Test
+    void snapshotMatchesWallet() {
+        WalletReadModel readModel = new WalletReadModel(wallet);
+
+        assertMatchesWallet(readModel);
+        List<TransactionView> transactions = readModel.getTransactions();
+        assertEquals(20, transactions.size());
+        for (int i = 1; i < transactions.size(); i++)
+            assertTrue(transactions.get(i - 1).getCreationTimestamp() >= transactions.get(i).getCreationTimestamp());
+        assertThrows(UnsupportedOperationException.class, () -> transactions.remove(0));
+    }
+
+    @Test
+    void receivedTransactionIsMergedIn() {
+        WalletReadModel readModel = new WalletReadModel(wallet);
+        List<TransactionView> before = readModel.getTransactions();
+
+        Transaction newest = incoming(-10);
+        wallet.receivePending(newest, null);
+        awaitRefresh();
+
+        List<TransactionView> after = readModel.getTransactions();
+        assertEquals(21, after.size());
+        assertEquals(newest.getHashAsString(), after.get(0).getTxHash());
+        // views of other transactions are reused
+        for (int i = 0; i < before.size(); i++)
+            assertSame(before.get(i), after.get(i + 1));
+        assertMatchesWallet(readModel);
+    }
+
+    @Test
+    void deeperTransactionGetsConfirmationsOnly() {
+        Transaction tx = wallet.getTransactions(false).iterator().next();
+        WalletReadModel readModel = new WalletReadModel(wallet);
+        TransactionView before = find(readModel, tx);
+
+        tx.getConfidence().setAppearedAtChainHeight(100);
+        tx.getConfidence().setDepthInBlocks(1);
+        confidenceChanged(tx);
+        awaitRefresh();
+        TransactionView building = find(readModel, tx);
+        assertEquals(1, building.getConfirmations());
+
+        tx.getConfidence().incrementDepthInBlocks();
+        confidenceChanged(tx);
+        awaitRefresh();
+        TransactionView deeper = find(readModel, tx);
+        assertEquals(2, deeper.getConfirmations());
+        assertSame(building.getInputAddresses(), deeper.getInputAddresses());
+        assertNotSame(before.getInputAddresses(), building.getInputAddresses());
+        assertMatchesWallet(readModel);
+    }
+
+    @Test
+    void deadTransactionIsRemoved() {
+        Transaction tx = wallet.getTransactions(false).iterator().next();
+        WalletReadModel readModel = new WalletReadModel(wallet);
+
+        tx.getConfidence().setConfidenceType(TransactionConfidence.ConfidenceType.DEAD);
+        confidenceChanged(tx);
+        awaitRefresh();
+
+        assertEquals(19, readModel.getTransactions().size());
+        assertNull(find(readModel, tx));
+    }
+
+    @Test
+    void currentAddressFollowsKeyChain() {
+        WalletReadModel readModel = new WalletReadModel(wallet);
+        String current = readModel.getCurrentReceiveAddress();
+
+        // receiving to the current address makes the wallet move to the next one
+        Transaction tx = new Transaction(params);
+        tx.addInput(input(tx));
+        tx.addOutput(Coin.COIN, Address.fromBase58(params, current));
+        wallet.receivePending(tx, null);
+        awaitRefresh();
+
+        assertNotEquals(current, readModel.getCurrentReceiveAddress());
+        assertMatchesWallet(readModel);
+    }
+
+    @Test
+    void detachedModelStopsFollowing() {
+        WalletReadModel readModel = new WalletReadModel(wallet);
+        readModel.detach();
+
+        wallet.receivePending(incoming(-10), null);
+        awaitRefresh();
+
+        assertEquals(20, readModel.getTransactions().size());
+    }
+
+    @Test
+    void historyFollowsWallet() throws IOException {
+        Path directory = Files.createTempDirectory("read-model-history");
+        File logFile = directory.resolve("wallet.history").toFile();
+        try (TransactionHistory history = new TransactionHistory(logFile)) {
+            history.put(new TransactionView("foreign", 0, Collections.emptyList(), Collections.emptyList(),
+                    "0.00 BTC", "0.00 BTC", "0.00 BTC", 0), -1);
+            WalletReadModel readModel = new WalletReadModel(wallet, history);
+            assertEquals(20, history.size());
+
+            Transaction newest = incoming(-10);
+            wallet.receivePending(newest, null);
+            awaitRefresh();
+            Transaction dead = wallet.getTransactions(false).stream()
+                    .filter(tx -> tx != newest).findFirst().orElseThrow(IllegalStateException::new);
+            dead.getConfidence().setConfidenceType(TransactionConfidence.ConfidenceType.DEAD);
+            confidenceChanged(dead);
+            awaitRefresh();
+
+            TransactionPage page = history.query(null, 100, null, null, null, 0);
+            assertEquals(20, page.getTransactions().size());
+            assertEquals(newest.getHashAsString(), page.getTransactions().get(0).getTxHash());
+            assertEquals(readModel.getTransactions().stream().map(TransactionView::getTxHash).collect(toList()),
+                    page.getTransactions().stream().map(TransactionView::getTxHash).collect(toList()));
+            readModel.detach();
+        } finally {
+            Files.deleteIfExists(logFile.toPath());
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void restartTakesUnchangedTransactionsFromHistory() throws IOException {
+        Path directory = Files.createTempDirectory("read-model-history");
+        File logFile = directory.resolve("wallet.history").toFile();
+        try (TransactionHistory history = new TransactionHistory(logFile)) {
+            new WalletReadModel(wallet, history).detach();
+            Transaction stored = wallet.getTransactions(false).iterator().next();
+            TransactionView view = history.find(stored.getHashAsString(), stored.getUpdateTime().getTime(), -1);
+            assertNotNull(view);
+            // marks the view, so it's clear where the restarted read model took it from
+            history.put(new TransactionView(view.getTxHash(), view.getCreationTimestamp(), view.getInputAddresses(),
+                    view.getOutputAddresses(), view.getAmountFromMe(), view.getAmountToMe(), "stored", 0), -1);
+            Transaction changed = wallet.getTransactions(false).stream()
+                    .filter(tx -> tx != stored).findFirst().orElseThrow(IllegalStateException::new);
+            changed.setUpdateTime(new Date(changed.getUpdateTime().getTime() + 1));
+
+            WalletReadModel readModel = new WalletReadModel(wallet, history);
+
+            assertEquals("stored", find(readModel, stored).getFee());
+            assertNotEquals("stored", find(readModel, changed).getFee());
+            assertEquals(changed.getUpdateTime().getTime(), find(readModel, changed).getCreationTimestamp());
+            assertEquals(20, readModel.getTransactions().size());
+            readModel.rebuild();
+            assertNotEquals("stored", find(readModel, stored).getFee());
+            readModel.detach();
+        } finally {
+            Files.deleteIfExists(logFile.toPath());
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Wallet queues confidence events of blocks and double spends itself, from the listeners of the transactions
+     * it passes on the seen peers changes only
+     */
+    private static void confidenceChanged(Transaction tx) {
+        tx.getConfidence().queueListeners(TransactionConfidence.Listener.ChangeReason.SEEN_PEERS);
+    }
+
+    /**
+     * Listeners run on bitcoinj user thread and schedule the refresh behind them
+     */
+    private static void awaitRefresh() {
+        Threading.waitForUserCode();
+        Threading.waitForUserCode();
+    }
+
+    private void assertMatchesWallet(WalletReadModel readModel) {
+        assertEquals(wallet.getBalance(Wallet.BalanceType.ESTIMATED).toFriendlyString(), readModel.getEstimatedBalance());
+        assertEquals(wallet.getBalance(Wallet.BalanceType.AVAILABLE).toFriendlyString(), readModel.getAvailableBalance());
+        assertEquals(wallet.currentReceiveAddress().toBase58(), readModel.getCurrentReceiveAddress());
+        assertEquals(wallet.getTransactions(false).size(), readModel.getTransactions().size());
+        for (TransactionView view : readModel.getTransactions()) {
+            Transaction tx = wallet.getTransaction(Sha256Hash.wrap(view.getTxHash()));
+            assertNotNull(tx);
+            assertEquals(tx.getConfidence().getDepthInBlocks(), view.getConfirmations());
+            assertEquals(tx.getValueSentToMe(wallet).toFriendlyString(), view.getAmountToMe());
+        }
+    }
+
+    private static TransactionView find(WalletReadModel readModel, Transaction tx) {
+        return readModel.getTransactions().stream()
+                .filter(view -> view.getTxHash().equals(tx.getHashAsString()))
+                .findFirst().orElse(null);
+    }
+
+    /**
+     * @param minutesAgo when the transaction was seen
+     * @return transaction paying the wallet from a foreign key
+     */
+    private Transaction incoming(int minutesAgo) {
+        Transaction tx = new Transaction(params);
+        tx.addInput(input(tx));
+        tx.addOutput(Coin.valueOf(100_000 + random.nextInt(1_000_000)), wallet.freshReceiveAddress());
+        tx.setUpdateTime(new Date(System.currentTimeMillis() - minutesAgo * 60_000L));
+        return tx;
+    }
+
+    private TransactionInput input(Transaction tx) {
+        byte[] previousHash = new byte[32];
+        random.nextBytes(previousHash);
+        byte[] script = ScriptBuilder.createInputScript(TransactionSignature.dummy(), new ECKey()).getProgram();
+        return new TransactionInput(params, tx, script, new TransactionOutPoint(params, 0, Sha256Hash.wrap(previousHash)));
+    }
+}
@@ -0,0 +1,59 @@
+package io.raspberrywallet.manager.cryptography.common;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecretCacheTest {
+    private static final byte[] SECRET = "very secret wallet password".getBytes();
+
+    private AtomicLong now;
+    private SecretCache cache;
+
+    @BeforeEach
+    void setup() {
+        now = new AtomicLong();
+        cache = new SecretCache(Duration.ofSeconds(10), now::get);
+    }
+
+    @Test
+    void returnsCopyOfStoredSecret() {
+        cache.put(SECRET);
+
+        byte[] secret = cache.get();
+        assertArrayEquals(SECRET, secret);
+        secret[0] = 0;
+        assertArrayEquals(SECRET, cache.get());
+    }
+
+    @Test
+    void secretExpiresAfterLifetime() {
+        cache.put(SECRET);
+
+        now.set(Duration.ofSeconds(9).toNanos());
+        assertTrue(cache.isPresent());
+        now.set(Duration.ofSeconds(10).toNanos());
+        assertNull(cache.get());
+        assertFalse(cache.isPresent());
+    }
+
+    @Test
+    void invalidateForgetsSecret() {
+        cache.put(SECRET);
+        cache.invalidate();
+
+        assertNull(cache.get());
+    }
+
+    @Test
+    void shorterSecretReplacesLongerOne() {
+        cache.put(SECRET);
+        cache.put(new byte[]{1, 2, 3});
+
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get());
+    }
+}
@@ -0,0 +1,127 @@
+package io.raspberrywallet.manager.cryptography.crypto;
+
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.RSACipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CryptoStreamTests {
+    
+    private static final String defaultPassword = "TestPassword123!@##$%";
+    private static final Random random = new Random();
+    
+    @Test
+    void DataDoesNotChange_WhenEncryptedAndDecryptedInManyChunks() throws EncryptionException, DecryptionException {
+        byte[] data = randomData(StreamingCipher.CHUNK_SIZE * 3 + 17);
+        
+        byte[] encrypted = encrypt(new ByteArrayInputStream(data));
+        
+        assertArrayEquals(data, decrypt(new ByteArrayInputStream(encrypted), defaultPassword));
+    }
+    
+    @Test
+    void EmptyData_CanBeEncryptedAndDecrypted() throws EncryptionException, DecryptionException {
+        byte[] encrypted = encrypt(new ByteArrayInputStream(new byte[0]));
+        
+        assertEquals(0, decrypt(new ByteArrayInputStream(encrypted), defaultPassword).length);
+    }
+    
+    @Test
+    void WholeStreamIsEncrypted_WhenAvailableReturnsZero() throws IOException, EncryptionException, DecryptionException {
+        byte[] data = randomData(100_000);
+        PipedOutputStream pipeInput = new PipedOutputStream();
+        PipedInputStream pipe = new PipedInputStream(pipeInput, 1024);
+        Thread writer = new Thread(() -> {
+            try (OutputStream output = pipeInput) {
+                for (int offset = 0; offset < data.length; offset += 1000)
+                    output.write(data, offset, Math.min(1000, data.length - offset));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.start();
+        
+        byte[] encrypted = encrypt(pipe);
+        
+        assertArrayEquals(data, decrypt(new ByteArrayInputStream(encrypted), defaultPassword));
+    }
+    
+    @Test
+    void DecryptingWithWrongPassword_ThrowsException() throws EncryptionException {
+        byte[] encrypted = encrypt(new ByteArrayInputStream(randomData(1000)));
+        
+        assertThrows(DecryptionException.class, () -> decrypt(new ByteArrayInputStream(encrypted), "wrong password"));
+    }
+    
+    @Test
+    void TruncatedHeader_ThrowsException() {
+        assertThrows(DecryptionException.class, () -> decrypt(new ByteArrayInputStream(new byte[]{0, 1}), defaultPassword));
+    }
+    
+    @Test
+    void OversizedHeader_IsRejectedBeforeAllocation() {
+        // little endian length just under Integer.MAX_VALUE, followed by nothing
+        byte[] header = {0, (byte) 0xF7, (byte) 0xFF, (byte) 0xFF, 0x7F};
+        
+        DecryptionException exception = assertThrows(DecryptionException.class,
+                () -> decrypt(new ByteArrayInputStream(header), defaultPassword));
+        assertTrue(exception.getCause() instanceof IOException);
+        assertTrue(exception.getCause().getMessage().contains(String.valueOf(Integer.MAX_VALUE - 8)));
+    }
+    
+    @Test
+    void FileDoesNotChange_WhenEncryptedAndDecrypted() throws IOException, EncryptionException, DecryptionException {
+        Path directory = Files.createTempDirectory("crypto-stream");
+        Path plain = directory.resolve("plain");
+        Path encrypted = directory.resolve("encrypted");
+        Path decrypted = directory.resolve("decrypted");
+        byte[] data = randomData(StreamingCipher.CHUNK_SIZE * 5 + 3);
+        Files.write(plain, data);
+        
+        CryptoStream.encryptFile(plain, encrypted, defaultPassword);
+        CryptoStream.decryptFile(encrypted, decrypted, defaultPassword);
+        
+        assertArrayEquals(data, Files.readAllBytes(decrypted));
+        for (Path file : new Path[]{plain, encrypted, decrypted, directory})
+            Files.delete(file);
+    }
+    
+    @Test
+    void SmallData_CanBeEncryptedWithRSA() throws EncryptionException, DecryptionException {
+        KeyPair keyPair = new RSACipherParams().getKeyPairDefault();
+        byte[] data = randomData(80);
+        
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        new CryptoStream(new ByteArrayInputStream(data), encrypted).encrypt(keyPair.getPublic());
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        new CryptoStream(new ByteArrayInputStream(encrypted.toByteArray()), decrypted).decrypt(keyPair.getPrivate());
+        
+        assertArrayEquals(data, decrypted.toByteArray());
+    }
+    
+    private static byte[] encrypt(InputStream inputStream) throws EncryptionException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new CryptoStream(inputStream, outputStream).encrypt(defaultPassword);
+        return outputStream.toByteArray();
+    }
+    
+    private static byte[] decrypt(InputStream inputStream, String password) throws DecryptionException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new CryptoStream(inputStream, outputStream).decrypt(password);
+        return outputStream.toByteArray();
+    }
+    
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,82 @@
+package io.raspberrywallet.manager.cryptography.crypto;
+
+import io.raspberrywallet.manager.common.wrappers.ByteWrapper;
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.AESCipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.CipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.algorithms.RSACipherParams;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EncryptedObjectCodecTests {
+    
+    private static final String defaultPassword = "TestPassword123!@##$%";
+    private static final Random random = new Random();
+    
+    @Test
+    void DataDoesNotChange_WhenEncryptedAndDecrypted() throws EncryptionException, DecryptionException {
+        byte[] data = new byte[random.nextInt(1000)];
+        random.nextBytes(data);
+        
+        byte[] encrypted = CryptoObject.encryptBytes(data, defaultPassword);
+        
+        assertFalse(EncryptedObjectCodec.isLegacy(encrypted));
+        assertArrayEquals(data, CryptoObject.decryptBytes(encrypted, defaultPassword));
+    }
+    
+    @Test
+    void EncodedObject_IsSmallerThanSerializedOne() throws EncryptionException {
+        byte[] data = "key part".getBytes();
+        
+        byte[] encoded = CryptoObject.encryptBytes(data, defaultPassword);
+        byte[] serialized = SerializationUtils.serialize(CryptoObject.encrypt(new ByteWrapper(data), defaultPassword));
+        
+        assertTrue(encoded.length * 5 < serialized.length, encoded.length + " vs " + serialized.length);
+    }
+    
+    @Test
+    void CipherParams_DoNotChange_WhenEncodedAndDecoded() throws DecryptionException {
+        AESCipherParams aesParams = new AESCipherParams();
+        AESCipherParams decodedAesParams = (AESCipherParams) EncryptedObjectCodec.decodeParams(EncryptedObjectCodec.encodeParams(aesParams));
+        assertEquals(aesParams.getAlgorithmFullName(), decodedAesParams.getAlgorithmFullName());
+        assertEquals(aesParams.getHashAlgorithmName(), decodedAesParams.getHashAlgorithmName());
+        assertEquals(aesParams.getKeySize(), decodedAesParams.getKeySize());
+        assertEquals(aesParams.getIterationsAmount(), decodedAesParams.getIterationsAmount());
+        assertArrayEquals(aesParams.getKeySalt(), decodedAesParams.getKeySalt());
+        assertArrayEquals(aesParams.getIvBytes(), decodedAesParams.getIvBytes());
+        
+        RSACipherParams rsaParams = new RSACipherParams();
+        CipherParams decodedRsaParams = EncryptedObjectCodec.decodeParams(EncryptedObjectCodec.encodeParams(rsaParams));
+        assertTrue(decodedRsaParams instanceof RSACipherParams);
+        assertEquals(rsaParams.getAlgorithmFullName(), decodedRsaParams.getAlgorithmFullName());
+        assertEquals(rsaParams.getKeySize(), decodedRsaParams.getKeySize());
+    }
+    
+    @Test
+    void CorruptedData_ThrowsDecryptionException() throws EncryptionException {
+        byte[] encrypted = CryptoObject.encryptBytes("key part".getBytes(), defaultPassword);
+        
+        assertThrows(DecryptionException.class, () -> CryptoObject.decryptBytes(Arrays.copyOf(encrypted, encrypted.length - 1), defaultPassword));
+        assertThrows(DecryptionException.class, () -> CryptoObject.decryptBytes(Arrays.copyOf(encrypted, 10), defaultPassword));
+        assertThrows(DecryptionException.class, () -> CryptoObject.decryptBytes("not encrypted".getBytes(), defaultPassword));
+    }
+    
+    @Test
+    void LegacySerializedObject_CanBeDecrypted() throws IOException, URISyntaxException, DecryptionException {
+        byte[] legacy = Files.readAllBytes(Paths.get(getClass().getResource("/legacy/legacy-keypart.bin").toURI()));
+        
+        assertTrue(EncryptedObjectCodec.isLegacy(legacy));
+        ByteWrapper decrypted = CryptoObject.decryptLegacy(legacy, "1234");
+        assertArrayEquals("key part".getBytes(), decrypted.getData());
+    }
+}
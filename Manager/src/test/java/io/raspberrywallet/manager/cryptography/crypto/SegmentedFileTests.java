@@ -0,0 +1,149 @@
+package io.raspberrywallet.manager.cryptography.crypto;
+
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentedFileTests {
+    
+    private static final String defaultPassword = "TestPassword123!@##$%";
+    private static final int segmentSize = 1024;
+    private static final Random random = new Random();
+    
+    private Path directory;
+    private Path plain;
+    private Path encrypted;
+    private Path decrypted;
+    
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("segmented-file");
+        plain = directory.resolve("plain");
+        encrypted = directory.resolve("encrypted");
+        decrypted = directory.resolve("decrypted");
+    }
+    
+    @AfterEach
+    void cleanup() throws IOException {
+        for (Path file : new Path[]{plain, encrypted, decrypted, directory})
+            Files.deleteIfExists(file);
+    }
+    
+    @Test
+    void FileDoesNotChange_WhenEncryptedAndDecrypted() throws Exception {
+        for (int size : new int[]{0, 1, segmentSize - 1, segmentSize, segmentSize + 1, segmentSize * 100 + 7}) {
+            byte[] data = writeRandomPlainFile(size);
+            
+            SegmentedFile.encrypt(plain, encrypted, defaultPassword, segmentSize);
+            try (SegmentedFile segmentedFile = SegmentedFile.open(encrypted, defaultPassword)) {
+                assertEquals(size, segmentedFile.size());
+                segmentedFile.decryptTo(decrypted);
+            }
+            
+            assertArrayEquals(data, Files.readAllBytes(decrypted), "size " + size);
+        }
+    }
+    
+    @Test
+    void AnyRangeCanBeReadWithoutDecryptingWholeFile() throws Exception {
+        byte[] data = writeRandomPlainFile(segmentSize * 50 + 123);
+        SegmentedFile.encrypt(plain, encrypted, defaultPassword, segmentSize);
+        
+        try (SegmentedFile segmentedFile = SegmentedFile.open(encrypted, defaultPassword)) {
+            for (int i = 0; i < 100; i++) {
+                int position = random.nextInt(data.length);
+                int length = random.nextInt(segmentSize * 20);
+                ByteBuffer destination = ByteBuffer.allocate(length);
+                
+                int read = segmentedFile.read(position, destination);
+                
+                int expectedLength = Math.min(length, data.length - position);
+                assertEquals(expectedLength, read);
+                assertArrayEquals(Arrays.copyOfRange(data, position, position + expectedLength),
+                        Arrays.copyOf(destination.array(), expectedLength));
+            }
+            assertEquals(-1, segmentedFile.read(data.length, ByteBuffer.allocate(1)));
+        }
+    }
+    
+    @Test
+    void ModifiedSegment_IsDetected() throws Exception {
+        writeRandomPlainFile(segmentSize * 10);
+        SegmentedFile.encrypt(plain, encrypted, defaultPassword, segmentSize);
+        long tamperedPosition = SegmentedFile.HEADER_SIZE + (segmentSize + 16) * 5 + 3;
+        try (RandomAccessFile file = new RandomAccessFile(encrypted.toFile(), "rw")) {
+            file.seek(tamperedPosition);
+            int value = file.read();
+            file.seek(tamperedPosition);
+            file.write(value ^ 1);
+        }
+        
+        try (SegmentedFile segmentedFile = SegmentedFile.open(encrypted, defaultPassword)) {
+            assertEquals(segmentSize, segmentedFile.read(0, ByteBuffer.allocate(segmentSize)));
+            assertThrows(DecryptionException.class, () -> segmentedFile.read(segmentSize * 5, ByteBuffer.allocate(1)));
+            assertThrows(DecryptionException.class, () -> segmentedFile.decryptTo(decrypted));
+        }
+    }
+    
+    @Test
+    void TruncatedFile_IsDetected() throws Exception {
+        writeRandomPlainFile(segmentSize * 3);
+        SegmentedFile.encrypt(plain, encrypted, defaultPassword, segmentSize);
+        try (RandomAccessFile file = new RandomAccessFile(encrypted.toFile(), "rw")) {
+            file.setLength(file.length() - segmentSize - 16);
+        }
+        
+        assertThrows(DecryptionException.class, () -> SegmentedFile.open(encrypted, defaultPassword));
+    }
+    
+    @Test
+    void OversizedSegmentInHeader_IsRejectedBeforeAllocation() throws Exception {
+        writeRandomPlainFile(100);
+        SegmentedFile.encrypt(plain, encrypted, defaultPassword, segmentSize);
+        // single segment, so the file size still matches the header
+        try (RandomAccessFile file = new RandomAccessFile(encrypted.toFile(), "rw")) {
+            file.seek(5);
+            file.writeInt(Integer.MAX_VALUE - 8);
+        }
+        
+        assertThrows(DecryptionException.class, () -> SegmentedFile.open(encrypted, defaultPassword));
+        assertThrows(EncryptionException.class, () ->
+                SegmentedFile.encrypt(plain, encrypted, defaultPassword, SegmentedFile.MAX_SEGMENT_SIZE + 1));
+    }
+    
+    @Test
+    void DecryptingWithWrongPassword_ThrowsException() throws Exception {
+        writeRandomPlainFile(segmentSize * 3);
+        SegmentedFile.encrypt(plain, encrypted, defaultPassword, segmentSize);
+        
+        try (SegmentedFile segmentedFile = SegmentedFile.open(encrypted, "wrong password")) {
+            assertThrows(DecryptionException.class, () -> segmentedFile.read(0, ByteBuffer.allocate(10)));
+        }
+    }
+    
+    @Test
+    void OpeningOtherFile_ThrowsException() throws IOException, EncryptionException {
+        writeRandomPlainFile(segmentSize);
+        
+        assertThrows(DecryptionException.class, () -> SegmentedFile.open(plain, defaultPassword));
+    }
+    
+    private byte[] writeRandomPlainFile(int size) throws IOException {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        Files.write(plain, data);
+        return data;
+    }
+}
@@ -0,0 +1,99 @@
+package io.raspberrywallet.manager.cryptography.crypto.algorithms;
+
+import io.raspberrywallet.manager.cryptography.crypto.CryptoObject;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
+import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DerivedKeyCacheTest {
+    private static final String PASSWORD = "very secret wallet password";
+    private static final String HASH = "PBKDF2WithHmacSHA1";
+    private static final byte[] SALT = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final byte[] KEY = {9, 8, 7, 6, 5, 4, 3, 2, 1};
+
+    private AtomicLong now;
+    private DerivedKeyCache cache;
+
+    @BeforeEach
+    void setup() {
+        now = new AtomicLong();
+        cache = new DerivedKeyCache(2, Duration.ofSeconds(10), now::get);
+    }
+
+    @Test
+    void returnsCopyOfStoredKey() {
+        cache.put(PASSWORD, SALT, 16000, 256, HASH, KEY);
+
+        byte[] key = cache.get(PASSWORD, SALT, 16000, 256, HASH);
+        assertArrayEquals(KEY, key);
+        key[0] = 0;
+        assertArrayEquals(KEY, cache.get(PASSWORD, SALT, 16000, 256, HASH));
+    }
+
+    @Test
+    void keyIsNotReturnedForDifferentParameters() {
+        cache.put(PASSWORD, SALT, 16000, 256, HASH, KEY);
+
+        assertNull(cache.get(PASSWORD + "!", SALT, 16000, 256, HASH));
+        assertNull(cache.get(PASSWORD, new byte[]{1, 2, 3}, 16000, 256, HASH));
+        assertNull(cache.get(PASSWORD, SALT, 15999, 256, HASH));
+        assertNull(cache.get(PASSWORD, SALT, 16000, 128, HASH));
+        assertNull(cache.get(PASSWORD, SALT, 16000, 256, "PBKDF2WithHmacSHA256"));
+    }
+
+    @Test
+    void keyExpiresAfterLifetime() {
+        cache.put(PASSWORD, SALT, 16000, 256, HASH, KEY);
+
+        now.set(Duration.ofSeconds(9).toNanos());
+        assertNotNull(cache.get(PASSWORD, SALT, 16000, 256, HASH));
+        now.set(Duration.ofSeconds(10).toNanos());
+        assertNull(cache.get(PASSWORD, SALT, 16000, 256, HASH));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedKeyIsDroppedWhenFull() {
+        cache.put("first", SALT, 16000, 256, HASH, KEY);
+        cache.put("second", SALT, 16000, 256, HASH, KEY);
+        cache.get("first", SALT, 16000, 256, HASH);
+        cache.put("third", SALT, 16000, 256, HASH, KEY);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("first", SALT, 16000, 256, HASH));
+        assertNull(cache.get("second", SALT, 16000, 256, HASH));
+        assertNotNull(cache.get("third", SALT, 16000, 256, HASH));
+    }
+
+    @Test
+    void clearDropsAllKeys() {
+        cache.put(PASSWORD, SALT, 16000, 256, HASH, KEY);
+        cache.put(PASSWORD, SALT, 16000, 128, HASH, KEY);
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(PASSWORD, SALT, 16000, 256, HASH));
+    }
+
+    @Test
+    void dataEncryptedWithNewIvDecryptsAfterCacheIsCleared() throws EncryptionException, DecryptionException {
+        AESCipherParams params = new AESCipherParams();
+        AESCipherParams newIvParams = params.withNewIv();
+        assertArrayEquals(params.getKeySalt(), newIvParams.getKeySalt());
+        assertFalse(Arrays.equals(params.getIvBytes(), newIvParams.getIvBytes()));
+
+        byte[] encrypted = CryptoObject.encryptBytes("key part".getBytes(), PASSWORD, newIvParams);
+        assertArrayEquals("key part".getBytes(), CryptoObject.decryptBytes(encrypted, PASSWORD));
+        AESCipherParams.clearKeyCache();
+        assertArrayEquals("key part".getBytes(), CryptoObject.decryptBytes(encrypted, PASSWORD));
+        assertThrows(DecryptionException.class, () -> CryptoObject.decryptBytes(encrypted, PASSWORD + "!"));
+    }
+}
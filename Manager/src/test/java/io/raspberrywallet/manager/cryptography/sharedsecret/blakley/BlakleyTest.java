@@ -6,6 +6,7 @@ import java.math.BigInteger;
 
 import static io.raspberrywallet.manager.Utils.println;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class BlakleyTest {
     private final int totalShares = 3; //number of generate keys
@@ -45,6 +46,19 @@ class BlakleyTest {
         println("From second and third secret: " + secretRestored);
     }
 
+    @Test
+    void dependentKeysAreRejected() {
+        BigInteger[] pass = Blakley.divide(requiredShares, "Secret Sharing".getBytes());
+        BigInteger[] key = Blakley.createdKey(pass, bits);
+        BigInteger[] otherKey = Blakley.createdKey(pass, bits);
+        BigInteger[] doubledKey = new BigInteger[key.length];
+        for (int i = 0; i < key.length; i++)
+            doubledKey[i] = key[i].shiftLeft(1);
+
+        assertThrows(ArithmeticException.class, () -> Blakley.solutionKey(new BigInteger[][]{key, key, otherKey}));
+        assertThrows(ArithmeticException.class, () -> Blakley.solutionKey(new BigInteger[][]{key, doubledKey}));
+    }
+
     private String restoreSecretWith(BigInteger[]... keys) {
         byte[] des = Blakley.solutionKey(keys);
         return new String(des);
@@ -0,0 +1,113 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Complex entries with zero imaginary part still take the generic algorithms, so they are the exact reference.
+ */
+class BareissEliminationTest {
+
+    @Test
+    void gaussjordMatchesGenericAlgorithm() {
+        Random random = new Random(31);
+        int[][] dimensions = {{1, 1}, {3, 3}, {4, 6}, {6, 4}, {7, 8}};
+        for (int[] d : dimensions) {
+            for (int deficiency = 0; deficiency < 3; deficiency++) {
+                Rational[][] values = randomRationals(random, d[0], d[1], deficiency);
+                Matrix reduced = rational(values).gaussjord();
+                assertRationalsEqual(complex(values).gaussjord(), reduced);
+                assertEquals(complex(values).rank(), rational(values).rank());
+            }
+        }
+    }
+
+    @Test
+    void detMatchesGenericAlgorithm() {
+        Random random = new Random(37);
+        for (int n = 1; n <= 7; n++) {
+            for (int deficiency = 0; deficiency < 2; deficiency++) {
+                Rational[][] values = randomRationals(random, n, n, deficiency);
+                Complex expected = (Complex) complex(values).det();
+                assertEquals(expected.getReal(), rational(values).det());
+            }
+        }
+    }
+
+    @Test
+    void solvesIntegerSystems() {
+        // hyperplanes through (5, -3, 7)
+        Rational[][] values = {
+                {r(2), r(1), r(-1)},
+                {r(1), r(3), r(2)},
+                {r(4), r(-2), r(5)}};
+        Matrix a = rational(values);
+        FieldElement[] b = new FieldElement[3];
+        for (int i = 0; i < 3; i++)
+            b[i] = values[i][0].multiply(r(5)).add(values[i][1].multiply(r(-3))).add(values[i][2].multiply(r(7)));
+
+        Vector solution = LinSysSolver.solve(a, new Vector(b));
+        assertEquals(r(5), solution.getEntry(1));
+        assertEquals(r(-3), solution.getEntry(2));
+        assertEquals(r(7), solution.getEntry(3));
+    }
+
+    @Test
+    void keepsExactResultsForLargeSystems() {
+        Random random = new Random(41);
+        int n = 24;
+        Rational[][] values = new Rational[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                values[i][j] = new Rational(BigInteger.valueOf(random.nextInt(2001) - 1000).shiftLeft(64)
+                        .add(BigInteger.valueOf(random.nextLong())));
+        Matrix a = rational(values);
+        Matrix inverseProduct = a.gaussjord();
+        assertTrue(inverseProduct.equals(new LinAlgFactory(r(0)).identity(n)));
+        assertFalse(a.det().isZero());
+    }
+
+    private static Rational r(long value) {
+        return new Rational(value, 1);
+    }
+
+    /**
+     * Random rationals, the last deficiency rows are combinations of the others
+     */
+    private static Rational[][] randomRationals(Random random, int rows, int cols, int deficiency) {
+        Rational[][] values = new Rational[rows][cols];
+        int independent = Math.max(1, rows - deficiency);
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                values[i][j] = i < independent
+                        ? new Rational(random.nextInt(41) - 20, random.nextInt(6) + 1)
+                        : (Rational) values[i - 1][j].multiply(new Rational(random.nextInt(5) - 2, 3))
+                                .add(values[0][j]);
+        return values;
+    }
+
+    private static Matrix rational(Rational[][] values) {
+        FieldElement[][] entries = new FieldElement[values.length][];
+        for (int i = 0; i < values.length; i++)
+            entries[i] = values[i].clone();
+        return new Matrix(entries, values.length, values[0].length);
+    }
+
+    private static Matrix complex(Rational[][] values) {
+        FieldElement[][] entries = new FieldElement[values.length][values[0].length];
+        for (int i = 0; i < values.length; i++)
+            for (int j = 0; j < values[i].length; j++)
+                entries[i][j] = new Complex(values[i][j], r(0));
+        return new Matrix(entries, values.length, values[0].length);
+    }
+
+    private static void assertRationalsEqual(Matrix complex, Matrix rational) {
+        for (int i = 1; i <= complex.getRows(); i++)
+            for (int j = 1; j <= complex.getCols(); j++)
+                assertEquals(((Complex) complex.get(i, j)).getReal(), rational.get(i, j), "entry " + i + ", " + j);
+    }
+}
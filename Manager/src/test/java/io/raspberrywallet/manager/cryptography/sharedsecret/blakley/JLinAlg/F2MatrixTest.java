@@ -0,0 +1,138 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class F2MatrixTest {
+
+    @Test
+    void fourRussiansMatchesSchool() {
+        Random random = new Random(17);
+        // partial groups of rows and partial words
+        int[][] dimensions = {{1, 1, 1}, {5, 7, 9}, {64, 64, 64}, {70, 131, 66}};
+        for (int[] d : dimensions) {
+            Matrix a = randomF2(random, d[0], d[1]);
+            Matrix b = randomF2(random, d[1], d[2]);
+            F2Matrix product = F2Matrix.fromMatrix(a).multiply(F2Matrix.fromMatrix(b));
+            assertEquals(F2Matrix.fromMatrix(MatrixMultiplication.school(a, b)), product);
+        }
+    }
+
+    @Test
+    void matrixVectorProductIsParity() {
+        Random random = new Random(4);
+        Matrix a = randomF2(random, 20, 100);
+        Matrix x = randomF2(random, 100, 1);
+        F2Vector packedX = new F2Vector(100);
+        for (int i = 1; i <= 100; i++)
+            packedX.set(i, x.get(i, 1).equals(new F2(1)));
+
+        F2Vector product = F2Matrix.fromMatrix(a).multiply(packedX);
+        for (int i = 1; i <= 20; i++)
+            assertEquals(a.multiply(x).get(i, 1).equals(new F2(1)), product.get(i));
+    }
+
+    @Test
+    void vectorOperations() {
+        F2Vector a = new F2Vector(130);
+        F2Vector b = new F2Vector(130);
+        a.set(1, true);
+        a.set(65, true);
+        a.set(130, true);
+        b.set(65, true);
+        b.set(130, true);
+        b.set(2, true);
+
+        assertEquals(3, a.weight());
+        assertFalse(a.multiply(b));
+        F2Vector sum = a.add(b);
+        assertEquals(2, sum.weight());
+        assertTrue(sum.get(1));
+        assertTrue(sum.get(2));
+        assertTrue(a.add(a).isZero());
+        assertEquals(a, F2Vector.fromVector(a.toVector()));
+        assertThrows(InvalidOperationException.class, () -> a.get(131));
+    }
+
+    @Test
+    void rankAndInverse() {
+        Random random = new Random(9);
+        for (int n : new int[]{3, 65, 128}) {
+            Matrix a = randomF2(random, n, n);
+            F2Matrix packed = F2Matrix.fromMatrix(a);
+            assertEquals(a.rank(), packed.rank());
+            F2Matrix inverse = packed.inverse();
+            if (packed.rank() == n)
+                assertEquals(F2Matrix.identity(n), inverse.multiply(packed));
+            else
+                assertNull(inverse);
+        }
+
+        // singular, but the generic inverse does not notice it
+        F2Matrix singular = F2Matrix.fromMatrix(matrix(new int[][]{
+                {1, 1, 0, 0, 1}, {0, 0, 0, 1, 0}, {0, 0, 1, 0, 0}, {0, 0, 0, 0, 1}, {1, 1, 0, 1, 0}}));
+        assertEquals(4, singular.rank());
+        assertNull(singular.inverse());
+    }
+
+    @Test
+    void solvesLikeGenericSolver() {
+        Random random = new Random(23);
+        for (int n : new int[]{4, 40, 100}) {
+            Matrix a = randomF2(random, n, n + 5);
+            Matrix x = randomF2(random, n + 5, 1);
+            Vector b = a.multiply(x).getCol(1);
+
+            F2Vector solution = LinSysSolver.solve(F2Matrix.fromMatrix(a), F2Vector.fromVector(b));
+            assertEquals(F2Vector.fromVector(b), F2Matrix.fromMatrix(a).multiply(solution));
+            assertTrue(LinSysSolver.isSolvable(F2Matrix.fromMatrix(a), F2Vector.fromVector(b)));
+
+            Matrix fieldPA = toFieldP(a);
+            Vector fieldPSolution = LinSysSolver.solve(fieldPA, toFieldP(b.toMatrix()).getCol(1));
+            assertEquals(F2Vector.fromVector(LinSysSolver.solve(a, b)), toF2(fieldPSolution));
+        }
+    }
+
+    @Test
+    void detectsUnsolvableSystems() {
+        Matrix a = matrix(new int[][]{{1, 1, 0}, {0, 1, 1}, {1, 0, 1}});
+        Vector b = matrix(new int[][]{{1}, {0}, {0}}).getCol(1);
+        assertFalse(LinSysSolver.isSolvable(a, b));
+        assertNull(LinSysSolver.solve(a, b));
+        assertNull(LinSysSolver.solve(F2Matrix.fromMatrix(a), F2Vector.fromVector(b)));
+    }
+
+    private static Matrix randomF2(Random random, int rows, int cols) {
+        FieldElement[][] entries = new FieldElement[rows][cols];
+        for (FieldElement[] row : entries)
+            for (int j = 0; j < cols; j++)
+                row[j] = new F2(random.nextInt(2));
+        return new Matrix(entries, rows, cols);
+    }
+
+    private static Matrix matrix(int[][] values) {
+        FieldElement[][] entries = new FieldElement[values.length][values[0].length];
+        for (int i = 0; i < values.length; i++)
+            for (int j = 0; j < values[i].length; j++)
+                entries[i][j] = new F2(values[i][j]);
+        return new Matrix(entries, values.length, values[0].length);
+    }
+
+    private static Matrix toFieldP(Matrix f2) {
+        FieldElement[][] entries = new FieldElement[f2.getRows()][f2.getCols()];
+        for (int i = 0; i < f2.getRows(); i++)
+            for (int j = 0; j < f2.getCols(); j++)
+                entries[i][j] = new FieldP(f2.get(i + 1, j + 1).isZero() ? 0 : 1, 2);
+        return new Matrix(entries, f2.getRows(), f2.getCols());
+    }
+
+    private static F2Vector toF2(Vector fieldP) {
+        F2Vector packed = new F2Vector(fieldP.length());
+        for (int i = 1; i <= fieldP.length(); i++)
+            packed.set(i, !fieldP.getEntry(i).isZero());
+        return packed;
+    }
+}
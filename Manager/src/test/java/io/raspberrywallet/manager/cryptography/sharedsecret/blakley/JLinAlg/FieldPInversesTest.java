@@ -0,0 +1,89 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FieldPInversesTest {
+    private static final long[] PRIMES = {2, 3, 251, 7919, 65521};
+
+    private final long capacity = FieldPInverses.getCapacity();
+
+    @AfterEach
+    void restoreCapacity() {
+        FieldPInverses.setCapacity(capacity);
+    }
+
+    @Test
+    void lazyAndBulkInversesMatchEuclid() {
+        for (long p : PRIMES) {
+            FieldPInverses lazy = FieldPInverses.forPrime(p);
+            for (long value = 1; value < p; value += Math.max(1, p / 500))
+                assertEquals(FieldPLong.computeInverse(value, p), lazy.inverse(value), value + "m" + p);
+
+            lazy.computeAll();
+            for (long value = 1; value < p; value++)
+                assertEquals(FieldPLong.computeInverse(value, p), lazy.inverse(value), value + "m" + p);
+        }
+    }
+
+    @Test
+    void fieldPUsesSharedTable() {
+        FieldP a = new FieldP(1234, 65521);
+        FieldP b = new FieldP(1234 + 65521, 65521);
+        assertEquals(a, b);
+        assertEquals(a.invert(), b.invert());
+        assertTrue(a.multiply(a.invert()).isOne());
+        assertNotEquals(new FieldP(3, 7), new FieldP(3, 11));
+        a.computeAllInverses();
+        assertTrue(FieldPInverses.forPrime(65521).inverse(17) * 17 % 65521 == 1);
+        assertThrows(InvalidOperationException.class, () -> new FieldP(0, 7).invert());
+    }
+
+    @Test
+    void concurrentInversionOverManyFields() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (long p : PRIMES)
+                        for (long value = 1; value < Math.min(p, 3000); value++) {
+                            FieldElement element = new FieldP(value, p);
+                            assertTrue(element.multiply(element.invert()).isOne(), value + "m" + p);
+                        }
+                }));
+                futures.add(executor.submit(() -> FieldPInverses.computeAll(7919)));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void evictsWholeFieldsBeyondCapacity() {
+        FieldPInverses.setCapacity(10000);
+        assertTrue(FieldPInverses.getCachedEntries() <= 10000);
+
+        FieldPInverses small = FieldPInverses.forPrime(7919);
+        assertSame(small, FieldPInverses.forPrime(7919));
+        FieldPInverses other = FieldPInverses.forPrime(251);
+        assertNotNull(other);
+        FieldPInverses.forPrime(3001);
+        // 7919 + 251 + 3001 entries do not fit, the oldest field is gone
+        assertTrue(FieldPInverses.getCachedEntries() <= 10000);
+        assertNotSame(small, FieldPInverses.forPrime(7919));
+
+        assertNull(FieldPInverses.forPrime(65521));
+        assertEquals(FieldPLong.computeInverse(12345, 65521), FieldPInverses.inverse(12345, 65521));
+    }
+}
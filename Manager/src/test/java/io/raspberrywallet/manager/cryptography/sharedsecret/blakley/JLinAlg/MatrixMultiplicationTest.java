@@ -0,0 +1,82 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatrixMultiplicationTest {
+    private static final long P = 65521;
+
+    @Test
+    void parallelTiledMatchesSchool() {
+        Random random = new Random(5);
+        // partial tiles on every side
+        int[][] dimensions = {{1, 1, 1}, {3, 70, 5}, {70, 130, 65}, {129, 64, 200}};
+        for (int[] d : dimensions) {
+            Matrix a = randomFieldP(random, d[0], d[1]);
+            Matrix b = randomFieldP(random, d[1], d[2]);
+            assertTrue(MatrixMultiplication.school(a, b).equals(MatrixMultiplication.parallelTiled(a, b)));
+        }
+    }
+
+    @Test
+    void parallelTiledSumsDoublesLikeSchool() {
+        Random random = new Random(8);
+        FieldElement[][] a = new FieldElement[90][100];
+        FieldElement[][] b = new FieldElement[100][80];
+        for (FieldElement[] row : a)
+            for (int j = 0; j < row.length; j++)
+                row[j] = new DoubleWrapper(random.nextGaussian());
+        for (FieldElement[] row : b)
+            for (int j = 0; j < row.length; j++)
+                row[j] = new DoubleWrapper(random.nextGaussian());
+        Matrix m1 = new Matrix(a, 90, 100);
+        Matrix m2 = new Matrix(b, 100, 80);
+        assertTrue(MatrixMultiplication.school(m1, m2).equals(MatrixMultiplication.parallelTiled(m1, m2)));
+    }
+
+    @Test
+    void automaticMatchesSchool() {
+        Random random = new Random(13);
+        for (int n : new int[]{2, 40, 96, 192, 200}) {
+            Matrix a = randomFieldP(random, n, n);
+            Matrix b = randomFieldP(random, n, n);
+            assertTrue(MatrixMultiplication.school(a, b).equals(a.multiply(b)));
+        }
+    }
+
+    @Test
+    void strassenMatchesSchool() {
+        Random random = new Random(21);
+        Matrix a = randomFieldP(random, 96, 96);
+        Matrix b = randomFieldP(random, 96, 96);
+        assertTrue(MatrixMultiplication.school(a, b).equals(MatrixMultiplication.strassenOriginal(a, b)));
+        assertTrue(a.add(b).subtract(b).equals(a));
+    }
+
+    @Test
+    void automaticKeepsOwnStorageOfSubclasses() {
+        Matrix a = randomFieldP(new Random(2), 40, 40);
+        DiagonalMatrix twos = new DiagonalMatrix(40, new FieldP(2, P));
+        assertTrue(a.multiply(new FieldP(2, P)).equals(a.multiply(twos)));
+    }
+
+    @Test
+    void rejectsWrongDimensions() {
+        Random random = new Random(3);
+        assertThrows(InvalidOperationException.class,
+                () -> MatrixMultiplication.automatic(randomFieldP(random, 2, 3), randomFieldP(random, 2, 3)));
+        assertThrows(InvalidOperationException.class,
+                () -> MatrixMultiplication.parallelTiled(randomFieldP(random, 2, 3), randomFieldP(random, 2, 3)));
+    }
+
+    private static Matrix randomFieldP(Random random, int rows, int cols) {
+        FieldElement[][] entries = new FieldElement[rows][cols];
+        for (FieldElement[] row : entries)
+            for (int j = 0; j < cols; j++)
+                row[j] = new FieldP(random.nextInt((int) P), P);
+        return new Matrix(entries, rows, cols);
+    }
+}
@@ -0,0 +1,163 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley.JLinAlg;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RationalTest {
+
+    private static final long[] EDGES = {0, 1, -1, 2, 6, -6, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            Rational.NORMALIZE_THRESHOLD, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1};
+
+    @Test
+    void arithmeticMatchesBigIntegers() {
+        Random random = new Random(3);
+        for (int k = 0; k < 20000; k++) {
+            long[] x = randomFraction(random);
+            long[] y = randomFraction(random);
+            Rational a = new Rational(x[0], x[1]);
+            Rational b = new Rational(y[0], y[1]);
+            BigInteger[] p = big(x);
+            BigInteger[] q = big(y);
+
+            assertCanonical(p[0].multiply(q[1]).add(q[0].multiply(p[1])), p[1].multiply(q[1]), a.add(b));
+            assertCanonical(p[0].multiply(q[1]).subtract(q[0].multiply(p[1])), p[1].multiply(q[1]), a.subtract(b));
+            assertCanonical(p[0].multiply(q[0]), p[1].multiply(q[1]), a.multiply(b));
+            assertCanonical(p[0].negate(), p[1], a.negate());
+            assertCanonical(p[0].abs(), p[1].abs(), a.abs());
+            if (y[0] != 0) {
+                assertCanonical(p[0].multiply(q[1]), p[1].multiply(q[0]), a.divide(b));
+                assertCanonical(q[1], q[0], b.invert());
+            }
+            int expected = p[0].multiply(q[1]).compareTo(q[0].multiply(p[1]));
+            assertEquals(expected, Integer.signum(a.compareTo(b)), a + " <=> " + b);
+            assertEquals(expected == 0, a.equals(b));
+        }
+    }
+
+    @Test
+    void cancelsLazily() {
+        Rational sixNinths = new Rational(6, 9);
+        assertEquals(BigInteger.valueOf(2), sixNinths.getNumerator());
+        assertEquals(BigInteger.valueOf(3), sixNinths.getDenominator());
+        assertEquals("2/3", sixNinths.toString());
+        assertEquals(new Rational(2, 3), sixNinths);
+        assertEquals(new Rational(-2, 3), new Rational(4, -6));
+        assertEquals("4", new Rational(8, 2).toString());
+        assertTrue(new Rational(0, 5).isZero());
+        assertTrue(new Rational(7, 7).isOne());
+    }
+
+    @Test
+    void publicLongConstructorCancels() {
+        Rational big = new Rational(3L << 40, -(1L << 41));
+        assertEquals(BigInteger.valueOf(-3), big.getNumerator());
+        assertEquals(BigInteger.valueOf(2), big.getDenominator());
+        for (long numerator : EDGES)
+            for (long denominator : EDGES) {
+                if (denominator == 0)
+                    continue;
+                Rational rational = new Rational(numerator, denominator);
+                Rational expected = new Rational(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+                String fraction = numerator + "/" + denominator;
+                assertEquals(expected.getNumerator(), rational.getNumerator(), fraction);
+                assertEquals(expected.getDenominator(), rational.getDenominator(), fraction);
+                assertEquals(BigInteger.ONE, rational.getNumerator().gcd(rational.getDenominator()), fraction);
+                assertEquals(1, rational.getDenominator().signum(), fraction);
+                assertEquals(expected, rational, fraction);
+                assertEquals(expected.hashCode(), rational.hashCode(), fraction);
+            }
+        Rational uncancelled = new Rational(BigInteger.valueOf(6).shiftLeft(70), BigInteger.valueOf(4).shiftLeft(70), false);
+        assertEquals(new Rational(3, 2), uncancelled);
+        assertEquals(new Rational(3, 2).hashCode(), uncancelled.hashCode());
+    }
+
+    @Test
+    void growsIntoBigIntegersAndBack() {
+        Rational big = new Rational(Long.MAX_VALUE, 1);
+        Rational square = (Rational) big.multiply(big);
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE).pow(2), square.getNumerator());
+        Rational back = (Rational) square.divide(big);
+        assertEquals(big, back);
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE), back.getNumerator());
+
+        Rational min = new Rational(Long.MIN_VALUE, 1);
+        assertEquals(BigInteger.valueOf(Long.MIN_VALUE).negate(), ((Rational) min.negate()).getNumerator());
+        assertEquals(BigInteger.valueOf(Long.MIN_VALUE).negate(), ((Rational) min.abs()).getNumerator());
+        assertEquals(BigInteger.valueOf(Long.MIN_VALUE).negate(), ((Rational) min.invert()).getDenominator());
+        assertEquals(new Rational(BigInteger.ONE.shiftLeft(63), BigInteger.ONE), new Rational(Long.MIN_VALUE, -1));
+
+        // sums of 1/k keep growing denominators, and must stay exact
+        Rational harmonic = new Rational(0, 1);
+        BigInteger[] reference = {BigInteger.ZERO, BigInteger.ONE};
+        for (int k = 1; k <= 60; k++) {
+            harmonic = (Rational) harmonic.add(new Rational(1, k));
+            reference = new BigInteger[]{reference[0].multiply(BigInteger.valueOf(k)).add(reference[1]),
+                    reference[1].multiply(BigInteger.valueOf(k))};
+        }
+        assertCanonical(reference[0], reference[1], harmonic);
+    }
+
+    @Test
+    void doubleConstructorAndDoubleValue() {
+        assertEquals(new Rational(6, 5), new Rational(1.2));
+        assertEquals(new Rational(-1, 4), new Rational(-0.25));
+        assertEquals(-0.25, new Rational(-1, 4).doubleValue());
+        assertEquals(new Rational(0, 1), new Rational(0, 1).zero());
+    }
+
+    @Test
+    void comparesWithComplex() {
+        assertTrue(new Rational(1, 2).equals(new Complex(new Rational(2, 4), new Rational(0, 1))));
+        assertFalse(new Rational(1, 2).equals(new Complex(new Rational(1, 2), new Rational(1, 1))));
+    }
+
+    private static long[] randomFraction(Random random) {
+        return new long[]{randomLong(random), randomLong(random, true)};
+    }
+
+    private static long randomLong(Random random) {
+        return randomLong(random, false);
+    }
+
+    private static long randomLong(Random random, boolean nonZero) {
+        long value;
+        do {
+            switch (random.nextInt(4)) {
+                case 0:
+                    value = EDGES[random.nextInt(EDGES.length)];
+                    break;
+                case 1:
+                    value = random.nextLong();
+                    break;
+                case 2:
+                    value = random.nextInt();
+                    break;
+                default:
+                    value = random.nextInt(41) - 20;
+            }
+        } while (nonZero && value == 0);
+        return value;
+    }
+
+    /**
+     * @return numerator and positive denominator
+     */
+    private static BigInteger[] big(long[] fraction) {
+        BigInteger sign = BigInteger.valueOf(Long.signum(fraction[1]));
+        return new BigInteger[]{BigInteger.valueOf(fraction[0]).multiply(sign),
+                BigInteger.valueOf(fraction[1]).multiply(sign)};
+    }
+
+    private static void assertCanonical(BigInteger numerator, BigInteger denominator, FieldElement actual) {
+        BigInteger gcd = numerator.gcd(denominator);
+        if (denominator.signum() < 0)
+            gcd = gcd.negate();
+        Rational rational = (Rational) actual;
+        assertEquals(numerator.divide(gcd), rational.getNumerator(), numerator + "/" + denominator);
+        assertEquals(denominator.divide(gcd), rational.getDenominator(), numerator + "/" + denominator);
+    }
+}
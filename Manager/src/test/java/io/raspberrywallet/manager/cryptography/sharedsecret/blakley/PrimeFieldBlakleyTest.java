@@ -0,0 +1,59 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimeFieldBlakleyTest {
+    private static final byte[] SECRET = "abandon ability able about above absent absorb abstract absurd abuse access accident"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void anyThresholdKeysRestoreSecret() {
+        long[][] keys = PrimeFieldBlakley.split(SECRET, 4, 3);
+
+        for (int i = 0; i < 4; i++)
+            for (int j = i + 1; j < 4; j++)
+                for (int k = j + 1; k < 4; k++)
+                    assertArrayEquals(SECRET, PrimeFieldBlakley.combine(keys[i], keys[k], keys[j]));
+    }
+
+    @Test
+    void keysSurviveEncoding() {
+        for (int length = 1; length <= 15; length++) {
+            byte[] secret = Arrays.copyOf(SECRET, length);
+            long[][] keys = PrimeFieldBlakley.split(secret, 2, 2);
+
+            byte[] first = PrimeFieldBlakley.toByteArray(keys[0]);
+            byte[] second = PrimeFieldBlakley.toByteArray(keys[1]);
+            assertArrayEquals(secret, PrimeFieldBlakley.combine(
+                    PrimeFieldBlakley.fromByteArray(second), PrimeFieldBlakley.fromByteArray(first)));
+        }
+    }
+
+    @Test
+    void invalidKeysAreRejected() {
+        long[][] keys = PrimeFieldBlakley.split(SECRET, 3, 2);
+        long[][] otherKeys = PrimeFieldBlakley.split(Arrays.copyOf(SECRET, 10), 3, 2);
+
+        assertThrows(IllegalArgumentException.class, () -> PrimeFieldBlakley.combine(keys[0]));
+        assertThrows(IllegalArgumentException.class, () -> PrimeFieldBlakley.combine(keys[0], otherKeys[1]));
+        assertThrows(IllegalArgumentException.class, () -> PrimeFieldBlakley.split(SECRET, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> PrimeFieldBlakley.fromByteArray(new byte[7]));
+    }
+
+    @Test
+    void integerKeysOfLargeSecretAreSolved() {
+        int required = 5;
+        BigInteger[] pass = Blakley.divide(required, Arrays.copyOf(SECRET, SECRET.length));
+        BigInteger[][] keys = new BigInteger[required][];
+        for (int i = 0; i < required; i++)
+            keys[i] = Blakley.createdKey(pass, 512);
+
+        assertArrayEquals(SECRET, Blakley.solutionKey(keys));
+    }
+}
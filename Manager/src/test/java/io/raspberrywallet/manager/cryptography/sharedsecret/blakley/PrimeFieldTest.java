@@ -0,0 +1,76 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.blakley;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimeFieldTest {
+    private static final long[] PRIMES = {3, 65521, 3037000493L, PrimeField.MERSENNE_61, 4611686018427387847L};
+
+    @Test
+    void montgomeryProductMatchesBigInteger() {
+        Random random = new Random(42);
+        for (long p : PRIMES) {
+            PrimeField field = new PrimeField(p);
+            BigInteger bigP = BigInteger.valueOf(p);
+            for (int i = 0; i < 10_000; i++) {
+                long a = field.reduce(random.nextLong());
+                long b = i == 0 ? p - 1 : field.reduce(random.nextLong());
+                long product = field.fromMontgomery(field.mul(field.toMontgomery(a), field.toMontgomery(b)));
+                assertEquals(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(bigP).longValue(), product);
+                assertEquals(BigInteger.valueOf(a).add(BigInteger.valueOf(b)).mod(bigP).longValue(), field.add(a, b));
+                assertEquals(BigInteger.valueOf(a).subtract(BigInteger.valueOf(b)).mod(bigP).longValue(), field.sub(a, b));
+            }
+        }
+    }
+
+    @Test
+    void inverseGivesOne() {
+        Random random = new Random(7);
+        for (long p : PRIMES) {
+            PrimeField field = new PrimeField(p);
+            for (int i = 0; i < 100; i++) {
+                long a = field.toMontgomery(1 + field.reduce(random.nextLong()) % (p - 1));
+                assertEquals(1, field.fromMontgomery(field.mul(a, field.inverse(a))));
+            }
+            assertThrows(ArithmeticException.class, () -> field.inverse(0));
+        }
+    }
+
+    @Test
+    void multiplyHighMatchesBigInteger() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long x = random.nextLong();
+            long y = random.nextLong();
+            assertEquals(BigInteger.valueOf(x).multiply(BigInteger.valueOf(y)).shiftRight(64).longValue(),
+                    PrimeField.multiplyHigh(x, y));
+        }
+    }
+
+    @Test
+    void solverFindsIntersectionOfHyperplanes() {
+        PrimeField field = new PrimeField(PrimeField.MERSENNE_61);
+        long[] point = {5, 123456789, PrimeField.MERSENNE_61 - 1};
+        long[][] coefficients = {{0, 2, 3}, {4, 0, 6}, {7, 8, 0}};
+        long[][] rows = new long[3][4];
+        for (int i = 0; i < 3; i++) {
+            long b = 0;
+            for (int j = 0; j < 3; j++) {
+                rows[i][j] = field.toMontgomery(coefficients[i][j]);
+                b = field.add(b, field.mul(rows[i][j], field.toMontgomery(point[j])));
+            }
+            rows[i][3] = b;
+        }
+
+        long[] solution = PrimeFieldSolver.solve(field, rows);
+        for (int j = 0; j < 3; j++)
+            assertEquals(point[j], field.fromMontgomery(solution[j]));
+
+        assertThrows(ArithmeticException.class, () -> PrimeFieldSolver.solve(field, new long[][]{
+                {field.toMontgomery(1), field.toMontgomery(2), 0}, {field.toMontgomery(2), field.toMontgomery(4), 0}}));
+    }
+}
@@ -0,0 +1,82 @@
+package io.raspberrywallet.manager.cryptography.sharedsecret.shamir;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShamirGF256Test {
+    private static final byte[] SECRET = ("abandon ability able about above absent absorb abstract absurd abuse access accident "
+            + "account accuse achieve acid acoustic acquire across act action actor actress actual").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void anyThresholdSharesRestoreSecret() throws ShamirException {
+        ShamirShare[] shares = ShamirGF256.split(SECRET, 5, 3);
+
+        for (int i = 0; i < 5; i++)
+            for (int j = i + 1; j < 5; j++)
+                for (int k = j + 1; k < 5; k++)
+                    assertArrayEquals(SECRET, ShamirGF256.combine(shares[i], shares[j], shares[k]));
+    }
+
+    @Test
+    void fewerSharesThanThresholdAreRejected() throws ShamirException {
+        ShamirShare[] shares = ShamirGF256.split(SECRET, 3, 2);
+
+        assertThrows(ShamirException.class, () -> ShamirGF256.combine(shares[0]));
+        assertThrows(ShamirException.class, () -> ShamirGF256.combine(shares[0], shares[0]));
+        assertThrows(ShamirException.class, () -> ShamirGF256.split(SECRET, 2, 3));
+        assertThrows(ShamirException.class, () -> ShamirGF256.split(SECRET, 256, 2));
+        assertThrows(ShamirException.class, () -> ShamirGF256.split(new byte[0], 3, 2));
+    }
+
+    @Test
+    void singleShareDoesNotRevealSecret() throws ShamirException {
+        ShamirShare[] shares = ShamirGF256.split(SECRET, 3, 2);
+
+        for (ShamirShare share : shares)
+            assertFalse(Arrays.equals(SECRET, share.getY()));
+    }
+
+    @Test
+    void sharesAreCompactAndSurviveEncoding() throws ShamirException {
+        ShamirShare[] shares = ShamirGF256.split(SECRET, 3, 2);
+        byte[] first = shares[0].toByteArray();
+        byte[] third = shares[2].toByteArray();
+
+        assertEquals(SECRET.length + 3, first.length);
+        assertTrue(ShamirShare.isShare(first));
+        assertArrayEquals(SECRET, ShamirGF256.combine(ShamirShare.fromByteArray(first), ShamirShare.fromByteArray(third)));
+        assertArrayEquals(SECRET, ShamirGF256.combineKeyParts(Arrays.asList(third, first)));
+    }
+
+    @Test
+    void keyPartsOfLegacySchemeAreStillCombined() throws ShamirException {
+        int numBits = SECRET.length * 8;
+        BigInteger[] params = Shamir.generateParams(2, numBits, SECRET);
+        ShamirKey[] keys = Shamir.generateKeys(3, 2, numBits, params);
+
+        assertFalse(ShamirShare.isShare(keys[0].toByteArray()));
+        assertArrayEquals(SECRET, ShamirGF256.combineKeyParts(Arrays.asList(keys[0].toByteArray(), keys[2].toByteArray())));
+
+        byte[] share = ShamirGF256.split(SECRET, 3, 2)[0].toByteArray();
+        assertThrows(ShamirException.class, () -> ShamirGF256.combineKeyParts(Arrays.asList(keys[0].toByteArray(), share)));
+        assertThrows(ShamirException.class, () -> ShamirGF256.combineKeyParts(Collections.emptyList()));
+    }
+
+    @Test
+    void fieldArithmeticIsConsistent() {
+        for (int a = 0; a < 256; a++) {
+            assertEquals(0, GF256.mul(a, 0));
+            assertEquals(a, GF256.mul(a, 1));
+            for (int b = 1; b < 256; b++)
+                assertEquals(a, GF256.mul(GF256.div(a, b), b));
+        }
+        // multiplication checked against carry-less multiplication reduced by the AES polynomial
+        assertEquals(0xC1, GF256.mul(0x57, 0x83));
+    }
+}
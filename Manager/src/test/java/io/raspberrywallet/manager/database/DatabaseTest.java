@@ -1,6 +1,7 @@
 package io.raspberrywallet.manager.database;
 
 import io.raspberrywallet.manager.Configuration;
+import io.raspberrywallet.manager.cryptography.crypto.EncryptedObjectCodec;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.DecryptionException;
 import io.raspberrywallet.manager.cryptography.crypto.exceptions.EncryptionException;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,7 +9,17 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -65,4 +76,131 @@ class DatabaseTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    void DatabaseSavedWithJavaSerializationIsMigrated() throws IOException, URISyntaxException, DecryptionException, EncryptionException {
+        Path baseDir = Files.createTempDirectory("legacy-wallet");
+        Path databaseFile = baseDir.resolve("database.bin");
+        Files.copy(Paths.get(getClass().getResource("/legacy/legacy-database.bin").toURI()), databaseFile);
+        Database legacyDatabase = new Database(new Configuration(baseDir.toString()));
+
+        legacyDatabase.setPassword(password);
+        // saved before the number of required parts was stored, unlock waits for all modules then
+        assertEquals(0, legacyDatabase.getRequiredKeyParts());
+        assertArrayEquals("$TN$@C54B".getBytes(), legacyDatabase.getKeypartForModuleId("PinModule").get().getPayload());
+
+        legacyDatabase.saveWallet();
+        assertFalse(EncryptedObjectCodec.isLegacy(Files.readAllBytes(databaseFile)));
+        legacyDatabase.initDatabase();
+        assertEquals(2, legacyDatabase.getWallet().getParts().size());
+        assertArrayEquals("BGF$#Y%34".getBytes(), legacyDatabase.getKeypartForModuleId("ExampleModule").get().getPayload());
+        assertEquals(0, legacyDatabase.getRequiredKeyParts());
+
+        deleteDirectory(baseDir);
+    }
+
+    @Test
+    void KeyPartsAddedToJournalSurviveReload() throws IOException, DecryptionException, EncryptionException {
+        Path baseDir = Files.createTempDirectory("journal-wallet");
+        Database journaled = new Database(new Configuration(baseDir.toString()));
+        journaled.setPassword(password);
+        byte[] snapshot = Files.readAllBytes(baseDir.resolve("database.bin"));
+
+        journaled.setRequiredKeyParts(2);
+        journaled.addKeyPart(new KeyPartEntity("first".getBytes(), "ExampleModule"));
+        journaled.addKeyPart(new KeyPartEntity("second".getBytes(), "PinModule"));
+        assertArrayEquals(snapshot, Files.readAllBytes(baseDir.resolve("database.bin")));
+
+        Database reloaded = new Database(new Configuration(baseDir.toString()));
+        reloaded.setPassword(password);
+        assertEquals(2, reloaded.getWallet().getParts().size());
+        assertEquals(2, reloaded.getRequiredKeyParts());
+        assertArrayEquals("second".getBytes(), reloaded.getKeypartForModuleId("PinModule").get().getPayload());
+
+        journaled.destroy();
+        reloaded.destroy();
+        deleteDirectory(baseDir);
+    }
+
+    @Test
+    void TornJournalRecordIsIgnored() throws IOException, DecryptionException, EncryptionException {
+        Path baseDir = Files.createTempDirectory("journal-wallet");
+        Database journaled = new Database(new Configuration(baseDir.toString()));
+        journaled.setPassword(password);
+        journaled.addKeyPart(new KeyPartEntity("first".getBytes(), "ExampleModule"));
+        journaled.addKeyPart(new KeyPartEntity("second".getBytes(), "PinModule"));
+        journaled.destroy();
+
+        // power cut in the middle of the second record
+        Path journalFile = baseDir.resolve("database.journal");
+        byte[] journal = Files.readAllBytes(journalFile);
+        Files.write(journalFile, Arrays.copyOf(journal, journal.length - 7));
+
+        Database reloaded = new Database(new Configuration(baseDir.toString()));
+        reloaded.setPassword(password);
+        assertEquals(1, reloaded.getWallet().getParts().size());
+        assertTrue(reloaded.getKeypartForModuleId("ExampleModule").isPresent());
+
+        reloaded.addKeyPart(new KeyPartEntity("third".getBytes(), "PinModule"));
+        reloaded.destroy();
+        reloaded.initDatabase();
+        assertEquals(2, reloaded.getWallet().getParts().size());
+        assertArrayEquals("third".getBytes(), reloaded.getKeypartForModuleId("PinModule").get().getPayload());
+
+        reloaded.destroy();
+        deleteDirectory(baseDir);
+    }
+
+    @Test
+    void JournalIsCompactedIntoSnapshot() throws IOException, DecryptionException, EncryptionException {
+        Path baseDir = Files.createTempDirectory("journal-wallet");
+        Database journaled = new Database(new Configuration(baseDir.toString()));
+        journaled.setPassword(password);
+        for (int i = 0; i < 40; i++)
+            journaled.addKeyPart(new KeyPartEntity(new byte[]{(byte) i}, "Module" + i));
+
+        long journalSize = Files.size(baseDir.resolve("database.journal"));
+        journaled.saveWallet();
+        assertTrue(Files.size(baseDir.resolve("database.journal")) < journalSize);
+
+        journaled.destroy();
+        journaled.initDatabase();
+        assertEquals(40, journaled.getWallet().getParts().size());
+
+        journaled.destroy();
+        deleteDirectory(baseDir);
+    }
+
+    @Test
+    void ConcurrentlyAddedKeyPartsAreAllPersisted() throws Exception {
+        Path baseDir = Files.createTempDirectory("journal-wallet");
+        Database journaled = new Database(new Configuration(baseDir.toString()));
+        journaled.setPassword(password);
+
+        // enough records for several compactions while other threads append
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            KeyPartEntity keyPart = new KeyPartEntity(new byte[]{(byte) i}, "Module" + i);
+            added.add(executor.submit(() -> journaled.addKeyPart(keyPart)));
+        }
+        for (Future<Boolean> success : added)
+            assertTrue(success.get());
+        executor.shutdown();
+
+        journaled.destroy();
+        journaled.initDatabase();
+        assertEquals(100, journaled.getWallet().getParts().size());
+
+        journaled.destroy();
+        deleteDirectory(baseDir);
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+}
@@ -0,0 +1,116 @@
+package io.raspberrywallet.manager.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    private static final byte[] SNAPSHOT = new byte[32];
+    private static final byte[] OTHER_SNAPSHOT = new byte[32];
+
+    static {
+        OTHER_SNAPSHOT[0] = 1;
+    }
+
+    private Path directory;
+    private Path path;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        path = directory.resolve("database.journal");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.deleteIfExists(path);
+        Files.delete(directory);
+    }
+
+    @Test
+    void replaysAppendedRecordsInOrder() throws IOException {
+        try (Journal journal = Journal.create(path, SNAPSHOT)) {
+            journal.append("first".getBytes());
+            journal.append(new byte[0]);
+            journal.append("third".getBytes());
+            assertEquals(3, journal.size());
+        }
+
+        Journal.Replay replay = Journal.open(path, SNAPSHOT);
+        replay.journal.close();
+        assertEquals(3, replay.records.size());
+        assertArrayEquals("first".getBytes(), replay.records.get(0));
+        assertArrayEquals(new byte[0], replay.records.get(1));
+        assertArrayEquals("third".getBytes(), replay.records.get(2));
+    }
+
+    @Test
+    void journalOfOtherSnapshotIsIgnored() throws IOException {
+        try (Journal journal = Journal.create(path, OTHER_SNAPSHOT)) {
+            journal.append("stale".getBytes());
+        }
+
+        assertNull(Journal.open(path, SNAPSHOT));
+        assertNull(Journal.open(directory.resolve("missing"), SNAPSHOT));
+    }
+
+    @Test
+    void tornRecordIsCutOffAndAppendingContinuesAfterLastValidOne() throws IOException {
+        try (Journal journal = Journal.create(path, SNAPSHOT)) {
+            journal.append("first".getBytes());
+            journal.append("second".getBytes());
+        }
+        byte[] content = Files.readAllBytes(path);
+        content[content.length - 1] ^= 1;
+        Files.write(path, content);
+
+        Journal.Replay replay = Journal.open(path, SNAPSHOT);
+        assertEquals(1, replay.records.size());
+        replay.journal.append("third".getBytes());
+        replay.journal.close();
+
+        Journal.Replay reopened = Journal.open(path, SNAPSHOT);
+        reopened.journal.close();
+        assertEquals(2, reopened.records.size());
+        assertArrayEquals("third".getBytes(), reopened.records.get(1));
+    }
+
+    @Test
+    void concurrentAppendsAreAllDurable() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (Journal journal = Journal.create(path, SNAPSHOT)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                byte[] record = ("record " + i).getBytes();
+                futures.add(executor.submit(() -> {
+                    journal.append(record);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+            assertEquals(200, journal.size());
+        } finally {
+            executor.shutdown();
+        }
+
+        Journal.Replay replay = Journal.open(path, SNAPSHOT);
+        replay.journal.close();
+        Set<String> records = new HashSet<>();
+        replay.records.forEach(record -> records.add(new String(record)));
+        assertEquals(200, records.size());
+    }
+}
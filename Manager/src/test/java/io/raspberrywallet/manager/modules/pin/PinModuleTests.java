@@ -8,10 +8,13 @@ import io.raspberrywallet.manager.modules.Module;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
 
-import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 class PinModuleTests {
 
@@ -50,4 +53,12 @@ class PinModuleTests {
         assertThrows(DecryptionException.class, () -> pinModule.decryptKeyPart(encryptedData));
     }
 
+    @Test
+    public void KeyPartEncryptedBeforeBinaryFormatCanBeDecrypted() throws IOException, URISyntaxException, RequiredInputNotFound, DecryptionException, InternalModuleException {
+        byte[] legacyKeyPart = Files.readAllBytes(Paths.get(getClass().getResource("/legacy/legacy-keypart.bin").toURI()));
+        pinModule.setInput("pin", "1234");
+
+        assertArrayEquals("key part".getBytes(), pinModule.decryptKeyPart(legacyKeyPart));
+    }
+
 }
@@ -0,0 +1,69 @@
+#!/usr/local/bin/python3
+"""
+Compares two JMH result files written by runBenchmarks.sh, e.g. before and after a change
+or a laptop and the Raspberry Pi:
+
+    ./compareBenchmarks.py Benchmarks/results/before.json Benchmarks/results/after.json
+
+Ratio is new score / old score, for average and single shot times lower is better.
+Changes within the error of both measurements are not marked.
+"""
+
+import json
+import math
+import sys
+
+
+def load(path):
+    with open(path) as file:
+        results = {}
+        for result in json.load(file):
+            params = ",".join("%s=%s" % (k, v) for k, v in sorted(result.get("params", {}).items()))
+            # class and method, packages would only make the table wider
+            name = ".".join(result["benchmark"].split(".")[-2:])
+            metric = result["primaryMetric"]
+            # single measurements have no error, JMH writes it as NaN
+            error = float(metric["scoreError"])
+            metric["scoreError"] = 0.0 if math.isnan(error) else error
+            results[(name, params, result["mode"])] = metric
+        return results
+
+
+def main():
+    if len(sys.argv) != 3:
+        print("usage: %s <old.json> <new.json>" % sys.argv[0])
+        sys.exit(1)
+
+    old = load(sys.argv[1])
+    new = load(sys.argv[2])
+
+    rows = [("Benchmark", "Params", "Mode", "Old", "New", "Unit", "Ratio", "")]
+    for key in sorted(set(old) | set(new)):
+        name, params, mode = key
+        if key not in old or key not in new:
+            metric = old.get(key) or new.get(key)
+            score = "%.3f" % metric["score"]
+            rows.append((name, params, mode, score if key in old else "-", score if key in new else "-",
+                         metric["scoreUnit"], "", ""))
+            continue
+
+        before, after = old[key], new[key]
+        ratio = after["score"] / before["score"] if before["score"] else float("inf")
+        significant = abs(after["score"] - before["score"]) > before["scoreError"] + after["scoreError"]
+        marker = ""
+        if significant:
+            # throughput is better when higher, times are better when lower
+            faster = ratio > 1 if mode == "thrpt" else ratio < 1
+            marker = "faster" if faster else "SLOWER"
+        rows.append((name, params, mode,
+                     "%.3f ± %.3f" % (before["score"], before["scoreError"]),
+                     "%.3f ± %.3f" % (after["score"], after["scoreError"]),
+                     after["scoreUnit"], "%.2f" % ratio, marker))
+
+    widths = [max(len(row[i]) for row in rows) for i in range(len(rows[0]))]
+    for row in rows:
+        print("  ".join(cell.ljust(width) for cell, width in zip(row, widths)).rstrip())
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,11 @@
+#!/bin/sh
+# Runs the JMH benchmarks and stores the results in Benchmarks/results/<host>-<date>.json
+# Arguments are passed to JMH, e.g. ./runBenchmarks.sh SecretSharingBenchmark -p required=3
+
+cd "$(dirname "$0")/../.." || exit 1
+
+mvn -q -pl Benchmarks -am package -DskipTests || exit 1
+
+mkdir -p Benchmarks/results
+java -jar Benchmarks/target/benchmarks.jar \
+    -rf json -rff "Benchmarks/results/$(hostname)-$(date +%Y%m%d-%H%M%S).json" "$@"
@@ -0,0 +1,13 @@
+#!/bin/sh
+# Load tests the HTTP server with mocked manager, arguments are passed to LoadTest, e.g.
+# ./runLoadTest.sh -users 20 -subscribers 4 -output Benchmarks/results/loadtest.json
+# ./runLoadTest.sh -users 20 -baseline Benchmarks/results/loadtest.json -maxP99 200
+# Exits with 1 if any of the limits is exceeded or latencies regressed against the baseline, 2 on invalid arguments.
+
+# KtorServer loads RaspberryWallet.keystore from the working directory
+cd "$(dirname "$0")/../.." || exit 1
+
+mvn -q -pl Benchmarks -am package -DskipTests || exit 1
+
+mkdir -p Benchmarks/results
+java -cp Benchmarks/target/benchmarks.jar io.raspberrywallet.server.loadtest.LoadTest "$@"
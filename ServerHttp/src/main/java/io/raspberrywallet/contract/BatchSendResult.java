@@ -0,0 +1,41 @@
+package io.raspberrywallet.contract;
+
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Transaction paying all recipients of a batch, either broadcast or only previewed
+ */
+@Getter
+public class BatchSendResult {
+    /**
+     * Hash of the broadcast transaction, null for preview as signing changes it
+     */
+    @Nullable
+    private String txHash;
+    private int recipients;
+    private int inputs;
+    /**
+     * Size of the signed transaction, estimated for preview
+     */
+    private int sizeBytes;
+    /**
+     * Amounts in BTC unit
+     */
+    private String amount;
+    private String fee;
+    private String change;
+    private boolean broadcast;
+
+    public BatchSendResult(@Nullable String txHash, int recipients, int inputs, int sizeBytes,
+                           String amount, String fee, String change, boolean broadcast) {
+        this.txHash = txHash;
+        this.recipients = recipients;
+        this.inputs = inputs;
+        this.sizeBytes = sizeBytes;
+        this.amount = amount;
+        this.fee = fee;
+        this.change = change;
+        this.broadcast = broadcast;
+    }
+}
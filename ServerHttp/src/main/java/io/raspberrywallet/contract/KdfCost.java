@@ -0,0 +1,30 @@
+package io.raspberrywallet.contract;
+
+import lombok.Getter;
+
+/**
+ * Cost of a single wallet key derivation with scrypt parameters currently used on this device
+ */
+@Getter
+public class KdfCost {
+    private long n;
+    private int r;
+    private int p;
+    /**
+     * Measured derivation time, -1 if parameters were not measured on this device
+     */
+    private long millis;
+    private long memoryBytes;
+    private String hardware;
+    private long calibratedAt;
+
+    public KdfCost(long n, int r, int p, long millis, long memoryBytes, String hardware, long calibratedAt) {
+        this.n = n;
+        this.r = r;
+        this.p = p;
+        this.millis = millis;
+        this.memoryBytes = memoryBytes;
+        this.hardware = hardware;
+        this.calibratedAt = calibratedAt;
+    }
+}
@@ -4,6 +4,7 @@ package io.raspberrywallet.contract;
 import io.raspberrywallet.contract.module.Module;
 import io.raspberrywallet.contract.module.ModuleState;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
@@ -66,7 +67,7 @@ public interface Manager {
      *
      * @param moduleToInputsMap map of moduleId => [inputName => inputValue]
      */
-    void loadWalletFromDisk(@NotNull Map<String, Map<String, String>> moduleToInputsMap);
+    void loadWalletFromDisk(@NotNull Map<String, Map<String, String>> moduleToInputsMap) throws IncorrectPasswordException;
 
     /**
      * lock wallet remove key from bitcoinJ, fill zeros on modules decryptedValue props
@@ -125,12 +126,46 @@ public interface Manager {
      */
     void sendCoins(@NotNull String amount, @NotNull String recipientAddress) throws WalletNotInitialized;
 
+    /**
+     * Pay many recipients with one transaction, sharing its inputs, change and fee
+     *
+     * @param payments      recipients with amounts in BTC unit
+     * @param feeSatPerByte fee rate in satoshis per byte, wallet default if null
+     * @param dryRun        only preview size and fee of the transaction, without signing or broadcasting it
+     * @return the transaction, its hash can be followed in transactions until it is confirmed
+     * @throws IllegalArgumentException when payments are invalid or the wallet can't pay them
+     */
+    @NotNull
+    BatchSendResult sendBatch(@NotNull List<Payment> payments, @Nullable Long feeSatPerByte, boolean dryRun)
+            throws WalletNotInitialized;
+
+
+    /**
+     * @return cost of the scrypt key derivation performed on every wallet lock and unlock
+     */
+    @NotNull
+    KdfCost getKdfCost();
 
     /**
      * @return all wallet related transactions
      */
     List<TransactionView> getAllTransactions() throws WalletNotInitialized;
 
+    /**
+     * Page of transactions read from the history index, its cost does not depend on the number of transactions
+     *
+     * @param cursor  nextCursor of the previous page, null for the first page
+     * @param limit   maximum number of transactions in the page
+     * @param address only transactions with this input or output address, all if null
+     * @param from    only transactions seen at or after this time in milliseconds, if not null
+     * @param to      only transactions seen at or before this time in milliseconds, if not null
+     * @return transactions newest first
+     * @throws IllegalArgumentException when the cursor or limit is invalid
+     */
+    @NotNull
+    TransactionPage getTransactions(@Nullable String cursor, int limit, @Nullable String address,
+                                    @Nullable Long from, @Nullable Long to) throws WalletNotInitialized;
+
     /*
      * Utilities
      */
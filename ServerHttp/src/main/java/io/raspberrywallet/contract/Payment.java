@@ -0,0 +1,31 @@
+package io.raspberrywallet.contract;
+
+/**
+ * Single output of a batch payment
+ */
+public class Payment {
+    /**
+     * Base58 address
+     */
+    private String recipient;
+    /**
+     * Amount in BTC unit
+     */
+    private String amount;
+
+    public Payment() {
+    }
+
+    public Payment(String recipient, String amount) {
+        this.recipient = recipient;
+        this.amount = amount;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getAmount() {
+        return amount;
+    }
+}
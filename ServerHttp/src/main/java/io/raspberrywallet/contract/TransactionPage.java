@@ -0,0 +1,24 @@
+package io.raspberrywallet.contract;
+
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Page of wallet transactions, newest first
+ */
+@Getter
+public class TransactionPage {
+    private List<TransactionView> transactions;
+    /**
+     * Cursor of the next page, null if this is the last one
+     */
+    @Nullable
+    private String nextCursor;
+
+    public TransactionPage(List<TransactionView> transactions, @Nullable String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+}
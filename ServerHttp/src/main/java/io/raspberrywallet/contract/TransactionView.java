@@ -37,6 +37,14 @@ public class TransactionView {
         this.confirmations = confirmations;
     }
 
+    /**
+     * @return the same transaction with different number of confirmations, the lists are shared
+     */
+    public TransactionView withConfirmations(int confirmations) {
+        return new TransactionView(txHash, creationTimestamp, inputAddresses, outputAddresses,
+            amountFromMe, amountToMe, fee, confirmations);
+    }
+
     @Override
     public String toString() {
         return "txHash: " + txHash +
@@ -0,0 +1,200 @@
+package io.raspberrywallet.server;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.raspberrywallet.contract.Manager;
+import io.raspberrywallet.contract.TransactionPage;
+import io.raspberrywallet.contract.TransactionView;
+import io.raspberrywallet.contract.WalletNotInitialized;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Export of wallet transactions, newest first, written page by page as they are read from the history by cursor.
+ * Only one page is held in memory however many transactions there are, and the history is not locked while
+ * a slow client reads the response, writes block until the client catches up.
+ */
+public class TransactionExport {
+    static final int PAGE_SIZE = 200;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv; charset=utf-8", "csv");
+
+        public final String contentType;
+        public final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * @param name format name, case insensitive
+         */
+        public static Format fromName(@NotNull String name) {
+            for (Format format : values())
+                if (format.name().equalsIgnoreCase(name))
+                    return format;
+            throw new IllegalArgumentException("Unknown export format " + name);
+        }
+    }
+
+    private final Manager manager;
+    private final Format format;
+    @Nullable
+    private final Long from;
+    @Nullable
+    private final Long to;
+    private final TransactionPage firstPage;
+
+    /**
+     * Reads the first page already, so a wallet which is not initialized fails the request before the response starts
+     *
+     * @param from only transactions seen at or after this time in milliseconds, if not null
+     * @param to   only transactions seen at or before this time in milliseconds, if not null
+     */
+    public TransactionExport(@NotNull Manager manager, @NotNull Format format,
+                             @Nullable Long from, @Nullable Long to) throws WalletNotInitialized {
+        this.manager = manager;
+        this.format = format;
+        this.from = from;
+        this.to = to;
+        this.firstPage = manager.getTransactions(null, PAGE_SIZE, null, from, to);
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return file name suggested to the browser
+     */
+    public String getFileName() {
+        return "transactions." + format.extension;
+    }
+
+    /**
+     * Writes all transactions and flushes after every page, the stream is not closed
+     */
+    public void writeTo(@NotNull OutputStream out) throws IOException, WalletNotInitialized {
+        switch (format) {
+            case NDJSON:
+                try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+                    // lines are ended explicitly, no space in front of the next one
+                    generator.setRootValueSeparator(null);
+                    writePages(transactions -> {
+                        for (TransactionView view : transactions)
+                            writeJson(generator, view);
+                        generator.flush();
+                    });
+                }
+                break;
+            case CSV:
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(new NonClosingOutputStream(out),
+                        StandardCharsets.UTF_8))) {
+                    writer.write("txHash,creationTimestamp,inputAddresses,outputAddresses,"
+                            + "amountFromMe,amountToMe,fee,confirmations\r\n");
+                    writePages(transactions -> {
+                        for (TransactionView view : transactions)
+                            writeCsv(writer, view);
+                        writer.flush();
+                    });
+                }
+                break;
+        }
+    }
+
+    private void writePages(PageWriter pageWriter) throws IOException, WalletNotInitialized {
+        TransactionPage page = firstPage;
+        while (true) {
+            pageWriter.write(page.getTransactions());
+            String cursor = page.getNextCursor();
+            if (cursor == null)
+                return;
+            page = manager.getTransactions(cursor, PAGE_SIZE, null, from, to);
+        }
+    }
+
+    /**
+     * One object per line, with the same fields as transactions of the REST API
+     */
+    private static void writeJson(JsonGenerator generator, TransactionView view) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("txHash", view.getTxHash());
+        generator.writeNumberField("creationTimestamp", view.getCreationTimestamp());
+        writeJsonArray(generator, "inputAddresses", view.getInputAddresses());
+        writeJsonArray(generator, "outputAddresses", view.getOutputAddresses());
+        generator.writeStringField("amountFromMe", view.getAmountFromMe());
+        generator.writeStringField("amountToMe", view.getAmountToMe());
+        generator.writeStringField("fee", view.getFee());
+        generator.writeNumberField("confirmations", view.getConfirmations());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void writeJsonArray(JsonGenerator generator, String name, List<String> values) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (String value : values)
+            generator.writeString(value);
+        generator.writeEndArray();
+    }
+
+    /**
+     * RFC 4180 record, addresses are separated by spaces within their field
+     */
+    private static void writeCsv(Writer writer, TransactionView view) throws IOException {
+        writer.write(csvField(view.getTxHash()));
+        writer.write(',');
+        writer.write(Long.toString(view.getCreationTimestamp()));
+        writer.write(',');
+        writer.write(csvField(String.join(" ", view.getInputAddresses())));
+        writer.write(',');
+        writer.write(csvField(String.join(" ", view.getOutputAddresses())));
+        writer.write(',');
+        writer.write(csvField(view.getAmountFromMe()));
+        writer.write(',');
+        writer.write(csvField(view.getAmountToMe()));
+        writer.write(',');
+        writer.write(csvField(view.getFee()));
+        writer.write(',');
+        writer.write(Integer.toString(view.getConfirmations()));
+        writer.write("\r\n");
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private interface PageWriter {
+        void write(List<TransactionView> transactions) throws IOException;
+    }
+
+    /**
+     * Keeps the response open when the writer on top of it is closed, it belongs to the caller
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package io.raspberrywallet.mock
 
+import io.raspberrywallet.contract.BatchSendResult
+import io.raspberrywallet.contract.KdfCost
 import io.raspberrywallet.contract.Manager
+import io.raspberrywallet.contract.Payment
 import io.raspberrywallet.contract.Response
+import io.raspberrywallet.contract.TransactionPage
 import io.raspberrywallet.contract.TransactionView
 import io.raspberrywallet.contract.WalletStatus
 import io.raspberrywallet.contract.module.Module
 import io.raspberrywallet.contract.module.ModuleState
 import io.raspberrywallet.contract.step.SimpleStep
 import java.io.File
+import java.math.BigDecimal
 import java.security.SecureRandom
 import java.util.function.DoubleConsumer
 import java.util.function.IntConsumer
@@ -53,6 +58,9 @@ class ManagerMock : Manager {
 
     override fun getAllTransactions() = List(5) { newRandomTransaction() }
 
+    override fun getTransactions(cursor: String?, limit: Int, address: String?, from: Long?, to: Long?) =
+        TransactionPage(List(minOf(limit, 5)) { newRandomTransaction() }, null)
+
     private fun newRandomTransaction() = TransactionView(
         Base58.encode(random.generateSeed(32)),
         random.nextLong(),
@@ -78,6 +86,16 @@ class ManagerMock : Manager {
     override fun setDatabasePassword(password: String) {}
     override fun tap() {}
     override fun sendCoins(amount: String, recipientAddress: String) {}
+
+    override fun sendBatch(payments: List<Payment>, feeSatPerByte: Long?, dryRun: Boolean) = BatchSendResult(
+        if (dryRun) null else Base58.encode(random.generateSeed(32)),
+        payments.size,
+        1,
+        10 + 148 + 34 * (payments.size + 1),
+        payments.map { BigDecimal(it.amount) }.fold(BigDecimal.ZERO, BigDecimal::add).toPlainString(),
+        "0.0001",
+        random.nextDouble().toString(),
+        !dryRun)
     override fun ping() = "pong"
 
     override fun getServerModules() = _modules.values.toList()
@@ -98,6 +116,8 @@ class ManagerMock : Manager {
 
     override fun getCpuTemperature() = "75 °C"
 
+    override fun getKdfCost() = KdfCost(32768, 8, 1, 1200, 32 * 1024 * 1024, "armv7l/4 cores", System.currentTimeMillis())
+
     override fun getNetworkList() = arrayOf("UPCwifi", "other wifi", "klocuch12")
 
     override fun getWifiStatus() = mutableMapOf("freq" to "21.37 GHz", "speed" to "21.37 Tb/s")
@@ -7,6 +7,8 @@ import io.ktor.application.Application
 import io.ktor.application.call
 import io.ktor.application.install
 import io.ktor.features.*
+import io.ktor.http.ContentType
+import io.ktor.http.HttpHeaders
 import io.ktor.http.HttpStatusCode
 import io.ktor.http.cio.websocket.Frame
 import io.ktor.http.content.*
@@ -15,7 +17,9 @@ import io.ktor.request.receive
 import io.ktor.request.receiveMultipart
 import io.ktor.request.receiveParameters
 import io.ktor.request.receiveText
+import io.ktor.response.header
 import io.ktor.response.respond
+import io.ktor.response.respondOutputStream
 import io.ktor.response.respondRedirect
 import io.ktor.routing.get
 import io.ktor.routing.post
@@ -29,8 +33,11 @@ import io.raspberrywallet.mock.ManagerMock
 import io.raspberrywallet.server.Paths.Bitcoin.availableBalance
 import io.raspberrywallet.server.Paths.Bitcoin.currentAddress
 import io.raspberrywallet.server.Paths.Bitcoin.estimatedBalance
+import io.raspberrywallet.server.Paths.Bitcoin.exportTransactions
 import io.raspberrywallet.server.Paths.Bitcoin.freshAddress
+import io.raspberrywallet.server.Paths.Bitcoin.sendBatch
 import io.raspberrywallet.server.Paths.Bitcoin.sendCoins
+import io.raspberrywallet.server.Paths.Bitcoin.transactions
 import io.raspberrywallet.server.Paths.Modules.loadWalletFromDisk
 import io.raspberrywallet.server.Paths.Modules.lockWallet
 import io.raspberrywallet.server.Paths.Modules.moduleInstall
@@ -48,6 +55,7 @@ import io.raspberrywallet.server.Paths.Network.statusEndpoint
 import io.raspberrywallet.server.Paths.Network.wifiStatus
 import io.raspberrywallet.server.Paths.Utils.allTransactions
 import io.raspberrywallet.server.Paths.Utils.cpuTemp
+import io.raspberrywallet.server.Paths.Utils.kdfCost
 import io.raspberrywallet.server.Paths.Utils.ping
 import io.raspberrywallet.server.Paths.Utils.setDatabasePassword
 import kotlinx.coroutines.Dispatchers
@@ -63,6 +71,7 @@ import java.io.FileInputStream
 import java.io.InputStream
 import java.io.OutputStream
 import java.security.KeyStore
+import java.util.concurrent.TimeUnit
 
 lateinit var globalManager: Manager
 
@@ -110,6 +119,10 @@ class KtorServer(val manager: Manager,
         applicationEngine.start(wait = false)
     }
 
+    fun stop() {
+        applicationEngine.stop(1, 5, TimeUnit.SECONDS)
+    }
+
 
     fun Application.mainModule() {
         install(ContentNegotiation) {
@@ -129,6 +142,12 @@ class KtorServer(val manager: Manager,
             exception<WalletNotInitialized> {
                 call.respond(HttpStatusCode.MethodNotAllowed, mapOf("message" to "Wallet not initialized"))
             }
+            exception<IllegalArgumentException> { cause ->
+                call.respond(HttpStatusCode.BadRequest, mapOf("message" to cause.message))
+            }
+            exception<IncorrectPasswordException> { cause ->
+                call.respond(HttpStatusCode.Forbidden, mapOf("message" to cause.message))
+            }
             exception<SecurityException> { cause ->
                 call.respond(HttpStatusCode.Forbidden, mapOf("message" to cause))
             }
@@ -170,6 +189,10 @@ class KtorServer(val manager: Manager,
                 manager.tap()
                 call.respond(mapOf("cpuTemp" to manager.cpuTemperature))
             }
+            get(kdfCost) {
+                manager.tap()
+                call.respond(mapOf("kdfCost" to manager.kdfCost))
+            }
 
             /* Network */
             get(wifiStatus) {
@@ -276,6 +299,11 @@ class KtorServer(val manager: Manager,
                 manager.sendCoins(amount, recipient)
                 call.respond(HttpStatusCode.OK)
             }
+            post(sendBatch) {
+                manager.tap()
+                val (payments, feeSatPerByte, dryRun) = call.receive<SendBatchBody>()
+                call.respond(manager.sendBatch(payments, feeSatPerByte, dryRun))
+            }
             get(currentAddress) {
                 manager.tap()
                 call.respond(mapOf("currentAddress" to manager.currentReceiveAddress))
@@ -296,6 +324,30 @@ class KtorServer(val manager: Manager,
                 manager.tap()
                 call.respond(mapOf("allTransactions" to manager.allTransactions))
             }
+            get(transactions) {
+                manager.tap()
+                val parameters = call.parameters
+                call.respond(manager.getTransactions(
+                    parameters["cursor"],
+                    parameters["limit"]?.toInt() ?: defaultTransactionsLimit,
+                    parameters["address"],
+                    parameters["from"]?.toLong(),
+                    parameters["to"]?.toLong()))
+            }
+            get(exportTransactions) {
+                manager.tap()
+                val parameters = call.parameters
+                val export = TransactionExport(
+                    manager,
+                    TransactionExport.Format.fromName(parameters["format"] ?: "ndjson"),
+                    parameters["from"]?.toLong(),
+                    parameters["to"]?.toLong())
+                call.response.header(HttpHeaders.ContentDisposition, "attachment; filename=${export.fileName}")
+                // written on the IO dispatcher, blocks while the client is behind
+                call.respondOutputStream(ContentType.parse(export.format.contentType)) {
+                    export.writeTo(this)
+                }
+            }
 
             webSocket("/blockChainSyncProgress") {
                 blockChainSyncProgressionChannel.consumeEach { progress ->
@@ -333,9 +385,12 @@ class KtorServer(val manager: Manager,
 
     data class RestoreFromBackup(val mnemonicWords: List<String>, val modules: Map<String, Map<String, String>>, val required: Int)
     data class SendCoinBody(val amount: String, val recipient: String)
+    data class SendBatchBody(val payments: List<Payment>, val feeSatPerByte: Long? = null, val dryRun: Boolean = false)
     data class SetDatabasePassword(val password: String)
 
     companion object {
+        const val defaultTransactionsLimit = 50
+
         fun startMocking() {
             KtorServer(
                 ManagerMock(),
@@ -10,6 +10,7 @@ sealed class Paths {
         const val allTransactions = prefix + "allTransactions"
         const val cpuTemp = prefix + "cpuTemp"
         const val setDatabasePassword = prefix + "setDatabasePassword";
+        const val kdfCost = prefix + "kdfCost"
     }
 
     object Modules : Paths() {
@@ -31,6 +32,9 @@ sealed class Paths {
         const val estimatedBalance = prefix + "estimatedBalance"
         const val availableBalance = prefix + "availableBalance"
         const val sendCoins = prefix + "sendCoins"
+        const val sendBatch = prefix + "sendBatch"
+        const val transactions = prefix + "transactions"
+        const val exportTransactions = prefix + "exportTransactions"
     }
 
     object Network : Paths() {
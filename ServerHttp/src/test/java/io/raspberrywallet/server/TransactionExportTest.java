@@ -0,0 +1,98 @@
+package io.raspberrywallet.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.raspberrywallet.contract.Manager;
+import io.raspberrywallet.contract.TransactionPage;
+import io.raspberrywallet.contract.TransactionView;
+import io.raspberrywallet.contract.WalletNotInitialized;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionExportTest {
+    private static final int TRANSACTIONS = TransactionExport.PAGE_SIZE * 2 + 50;
+
+    private final List<String> requestedCursors = new ArrayList<>();
+
+    @Test
+    void ndjsonHasObjectPerLineOfAllPages() throws IOException, WalletNotInitialized {
+        String export = export(new TransactionExport(manager(), TransactionExport.Format.NDJSON, 10L, 20L));
+
+        String[] lines = export.split("\n", -1);
+        assertEquals(TRANSACTIONS + 1, lines.length);
+        assertEquals("", lines[TRANSACTIONS]);
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            JsonNode transaction = mapper.readTree(lines[i]);
+            assertEquals("tx" + i, transaction.get("txHash").asText());
+            assertEquals(2, transaction.get("outputAddresses").size());
+            assertEquals(i % 7, transaction.get("confirmations").asInt());
+        }
+        assertEquals(Arrays.asList(null, "200", "400"), requestedCursors);
+    }
+
+    @Test
+    void csvQuotesFieldsWhenNeeded() throws IOException, WalletNotInitialized {
+        String export = export(new TransactionExport(manager(), TransactionExport.Format.CSV, null, null));
+
+        String[] lines = export.split("\r\n", -1);
+        assertEquals(TRANSACTIONS + 2, lines.length);
+        assertEquals("txHash,creationTimestamp,inputAddresses,outputAddresses,amountFromMe,amountToMe,fee,confirmations",
+                lines[0]);
+        assertEquals("tx0,1000,in0,out0 change0,0.00 BTC,\"1,5 BTC\",\"0.0001 \"\"BTC\"\"\",0", lines[1]);
+    }
+
+    @Test
+    void uninitializedWalletFailsBeforeWriting() {
+        Manager manager = (Manager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Manager.class},
+                (proxy, method, args) -> {
+                    throw new WalletNotInitialized();
+                });
+
+        assertThrows(WalletNotInitialized.class,
+                () -> new TransactionExport(manager, TransactionExport.Format.NDJSON, null, null));
+        assertThrows(IllegalArgumentException.class, () -> TransactionExport.Format.fromName("xml"));
+        assertEquals(TransactionExport.Format.CSV, TransactionExport.Format.fromName("csv"));
+    }
+
+    private static String export(TransactionExport export) throws IOException, WalletNotInitialized {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        export.writeTo(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Manager with history of {@link #TRANSACTIONS} transactions, the cursor is an index of the next transaction
+     */
+    private Manager manager() {
+        return (Manager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Manager.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getTransactions"))
+                        throw new UnsupportedOperationException(method.getName());
+                    String cursor = (String) args[0];
+                    int limit = (int) args[1];
+                    requestedCursors.add(cursor);
+                    int start = cursor == null ? 0 : Integer.parseInt(cursor);
+                    int end = Math.min(TRANSACTIONS, start + limit);
+                    List<TransactionView> transactions = new ArrayList<>();
+                    for (int i = start; i < end; i++)
+                        transactions.add(view(i));
+                    return new TransactionPage(transactions, end < TRANSACTIONS ? Integer.toString(end) : null);
+                });
+    }
+
+    private static TransactionView view(int i) {
+        return new TransactionView("tx" + i, 1000 - i, Collections.singletonList("in" + i),
+                Arrays.asList("out" + i, "change" + i), "0.00 BTC", "1,5 BTC", "0.0001 \"BTC\"", i % 7);
+    }
+}